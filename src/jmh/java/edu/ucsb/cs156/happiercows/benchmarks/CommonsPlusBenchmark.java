@@ -0,0 +1,31 @@
+package edu.ucsb.cs156.happiercows.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the effective capacity once per player, which is how often the
+ * per-player cow health path asks for it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommonsPlusBenchmark {
+
+    @Benchmark
+    public void getEffectiveCapacity(CommonsState state, Blackhole bh) {
+        for (int i = 0; i < state.players; i++) {
+            bh.consume(state.commonsPlus.getEffectiveCapacity());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package edu.ucsb.cs156.happiercows.benchmarks;
+
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsPlus;
+import edu.ucsb.cs156.happiercows.entities.User;
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A single commons with {@code players} randomly generated players, shared by
+ * all of the benchmarks in this package.  The data is seeded so that every run
+ * (and every fork) sees the same players.
+ */
+@State(Scope.Benchmark)
+public class CommonsState {
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int players;
+
+    public Commons commons;
+    public CommonsPlus commonsPlus;
+    public List<UserCommons> userCommons;
+    public int totalCows;
+
+    public double[] health;
+    public int[] cows;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(156L);
+
+        commons = Commons.builder()
+                .id(1L)
+                .name("benchmark")
+                .milkPrice(2.0)
+                .cowPrice(100.0)
+                .capacityPerUser(50)
+                .carryingCapacity(100)
+                .degradationRate(0.01)
+                .build();
+
+        userCommons = new ArrayList<>(players);
+        health = new double[players];
+        cows = new int[players];
+        totalCows = 0;
+        for (int i = 0; i < players; i++) {
+            User user = User.builder().id(i + 1L).build();
+            UserCommons uc = UserCommons.builder()
+                    .user(user)
+                    .commons(commons)
+                    .username("player" + i)
+                    .totalWealth(300)
+                    .numOfCows(random.nextInt(100))
+                    .cowHealth(random.nextDouble() * 100)
+                    .build();
+            userCommons.add(uc);
+            health[i] = uc.getCowHealth();
+            cows[i] = uc.getNumOfCows();
+            totalCows += uc.getNumOfCows();
+        }
+
+        commonsPlus = CommonsPlus.builder()
+                .commons(commons)
+                .totalCows(totalCows)
+                .totalUsers(players)
+                .build();
+    }
+}
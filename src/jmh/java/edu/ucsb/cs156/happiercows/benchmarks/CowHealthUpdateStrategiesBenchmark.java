@@ -0,0 +1,57 @@
+package edu.ucsb.cs156.happiercows.benchmarks;
+
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.strategies.CowHealthUpdateStrategies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates each cow health strategy for every player in a commons, once
+ * through the per-player method and once through the batch kernel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CowHealthUpdateStrategiesBenchmark {
+
+    @Param({"Linear", "Constant", "Noop"})
+    public CowHealthUpdateStrategies strategy;
+
+    private double[] scratch;
+
+    @Setup
+    public void setup(CommonsState state) {
+        scratch = new double[state.players];
+    }
+
+    @Benchmark
+    public void perPlayer(CommonsState state, Blackhole bh) {
+        for (UserCommons uc : state.userCommons) {
+            bh.consume(strategy.calculateNewCowHealth(state.commonsPlus, uc, state.totalCows));
+        }
+    }
+
+    // the kernel works in place, so the copy back from state.health is part of each measurement
+    @Benchmark
+    public double[] batch(CommonsState state) {
+        System.arraycopy(state.health, 0, scratch, 0, state.players);
+        strategy.calculateNewCowHealth(scratch, state.cows, state.players, state.totalCows,
+                state.commonsPlus.getEffectiveCapacity(), state.commons.getDegradationRate());
+        return scratch;
+    }
+}
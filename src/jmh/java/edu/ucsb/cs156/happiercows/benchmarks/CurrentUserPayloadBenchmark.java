@@ -0,0 +1,226 @@
+package edu.ucsb.cs156.happiercows.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import edu.ucsb.cs156.happiercows.HappierCowsApplication;
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.User;
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.models.CurrentUser;
+import edu.ucsb.cs156.happiercows.models.CurrentUserProfile;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.services.UserCache;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares what /api/currentUser costs for a user who has joined many
+ * commons: loading the user with every commons entity, as the eager
+ * User.commons association did, against loading the user and then only the
+ * ids and names of their commons (UserCommonsRepository.findCommonsSummariesByUserId),
+ * with and without UserCache.
+ *
+ * For each way it reports the time per request, the number of SQL statements
+ * Hibernate prepared per request, and the size of the JSON payload.  Results
+ * are printed and written as JSON; see docs/benchmarks.md.
+ */
+public class CurrentUserPayloadBenchmark {
+
+    private static final String EMAIL = "benchmark@example.org";
+
+    private static final List<GrantedAuthority> ROLES = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Options {
+        private int commons = 100;
+        private int iterations = 100;
+        private String out = "target/current-user-payload.json";
+
+        public static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--commons" -> options.commons = Integer.parseInt(value);
+                    case "--iterations" -> options.iterations = Integer.parseInt(value);
+                    case "--out" -> options.out = value;
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            return options;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Result {
+        private String payload;
+        private int commons;
+        private double millisPerRequest;
+        private double sqlStatementsPerRequest;
+        private long payloadBytes;
+    }
+
+    private interface Request {
+        byte[] serve() throws Exception;
+    }
+
+    private final ConfigurableApplicationContext context;
+    private final Options options;
+    private final Statistics statistics;
+    private final ObjectMapper mapper;
+
+    public CurrentUserPayloadBenchmark(ConfigurableApplicationContext context, Options options) {
+        this.context = context;
+        this.options = options;
+        this.statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        this.mapper = context.getBean(ObjectMapper.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        // devtools would otherwise restart main() in a new class loader with the arguments below
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(HappierCowsApplication.class).run(
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.generate_statistics=true",
+                "--server.port=0",
+                "--spring.autoconfigure.exclude="
+                        + "org.springframework.boot.devtools.autoconfigure.DevToolsDataSourceAutoConfiguration",
+                "--logging.level.root=WARN",
+                "--logging.level.sql=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+                "--app.updateCowHealth.cron=-",
+                "--app.milkTheCows.cron=-",
+                "--app.recordCommonStats.cron=-");
+        try {
+            new CurrentUserPayloadBenchmark(context, options).run();
+        } finally {
+            context.close();
+        }
+    }
+
+    public void run() throws Exception {
+        System.out.printf("Seeding one user in %d commons%n", options.getCommons());
+        seed();
+
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        UserCommonsRepository userCommonsRepository = context.getBean(UserCommonsRepository.class);
+        UserCache userCache = context.getBean(UserCache.class);
+        TransactionTemplate transaction = context.getBean(TransactionTemplate.class);
+
+        Map<String, Request> requests = new LinkedHashMap<>();
+        // the user and every commons entity, serialized the way they were while User.commons was eager
+        requests.put("eagerCommons", () -> transaction.execute(status -> {
+            User user = userRepository.findByEmail(EMAIL).orElseThrow();
+            Hibernate.initialize(user.getCommons());
+            ObjectNode userJson = mapper.valueToTree(user);
+            userJson.set("commons", mapper.valueToTree(user.getCommons()));
+            return toJson(Map.of("user", userJson, "roles", ROLES));
+        }));
+        requests.put("commonsSummaries", () -> {
+            User user = userRepository.findByEmail(EMAIL).orElseThrow();
+            return profile(user, userCommonsRepository);
+        });
+        requests.put("commonsSummariesWithUserCache", () -> {
+            User user = userCache.findByEmail(EMAIL).orElseThrow();
+            return profile(user, userCommonsRepository);
+        });
+
+        List<Result> results = new ArrayList<>();
+        for (Map.Entry<String, Request> request : requests.entrySet()) {
+            Result result = time(request.getKey(), request.getValue());
+            System.out.printf("%-32s %6d commons %10.3f ms %8.1f sql %10d bytes%n",
+                    result.getPayload(), result.getCommons(), result.getMillisPerRequest(),
+                    result.getSqlStatementsPerRequest(), result.getPayloadBytes());
+            results.add(result);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options);
+        report.put("results", results);
+        File out = new File(options.getOut());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(out, report);
+        System.out.println("Results written to " + out.getAbsolutePath());
+    }
+
+    private byte[] profile(User user, UserCommonsRepository userCommonsRepository) throws Exception {
+        CurrentUser currentUser = CurrentUser.builder().user(user).roles(ROLES).build();
+        return mapper.writeValueAsBytes(
+                CurrentUserProfile.of(currentUser, userCommonsRepository.findCommonsSummariesByUserId(user.getId())));
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Serves one request to warm up, then times the rest.
+     */
+    private Result time(String name, Request request) throws Exception {
+        long payloadBytes = request.serve().length;
+
+        statistics.clear();
+        long start = System.nanoTime();
+        for (int i = 0; i < options.getIterations(); i++) {
+            request.serve();
+        }
+        long nanos = System.nanoTime() - start;
+
+        return new Result(name, options.getCommons(), nanos / 1_000_000.0 / options.getIterations(),
+                (double) statistics.getPrepareStatementCount() / options.getIterations(), payloadBytes);
+    }
+
+    private void seed() {
+        CommonsRepository commonsRepository = context.getBean(CommonsRepository.class);
+        UserCommonsRepository userCommonsRepository = context.getBean(UserCommonsRepository.class);
+        User user = context.getBean(UserRepository.class).save(User.builder()
+                .email(EMAIL)
+                .fullName("Benchmark User")
+                .build());
+        for (int i = 0; i < options.getCommons(); i++) {
+            Commons commons = commonsRepository.save(Commons.builder()
+                    .name("Commons " + i)
+                    .cowPrice(100)
+                    .milkPrice(1)
+                    .startingBalance(10000)
+                    .build());
+            userCommonsRepository.save(UserCommons.builder()
+                    .user(user)
+                    .commons(commons)
+                    .username(user.getFullName())
+                    .totalWealth(commons.getStartingBalance())
+                    .cowHealth(100)
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package edu.ucsb.cs156.happiercows.benchmarks;
+
+import edu.ucsb.cs156.happiercows.HappierCowsApplication;
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.jobs.GenerateDataJobFactory;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line entry point for GenerateDataJob.  Starts the application
+ * (on a random port), fills the configured database and exits.
+ *
+ * Options are --seed, --commons, --players, --profits, --chatMessages,
+ * --commonStats and --announcements (see JobsController.generateData for the
+ * defaults); any other --name=value argument is passed on to Spring, e.g.
+ * --spring.datasource.url=jdbc:h2:file:./target/db-development
+ */
+public class GenerateData {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("--seed", 1L);
+        counts.put("--commons", 10L);
+        counts.put("--players", 100L);
+        counts.put("--profits", 10L);
+        counts.put("--chatMessages", 5L);
+        counts.put("--commonStats", 10L);
+        counts.put("--announcements", 2L);
+
+        List<String> springArgs = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.autoconfigure.exclude="
+                        + "org.springframework.boot.devtools.autoconfigure.DevToolsDataSourceAutoConfiguration"));
+        for (int i = 0; i < args.length; i++) {
+            if (counts.containsKey(args[i]) && i + 1 < args.length) {
+                counts.put(args[i], Long.parseLong(args[++i]));
+            } else if (args[i].startsWith("--") && args[i].contains("=")) {
+                springArgs.add(args[i]);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i] + ", expected one of " + counts.keySet()
+                        + " followed by a value, or --name=value");
+            }
+        }
+
+        // devtools would otherwise restart main() in a new class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(HappierCowsApplication.class)
+                .run(springArgs.toArray(String[]::new));
+        try {
+            JobContextConsumer job = context.getBean(GenerateDataJobFactory.class).create(
+                    counts.get("--seed"),
+                    Math.toIntExact(counts.get("--commons")),
+                    Math.toIntExact(counts.get("--players")),
+                    Math.toIntExact(counts.get("--profits")),
+                    Math.toIntExact(counts.get("--chatMessages")),
+                    Math.toIntExact(counts.get("--commonStats")),
+                    Math.toIntExact(counts.get("--announcements")));
+            job.accept(new JobContext(null, Job.builder().build()));
+        } finally {
+            context.close();
+        }
+    }
+}
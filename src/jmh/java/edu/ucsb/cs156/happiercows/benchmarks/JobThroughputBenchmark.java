@@ -0,0 +1,271 @@
+package edu.ucsb.cs156.happiercows.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import edu.ucsb.cs156.happiercows.HappierCowsApplication;
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.jobs.GameTickJob;
+import edu.ucsb.cs156.happiercows.jobs.GameTickJobFactory;
+import edu.ucsb.cs156.happiercows.jobs.GenerateDataJobFactory;
+import edu.ucsb.cs156.happiercows.jobs.InstructorReportJobFactory;
+import edu.ucsb.cs156.happiercows.jobs.InstructorReportJobSingleCommonsFactory;
+import edu.ucsb.cs156.happiercows.jobs.MilkTheCowsJobFactory;
+import edu.ucsb.cs156.happiercows.jobs.MilkTheCowsJobFactoryInd;
+import edu.ucsb.cs156.happiercows.jobs.ReconcileCommonsAggregatesJobFactory;
+import edu.ucsb.cs156.happiercows.jobs.RecordCommonStatsJobFactory;
+import edu.ucsb.cs156.happiercows.jobs.SetCowHealthJobFactory;
+import edu.ucsb.cs156.happiercows.jobs.TestJob;
+import edu.ucsb.cs156.happiercows.jobs.UpdateCowHealthJobFactory;
+import edu.ucsb.cs156.happiercows.jobs.UpdateCowHealthJobFactoryInd;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobCheckpointRepository;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobLogLineRepository;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobsRepository;
+import edu.ucsb.cs156.happiercows.services.CommonsAggregatesService;
+import edu.ucsb.cs156.happiercows.services.jobs.CommonsRunner;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Times every job in edu.ucsb.cs156.happiercows.jobs end to end, against the
+ * full Spring context on an in-memory H2 database seeded with synthetic games.
+ *
+ * For each run it reports the players processed per second, the number of SQL
+ * statements Hibernate prepared, and the heap allocated by all threads while
+ * the job ran.  Results are printed and written as JSON; see docs/benchmarks.md.
+ */
+public class JobThroughputBenchmark {
+
+    private static final long SEED = 156L;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Options {
+        private int commons = 10;
+        private int players = 100;
+        private int profits = 10;
+        private int iterations = 1;
+        private boolean bulkUpdates = false;
+        private int commonsParallelism = 1;
+        private List<String> jobs = new ArrayList<>();
+        private String out = "target/job-throughput.json";
+
+        public static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--commons" -> options.commons = Integer.parseInt(value);
+                    case "--players" -> options.players = Integer.parseInt(value);
+                    case "--profits" -> options.profits = Integer.parseInt(value);
+                    case "--iterations" -> options.iterations = Integer.parseInt(value);
+                    case "--bulkUpdates" -> options.bulkUpdates = Boolean.parseBoolean(value);
+                    case "--commonsParallelism" -> options.commonsParallelism = Integer.parseInt(value);
+                    case "--jobs" -> options.jobs = List.of(value.split(","));
+                    case "--out" -> options.out = value;
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            return options;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Result {
+        private String job;
+        private int iteration;
+        private long rows;
+        private double millis;
+        private double rowsPerSecond;
+        private long sqlStatements;
+        private long allocatedBytes;
+    }
+
+    @AllArgsConstructor
+    private static class Benchmark {
+        private final Supplier<JobContextConsumer> job;
+        private final long rows;
+    }
+
+    private final ConfigurableApplicationContext context;
+    private final Options options;
+    private final Statistics statistics;
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public JobThroughputBenchmark(ConfigurableApplicationContext context, Options options) {
+        this.context = context;
+        this.options = options;
+        this.statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        // devtools would otherwise restart main() in a new class loader with the arguments below
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(HappierCowsApplication.class).run(
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.generate_statistics=true",
+                "--server.port=0",
+                "--spring.autoconfigure.exclude="
+                        + "org.springframework.boot.devtools.autoconfigure.DevToolsDataSourceAutoConfiguration",
+                "--logging.level.root=WARN",
+                "--logging.level.sql=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+                "--app.updateCowHealth.cron=-",
+                "--app.milkTheCows.cron=-",
+                "--app.recordCommonStats.cron=-",
+                "--app.jobs.bulkUpdates=" + options.isBulkUpdates(),
+                "--app.jobs.commonsParallelism=" + options.getCommonsParallelism());
+        try {
+            new JobThroughputBenchmark(context, options).run();
+        } finally {
+            context.close();
+        }
+    }
+
+    public void run() throws Exception {
+        System.out.printf("Seeding %d commons x %d players, %d profits each%n",
+                options.getCommons(), options.getPlayers(), options.getProfits());
+        long firstCommonsId = seed();
+
+        Map<String, Benchmark> benchmarks = benchmarks(firstCommonsId);
+        List<String> names = options.getJobs().isEmpty() ? List.copyOf(benchmarks.keySet()) : options.getJobs();
+
+        List<Result> results = new ArrayList<>();
+        for (String name : names) {
+            Benchmark benchmark = benchmarks.get(name);
+            if (benchmark == null) {
+                throw new IllegalArgumentException("Unknown job: " + name + ", expected one of " + benchmarks.keySet());
+            }
+            for (int i = 0; i < options.getIterations(); i++) {
+                Result result = time(name, i, benchmark);
+                System.out.printf("%-32s %3d %10d rows %12.1f ms %14.1f rows/s %10d sql %14d bytes%n",
+                        result.getJob(), result.getIteration(), result.getRows(), result.getMillis(),
+                        result.getRowsPerSecond(), result.getSqlStatements(), result.getAllocatedBytes());
+                results.add(result);
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options);
+        report.put("results", results);
+        File out = new File(options.getOut());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(out, report);
+        System.out.println("Results written to " + out.getAbsolutePath());
+    }
+
+    private Map<String, Benchmark> benchmarks(long firstCommonsId) {
+        long allPlayers = (long) options.getCommons() * options.getPlayers();
+        long onePlayers = options.getPlayers();
+
+        Map<String, Benchmark> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("UpdateCowHealthJob",
+                new Benchmark(() -> context.getBean(UpdateCowHealthJobFactory.class).create(), allPlayers));
+        benchmarks.put("UpdateCowHealthJobInd",
+                new Benchmark(() -> context.getBean(UpdateCowHealthJobFactoryInd.class).create(firstCommonsId), onePlayers));
+        benchmarks.put("MilkTheCowsJob",
+                new Benchmark(() -> context.getBean(MilkTheCowsJobFactory.class).create(), allPlayers));
+        benchmarks.put("MilkTheCowsJobInd",
+                new Benchmark(() -> context.getBean(MilkTheCowsJobFactoryInd.class).create(firstCommonsId), onePlayers));
+        benchmarks.put("SetCowHealthJob",
+                new Benchmark(() -> context.getBean(SetCowHealthJobFactory.class).create(firstCommonsId, 100.0), onePlayers));
+        benchmarks.put("RecordCommonStatsJob",
+                new Benchmark(() -> context.getBean(RecordCommonStatsJobFactory.class).create(), allPlayers));
+        benchmarks.put("InstructorReportJob",
+                new Benchmark(() -> context.getBean(InstructorReportJobFactory.class).create(), allPlayers));
+        benchmarks.put("InstructorReportJobSingleCommons",
+                new Benchmark(() -> context.getBean(InstructorReportJobSingleCommonsFactory.class).create(firstCommonsId), onePlayers));
+        benchmarks.put("GameTickJob",
+                new Benchmark(() -> context.getBean(GameTickJobFactory.class).create(EnumSet.allOf(GameTickJob.Stage.class)), allPlayers));
+        benchmarks.put("ReconcileCommonsAggregatesJob",
+                new Benchmark(() -> context.getBean(ReconcileCommonsAggregatesJobFactory.class).create(), allPlayers));
+        benchmarks.put("TestJob",
+                new Benchmark(() -> TestJob.builder().build(), 0));
+        return benchmarks;
+    }
+
+    /**
+     * Runs the job the way JobService.runJob does, with the same
+     * collaborators, but on this thread so that it can be timed.  Jobs
+     * checkpoint each commons and change the commons' totals as they would
+     * in the app, and their checkpoints are deleted once they complete.
+     */
+    private Result time(String name, int iteration, Benchmark benchmark) throws Exception {
+        JobsRepository jobsRepository = context.getBean(JobsRepository.class);
+        Environment env = context.getEnvironment();
+        Job job = jobsRepository.save(Job.builder().status("running").build());
+        JobContext ctx = new JobContext(jobsRepository, context.getBean(JobLogLineRepository.class), null, job,
+                env.getRequiredProperty("app.jobs.log.flushLines", Integer.class),
+                env.getRequiredProperty("app.jobs.log.flushIntervalMs", Long.class));
+        JobCheckpointRepository jobCheckpointRepository = context.getBean(JobCheckpointRepository.class);
+        ctx.setCommonsRunner(context.getBean(CommonsRunner.class));
+        ctx.setJobCheckpointRepository(jobCheckpointRepository);
+        ctx.setCommonsAggregatesService(context.getBean(CommonsAggregatesService.class));
+        JobContextConsumer consumer = benchmark.job.get();
+
+        statistics.clear();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+
+        consumer.accept(ctx);
+        ctx.flush();
+        job.setStatus("complete");
+        jobsRepository.save(job);
+        jobCheckpointRepository.deleteAllByJobId(job.getId());
+
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        double millis = nanos / 1_000_000.0;
+        double rowsPerSecond = benchmark.rows * 1_000_000_000.0 / nanos;
+        return new Result(name, iteration, benchmark.rows, millis, rowsPerSecond,
+                statistics.getPrepareStatementCount(), allocated);
+    }
+
+    private long allocatedBytes() {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Fills the database with GenerateDataJob, using a fixed seed so that every
+     * run starts from the same data.
+     *
+     * @return the id of the first commons, used by the single commons jobs
+     */
+    private long seed() throws Exception {
+        context.getBean(GenerateDataJobFactory.class)
+                .create(SEED, options.getCommons(), options.getPlayers(), options.getProfits(), 0, 0, 0)
+                .accept(new JobContext(null, Job.builder().build()));
+        return context.getBean(JdbcTemplate.class).queryForObject("select coalesce(min(id), 0) from commons", Long.class);
+    }
+}
@@ -0,0 +1,33 @@
+package edu.ucsb.cs156.happiercows.benchmarks;
+
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.jobs.MilkTheCowsJob;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the milking profit for every player in a commons.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MilkTheCowsJobBenchmark {
+
+    @Benchmark
+    public double calculateMilkingProfit(CommonsState state) {
+        double total = 0;
+        for (UserCommons uc : state.userCommons) {
+            total += MilkTheCowsJob.calculateMilkingProfit(state.commons, uc);
+        }
+        return total;
+    }
+}
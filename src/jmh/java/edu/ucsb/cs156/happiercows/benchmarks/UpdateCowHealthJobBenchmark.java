@@ -0,0 +1,42 @@
+package edu.ucsb.cs156.happiercows.benchmarks;
+
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.jobs.UpdateCowHealthJob;
+import edu.ucsb.cs156.happiercows.strategies.CowHealthUpdateStrategies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the new, clamped cow health for every player in a commons, the
+ * way {@link UpdateCowHealthJob} does for each player.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateCowHealthJobBenchmark {
+
+    @Param({"Linear", "Constant", "Noop"})
+    public CowHealthUpdateStrategies strategy;
+
+    @Benchmark
+    public void calculateNewCowHealthUsingStrategy(CommonsState state, Blackhole bh) {
+        for (UserCommons uc : state.userCommons) {
+            bh.consume(UpdateCowHealthJob.calculateNewCowHealthUsingStrategy(
+                    strategy, state.commonsPlus, uc, state.totalCows));
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.time.ZonedDateTime;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -16,6 +17,7 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.task.DelegatingSecurityContextAsyncTaskExecutor;
 
+import edu.ucsb.cs156.happiercows.services.jobs.JobExecutorService;
 import edu.ucsb.cs156.happiercows.services.wiremock.WiremockService;
 import lombok.extern.slf4j.Slf4j;
 
@@ -66,9 +68,11 @@ public class HappierCowsApplication {
   }
 
   // See: https://www.baeldung.com/spring-security-async-principal-propagation
+  // In the threadPerJob mode (app.jobs.executor.mode) jobs get a thread each instead of sharing the pool below
   @Bean
-  public DelegatingSecurityContextAsyncTaskExecutor taskExecutor(ThreadPoolTaskExecutor delegate) {
-    return new DelegatingSecurityContextAsyncTaskExecutor(delegate);
+  public DelegatingSecurityContextAsyncTaskExecutor taskExecutor(ThreadPoolTaskExecutor delegate,
+      @Value("${app.jobs.executor.mode}") String mode) {
+    return JobExecutorService.taskExecutor(mode, delegate);
   }
 
   // See: https://www.baeldung.com/spring-security-async-principal-propagation
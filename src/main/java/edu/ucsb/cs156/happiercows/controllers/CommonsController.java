@@ -7,6 +7,7 @@ import edu.ucsb.cs156.happiercows.entities.CommonsPlus;
 import edu.ucsb.cs156.happiercows.entities.User;
 import edu.ucsb.cs156.happiercows.entities.UserCommons;
 import edu.ucsb.cs156.happiercows.errors.EntityNotFoundException;
+import edu.ucsb.cs156.happiercows.models.CommonsPlusCacheStats;
 import edu.ucsb.cs156.happiercows.models.CreateCommonsParams;
 import edu.ucsb.cs156.happiercows.models.HealthUpdateStrategyList;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
@@ -18,10 +19,15 @@ import io.swagger.v3.oas.annotations.Parameter;
 import org.springframework.beans.factory.annotation.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import edu.ucsb.cs156.happiercows.services.CommonsAggregatesService;
+import edu.ucsb.cs156.happiercows.services.CommonsChangedEvent;
+import edu.ucsb.cs156.happiercows.services.CommonsPlusCache;
+import edu.ucsb.cs156.happiercows.services.UserChangedEvent;
 import edu.ucsb.cs156.happiercows.services.CommonsPlusBuilderService;
 
 
@@ -45,6 +51,15 @@ public class CommonsController extends ApiController {
     @Autowired
     CommonsPlusBuilderService commonsPlusBuilderService;
 
+    @Autowired
+    CommonsAggregatesService commonsAggregatesService;
+
+    @Autowired
+    CommonsPlusCache commonsPlusCache;
+
+    @Autowired
+    ApplicationEventPublisher applicationEventPublisher;
+
     @Value("${app.commons.default.startingBalance}")
     private double defaultStartingBalance;
 
@@ -101,11 +116,8 @@ public class CommonsController extends ApiController {
     @GetMapping("/allplus")
     public ResponseEntity<String> getCommonsPlus() throws JsonProcessingException {
         log.info("getCommonsPlus()...");
-        Iterable<Commons> commonsListIter = commonsRepository.findAll();
-
-        // convert Iterable to List for the purposes of using a Java Stream & lambda
-        // below
-        Iterable<CommonsPlus> commonsPlusList = commonsPlusBuilderService.convertToCommonsPlus(commonsListIter);
+        // the commons and their totals are read with one query
+        Iterable<CommonsPlus> commonsPlusList = commonsPlusBuilderService.getAllCommonsPlus();
 
         String body = mapper.writeValueAsString(commonsPlusList);
         return ResponseEntity.ok().body(body);
@@ -116,10 +128,15 @@ public class CommonsController extends ApiController {
     @GetMapping("/plus")
     public CommonsPlus getCommonsPlusById(
             @Parameter(name="id") @RequestParam long id) throws JsonProcessingException {
-                CommonsPlus commonsPlus = commonsPlusBuilderService.toCommonsPlus(commonsRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Commons.class, id)));
+        return commonsPlusCache.get(id)
+                .orElseThrow(() -> new EntityNotFoundException(Commons.class, id));
+    }
 
-        return commonsPlus;
+    @Operation(summary = "Get the size, hits, misses, evictions and invalidations of the cache behind /api/commons/plus")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/plus/cache")
+    public CommonsPlusCacheStats getCommonsPlusCacheStats() {
+        return commonsPlusCache.getStats();
     }
 
     @Operation(summary = "Update a commons")
@@ -185,6 +202,7 @@ public class CommonsController extends ApiController {
             throw new IllegalArgumentException("Carrying Capacity cannot be less than 1");
         }
         commonsRepository.save(updated);
+        applicationEventPublisher.publishEvent(new CommonsChangedEvent(updated.getId()));
 
         return ResponseEntity.status(status).build();
     }
@@ -305,7 +323,7 @@ public class CommonsController extends ApiController {
                 .cowDeaths(0)
                 .build();
 
-        userCommonsRepository.save(uc);
+        commonsAggregatesService.addPlayer(uc);
 
         String body = mapper.writeValueAsString(joinedCommons);
         return ResponseEntity.ok().body(body);
@@ -321,12 +339,14 @@ public class CommonsController extends ApiController {
 
         for (UserCommons commons : userCommons) {
             userCommonsRepository.delete(commons);
+            applicationEventPublisher.publishEvent(new UserChangedEvent(commons.getUser().getEmail()));
         }
 
         commonsRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Commons.class, id));
 
         commonsRepository.deleteById(id);
+        commonsAggregatesService.deleteCommons(id);
 
         String responseString = String.format("commons with id %d deleted", id);
         return genericMessage(responseString);
@@ -344,9 +364,9 @@ public class CommonsController extends ApiController {
                         UserCommons.class, "commonsId", commonsId, "userId", userId)
                 );
 
-        userCommonsRepository.delete(userCommons);
+        commonsAggregatesService.removePlayer(userCommons);
 
-        String responseString = String.format("user with id %d deleted from commons with id %d, %d users remain", userId, commonsId, commonsRepository.getNumUsers(commonsId).orElse(0));
+        String responseString = String.format("user with id %d deleted from commons with id %d, %d users remain", userId, commonsId, commonsAggregatesService.get(commonsId).getTotalUsers());
 
         return genericMessage(responseString);
     }
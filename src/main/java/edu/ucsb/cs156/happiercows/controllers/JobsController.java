@@ -11,14 +11,24 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
 
 
 import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.errors.EntityNotFoundException;
+import edu.ucsb.cs156.happiercows.jobs.GameTickJob;
+import edu.ucsb.cs156.happiercows.jobs.GameTickJobFactory;
+import edu.ucsb.cs156.happiercows.jobs.GenerateDataJobFactory;
 import edu.ucsb.cs156.happiercows.jobs.InstructorReportJob;
 import edu.ucsb.cs156.happiercows.jobs.InstructorReportJobFactory;
 import edu.ucsb.cs156.happiercows.jobs.InstructorReportJobSingleCommons;
@@ -31,8 +41,13 @@ import edu.ucsb.cs156.happiercows.jobs.TestJob;
 import edu.ucsb.cs156.happiercows.jobs.UpdateCowHealthJobFactory;
 import edu.ucsb.cs156.happiercows.jobs.RecordCommonStatsJob;
 import edu.ucsb.cs156.happiercows.jobs.RecordCommonStatsJobFactory;
+import edu.ucsb.cs156.happiercows.jobs.ReconcileCommonsAggregatesJobFactory;
+import edu.ucsb.cs156.happiercows.models.JobExecutorStats;
+import edu.ucsb.cs156.happiercows.models.JobLogTail;
 import edu.ucsb.cs156.happiercows.repositories.jobs.JobsRepository;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.JobExecutorService;
+import edu.ucsb.cs156.happiercows.services.jobs.JobLogStreamService;
 import edu.ucsb.cs156.happiercows.services.jobs.JobService;
 import edu.ucsb.cs156.happiercows.services.CommonsPlusBuilderService;
 
@@ -47,6 +62,12 @@ public class JobsController extends ApiController {
     @Autowired
     private JobService jobService;
 
+    @Autowired
+    private JobLogStreamService jobLogStreamService;
+
+    @Autowired
+    private JobExecutorService jobExecutorService;
+
     @Autowired
     private CommonsPlusBuilderService commonsPlusBuilderService;
 
@@ -77,12 +98,21 @@ public class JobsController extends ApiController {
     @Autowired
     RecordCommonStatsJobFactory recordCommonStatsJobFactory;
 
+    @Autowired
+    GameTickJobFactory gameTickJobFactory;
+
+    @Autowired
+    GenerateDataJobFactory generateDataJobFactory;
+
+    @Autowired
+    ReconcileCommonsAggregatesJobFactory reconcileCommonsAggregatesJobFactory;
+
     @Operation(summary = "List all jobs")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @GetMapping("/all")
     public Iterable<Job> allJobs() {
         Iterable<Job> jobs = jobsRepository.findAll();
-        return jobs;
+        return jobService.attachLogs(jobs);
     }
 
     @Operation(summary = "List all jobs")
@@ -93,7 +123,69 @@ public class JobsController extends ApiController {
          @Parameter(name="size") @RequestParam int size
     ) {
         Page<Job> jobs = jobsRepository.findAll(PageRequest.of(page, size, Sort.by("id").descending()));
-        return jobs;
+        return jobService.attachLogs(jobs);
+    }
+
+    @Operation(summary = "Get the number of jobs waiting, running and done on this server's job executor")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/executor")
+    public JobExecutorStats executorStats() {
+        return jobExecutorService.getStats();
+    }
+
+    @Operation(summary = "Get the lines of a job's log from an offset on, or only the newest lines")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/{id}/log")
+    public JobLogTail jobLog(
+        @Parameter(name="id") @PathVariable long id,
+        @Parameter(name="offset", description="sequence number of the first line to return; use nextOffset from the previous response") @RequestParam(defaultValue = "0") long offset,
+        @Parameter(name="tail", description="if given, return at most this many of the newest lines") @RequestParam(required = false) Integer tail
+    ) {
+        Job job = jobsRepository.findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(Job.class, id));
+
+        if (offset < 0 || (tail != null && tail < 0)) {
+            throw new IllegalArgumentException("offset and tail must not be negative");
+        }
+
+        return jobLogStreamService.tail(job, offset, tail);
+    }
+
+    @Operation(summary = "Cancel a queued or running job; a running job stops at its next check, e.g. before its next commons")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/{id}/cancel")
+    public Object cancelJob(
+        @Parameter(name="id") @PathVariable long id
+    ) {
+        return genericMessage(jobService.cancel(id));
+    }
+
+    @Operation(summary = "Run a job that ended with an error or was cancelled again, skipping the commons it had already done; only for job types that checkpoint their commons")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/{id}/resume")
+    public Job resumeJob(
+        @Parameter(name="id") @PathVariable long id
+    ) {
+        return jobService.resume(id);
+    }
+
+    @Operation(summary = "Stream a job's log lines and status changes as Server-Sent Events")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping(value = "/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamJobLog(
+        @Parameter(name="id") @PathVariable long id,
+        @Parameter(name="offset", description="sequence number of the first line to send") @RequestParam(defaultValue = "0") long offset,
+        @Parameter(hidden = true) @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId
+    ) throws IOException {
+        Job job = jobsRepository.findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(Job.class, id));
+
+        // browsers send the id of the last line they saw when they reconnect
+        if (lastEventId != null) {
+            offset = Math.max(offset, lastEventId + 1);
+        }
+
+        return jobLogStreamService.stream(job, offset);
     }
 
     @Operation(summary = "Launch Test Job (click fail if you want to test exception handling)")
@@ -125,6 +217,25 @@ public class JobsController extends ApiController {
         return jobService.runAsJob(milkTheCowsJob);
     }
 
+    @Operation(summary = "Launch Job that updates cow health, milks the cows and records stats in one pass")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/launch/gametick")
+    public Job launchGameTickJob(
+         @Parameter(name="stages", description="comma separated list of stages: updateCowHealth, milkTheCows, recordCommonStats") @RequestParam(defaultValue = "updateCowHealth,milkTheCows,recordCommonStats") String[] stages
+    ) {
+        JobContextConsumer gameTickJob = gameTickJobFactory.create(GameTickJob.Stage.fromKeys(stages));
+        return jobService.runAsJob(gameTickJob);
+    }
+
+    @Operation(summary = "Launch Job that checks each commons' totals of players, cows, health and wealth against a full count")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/launch/reconcilecommonsaggregates")
+    public Job launchReconcileCommonsAggregatesJob(
+    ) {
+        JobContextConsumer reconcileCommonsAggregatesJob = reconcileCommonsAggregatesJobFactory.create();
+        return jobService.runAsJob(reconcileCommonsAggregatesJob);
+    }
+
     @Operation(summary = "Launch Job to Milk the Cows for a single commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PostMapping("/launch/milkthecowjobsinglecommons")
@@ -200,4 +311,25 @@ public class JobsController extends ApiController {
         RecordCommonStatsJob recordCommonStatsJob = (RecordCommonStatsJob) recordCommonStatsJobFactory.create();
         return jobService.runAsJob(recordCommonStatsJob);
     }
+
+    @Operation(summary = "Launch Job to fill the database with synthetic commons, players and history for load testing")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/launch/generatedata")
+    public Job generateData(
+        @Parameter(name="seed", description="seed for the random values; the same seed and counts give the same data") @RequestParam(defaultValue = "1") long seed,
+        @Parameter(name="commons", description="number of commons to create") @RequestParam(defaultValue = "10") int commons,
+        @Parameter(name="players", description="players (new users) in each commons") @RequestParam(defaultValue = "100") int players,
+        @Parameter(name="profits", description="profit history rows for each player") @RequestParam(defaultValue = "10") int profits,
+        @Parameter(name="chatMessages", description="chat messages from each player") @RequestParam(defaultValue = "5") int chatMessages,
+        @Parameter(name="commonStats", description="stats rows for each commons") @RequestParam(defaultValue = "10") int commonStats,
+        @Parameter(name="announcements", description="announcements for each commons") @RequestParam(defaultValue = "2") int announcements
+    ) {
+        if (commons < 0 || players < 0 || profits < 0 || chatMessages < 0 || commonStats < 0 || announcements < 0) {
+            throw new IllegalArgumentException("counts must not be negative");
+        }
+
+        JobContextConsumer generateDataJob = generateDataJobFactory.create(seed, commons, players, profits,
+            chatMessages, commonStats, announcements);
+        return jobService.runAsJob(generateDataJob);
+    }
 }
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,20 +14,27 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
-import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.entities.User;
+import edu.ucsb.cs156.happiercows.entities.TradeOrderBatch;
 import edu.ucsb.cs156.happiercows.entities.UserCommons;
-import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.models.TradeOrder;
+import edu.ucsb.cs156.happiercows.models.UserCommonsSummary;
 import edu.ucsb.cs156.happiercows.errors.EntityNotFoundException;
 import edu.ucsb.cs156.happiercows.errors.NoCowsException;
 import edu.ucsb.cs156.happiercows.errors.NotEnoughMoneyException;
+import edu.ucsb.cs156.happiercows.services.TradeService;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+
+import java.util.List;
 
 @Tag(name = "User Commons")
 @RequestMapping("/api/usercommons")
@@ -36,11 +45,17 @@ public class UserCommonsController extends ApiController {
   private UserCommonsRepository userCommonsRepository;
 
   @Autowired
-  private CommonsRepository commonsRepository;
+  private TradeService tradeService;
 
   @Autowired
   ObjectMapper mapper;
 
+  // the length of the idempotency_key column
+  private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+  @Value("${app.usercommons.orders.maxOrders}")
+  private int maxOrders;
+
   @Operation(summary = "Get a specific user commons (admin only)")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @GetMapping("")
@@ -78,21 +93,7 @@ public class UserCommonsController extends ApiController {
         User u = getCurrentUser().getUser();
         Long userId = u.getId();
 
-        Commons commons = commonsRepository.findById(commonsId).orElseThrow( 
-          ()->new EntityNotFoundException(Commons.class, commonsId));
-        UserCommons userCommons = userCommonsRepository.findByCommonsIdAndUserId(commonsId, userId)
-        .orElseThrow(
-            () -> new EntityNotFoundException(UserCommons.class, "commonsId", commonsId, "userId", userId));
-
-        if(userCommons.getTotalWealth() >= (commons.getCowPrice() * numCows)){
-          userCommons.setTotalWealth(userCommons.getTotalWealth() - (commons.getCowPrice() * numCows));
-          userCommons.setNumOfCows(userCommons.getNumOfCows() + numCows);
-          userCommons.setCowsBought(userCommons.getCowsBought() + numCows);
-        }
-        else{
-          throw new NotEnoughMoneyException("You need more money!");
-        }
-        userCommonsRepository.save(userCommons);
+        UserCommons userCommons = tradeService.buy(commonsId, userId, numCows);
 
         String body = mapper.writeValueAsString(userCommons);
         return ResponseEntity.ok().body(body);
@@ -107,23 +108,7 @@ public class UserCommonsController extends ApiController {
         User u = getCurrentUser().getUser();
         Long userId = u.getId();
 
-        Commons commons = commonsRepository.findById(commonsId).orElseThrow( 
-          ()->new EntityNotFoundException(Commons.class, commonsId));
-        UserCommons userCommons = userCommonsRepository.findByCommonsIdAndUserId(commonsId, userId)
-        .orElseThrow(
-            () -> new EntityNotFoundException(UserCommons.class, "commonsId", commonsId, "userId", userId));
-
-
-        if(userCommons.getNumOfCows() >= numCows ){
-          double cowValue = commons.getCowPrice() * userCommons.getCowHealth() / 100;
-          userCommons.setTotalWealth(userCommons.getTotalWealth() + (cowValue * numCows));
-          userCommons.setNumOfCows(userCommons.getNumOfCows() - numCows);
-          userCommons.setCowsSold(userCommons.getCowsSold() + numCows);
-        }
-        else{
-          throw new NoCowsException("You do not have enough cows to sell!");
-        }
-        userCommonsRepository.save(userCommons);
+        UserCommons userCommons = tradeService.sell(commonsId, userId, numCows);
 
         String body = mapper.writeValueAsString(userCommons);
         return ResponseEntity.ok().body(body);
@@ -131,12 +116,45 @@ public class UserCommonsController extends ApiController {
 
     
 
+  @Operation(summary = "Place several buy and sell orders in one request; "
+      + "a retry with the same Idempotency-Key returns the results of the first")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @PostMapping("/orders")
+  public ResponseEntity<String> postOrders(
+          @Parameter(name="Idempotency-Key") @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+          @Parameter(name="request body") @RequestBody List<TradeOrder> orders) throws JsonProcessingException {
+        if (orders.size() > maxOrders) {
+          return ResponseEntity.badRequest().body(
+              mapper.writeValueAsString(genericMessage("At most " + maxOrders + " orders can be placed at once")));
+        }
+        if (idempotencyKey != null && idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+          return ResponseEntity.badRequest().body(mapper.writeValueAsString(
+              genericMessage("Idempotency-Key must be at most " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters")));
+        }
+        Long userId = getCurrentUser().getUser().getId();
+
+        TradeOrderBatch batch;
+        try {
+          batch = tradeService.placeOrders(userId, idempotencyKey, orders);
+        } catch (IllegalArgumentException e) {
+          // an order is incomplete, and none were placed
+          return ResponseEntity.badRequest().body(mapper.writeValueAsString(genericMessage(e.getMessage())));
+        } catch (DataIntegrityViolationException e) {
+          if (idempotencyKey == null) {
+            throw e;
+          }
+          // a concurrent request with the same key placed its orders first, and these were not placed
+          batch = tradeService.findPlacedOrders(userId, idempotencyKey).orElseThrow(() -> e);
+        }
+        return ResponseEntity.ok().body(batch.getResults());
+    }
+
     @Operation(summary = "Get all user commons for a specific commons")
     @PreAuthorize("hasAnyRole('ROLE_USER', 'ROLE_ADMIN')")
     @GetMapping("/commons/all")
     public  ResponseEntity<String> getUsersCommonsByCommonsId(
         @Parameter(name="commonsId") @RequestParam Long commonsId) throws JsonProcessingException {
-      Iterable<UserCommons> uc = userCommonsRepository.findByCommonsId(commonsId);
+      List<UserCommonsSummary> uc = userCommonsRepository.findSummariesByCommonsId(commonsId);
       
    
     String body = mapper.writeValueAsString(uc);
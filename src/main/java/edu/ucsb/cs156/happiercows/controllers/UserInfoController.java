@@ -2,7 +2,10 @@ package edu.ucsb.cs156.happiercows.controllers;
 
 import edu.ucsb.cs156.happiercows.entities.User;
 import edu.ucsb.cs156.happiercows.models.CurrentUser;
+import edu.ucsb.cs156.happiercows.models.CurrentUserProfile;
+import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.services.UserCache;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.Operation;
 
@@ -22,12 +25,20 @@ import org.springframework.web.bind.annotation.RestController;
 public class UserInfoController extends ApiController {
   @Autowired
   private UserRepository userRepository;
+
+  @Autowired
+  private UserCommonsRepository userCommonsRepository;
+
+  @Autowired
+  private UserCache userCache;
  
   @Operation(summary = "Get information about current user")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public CurrentUser getCurrentUser() {
-    return super.getCurrentUser();
+  public CurrentUserProfile getCurrentUserProfile() {
+    CurrentUser currentUser = super.getCurrentUser();
+    return CurrentUserProfile.of(currentUser,
+        userCommonsRepository.findCommonsSummariesByUserId(currentUser.getUser().getId()));
   }
 
   @Operation(summary = "Update user's last online time")
@@ -36,8 +47,8 @@ public class UserInfoController extends ApiController {
   public ResponseEntity<Instant> updateLastOnline() {
     User user = super.getCurrentUser().getUser();
     Instant timeNow = Instant.now();
-    user.setLastOnline(timeNow);
-    userRepository.save(user);
+    userRepository.updateLastOnline(user.getId(), timeNow);
+    userCache.invalidate(user.getEmail());
     return ResponseEntity.ok().body(timeNow);
   }
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,6 +16,7 @@ import org.springframework.web.bind.annotation.RestController;
 import edu.ucsb.cs156.happiercows.entities.User;
 import edu.ucsb.cs156.happiercows.errors.EntityNotFoundException;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.services.UserChangedEvent;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -29,6 +31,9 @@ public class UsersController extends ApiController {
     @Autowired
     ObjectMapper mapper;
 
+    @Autowired
+    ApplicationEventPublisher applicationEventPublisher;
+
     @Operation(summary = "Get a list of all users")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @GetMapping("")
@@ -48,6 +53,7 @@ public class UsersController extends ApiController {
 
         user.setSuspended(true);
         userRepository.save(user);
+        applicationEventPublisher.publishEvent(new UserChangedEvent(user.getEmail()));
         return genericMessage("User with id %d suspended".formatted(userId));
     }
 
@@ -59,6 +65,7 @@ public class UsersController extends ApiController {
 
         user.setSuspended(false);
         userRepository.save(user);
+        applicationEventPublisher.publishEvent(new UserChangedEvent(user.getEmail()));
         return genericMessage("User with id %d restored".formatted(userId));
     }
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package edu.ucsb.cs156.happiercows.entities;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Totals over the players of one commons, kept up to date by the
+ * transactions that change its players (see CommonsAggregatesService), so
+ * that they can be read without scanning user_commons.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "commons_aggregates")
+public class CommonsAggregates {
+    @Id
+    private long commonsId;
+
+    private int totalCows;
+
+    private int totalUsers;
+
+    // sum of cowHealth * numOfCows; divided by totalCows it is the average health of a cow
+    private double totalCowHealth;
+
+    private double totalWealth;
+
+    // for the GROUP BY queries in CommonsAggregatesRepository
+    public CommonsAggregates(Long commonsId, Long totalCows, Long totalUsers, Double totalCowHealth, Double totalWealth) {
+        this(commonsId, totalCows.intValue(), totalUsers.intValue(), totalCowHealth, totalWealth);
+    }
+
+    /**
+     * The totals of a commons without players.
+     */
+    public static CommonsAggregates empty(long commonsId) {
+        return CommonsAggregates.builder().commonsId(commonsId).build();
+    }
+
+    /**
+     * One player's share of the totals of their commons.
+     */
+    public static CommonsAggregates of(UserCommons userCommons) {
+        return CommonsAggregates.builder()
+                .commonsId(userCommons.getCommons().getId())
+                .totalCows(userCommons.getNumOfCows())
+                .totalUsers(1)
+                .totalCowHealth(userCommons.getCowHealth() * userCommons.getNumOfCows())
+                .totalWealth(userCommons.getTotalWealth())
+                .build();
+    }
+
+    public CommonsAggregates minus(CommonsAggregates other) {
+        return new CommonsAggregates(commonsId, totalCows - other.totalCows, totalUsers - other.totalUsers,
+                totalCowHealth - other.totalCowHealth, totalWealth - other.totalWealth);
+    }
+}
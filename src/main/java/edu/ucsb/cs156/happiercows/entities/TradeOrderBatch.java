@@ -0,0 +1,47 @@
+package edu.ucsb.cs156.happiercows.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The results of a batch of orders placed with an idempotency key (see
+ * TradeService.placeOrders), so that a retry of the request with the same
+ * key gets them back instead of placing the orders again.  The unique
+ * constraint stops two concurrent requests with the same key from both
+ * placing their orders.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "trade_order_batches")
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "userId", "idempotencyKey" }))
+public class TradeOrderBatch {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    private long userId;
+
+    private String idempotencyKey;
+
+    private LocalDateTime placedAt;
+
+    // the JSON list of TradeOrderResult sent back for the orders
+    @Column(columnDefinition = "text")
+    private String results;
+}
@@ -10,7 +10,7 @@ import java.util.List;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
-@Builder
+@Builder(toBuilder = true)
 @Entity(name = "users")
 public class User {
   @Id
@@ -31,8 +31,12 @@ public class User {
   @Builder.Default
   private Instant lastOnline = Instant.now();
 
-  @ManyToMany(fetch = FetchType.EAGER, cascade = { CascadeType.PERSIST, CascadeType.REMOVE })
+  // not loaded with the user; /api/currentUser reads the ids and names with
+  // UserCommonsRepository.findCommonsSummariesByUserId instead (see UserProfile)
+  @ManyToMany(fetch = FetchType.LAZY, cascade = { CascadeType.PERSIST, CascadeType.REMOVE })
   @JoinTable(name = "user_commons", joinColumns = @JoinColumn(name = "user_id", referencedColumnName = "id"), inverseJoinColumns = @JoinColumn(name = "commons_id", referencedColumnName = "id"))
+  @JsonIgnore
+  @EqualsAndHashCode.Exclude
   private List<Commons> commons;
 
   @OneToMany(mappedBy = "user", cascade = CascadeType.REMOVE)
@@ -8,13 +8,20 @@ import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
 import javax.persistence.ManyToOne;
 import javax.persistence.MapsId;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @Builder
 @Entity(name = "user_commons")
+// user and commons are eager, so without this graph each would be read by a select of its own
+@NamedEntityGraph(name = UserCommons.WITH_USER_AND_COMMONS,
+        attributeNodes = { @NamedAttributeNode("user"), @NamedAttributeNode("commons") })
 public class UserCommons {
+    public static final String WITH_USER_AND_COMMONS = "UserCommons.withUserAndCommons";
+
     @EmbeddedId
     @JsonIgnore
     @Builder.Default
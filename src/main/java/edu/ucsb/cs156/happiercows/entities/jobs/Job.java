@@ -11,6 +11,8 @@ import javax.persistence.*;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Data
 @AllArgsConstructor
@@ -36,6 +38,70 @@ public class Job {
 
     private String status;
 
+    // The type, scope ("global" or "commons:<id>") and parameters (JSON) of a QueueableJob.
+    // Jobs in the durable queue (app.jobs.queue.enabled) are rebuilt from them by whichever
+    // server claims them
+    private String jobType;
+    private String scope;
+    @Column(columnDefinition="text")
+    private String parameters;
+
+    // Only set for job types with an overlap policy (app.jobs.overlap); a launch with the same
+    // key as a queued or running job is coalesced into it (see JobOverlapService)
+    @JsonIgnore
+    private String coalesceKey;
+
+    // The server running a queued job, when it last reported that the job was still
+    // running, and how many times the job has been started
+    private String worker;
+    private ZonedDateTime heartbeatAt;
+    private int attempts;
+
+    // A new value for each time a server claims the job.  The server only goes on with
+    // the job, and records how it ended, while the job is still running under its claim
+    // (see JobContext.checkCancelled and JobService.runJob)
+    @JsonIgnore
+    private String claimToken;
+
+    // Percent of the job's commons done so far, for jobs that report it (see JobContext.setProgress)
+    private Integer progress;
+
+    // Set when an admin cancels the job while it runs on another server, which stops
+    // it at its next heartbeat (see JobService.cancel)
+    private ZonedDateTime cancelRequestedAt;
+
+    // Only jobs that ran before job_log_lines existed have their log stored here
     @Column(columnDefinition="text")
     private String log;
+
+    // Read from job_log_lines by JobService.attachLogs; a running job does not keep
+    // its lines here, except when its JobContext has no job_log_lines to write to
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private List<String> logLines;
+
+    /**
+     * The log is only joined into one string when it is read, so adding a line
+     * costs the same no matter how long the log already is.
+     */
+    public synchronized String getLog() {
+        if (logLines == null || logLines.isEmpty()) {
+            return log;
+        }
+        String lines = String.join("\n", logLines);
+        return log == null ? lines : log + "\n" + lines;
+    }
+
+    public synchronized void appendLog(String line) {
+        if (logLines == null) {
+            logLines = new ArrayList<>();
+        }
+        logLines.add(line);
+    }
+
+    public synchronized void setLogLines(List<String> logLines) {
+        this.logLines = new ArrayList<>(logLines);
+    }
 }
@@ -0,0 +1,47 @@
+package edu.ucsb.cs156.happiercows.entities.jobs;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+
+/**
+ * Whether a job is done with one commons, so that a job resumed after an
+ * error or a crash skips the commons that are already done (see JobContext.checkpoint).
+ * A checkpoint is saved in the same transaction as the commons' work.
+ * Checkpoints are deleted once their job completes.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "job_checkpoints")
+public class JobCheckpoint implements Persistable<JobCheckpointKey> {
+    @EmbeddedId
+    private JobCheckpointKey id;
+
+    private boolean complete;
+
+    // The id is assigned rather than generated; see JobLogLine
+    @Transient
+    @JsonIgnore
+    private boolean persisted;
+
+    public static JobCheckpoint start(long jobId, long commonsId) {
+        return JobCheckpoint.builder().id(new JobCheckpointKey(jobId, commonsId)).build();
+    }
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        this.persisted = true;
+    }
+}
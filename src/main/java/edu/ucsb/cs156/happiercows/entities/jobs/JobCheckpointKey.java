@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.happiercows.entities.jobs;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+
+
+@Data
+@Embeddable
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class JobCheckpointKey implements Serializable {
+    private long jobId;
+
+    private long commonsId;
+
+}
@@ -0,0 +1,43 @@
+package edu.ucsb.cs156.happiercows.entities.jobs;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+
+/**
+ * One line of a job's log.  Lines are append-only and are keyed by the job id
+ * and their position in the log, so a job's log is never rewritten as it grows.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "job_log_lines")
+public class JobLogLine implements Persistable<JobLogLineKey> {
+    @EmbeddedId
+    private JobLogLineKey id;
+
+    @Column(columnDefinition="text")
+    private String message;
+
+    // The id is assigned by JobContext rather than generated, so without this
+    // Spring Data would issue a SELECT before every INSERT to decide between persist and merge.
+    @Transient
+    @JsonIgnore
+    private boolean persisted;
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        this.persisted = true;
+    }
+}
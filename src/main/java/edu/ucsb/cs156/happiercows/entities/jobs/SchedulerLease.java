@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.happiercows.entities.jobs;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * A lease that only one server can hold at a time.  fencingToken goes up by
+ * one every time the lease changes hands, so a server that lost the lease
+ * without noticing can be told apart from the current holder.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "scheduler_leases")
+public class SchedulerLease {
+    @Id
+    private String name;
+
+    private String holder;
+
+    private long fencingToken;
+
+    private Instant expiresAt;
+}
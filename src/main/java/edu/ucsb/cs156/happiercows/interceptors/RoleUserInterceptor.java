@@ -7,7 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
-import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.services.UserCache;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -28,7 +28,7 @@ import edu.ucsb.cs156.happiercows.entities.User;
 public class RoleUserInterceptor implements HandlerInterceptor {
 
    @Autowired
-   UserRepository userRepository;
+   UserCache userCache;
 
    @Override
    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
@@ -41,7 +41,7 @@ public class RoleUserInterceptor implements HandlerInterceptor {
         if (authentication instanceof OAuth2AuthenticationToken ) {
             OAuth2User oAuthUser = ((OAuth2AuthenticationToken) authentication).getPrincipal();
             String email = oAuthUser.getAttribute("email");
-            Optional<User> optionalUser = userRepository.findByEmail(email);
+            Optional<User> optionalUser = userCache.findByEmail(email);
             if (optionalUser.isPresent()){
                 User user = optionalUser.get();
 
@@ -0,0 +1,224 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.happiercows.entities.CommonStats;
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsPlus;
+import edu.ucsb.cs156.happiercows.entities.Profit;
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobCheckpoint;
+import edu.ucsb.cs156.happiercows.repositories.CommonStatsRepository;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.ProfitRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
+import edu.ucsb.cs156.happiercows.strategies.CowHealthUpdateStrategy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Does the work of UpdateCowHealthJob, MilkTheCowsJob and RecordCommonStatsJob
+ * in one pass.  The players in each commons are loaded once, each enabled
+ * stage works on them in memory, in the order health, milking, stats, and they
+ * are written back once, all in one transaction per commons.
+ *
+ * The calculations are the same as the separate jobs', so a tick with
+ * all three stages gives the same result as running the three jobs in turn.
+ */
+
+@AllArgsConstructor
+public class GameTickJob implements QueueableJob {
+
+    @Getter
+    @AllArgsConstructor
+    public enum Stage {
+        UPDATE_COW_HEALTH("updateCowHealth"),
+        MILK_THE_COWS("milkTheCows"),
+        RECORD_COMMON_STATS("recordCommonStats");
+
+        private final String key;
+
+        public static Stage fromKey(String key) {
+            for (Stage stage : values()) {
+                if (stage.key.equals(key.trim())) {
+                    return stage;
+                }
+            }
+            throw new IllegalArgumentException("Unknown game tick stage: " + key);
+        }
+
+        public static Set<Stage> fromKeys(String[] keys) {
+            Set<Stage> stages = EnumSet.noneOf(Stage.class);
+            for (String key : keys) {
+                if (!key.isBlank()) {
+                    stages.add(fromKey(key));
+                }
+            }
+            return stages;
+        }
+    }
+
+    @Getter
+    private CommonsRepository commonsRepository;
+    @Getter
+    private UserCommonsRepository userCommonsRepository;
+    @Getter
+    private ProfitRepository profitRepository;
+    @Getter
+    private CommonStatsRepository commonStatsRepository;
+    @Getter
+    private TransactionTemplate transactionTemplate;
+    @Getter
+    private Set<Stage> stages;
+
+    @Override
+    public Map<String, String> getParameters() {
+        return Map.of("stages", stages.stream().map(Stage::getKey).collect(Collectors.joining(",")));
+    }
+
+    @Override
+    public void accept(JobContext ctx) throws Exception {
+        ctx.log("Starting game tick, stages: "
+                + stages.stream().map(Stage::getKey).collect(Collectors.joining(", ")));
+
+        Iterable<Commons> allCommons = commonsRepository.findAll();
+
+        // the checkpoint is written in the commons' transaction, so a resumed tick does each commons exactly once
+        ctx.forEachCommons(allCommons, (commons, commonsCtx) ->
+                transactionTemplate.executeWithoutResult(status -> {
+                    JobCheckpoint checkpoint = commonsCtx.checkpoint(commons.getId());
+                    if (checkpoint.isComplete()) {
+                        commonsCtx.log("Commons " + commons.getName() + " already ticked");
+                        return;
+                    }
+                    tickCommons(commons, commonsCtx);
+                    checkpoint.setComplete(true);
+                    commonsCtx.saveCheckpoint(checkpoint);
+                }));
+
+        ctx.log("Game tick done!");
+    }
+
+    // exposed for testing
+    public void tickCommons(Commons commons, JobContext ctx) {
+        List<UserCommons> players = new ArrayList<>();
+        userCommonsRepository.findByCommonsId(commons.getId()).forEach(players::add);
+
+        ctx.log("Commons " + commons.getName() + ", players: " + players.size());
+
+        if (stages.contains(Stage.UPDATE_COW_HEALTH)) {
+            updateCowHealth(commons, players, ctx);
+        }
+        List<Profit> profits = stages.contains(Stage.MILK_THE_COWS) ? milkCows(commons, players, ctx) : List.of();
+        CommonStats commonStats = stages.contains(Stage.RECORD_COMMON_STATS) ? recordCommonStats(commons, players, ctx) : null;
+
+        if (stages.contains(Stage.UPDATE_COW_HEALTH) || stages.contains(Stage.MILK_THE_COWS)) {
+            userCommonsRepository.saveAll(players);
+            ctx.recomputeAggregates(commons.getId());
+        }
+        if (!profits.isEmpty()) {
+            profitRepository.saveAll(profits);
+        }
+        if (commonStats != null) {
+            commonStatsRepository.save(commonStats);
+        }
+    }
+
+    /**
+     * Same calculation as UpdateCowHealthJob.runUpdateJobInCommons, with the
+     * number of players and cows counted from the rows already in memory, and
+     * the new health of every player computed with the strategy's batch form.
+     */
+    public static void updateCowHealth(Commons commons, List<UserCommons> players, JobContext ctx) {
+        if (players.isEmpty()) {
+            ctx.log(" No users in this commons, skipping cow health");
+            return;
+        }
+
+        int totalCows = players.stream().mapToInt(UserCommons::getNumOfCows).sum();
+        CommonsPlus commonsPlus = CommonsPlus.builder()
+                .commons(commons)
+                .totalCows(totalCows)
+                .totalUsers(players.size())
+                .build();
+
+        var isAboveCapacity = totalCows > commonsPlus.getEffectiveCapacity();
+        CowHealthUpdateStrategy cowHealthUpdateStrategy = isAboveCapacity ? commons.getAboveCapacityHealthUpdateStrategy() : commons.getBelowCapacityHealthUpdateStrategy();
+
+        ctx.log(" Updating cow health, strategy: " + cowHealthUpdateStrategy.getDisplayName()
+                + ", totalCows: " + totalCows + ", effectiveCapacity: " + commonsPlus.getEffectiveCapacity());
+
+        double[] health = new double[players.size()];
+        int[] cows = new int[players.size()];
+        for (int i = 0; i < players.size(); i++) {
+            health[i] = players.get(i).getCowHealth();
+            cows[i] = players.get(i).getNumOfCows();
+        }
+
+        cowHealthUpdateStrategy.calculateNewCowHealth(health, cows, players.size(), totalCows,
+                commonsPlus.getEffectiveCapacity(), commons.getDegradationRate());
+
+        for (int i = 0; i < players.size(); i++) {
+            UserCommons userCommons = players.get(i);
+            userCommons.setCowHealth(Math.max(0, Math.min(health[i], 100)));
+            UpdateCowHealthJob.calculateCowDeaths(userCommons, ctx);
+        }
+    }
+
+    /**
+     * Same calculation as MilkTheCowsJob.milkCows, for every player at once.
+     */
+    public static List<Profit> milkCows(Commons commons, List<UserCommons> players, JobContext ctx) {
+        LocalDateTime timestamp = LocalDateTime.now();
+        List<Profit> profits = new ArrayList<>();
+        double totalProfit = 0;
+
+        for (UserCommons userCommons : players) {
+            double profitAmount = MilkTheCowsJob.calculateMilkingProfit(commons, userCommons);
+            profits.add(Profit.builder()
+                    .userCommons(userCommons)
+                    .amount(profitAmount)
+                    .timestamp(timestamp)
+                    .numCows(userCommons.getNumOfCows())
+                    .avgCowHealth(userCommons.getCowHealth())
+                    .build());
+            userCommons.setTotalWealth(userCommons.getTotalWealth() + profitAmount);
+            totalProfit += profitAmount;
+        }
+
+        ctx.log(" Milked cows, milk price: " + MilkTheCowsJob.formatDollars(commons.getMilkPrice())
+                + ", profits recorded: " + profits.size() + ", total profit: " + MilkTheCowsJob.formatDollars(totalProfit));
+        return profits;
+    }
+
+    /**
+     * Same calculation as CommonStatsService.createCommonStats.
+     */
+    public static CommonStats recordCommonStats(Commons commons, List<UserCommons> players, JobContext ctx) {
+        int totalNumCows = 0;
+        double totalHealth = 0;
+        for (UserCommons userCommons : players) {
+            totalNumCows += userCommons.getNumOfCows();
+            totalHealth += userCommons.getCowHealth() * userCommons.getNumOfCows();
+        }
+
+        CommonStats commonStats = CommonStats.builder()
+                .commonsId(commons.getId())
+                .numCows(totalNumCows)
+                .avgHealth(totalHealth / totalNumCows)
+                .build();
+
+        ctx.log(" Recorded stats, numCows: " + commonStats.getNumCows() + ", avgHealth: " + commonStats.getAvgHealth());
+        return commonStats;
+    }
+}
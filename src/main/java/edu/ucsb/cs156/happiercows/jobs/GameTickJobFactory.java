@@ -0,0 +1,61 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.happiercows.repositories.CommonStatsRepository;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.ProfitRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJobFactory;
+
+@Service
+public class GameTickJobFactory implements QueueableJobFactory {
+
+    @Autowired
+    private CommonsRepository commonsRepository;
+
+    @Autowired
+    private UserCommonsRepository userCommonsRepository;
+
+    @Autowired
+    private ProfitRepository profitRepository;
+
+    @Autowired
+    private CommonStatsRepository commonStatsRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    public JobContextConsumer create(Set<GameTickJob.Stage> stages) {
+        return new GameTickJob(
+                commonsRepository,
+                userCommonsRepository,
+                profitRepository,
+                commonStatsRepository,
+                new TransactionTemplate(transactionManager),
+                stages);
+    }
+
+    @Override
+    public String getJobType() {
+        return GameTickJob.class.getSimpleName();
+    }
+
+    // each commons is checkpointed in its transaction
+    @Override
+    public boolean isResumable() {
+        return true;
+    }
+
+    @Override
+    public JobContextConsumer create(Map<String, String> parameters) {
+        return create(GameTickJob.Stage.fromKeys(parameters.get("stages").split(",")));
+    }
+}
@@ -0,0 +1,234 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Fills the database with synthetic games for load testing and benchmarks:
+ * commons, one new user per player, their user_commons rows, profit history,
+ * chat messages, commons stats and announcements.
+ *
+ * Everything except the commons themselves is written with batched JDBC
+ * inserts, BATCH_SIZE rows per statement batch, in one transaction for the
+ * users and one for each commons; rows are counted once their transaction
+ * commits, so a failed or cancelled run logs only what it kept.  All of the
+ * generated values come from a Random seeded with seed, so the same arguments
+ * produce the same data (timestamps are relative to baseTime).
+ */
+@Builder
+@Getter
+public class GenerateDataJob implements JobContextConsumer {
+
+    public static final int BATCH_SIZE = 1000;
+
+    private JdbcTemplate jdbcTemplate;
+    private CommonsRepository commonsRepository;
+    private TransactionTemplate transactionTemplate;
+
+    private long seed;
+    private int commons;
+    // per commons
+    private int players;
+    // per player
+    private int profits;
+    // per player
+    private int chatMessages;
+    // per commons
+    private int commonStats;
+    // per commons
+    private int announcements;
+
+    @Builder.Default
+    private LocalDateTime baseTime = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+
+    @Override
+    public void accept(JobContext ctx) throws Exception {
+        ctx.log("Generating synthetic data, seed: %d".formatted(seed));
+        long start = System.currentTimeMillis();
+        Random random = new Random(seed);
+        String prefix = "synthetic-" + seed;
+
+        List<Commons> allCommons = new ArrayList<>();
+        for (int c = 0; c < commons; c++) {
+            allCommons.add(Commons.builder()
+                    .name("%s-%d".formatted(prefix, c))
+                    .cowPrice(100.0)
+                    .milkPrice(1.0 + random.nextInt(5))
+                    .startingBalance(10000.0)
+                    .startingDate(baseTime.minusDays(7))
+                    .lastDate(baseTime.plusDays(30))
+                    .showLeaderboard(true)
+                    .capacityPerUser(10 + random.nextInt(50))
+                    .carryingCapacity(100)
+                    .degradationRate(0.001 * (1 + random.nextInt(10)))
+                    .build());
+        }
+        commonsRepository.saveAll(allCommons);
+        ctx.log(" Inserted %d commons".formatted(commons));
+        long rows = commons;
+
+        Timestamp now = Timestamp.valueOf(baseTime);
+        long lastUserId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from users", Long.class);
+        Batch users = new Batch("insert into users (email, google_sub, full_name, given_name, family_name,"
+                + " email_verified, admin, suspended, last_online) values (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        inTransaction(() -> {
+            for (int ci = 0; ci < commons; ci++) {
+                for (int p = 0; p < players; p++) {
+                    String name = "%s-%d-%d".formatted(prefix, ci, p);
+                    users.add(name + "@example.org", name, name, name, prefix, true, false, false, now);
+                }
+            }
+            users.flush();
+        }, users);
+        rows += log(ctx, "users", users.getCount());
+
+        List<Long> userIds = jdbcTemplate.queryForList(
+                "select id from users where id > ? and family_name = ? order by id", Long.class, lastUserId, prefix);
+        int expectedUsers = commons * players;
+        if (userIds.size() != expectedUsers) {
+            throw new IllegalStateException(
+                    "Expected %d new users but found %d".formatted(expectedUsers, userIds.size()));
+        }
+
+        Batch userCommons = new Batch("insert into user_commons (user_id, commons_id, username, total_wealth,"
+                + " num_of_cows, cow_health, cows_bought, cows_sold, cow_deaths) values (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        Batch profitRows = new Batch("insert into profits (user_id, commons_id, amount, timestamp, num_cows,"
+                + " avg_cow_health) values (?, ?, ?, ?, ?, ?)");
+        Batch chatRows = new Batch("insert into chat_message (user_id, commons_id, timestamp, message, dm,"
+                + " to_user_id, hidden) values (?, ?, ?, ?, ?, ?, ?)");
+        Batch statsRows = new Batch("insert into commonstats (commons_id, num_cows, avg_health, create_date)"
+                + " values (?, ?, ?, ?)");
+        Batch announcementRows = new Batch("insert into announcement (commons_id, start_date, end_date,"
+                + " announcement_text) values (?, ?, ?, ?)");
+
+        try {
+            int[] cows = new int[players];
+            double[] health = new double[players];
+            for (int ci = 0; ci < commons; ci++) {
+                // a cancel keeps the commons already written
+                ctx.checkCancelled();
+                int index = ci;
+                // all of a commons' rows are committed together rather than one JDBC batch at a time
+                inTransaction(() -> {
+                    Commons c = allCommons.get(index);
+                    long commonsId = c.getId();
+                    int first = index * players;
+                    for (int p = 0; p < players; p++) {
+                        cows[p] = random.nextInt(100);
+                        health[p] = random.nextInt(1001) / 10.0;
+                        userCommons.add(userIds.get(first + p), commonsId, "%s-%d-%d".formatted(prefix, index, p),
+                                10000.0 + random.nextInt(10000), cows[p], health[p], cows[p], 0, 0);
+                    }
+                    // profits reference user_commons, so this commons' players have to be written first
+                    userCommons.flush();
+
+                    for (int p = 0; p < players; p++) {
+                        long userId = userIds.get(first + p);
+                        for (int k = 0; k < profits; k++) {
+                            profitRows.add(userId, commonsId, cows[p] * (health[p] / 100.0) * c.getMilkPrice(),
+                                    Timestamp.valueOf(baseTime.minusHours(24L * (k + 1))), cows[p], health[p]);
+                        }
+                        for (int m = 0; m < chatMessages; m++) {
+                            chatRows.add(userId, commonsId, Timestamp.valueOf(baseTime.minusMinutes(random.nextInt(10080))),
+                                    "Message %d from player %d".formatted(m, p), false, 0L, false);
+                        }
+                    }
+                    for (int s = 0; s < commonStats; s++) {
+                        statsRows.add(commonsId, random.nextInt(100 * players + 1), random.nextInt(1001) / 10.0,
+                                Timestamp.valueOf(baseTime.minusHours(6L * (s + 1))));
+                    }
+                    for (int a = 0; a < announcements; a++) {
+                        announcementRows.add(commonsId, Timestamp.valueOf(baseTime.minusDays(a)),
+                                Timestamp.valueOf(baseTime.plusDays(7 - a)), "Announcement %d".formatted(a));
+                    }
+                    profitRows.flush();
+                    chatRows.flush();
+                    statsRows.flush();
+                    announcementRows.flush();
+                }, userCommons, profitRows, chatRows, statsRows, announcementRows);
+                ctx.setProgress(ci + 1, commons);
+            }
+        } finally {
+            // also logged when a commons fails or the job is cancelled: the commons before it stay written
+            rows += log(ctx, "user_commons", userCommons.getCount());
+            rows += log(ctx, "profits", profitRows.getCount());
+            rows += log(ctx, "chat_message", chatRows.getCount());
+            rows += log(ctx, "commonstats", statsRows.getCount());
+            rows += log(ctx, "announcement", announcementRows.getCount());
+        }
+
+        long millis = Math.max(1, System.currentTimeMillis() - start);
+        ctx.log("Generated %d rows in %d ms (%d rows/s)".formatted(rows, millis, rows * 1000 / millis));
+    }
+
+    /**
+     * Runs work in a transaction and, once it has committed, adds the rows the
+     * batches sent to their counts.
+     */
+    private void inTransaction(Runnable work, Batch... batches) {
+        transactionTemplate.executeWithoutResult(status -> work.run());
+        for (Batch batch : batches) {
+            batch.commit();
+        }
+    }
+
+    private static long log(JobContext ctx, String table, long count) {
+        ctx.log(" Inserted %d %s".formatted(count, table));
+        return count;
+    }
+
+    /**
+     * Collects rows for one insert statement and sends them to the database
+     * BATCH_SIZE at a time.  count is the rows inserted by committed
+     * transactions; sent holds those of the current one.
+     */
+    private class Batch {
+        private final String sql;
+        private final List<Object[]> pending = new ArrayList<>();
+        private long sent = 0;
+        @Getter
+        private long count = 0;
+
+        Batch(String sql) {
+            this.sql = sql;
+        }
+
+        void add(Object... row) {
+            pending.add(row);
+            if (pending.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            for (int updated : jdbcTemplate.batchUpdate(sql, pending)) {
+                // drivers may report SUCCESS_NO_INFO rather than the one row each insert wrote
+                sent += updated == Statement.SUCCESS_NO_INFO ? 1 : updated;
+            }
+            pending.clear();
+        }
+
+        void commit() {
+            count += sent;
+            sent = 0;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+
+@Service
+public class GenerateDataJobFactory {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CommonsRepository commonsRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    public JobContextConsumer create(long seed, int commons, int players, int profits, int chatMessages,
+            int commonStats, int announcements) {
+        return GenerateDataJob.builder()
+                .jdbcTemplate(jdbcTemplate)
+                .commonsRepository(commonsRepository)
+                .transactionTemplate(new TransactionTemplate(transactionManager))
+                .seed(seed)
+                .commons(commons)
+                .players(players)
+                .profits(profits)
+                .chatMessages(chatMessages)
+                .commonStats(commonStats)
+                .announcements(announcements)
+                .build();
+    }
+}
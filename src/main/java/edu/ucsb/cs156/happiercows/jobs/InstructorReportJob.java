@@ -1,16 +1,18 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
+import java.util.Map;
+
 import edu.ucsb.cs156.happiercows.entities.Commons;
 import edu.ucsb.cs156.happiercows.entities.Report;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
-import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 import edu.ucsb.cs156.happiercows.services.ReportService;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 @AllArgsConstructor
-public class InstructorReportJob implements JobContextConsumer {
+public class InstructorReportJob implements QueueableJob {
 
     @Getter
     private ReportService reportService;
@@ -18,17 +20,22 @@ public class InstructorReportJob implements JobContextConsumer {
     @Getter
     private CommonsRepository commonsRepository;
 
+    @Override
+    public Map<String, String> getParameters() {
+        return Map.of();
+    }
+
     @Override
     public void accept(JobContext ctx) throws Exception {
         ctx.log("Starting instructor report...");
         Iterable<Commons> allCommons = commonsRepository.findAll();
 
-        for (Commons commons : allCommons) {
-            ctx.log(String.format("Starting Commons id=%d (%s)...", commons.getId(), commons.getName()));
+        ctx.forEachCommons(allCommons, (commons, commonsCtx) -> {
+            commonsCtx.log(String.format("Starting Commons id=%d (%s)...", commons.getId(), commons.getName()));
             Report report = reportService.createReport(commons.getId());
-            ctx.log(String.format("Report %d for commons id=%d (%s) finished.", report.getId(), commons.getId(),
+            commonsCtx.log(String.format("Report %d for commons id=%d (%s) finished.", report.getId(), commons.getId(),
                     commons.getName()));
-        }
+        });
         ctx.log("Instructor report done!");
     }
 }
\ No newline at end of file
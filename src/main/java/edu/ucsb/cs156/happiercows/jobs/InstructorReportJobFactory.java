@@ -1,14 +1,17 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.services.ReportService;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJobFactory;
 
 @Service
-public class InstructorReportJobFactory {
+public class InstructorReportJobFactory implements QueueableJobFactory {
 
     @Autowired
     private ReportService reportService;
@@ -20,4 +23,13 @@ public class InstructorReportJobFactory {
         return new InstructorReportJob(reportService, commonsRepository);
     }
 
+    @Override
+    public String getJobType() {
+        return InstructorReportJob.class.getSimpleName();
+    }
+
+    @Override
+    public JobContextConsumer create(Map<String, String> parameters) {
+        return create();
+    }
 }
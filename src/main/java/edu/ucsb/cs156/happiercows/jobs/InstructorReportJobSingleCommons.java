@@ -1,15 +1,16 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
+import java.util.Map;
 
 import edu.ucsb.cs156.happiercows.entities.Report;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
-import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 import edu.ucsb.cs156.happiercows.services.ReportService;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 @AllArgsConstructor
-public class InstructorReportJobSingleCommons implements JobContextConsumer {
+public class InstructorReportJobSingleCommons implements QueueableJob {
 
     @Getter
     private long commonsId;
@@ -17,6 +18,11 @@ public class InstructorReportJobSingleCommons implements JobContextConsumer {
     @Getter
     private ReportService reportService;
     
+    @Override
+    public Map<String, String> getParameters() {
+        return Map.of("commonsId", String.valueOf(commonsId));
+    }
+
     @Override
     public void accept(JobContext ctx) throws Exception {
         ctx.log("Producing instructor report for commons id: " + commonsId);
@@ -1,13 +1,16 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import edu.ucsb.cs156.happiercows.services.ReportService;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJobFactory;
 
 @Service
-public class InstructorReportJobSingleCommonsFactory {
+public class InstructorReportJobSingleCommonsFactory implements QueueableJobFactory {
 
     @Autowired
     private ReportService reportService;
@@ -15,5 +18,14 @@ public class InstructorReportJobSingleCommonsFactory {
     public JobContextConsumer create(long commonsId) {
         return new InstructorReportJobSingleCommons(commonsId, reportService);
     }
-  
+
+    @Override
+    public String getJobType() {
+        return InstructorReportJobSingleCommons.class.getSimpleName();
+    }
+
+    @Override
+    public JobContextConsumer create(Map<String, String> parameters) {
+        return create(Long.parseLong(parameters.get("commonsId")));
+    }
 }
@@ -1,22 +1,24 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 import edu.ucsb.cs156.happiercows.entities.Commons;
 import edu.ucsb.cs156.happiercows.entities.Profit;
 import edu.ucsb.cs156.happiercows.entities.User;
 import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobCheckpoint;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.ProfitRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
-import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 @AllArgsConstructor
-public class MilkTheCowsJob implements JobContextConsumer {
+public class MilkTheCowsJob implements QueueableJob {
 
     @Getter
     private CommonsRepository commonsRepository;
@@ -26,28 +28,55 @@ public class MilkTheCowsJob implements JobContextConsumer {
     private UserRepository userRepository;
     @Getter
     private ProfitRepository profitRepository;
+    @Getter
+    private boolean bulkUpdates;
+
+    public MilkTheCowsJob(CommonsRepository commonsRepository, UserCommonsRepository userCommonsRepository, UserRepository userRepository, ProfitRepository profitRepository) {
+        this(commonsRepository, userCommonsRepository, userRepository, profitRepository, false);
+    }
 
     public static String formatDollars(double amount) {
         return  String.format("$%.2f", amount);
     }
 
+    @Override
+    public Map<String, String> getParameters() {
+        return Map.of();
+    }
+
     @Override
     public void accept(JobContext ctx) throws Exception {
         ctx.log("Starting to milk the cows");
 
         Iterable<Commons> allCommons = commonsRepository.findAll();
 
-        for (Commons commons : allCommons) {
+        ctx.forEachCommons(allCommons, (commons, commonsCtx) -> {
             String name = commons.getName();
+            JobCheckpoint checkpoint = commonsCtx.checkpoint(commons.getId());
+            if (checkpoint.isComplete()) {
+                commonsCtx.log("Cows already milked for Commons: " + name);
+                return;
+            }
+
             double milkPrice = commons.getMilkPrice();
-            ctx.log("Milking cows for Commons: " + name + ", Milk Price: " + formatDollars(milkPrice));
+            commonsCtx.log("Milking cows for Commons: " + name + ", Milk Price: " + formatDollars(milkPrice));
 
-            Iterable<UserCommons> allUserCommons = userCommonsRepository.findByCommonsId(commons.getId());
+            if (bulkUpdates) {
+                milkCowsInCommons(commonsCtx, commons, profitRepository, userCommonsRepository);
+            } else {
+                Iterable<UserCommons> allUserCommons = userCommonsRepository.findByCommonsId(commons.getId());
 
-            for (UserCommons userCommons : allUserCommons) {
-                milkCows(ctx, commons, userCommons, profitRepository, userCommonsRepository);
+                for (UserCommons userCommons : allUserCommons) {
+                    milkCows(commonsCtx, commons, userCommons, profitRepository, userCommonsRepository);
+                }
             }
-        }
+
+            // the checkpoint is written in the commons' transaction (see CommonsRunner),
+            // so a resumed job pays the players of each commons exactly once
+            commonsCtx.recomputeAggregates(commons.getId());
+            checkpoint.setComplete(true);
+            commonsCtx.saveCheckpoint(checkpoint);
+        });
 
         ctx.log("Cows have been milked!");
     }
@@ -85,6 +114,22 @@ public class MilkTheCowsJob implements JobContextConsumer {
                 + ", newWealth: " + formatDollars(newWeath));
     }
 
+    /** This method milks the cows of every player in a commons with one INSERT...SELECT
+     *  for the Profit rows and one UPDATE for totalWealth, instead of two writes per player.
+     *  The results are the same as calling milkCows for each UserCommons.
+     *  The two statements must be run in one transaction, as JobContext.forEachCommons does,
+     *  so that profits are never recorded for wealth that was not paid, or the other way round.
+     * @param ctx the JobContext
+     * @param commons the Commons
+     *
+     */
+
+    public static void milkCowsInCommons(JobContext ctx, Commons commons, ProfitRepository profitRepository, UserCommonsRepository userCommonsRepository) {
+        int profitsRecorded = profitRepository.insertMilkingProfits(commons.getId(), commons.getMilkPrice(), LocalDateTime.now());
+        int usersPaid = userCommonsRepository.addMilkingProfits(commons.getId(), commons.getMilkPrice());
+        ctx.log("Profits recorded: " + profitsRecorded + ", users paid: " + usersPaid);
+    }
+
     /**
      * Calculate the profit for a user from milking their cows.
      *
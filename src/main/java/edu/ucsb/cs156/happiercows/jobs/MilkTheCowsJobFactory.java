@@ -1,6 +1,9 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
@@ -8,9 +11,10 @@ import edu.ucsb.cs156.happiercows.repositories.ProfitRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJobFactory;
 
 @Service
-public class MilkTheCowsJobFactory {
+public class MilkTheCowsJobFactory implements QueueableJobFactory {
 
     @Autowired
     private CommonsRepository commonsRepository;
@@ -24,11 +28,31 @@ public class MilkTheCowsJobFactory {
     @Autowired
     private ProfitRepository profitRepository;
 
+    @Value("${app.jobs.bulkUpdates}")
+    private boolean bulkUpdates;
+
     public JobContextConsumer create() {
         return new MilkTheCowsJob(
                 commonsRepository,
                 userCommonsRepository,
                 userRepository,
-                profitRepository);
+                profitRepository,
+                bulkUpdates);
+    }
+
+    @Override
+    public String getJobType() {
+        return MilkTheCowsJob.class.getSimpleName();
+    }
+
+    // each commons is checkpointed in its transaction
+    @Override
+    public boolean isResumable() {
+        return true;
+    }
+
+    @Override
+    public JobContextConsumer create(Map<String, String> parameters) {
+        return create();
     }
 }
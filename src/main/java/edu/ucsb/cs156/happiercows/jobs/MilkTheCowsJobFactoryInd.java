@@ -1,6 +1,9 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
@@ -8,9 +11,10 @@ import edu.ucsb.cs156.happiercows.repositories.ProfitRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJobFactory;
 
 @Service
-public class MilkTheCowsJobFactoryInd {
+public class MilkTheCowsJobFactoryInd implements QueueableJobFactory {
 
     @Autowired
     private CommonsRepository commonsRepository;
@@ -24,6 +28,9 @@ public class MilkTheCowsJobFactoryInd {
     @Autowired
     private ProfitRepository profitRepository;
 
+    @Value("${app.jobs.bulkUpdates}")
+    private boolean bulkUpdates;
+
 
     public JobContextConsumer create(Long commonsID) {
         return new MilkTheCowsJobInd(
@@ -31,6 +38,17 @@ public class MilkTheCowsJobFactoryInd {
                 userCommonsRepository,
                 userRepository,
                 profitRepository,
-                commonsID);
+                commonsID,
+                bulkUpdates);
+    }
+
+    @Override
+    public String getJobType() {
+        return MilkTheCowsJobInd.class.getSimpleName();
+    }
+
+    @Override
+    public JobContextConsumer create(Map<String, String> parameters) {
+        return create(Long.valueOf(parameters.get("commonsId")));
     }
 }
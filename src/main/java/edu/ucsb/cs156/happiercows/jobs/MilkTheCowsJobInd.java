@@ -8,13 +8,15 @@ import edu.ucsb.cs156.happiercows.repositories.ProfitRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
-import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @AllArgsConstructor
-public class MilkTheCowsJobInd implements JobContextConsumer {
+public class MilkTheCowsJobInd implements QueueableJob {
 
     @Getter
     private CommonsRepository commonsRepository;
@@ -26,11 +28,22 @@ public class MilkTheCowsJobInd implements JobContextConsumer {
     private ProfitRepository profitRepository;
     @Getter
     private long commonsID;
+    @Getter
+    private boolean bulkUpdates;
+
+    public MilkTheCowsJobInd(CommonsRepository commonsRepository, UserCommonsRepository userCommonsRepository, UserRepository userRepository, ProfitRepository profitRepository, long commonsID) {
+        this(commonsRepository, userCommonsRepository, userRepository, profitRepository, commonsID, false);
+    }
 
     public String formatDollars(double amount) {
         return  String.format("$%.2f", amount);
     }
 
+    @Override
+    public Map<String, String> getParameters() {
+        return Map.of("commonsId", String.valueOf(commonsID));
+    }
+
     @Override
     public void accept(JobContext ctx) throws Exception {
         ctx.log("Starting to milk the cows");
@@ -42,12 +55,19 @@ public class MilkTheCowsJobInd implements JobContextConsumer {
             double milkPrice = commonMilked.getMilkPrice();
             ctx.log("Milking cows for Commons: " + name + ", Milk Price: " + formatDollars(milkPrice));
 
-            Iterable<UserCommons> allUserCommons = userCommonsRepository.findByCommonsId(commonMilked.getId());
+            // in one transaction, like each commons of MilkTheCowsJob
+            ctx.forEachCommons(List.of(commonMilked), (commons, commonsCtx) -> {
+                if (bulkUpdates) {
+                    MilkTheCowsJob.milkCowsInCommons(commonsCtx, commons, profitRepository, userCommonsRepository);
+                } else {
+                    Iterable<UserCommons> allUserCommons = userCommonsRepository.findByCommonsId(commons.getId());
 
-            for (UserCommons userCommons : allUserCommons) {
-                MilkTheCowsJob.milkCows(ctx, commonMilked, userCommons, profitRepository, userCommonsRepository);
-            }
-            
+                    for (UserCommons userCommons : allUserCommons) {
+                        MilkTheCowsJob.milkCows(commonsCtx, commons, userCommons, profitRepository, userCommonsRepository);
+                    }
+                }
+                commonsCtx.recomputeAggregates(commons.getId());
+            });
 
             ctx.log("Cows have been milked!");
         } else {
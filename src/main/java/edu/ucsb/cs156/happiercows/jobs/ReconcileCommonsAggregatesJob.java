@@ -0,0 +1,80 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
+import edu.ucsb.cs156.happiercows.repositories.CommonsAggregatesRepository;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.services.CommonsAggregatesService;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Checks the totals stored for each commons (see CommonsAggregatesService)
+ * against a count of its players, and counts them again where they differ.
+ * The players of every commons are counted with one query.
+ */
+
+@AllArgsConstructor
+public class ReconcileCommonsAggregatesJob implements QueueableJob {
+
+    // sums of doubles kept up to date one change at a time drift by rounding errors
+    public static final double TOLERANCE = 1e-6;
+
+    @Getter
+    private CommonsRepository commonsRepository;
+
+    @Getter
+    private CommonsAggregatesRepository commonsAggregatesRepository;
+
+    @Getter
+    private CommonsAggregatesService commonsAggregatesService;
+
+    @Override
+    public Map<String, String> getParameters() {
+        return Map.of();
+    }
+
+    @Override
+    public void accept(JobContext ctx) throws Exception {
+        ctx.log("Checking the totals of each commons...");
+
+        Map<Long, CommonsAggregates> counted = new HashMap<>();
+        commonsAggregatesRepository.computeAll().forEach(aggregates -> counted.put(aggregates.getCommonsId(), aggregates));
+        Iterable<Commons> allCommons = commonsRepository.findAll();
+        AtomicInteger fixed = new AtomicInteger();
+
+        ctx.forEachCommons(allCommons, (commons, commonsCtx) -> {
+            CommonsAggregates actual = counted.getOrDefault(commons.getId(), CommonsAggregates.empty(commons.getId()));
+            Optional<CommonsAggregates> stored = commonsAggregatesRepository.findById(commons.getId());
+            if (stored.isPresent() && agree(stored.get(), actual)) {
+                return;
+            }
+
+            commonsCtx.log(String.format("Commons %s: stored totals %s, counted %s", commons.getName(),
+                    stored.map(CommonsAggregates::toString).orElse("none"), actual));
+            // counted again, as players may have changed since the count above
+            commonsAggregatesService.recompute(commons.getId());
+            fixed.incrementAndGet();
+        });
+
+        ctx.log(String.format("Counted the totals of %d commons again", fixed.get()));
+    }
+
+    public static boolean agree(CommonsAggregates stored, CommonsAggregates counted) {
+        return stored.getTotalCows() == counted.getTotalCows()
+                && stored.getTotalUsers() == counted.getTotalUsers()
+                && close(stored.getTotalCowHealth(), counted.getTotalCowHealth())
+                && close(stored.getTotalWealth(), counted.getTotalWealth());
+    }
+
+    private static boolean close(double stored, double counted) {
+        return Math.abs(stored - counted) <= TOLERANCE * Math.max(1, Math.abs(counted));
+    }
+}
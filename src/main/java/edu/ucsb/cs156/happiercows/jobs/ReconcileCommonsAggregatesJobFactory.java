@@ -0,0 +1,42 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.happiercows.repositories.CommonsAggregatesRepository;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.services.CommonsAggregatesService;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJobFactory;
+
+@Service
+public class ReconcileCommonsAggregatesJobFactory implements QueueableJobFactory {
+
+    @Autowired
+    private CommonsRepository commonsRepository;
+
+    @Autowired
+    private CommonsAggregatesRepository commonsAggregatesRepository;
+
+    @Autowired
+    private CommonsAggregatesService commonsAggregatesService;
+
+    public JobContextConsumer create() {
+        return new ReconcileCommonsAggregatesJob(
+            commonsRepository,
+            commonsAggregatesRepository,
+            commonsAggregatesService);
+    }
+
+    @Override
+    public String getJobType() {
+        return ReconcileCommonsAggregatesJob.class.getSimpleName();
+    }
+
+    @Override
+    public JobContextConsumer create(Map<String, String> parameters) {
+        return create();
+    }
+}
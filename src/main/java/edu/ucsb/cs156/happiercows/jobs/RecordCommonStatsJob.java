@@ -1,20 +1,27 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
+import java.util.Iterator;
+import java.util.Map;
+
 import edu.ucsb.cs156.happiercows.entities.Commons;
 import edu.ucsb.cs156.happiercows.entities.CommonStats;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.services.CommonStatsService;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
-import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 
-/** This job computes the stats for all games in progress and creates one new row in the CommonsStats table for each commons.   It uses the Average Cow Health Service to compute the cowhealth for each commons.
-*/
+/**
+ * This job computes the stats for all games in progress and creates one new
+ * row in the CommonsStats table for each commons.  The cows of every commons
+ * are counted with one query, and the rows are inserted with one batched
+ * statement (see CommonStatsService.createAndSaveAllCommonStats).
+ */
 
 @AllArgsConstructor
-public class RecordCommonStatsJob implements JobContextConsumer {
+public class RecordCommonStatsJob implements QueueableJob {
 
     @Getter
     private CommonStatsService commonStatsService;
@@ -22,16 +29,21 @@ public class RecordCommonStatsJob implements JobContextConsumer {
     @Getter
     private CommonsRepository commonsRepository;
 
+    @Override
+    public Map<String, String> getParameters() {
+        return Map.of();
+    }
+
     @Override
     public void accept(JobContext ctx) throws Exception {
         ctx.log("Starting record common stats job...");
         Iterable<Commons> allCommons = commonsRepository.findAll();
 
+        Iterator<CommonStats> allStats = commonStatsService.createAndSaveAllCommonStats(allCommons).iterator();
         for (Commons commons : allCommons) {
-            ctx.log(String.format("Starting Commons id=%d (%s)...", commons.getId(), commons.getName()));
-            CommonStats commonStats = commonStatsService.createAndSaveCommonStats(commons.getId());
-            ctx.log(String.format("CommonStats %d for commons id=%d (%s) finished.", commonStats.getId(), commons.getId(),
-                    commons.getName()));
+            CommonStats commonStats = allStats.next();
+            ctx.log(String.format("CommonStats for commons id=%d (%s): numCows %d, avgHealth %s", commons.getId(),
+                    commons.getName(), commonStats.getNumCows(), commonStats.getAvgHealth()));
         }
         ctx.log("Record common stats job done!");
     }
@@ -1,14 +1,17 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.services.CommonStatsService;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJobFactory;
 
 @Service
-public class RecordCommonStatsJobFactory {
+public class RecordCommonStatsJobFactory implements QueueableJobFactory {
     
     @Autowired
     private CommonsRepository commonsRepository;
@@ -21,5 +24,14 @@ public class RecordCommonStatsJobFactory {
             commonStatsService,
             commonsRepository);
     }
-    
+
+    @Override
+    public String getJobType() {
+        return RecordCommonStatsJob.class.getSimpleName();
+    }
+
+    @Override
+    public JobContextConsumer create(Map<String, String> parameters) {
+        return create();
+    }
 }
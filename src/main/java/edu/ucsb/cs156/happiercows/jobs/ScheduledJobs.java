@@ -1,11 +1,15 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
+import java.util.OptionalLong;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
 import edu.ucsb.cs156.happiercows.services.jobs.JobService;
+import edu.ucsb.cs156.happiercows.services.jobs.SchedulerLeaseService;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -17,6 +21,13 @@ import lombok.extern.slf4j.Slf4j;
  * a Unix cron expression, but with an extra field at the beginning for
  * the seconds.
  * 
+ * When app.jobs.gameTick is true, each trigger launches a GameTickJob with
+ * the stages listed for it in application.properties instead of its own job.
+ * 
+ * A job is only launched by the server holding the scheduler lease (see
+ * SchedulerLeaseService), so running several servers does not run each
+ * trigger several times.
+ * 
  * @see <a href="https://docs.spring.io/spring-framework/docs/current/javadoc-api/org/springframework/scheduling/support/CronExpression.html">Spring Cron Syntax</a>
  * 
  */
@@ -36,13 +47,42 @@ public class ScheduledJobs {
 
    @Autowired
    RecordCommonStatsJobFactory recordCommonStatsJobFactory;
-   
+
+   @Autowired
+   GameTickJobFactory gameTickJobFactory;
+
+   @Autowired
+   ReconcileCommonsAggregatesJobFactory reconcileCommonsAggregatesJobFactory;
+
+   @Autowired
+   SchedulerLeaseService schedulerLeaseService;
+
+   @Value("${app.jobs.gameTick}")
+   private boolean gameTick;
+
+   @Value("${app.updateCowHealth.tickStages}")
+   private String[] updateCowHealthTickStages;
+
+   @Value("${app.milkTheCows.tickStages}")
+   private String[] milkTheCowsTickStages;
+
+   @Value("${app.recordCommonStats.tickStages}")
+   private String[] recordCommonStatsTickStages;
+
    @Scheduled(cron = "${app.updateCowHealth.cron}", zone = "${spring.jackson.time-zone}")
    public void runUpdateCowHealthJobBasedOnCron() {
       log.info("runUpdateCowHealthJobBasedOnCron: running");
 
-      JobContextConsumer updateCowHealthJob = updateCowHealthJobFactory.create();
-      jobService.runAsJob(updateCowHealthJob);
+      OptionalLong fencingToken = schedulerLeaseService.acquire();
+      if (fencingToken.isEmpty()) {
+         log.info("runUpdateCowHealthJobBasedOnCron: another server holds the scheduler lease, not launching");
+         return;
+      }
+
+      JobContextConsumer updateCowHealthJob = gameTick
+            ? gameTickJobFactory.create(GameTickJob.Stage.fromKeys(updateCowHealthTickStages))
+            : updateCowHealthJobFactory.create();
+      jobService.runAsJob(schedulerLeaseService.fence(fencingToken.getAsLong(), updateCowHealthJob));
    
       log.info("runUpdateCowHealthJobBasedOnCron: launched job");
    }
@@ -51,8 +91,16 @@ public class ScheduledJobs {
    public void runMilkTheCowsJobBasedOnCron() {
       log.info("runMilkTheCowsJobBasedOnCron: running");
 
-      JobContextConsumer milkTheCowsJob = milkTheCowsJobFactory.create();
-      jobService.runAsJob(milkTheCowsJob);
+      OptionalLong fencingToken = schedulerLeaseService.acquire();
+      if (fencingToken.isEmpty()) {
+         log.info("runMilkTheCowsJobBasedOnCron: another server holds the scheduler lease, not launching");
+         return;
+      }
+
+      JobContextConsumer milkTheCowsJob = gameTick
+            ? gameTickJobFactory.create(GameTickJob.Stage.fromKeys(milkTheCowsTickStages))
+            : milkTheCowsJobFactory.create();
+      jobService.runAsJob(schedulerLeaseService.fence(fencingToken.getAsLong(), milkTheCowsJob));
    
       log.info("runMilkTheCowsJobBasedOnCron: launched job");
    }
@@ -61,9 +109,33 @@ public class ScheduledJobs {
    public void runRecordCommonStatsJobBasedOnCron() {
       log.info("runRecordCommonStatsJobBasedOnCron: running");
 
-      JobContextConsumer recordCommonStatsJob = recordCommonStatsJobFactory.create();
-      jobService.runAsJob(recordCommonStatsJob);
+      OptionalLong fencingToken = schedulerLeaseService.acquire();
+      if (fencingToken.isEmpty()) {
+         log.info("runRecordCommonStatsJobBasedOnCron: another server holds the scheduler lease, not launching");
+         return;
+      }
+
+      JobContextConsumer recordCommonStatsJob = gameTick
+            ? gameTickJobFactory.create(GameTickJob.Stage.fromKeys(recordCommonStatsTickStages))
+            : recordCommonStatsJobFactory.create();
+      jobService.runAsJob(schedulerLeaseService.fence(fencingToken.getAsLong(), recordCommonStatsJob));
 
       log.info("runRecordCommonStatsJobBasedOnCron: launched job");
    }
+
+   @Scheduled(cron = "${app.reconcileCommonsAggregates.cron}", zone = "${spring.jackson.time-zone}")
+   public void runReconcileCommonsAggregatesJobBasedOnCron() {
+      log.info("runReconcileCommonsAggregatesJobBasedOnCron: running");
+
+      OptionalLong fencingToken = schedulerLeaseService.acquire();
+      if (fencingToken.isEmpty()) {
+         log.info("runReconcileCommonsAggregatesJobBasedOnCron: another server holds the scheduler lease, not launching");
+         return;
+      }
+
+      JobContextConsumer reconcileCommonsAggregatesJob = reconcileCommonsAggregatesJobFactory.create();
+      jobService.runAsJob(schedulerLeaseService.fence(fencingToken.getAsLong(), reconcileCommonsAggregatesJob));
+
+      log.info("runReconcileCommonsAggregatesJobBasedOnCron: launched job");
+   }
 }
@@ -8,14 +8,15 @@ import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
-import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+import java.util.Map;
 import java.util.Optional;
 
 @AllArgsConstructor
-public class SetCowHealthJob implements JobContextConsumer {
+public class SetCowHealthJob implements QueueableJob {
 
     private long commonsID;
     private double newCowHealth;
@@ -26,6 +27,17 @@ public class SetCowHealthJob implements JobContextConsumer {
     private UserCommonsRepository userCommonsRepository;
     @Getter
     private UserRepository userRepository;
+    @Getter
+    private boolean bulkUpdates;
+
+    public SetCowHealthJob(long commonsID, double newCowHealth, CommonsRepository commonsRepository, UserCommonsRepository userCommonsRepository, UserRepository userRepository) {
+        this(commonsID, newCowHealth, commonsRepository, userCommonsRepository, userRepository, false);
+    }
+
+    @Override
+    public Map<String, String> getParameters() {
+        return Map.of("commonsId", String.valueOf(commonsID), "health", String.valueOf(newCowHealth));
+    }
 
     @Override
     public void accept(JobContext ctx) throws Exception {
@@ -37,6 +49,14 @@ public class SetCowHealthJob implements JobContextConsumer {
         if (commons.isPresent()) {
             ctx.log("Commons " + commons.get().getName());
 
+            if (bulkUpdates) {
+                int rowsUpdated = userCommonsRepository.setCowHealthForCommons(commons.get().getId(), newCowHealth);
+                ctx.log(" new cow health: " + newCowHealth + ", users updated: " + rowsUpdated);
+                ctx.recomputeAggregates(commons.get().getId());
+                ctx.log("Cow health has been set!");
+                return;
+            }
+
             Iterable<UserCommons> allUserCommons = userCommonsRepository.findByCommonsId(commons.get().getId());
 
             for (UserCommons userCommons : allUserCommons) {
@@ -46,6 +66,7 @@ public class SetCowHealthJob implements JobContextConsumer {
                 userCommons.setCowHealth(newCowHealth);
                 userCommonsRepository.save(userCommons);
             }
+            ctx.recomputeAggregates(commons.get().getId());
 
             ctx.log("Cow health has been set!");
         } else {
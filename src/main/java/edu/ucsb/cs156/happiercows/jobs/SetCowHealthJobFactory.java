@@ -1,17 +1,21 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJobFactory;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
-public class SetCowHealthJobFactory  {
+public class SetCowHealthJobFactory implements QueueableJobFactory {
 
     @Autowired 
     private CommonsRepository commonsRepository;
@@ -22,9 +26,22 @@ public class SetCowHealthJobFactory  {
     @Autowired
     private UserRepository userRepository;
 
+    @Value("${app.jobs.bulkUpdates}")
+    private boolean bulkUpdates;
+
     public JobContextConsumer create(Long commonsID, double health) {
         log.info("commonsRepository = " + commonsRepository);
         log.info("userCommonsRepository = " + userCommonsRepository);
-        return new SetCowHealthJob(commonsID, health, commonsRepository, userCommonsRepository, userRepository);
+        return new SetCowHealthJob(commonsID, health, commonsRepository, userCommonsRepository, userRepository, bulkUpdates);
+    }
+
+    @Override
+    public String getJobType() {
+        return SetCowHealthJob.class.getSimpleName();
+    }
+
+    @Override
+    public JobContextConsumer create(Map<String, String> parameters) {
+        return create(Long.valueOf(parameters.get("commonsId")), Double.parseDouble(parameters.get("health")));
     }
 }
@@ -1,5 +1,7 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
+import java.util.Map;
+
 import edu.ucsb.cs156.happiercows.entities.Commons;
 import edu.ucsb.cs156.happiercows.entities.CommonsPlus;
 import edu.ucsb.cs156.happiercows.entities.User;
@@ -8,14 +10,14 @@ import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
-import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 import edu.ucsb.cs156.happiercows.services.CommonsPlusBuilderService;
 import edu.ucsb.cs156.happiercows.strategies.CowHealthUpdateStrategy;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 @AllArgsConstructor
-public class UpdateCowHealthJob implements JobContextConsumer {
+public class UpdateCowHealthJob implements QueueableJob {
 
     @Getter
     private CommonsRepository commonsRepository;
@@ -25,23 +27,35 @@ public class UpdateCowHealthJob implements JobContextConsumer {
     private UserRepository userRepository;
     @Getter
     private CommonsPlusBuilderService commonsPlusBuilderService;
+    @Getter
+    private boolean bulkUpdates;
+
+    public UpdateCowHealthJob(CommonsRepository commonsRepository, UserCommonsRepository userCommonsRepository, UserRepository userRepository, CommonsPlusBuilderService commonsPlusBuilderService) {
+        this(commonsRepository, userCommonsRepository, userRepository, commonsPlusBuilderService, false);
+    }
+
+    @Override
+    public Map<String, String> getParameters() {
+        return Map.of();
+    }
 
     @Override
     public void accept(JobContext ctx) throws Exception {
         ctx.log("Updating cow health...");
 
 
-        Iterable<Commons> allCommons = commonsRepository.findAll();
-        Iterable<CommonsPlus> allCommonsPlus = commonsPlusBuilderService.convertToCommonsPlus(allCommons);
-
-        for (CommonsPlus commonsPlus : allCommonsPlus) {
-
+        Iterable<CommonsPlus> allCommonsPlus = commonsPlusBuilderService.getAllCommonsPlus();
 
+        ctx.forEachCommons(allCommonsPlus, (commonsPlus, commonsCtx) -> {
             Commons commons = commonsPlus.getCommons();
-            
-            runUpdateJobInCommons(commons, commonsPlus, commonsPlusBuilderService, commonsRepository, userCommonsRepository, ctx);
-            
-        }
+
+            if (bulkUpdates) {
+                runBulkUpdateJobInCommons(commons, commonsPlus, commonsRepository, userCommonsRepository, commonsCtx);
+            } else {
+                runUpdateJobInCommons(commons, commonsPlus, commonsRepository, userCommonsRepository, commonsCtx);
+            }
+            commonsCtx.recomputeAggregates(commons.getId());
+        });
 
         ctx.log("Cow health has been updated!");
     }
@@ -67,10 +81,11 @@ public class UpdateCowHealthJob implements JobContextConsumer {
         }
     }
 
-    public static void runUpdateJobInCommons(Commons commons, CommonsPlus commonsPlus, CommonsPlusBuilderService commonsPlusBuilderService, CommonsRepository commonsRepository, UserCommonsRepository userCommonsRepository, JobContext ctx){
-        ctx.log("Commons " + commons.getName() + ", degradationRate: " + commons.getDegradationRate() + ", effectiveCapacity: " + commonsPlus.getEffectiveCapacity());
-
+    public static void runUpdateJobInCommons(Commons commons, CommonsPlus commonsPlus, CommonsRepository commonsRepository, UserCommonsRepository userCommonsRepository, JobContext ctx){
             int numUsers = commonsRepository.getNumUsers(commons.getId()).orElseThrow(() -> new RuntimeException("Error calling getNumUsers(" + commons.getId() + ")"));
+            commonsPlus = counted(commons, numUsers, commonsPlus.getTotalCows());
+
+            ctx.log("Commons " + commons.getName() + ", degradationRate: " + commons.getDegradationRate() + ", effectiveCapacity: " + commonsPlus.getEffectiveCapacity());
 
             if (numUsers==0) {
                 ctx.log("No users in this commons, skipping");
@@ -81,6 +96,7 @@ public class UpdateCowHealthJob implements JobContextConsumer {
             Iterable<UserCommons> allUserCommons = userCommonsRepository.findByCommonsId(commons.getId());
 
             Integer totalCows = commonsRepository.getNumCows(commons.getId()).orElseThrow(() -> new RuntimeException("Error calling getNumCows(" + commons.getId() + ")"));
+            commonsPlus = counted(commons, numUsers, totalCows);
 
             var isAboveCapacity = totalCows > carryingCapacity;
             var cowHealthUpdateStrategy = isAboveCapacity ? commons.getAboveCapacityHealthUpdateStrategy() : commons.getBelowCapacityHealthUpdateStrategy();
@@ -88,7 +104,7 @@ public class UpdateCowHealthJob implements JobContextConsumer {
             for (UserCommons userCommons : allUserCommons) {
                 User user = userCommons.getUser();
 
-                var newCowHealth = calculateNewCowHealthUsingStrategy(cowHealthUpdateStrategy, commonsPlusBuilderService.toCommonsPlus(commons), userCommons, totalCows);
+                var newCowHealth = calculateNewCowHealthUsingStrategy(cowHealthUpdateStrategy, commonsPlus, userCommons, totalCows);
                 ctx.log("User: " + user.getFullName() + ", numCows: " + userCommons.getNumOfCows() + ", cowHealth: " + userCommons.getCowHealth());
 
                 double oldHealth = userCommons.getCowHealth();
@@ -100,4 +116,46 @@ public class UpdateCowHealthJob implements JobContextConsumer {
             }
 
     }
+
+    /**
+     * Same result as runUpdateJobInCommons, but computed with one set-based UPDATE
+     * instead of loading and saving every UserCommons row.  This works because
+     * every strategy gives all of the players in a commons the same health delta.
+     */
+    public static void runBulkUpdateJobInCommons(Commons commons, CommonsPlus commonsPlus, CommonsRepository commonsRepository, UserCommonsRepository userCommonsRepository, JobContext ctx) {
+        int numUsers = commonsRepository.getNumUsers(commons.getId()).orElseThrow(() -> new RuntimeException("Error calling getNumUsers(" + commons.getId() + ")"));
+        commonsPlus = counted(commons, numUsers, commonsPlus.getTotalCows());
+
+        ctx.log("Commons " + commons.getName() + ", degradationRate: " + commons.getDegradationRate() + ", effectiveCapacity: " + commonsPlus.getEffectiveCapacity());
+
+        if (numUsers==0) {
+            ctx.log("No users in this commons, skipping");
+            return;
+        }
+
+        Integer totalCows = commonsRepository.getNumCows(commons.getId()).orElseThrow(() -> new RuntimeException("Error calling getNumCows(" + commons.getId() + ")"));
+        commonsPlus = counted(commons, numUsers, totalCows);
+        int carryingCapacity = commonsPlus.getEffectiveCapacity();
+
+        var isAboveCapacity = totalCows > carryingCapacity;
+        var cowHealthUpdateStrategy = isAboveCapacity ? commons.getAboveCapacityHealthUpdateStrategy() : commons.getBelowCapacityHealthUpdateStrategy();
+
+        double delta = cowHealthUpdateStrategy.calculateCowHealthDelta(commonsPlus, totalCows);
+        int rowsUpdated = userCommonsRepository.updateCowHealthByDelta(commons.getId(), delta);
+
+        ctx.log(" strategy: " + cowHealthUpdateStrategy.getDisplayName() + ", totalCows: " + totalCows + ", cow health delta: " + delta + ", users updated: " + rowsUpdated);
+    }
+
+    /**
+     * The commonsPlus passed in may carry the totals stored for the commons (see
+     * CommonsAggregatesService), which can lag behind its players.  The capacity
+     * and the strategies are computed from the players counted as the job runs.
+     */
+    private static CommonsPlus counted(Commons commons, int numUsers, Integer totalCows) {
+        return CommonsPlus.builder()
+                .commons(commons)
+                .totalCows(totalCows)
+                .totalUsers(numUsers)
+                .build();
+    }
 }
@@ -1,18 +1,22 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJobFactory;
 import edu.ucsb.cs156.happiercows.services.CommonsPlusBuilderService;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
-public class UpdateCowHealthJobFactory  {
+public class UpdateCowHealthJobFactory implements QueueableJobFactory {
 
     @Autowired 
     private CommonsRepository commonsRepository;
@@ -23,12 +27,25 @@ public class UpdateCowHealthJobFactory  {
     @Autowired
     private UserRepository userRepository;
 
+    @Value("${app.jobs.bulkUpdates}")
+    private boolean bulkUpdates;
+
     @Autowired
     private CommonsPlusBuilderService commonsPlusBuilderService;
 
     public JobContextConsumer create() {
         log.info("commonsRepository = " + commonsRepository);
         log.info("userCommonsRepository = " + userCommonsRepository);
-        return new UpdateCowHealthJob(commonsRepository, userCommonsRepository, userRepository, commonsPlusBuilderService);
+        return new UpdateCowHealthJob(commonsRepository, userCommonsRepository, userRepository, commonsPlusBuilderService, bulkUpdates);
+    }
+
+    @Override
+    public String getJobType() {
+        return UpdateCowHealthJob.class.getSimpleName();
+    }
+
+    @Override
+    public JobContextConsumer create(Map<String, String> parameters) {
+        return create();
     }
 }
@@ -1,6 +1,9 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import edu.ucsb.cs156.happiercows.entities.jobs.Job;
@@ -9,11 +12,12 @@ import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
 import edu.ucsb.cs156.happiercows.services.CommonsPlusBuilderService;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJobFactory;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
-public class UpdateCowHealthJobFactoryInd  {
+public class UpdateCowHealthJobFactoryInd implements QueueableJobFactory {
 
     @Autowired 
     private CommonsRepository commonsRepository;
@@ -24,12 +28,25 @@ public class UpdateCowHealthJobFactoryInd  {
     @Autowired
     private UserRepository userRepository;
 
+    @Value("${app.jobs.bulkUpdates}")
+    private boolean bulkUpdates;
+
     @Autowired
     private CommonsPlusBuilderService commonsPlusBuilderService;
 
     public JobContextConsumer create(Long commonsID) {
         log.info("commonsRepository = " + commonsRepository);
         log.info("userCommonsRepository = " + userCommonsRepository);
-        return new UpdateCowHealthJobInd(commonsRepository, userCommonsRepository, userRepository, commonsPlusBuilderService, commonsID);
+        return new UpdateCowHealthJobInd(commonsRepository, userCommonsRepository, userRepository, commonsPlusBuilderService, commonsID, bulkUpdates);
+    }
+
+    @Override
+    public String getJobType() {
+        return UpdateCowHealthJobInd.class.getSimpleName();
+    }
+
+    @Override
+    public JobContextConsumer create(Map<String, String> parameters) {
+        return create(Long.valueOf(parameters.get("commonsId")));
     }
 }
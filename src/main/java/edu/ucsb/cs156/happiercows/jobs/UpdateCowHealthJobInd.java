@@ -1,5 +1,6 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
+import java.util.Map;
 import java.util.Optional;
 
 import edu.ucsb.cs156.happiercows.entities.Commons;
@@ -9,12 +10,12 @@ import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
 import edu.ucsb.cs156.happiercows.services.CommonsPlusBuilderService;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
-import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 @AllArgsConstructor
-public class UpdateCowHealthJobInd implements JobContextConsumer {
+public class UpdateCowHealthJobInd implements QueueableJob {
 
     @Getter
     private CommonsRepository commonsRepository;
@@ -26,6 +27,17 @@ public class UpdateCowHealthJobInd implements JobContextConsumer {
     private CommonsPlusBuilderService commonsPlusBuilderService;
     @Getter
     private Long commonsID;
+    @Getter
+    private boolean bulkUpdates;
+
+    public UpdateCowHealthJobInd(CommonsRepository commonsRepository, UserCommonsRepository userCommonsRepository, UserRepository userRepository, CommonsPlusBuilderService commonsPlusBuilderService, Long commonsID) {
+        this(commonsRepository, userCommonsRepository, userRepository, commonsPlusBuilderService, commonsID, false);
+    }
+
+    @Override
+    public Map<String, String> getParameters() {
+        return Map.of("commonsId", String.valueOf(commonsID));
+    }
 
     @Override
     public void accept(JobContext ctx) throws Exception {
@@ -37,7 +49,12 @@ public class UpdateCowHealthJobInd implements JobContextConsumer {
         if(commonUpdatedOpt.isPresent()){
             Commons commonsUpdated = commonUpdatedOpt.get();
             CommonsPlus commonsPlus = commonsPlusBuilderService.toCommonsPlus(commonsUpdated);
-            UpdateCowHealthJob.runUpdateJobInCommons(commonsUpdated, commonsPlus, commonsPlusBuilderService, commonsRepository, userCommonsRepository, ctx); 
+            if (bulkUpdates) {
+                UpdateCowHealthJob.runBulkUpdateJobInCommons(commonsUpdated, commonsPlus, commonsRepository, userCommonsRepository, ctx);
+            } else {
+                UpdateCowHealthJob.runUpdateJobInCommons(commonsUpdated, commonsPlus, commonsRepository, userCommonsRepository, ctx);
+            }
+            ctx.recomputeAggregates(commonsUpdated.getId());
             ctx.log("Cow health has been updated!");
         } else {
             ctx.log(String.format("No commons found for id %d", commonsID));
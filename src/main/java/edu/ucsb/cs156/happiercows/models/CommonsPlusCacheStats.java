@@ -0,0 +1,19 @@
+package edu.ucsb.cs156.happiercows.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class CommonsPlusCacheStats {
+  private long size;
+  private long hits;
+  private long misses;
+  private long evictions; // dropped for size or age, not counting those dropped because their commons changed
+  private long invalidations;
+}
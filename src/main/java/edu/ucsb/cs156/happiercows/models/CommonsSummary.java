@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.happiercows.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+/**
+ * The id and name of a commons, read by UserCommonsRepository.findCommonsSummariesByUserId
+ * without loading the commons.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class CommonsSummary {
+  private long id;
+  private String name;
+}
@@ -0,0 +1,30 @@
+package edu.ucsb.cs156.happiercows.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * What /api/currentUser returns: the CurrentUser, with the ids and names of
+ * the commons they have joined.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class CurrentUserProfile {
+  private UserProfile user;
+  private Collection<? extends GrantedAuthority> roles;
+
+  public static CurrentUserProfile of(CurrentUser currentUser, List<CommonsSummary> commons) {
+    return new CurrentUserProfile(new UserProfile(currentUser.getUser(), commons), currentUser.getRoles());
+  }
+}
@@ -0,0 +1,19 @@
+package edu.ucsb.cs156.happiercows.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobExecutorStats {
+  private String mode;
+  private int permitsPerType; // only used in the threadPerJob mode
+  private long queued; // launched, but waiting for a thread or a permit
+  private long active;
+  private long completed; // since this server started, whether the job succeeded or not
+}
@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.happiercows.models;
+
+import java.util.List;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobLogTail {
+  private long jobId;
+  private String status;
+  private long nextOffset; // pass this as the offset of the next request to get only newer lines
+  private List<JobLogEntry> lines;
+}
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.happiercows.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+/**
+ * One order in a request to /api/usercommons/orders: buy or sell numCows cows
+ * in a commons, as /api/usercommons/buy and /sell do.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class TradeOrder {
+  public enum Type { BUY, SELL }
+
+  private Long commonsId;
+  private Type type;
+  private int numCows;
+}
@@ -0,0 +1,41 @@
+package edu.ucsb.cs156.happiercows.models;
+
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+/**
+ * What became of one TradeOrder.  A filled order has the player after the
+ * trade, what /api/usercommons/buy and /sell return; a rejected one has the
+ * type and message of the error those endpoints would have returned.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class TradeOrderResult {
+  public enum Status { FILLED, REJECTED }
+
+  private TradeOrder order;
+  private Status status;
+  private UserCommons userCommons;
+  private String errorType;
+  private String message;
+
+  public static TradeOrderResult filled(TradeOrder order, UserCommons userCommons) {
+    return TradeOrderResult.builder().order(order).status(Status.FILLED).userCommons(userCommons).build();
+  }
+
+  public static TradeOrderResult rejected(TradeOrder order, Exception e) {
+    return TradeOrderResult.builder()
+        .order(order)
+        .status(Status.REJECTED)
+        .errorType(e.getClass().getSimpleName())
+        .message(e.getMessage())
+        .build();
+  }
+}
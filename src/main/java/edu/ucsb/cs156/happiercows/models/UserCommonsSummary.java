@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.happiercows.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+/**
+ * A player's standing in a commons, read by UserCommonsRepository.findSummariesByCommonsId
+ * from user_commons alone.  It serializes to the same JSON as UserCommons.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class UserCommonsSummary {
+  private String username;
+  private double totalWealth;
+  private int numOfCows;
+  private double cowHealth;
+  private int cowsBought;
+  private int cowsSold;
+  private int cowDeaths;
+  private long userId;
+  private long commonsId;
+}
@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.happiercows.models;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import edu.ucsb.cs156.happiercows.entities.User;
+
+import java.util.List;
+
+/**
+ * A user with the commons they have joined, serialized as the user's own
+ * fields plus "commons", the shape /api/currentUser has always returned.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class UserProfile {
+  @JsonUnwrapped
+  private User user;
+  private List<CommonsSummary> commons;
+}
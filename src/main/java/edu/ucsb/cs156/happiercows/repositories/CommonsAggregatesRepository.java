@@ -0,0 +1,74 @@
+package edu.ucsb.cs156.happiercows.repositories;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
+
+@Repository
+public interface CommonsAggregatesRepository extends CrudRepository<CommonsAggregates, Long> {
+    String COMPUTE = "SELECT new edu.ucsb.cs156.happiercows.entities.CommonsAggregates("
+            + "uc.id.commonsId, SUM(uc.numOfCows), COUNT(uc), SUM(uc.cowHealth * uc.numOfCows), SUM(uc.totalWealth)) "
+            + "FROM user_commons uc ";
+
+    /**
+     * The totals of a commons counted from user_commons; empty if it has no players.
+     */
+    @Query(COMPUTE + "WHERE uc.id.commonsId = :commonsId GROUP BY uc.id.commonsId")
+    Optional<CommonsAggregates> compute(long commonsId);
+
+    /**
+     * The totals of every commons with players, counted from user_commons in one scan.
+     */
+    @Query(COMPUTE + "GROUP BY uc.id.commonsId")
+    Iterable<CommonsAggregates> computeAll();
+
+    /**
+     * Adds a change in a commons' players to its totals, e.g. the difference
+     * between a player's share after and before a purchase (see CommonsAggregates.of).
+     *
+     * @return the number of rows updated, 0 if the commons' totals have not been stored yet
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE commons_aggregates a SET a.totalCows = a.totalCows + :cows, a.totalUsers = a.totalUsers + :users, "
+            + "a.totalCowHealth = a.totalCowHealth + :cowHealth, a.totalWealth = a.totalWealth + :wealth "
+            + "WHERE a.commonsId = :commonsId")
+    int add(long commonsId, int cows, int users, double cowHealth, double wealth);
+
+    /**
+     * Locks the commons' row until the end of the caller's transaction, so
+     * that transactions storing its totals take turns (see insertCounted).
+     */
+    @Transactional
+    @Query(value = "SELECT c.id FROM commons c WHERE c.id = :commonsId FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockCommons(long commonsId);
+
+    /**
+     * Stores the totals of a commons counted from user_commons, unless they
+     * are stored already, in one statement.  Two of these for the same commons
+     * at the same time can both try to insert, and the second then fails on
+     * the primary key, unless each holds lockCommons first.  This is a native
+     * query because JPQL cannot insert from a select.
+     *
+     * @return 1 if the totals were stored, 0 if they were stored already
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO commons_aggregates (commons_id, total_cows, total_users, total_cow_health, total_wealth) "
+            + "SELECT :commonsId, COALESCE(SUM(uc.num_of_cows), 0), COUNT(*), "
+            + "COALESCE(SUM(uc.cow_health * uc.num_of_cows), 0), COALESCE(SUM(uc.total_wealth), 0) "
+            + "FROM user_commons uc WHERE uc.commons_id = :commonsId "
+            + "HAVING NOT EXISTS (SELECT 1 FROM commons_aggregates a WHERE a.commons_id = :commonsId)", nativeQuery = true)
+    int insertCounted(long commonsId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM commons_aggregates a WHERE a.commonsId = :commonsId")
+    int deleteByCommonsId(long commonsId);
+}
@@ -1,5 +1,7 @@
 package edu.ucsb.cs156.happiercows.repositories;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.repository.CrudRepository;
@@ -11,10 +13,21 @@ import edu.ucsb.cs156.happiercows.entities.Commons;
 
 @Repository
 public interface CommonsRepository extends CrudRepository<Commons, Long> {
+    String WITH_AGGREGATES = "SELECT c, a FROM commons c LEFT JOIN commons_aggregates a ON a.commonsId = c.id ";
+
     @Query("SELECT sum(uc.numOfCows) from user_commons uc where uc.commons.id = :commonsId")
     Optional<Integer> getNumCows(Long commonsId);
 
     @Query("SELECT COUNT(*) FROM user_commons uc WHERE uc.commons.id = :commonsId")
     Optional<Integer> getNumUsers(Long commonsId);
 
+    /**
+     * Each commons with its stored totals (a CommonsAggregates, or null if
+     * they have not been stored yet), ordered by id.
+     */
+    @Query(WITH_AGGREGATES + "WHERE c.id IN :commonsIds ORDER BY c.id")
+    List<Object[]> findAllWithAggregates(Collection<Long> commonsIds);
+
+    @Query(WITH_AGGREGATES + "ORDER BY c.id")
+    List<Object[]> findAllWithAggregates();
 }
@@ -2,10 +2,29 @@ package edu.ucsb.cs156.happiercows.repositories;
 
 import edu.ucsb.cs156.happiercows.entities.Profit;
 import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
 
 @Repository
 public interface ProfitRepository extends CrudRepository<Profit, Long> {
     Iterable<Profit> findAllByUserCommons(UserCommons userCommons);
+
+    /**
+     * Records one milking Profit row for every player in a commons with a single INSERT...SELECT.
+     * The amount uses the same formula as MilkTheCowsJob.calculateMilkingProfit.
+     * This is a native query because JPQL cannot insert a composite foreign key from a select.
+     *
+     * @return the number of profits rows inserted
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO profits (user_id, commons_id, amount, timestamp, num_cows, avg_cow_health) "
+            + "SELECT uc.user_id, uc.commons_id, uc.num_of_cows * (uc.cow_health / 100.0) * :milkPrice, :timestamp, uc.num_of_cows, uc.cow_health "
+            + "FROM user_commons uc WHERE uc.commons_id = :commonsId", nativeQuery = true)
+    int insertMilkingProfits(Long commonsId, double milkPrice, LocalDateTime timestamp);
 }
@@ -0,0 +1,12 @@
+package edu.ucsb.cs156.happiercows.repositories;
+
+import edu.ucsb.cs156.happiercows.entities.TradeOrderBatch;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface TradeOrderBatchRepository extends CrudRepository<TradeOrderBatch, Long> {
+    Optional<TradeOrderBatch> findByUserIdAndIdempotencyKey(long userId, String idempotencyKey);
+}
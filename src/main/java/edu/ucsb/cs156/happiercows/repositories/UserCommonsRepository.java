@@ -2,16 +2,120 @@ package edu.ucsb.cs156.happiercows.repositories;
 
 import edu.ucsb.cs156.happiercows.entities.UserCommons;
 import edu.ucsb.cs156.happiercows.entities.UserCommonsKey;
+import edu.ucsb.cs156.happiercows.models.CommonsSummary;
+import edu.ucsb.cs156.happiercows.models.UserCommonsSummary;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserCommonsRepository extends CrudRepository<UserCommons, UserCommonsKey> {
+    @EntityGraph(UserCommons.WITH_USER_AND_COMMONS)
     @Query("SELECT uc FROM user_commons uc WHERE uc.commons.id = :commonsId AND uc.user.id = :userId")
     Optional<UserCommons> findByCommonsIdAndUserId(Long commonsId, Long userId);
+
+    /**
+     * The players of a commons, with their users and the commons, in one query;
+     * for the jobs, which change the players.  Callers that only read them
+     * should use findSummariesByCommonsId.
+     */
+    @EntityGraph(UserCommons.WITH_USER_AND_COMMONS)
     @Query("SELECT uc FROM user_commons uc WHERE uc.commons.id = :commonsId")
     Iterable<UserCommons> findByCommonsId(Long commonsId);
+
+    /**
+     * The players of a commons, read from user_commons alone; for the
+     * leaderboard (/api/usercommons/commons/all) and the instructor reports.
+     */
+    @Query("SELECT new edu.ucsb.cs156.happiercows.models.UserCommonsSummary(uc.username, uc.totalWealth, "
+            + "uc.numOfCows, uc.cowHealth, uc.cowsBought, uc.cowsSold, uc.cowDeaths, uc.id.userId, uc.id.commonsId) "
+            + "FROM user_commons uc WHERE uc.id.commonsId = :commonsId")
+    List<UserCommonsSummary> findSummariesByCommonsId(Long commonsId);
+
+    /**
+     * The ids and names of the commons a user has joined, in one query that
+     * reads only those two columns of commons.
+     */
+    @Query("SELECT new edu.ucsb.cs156.happiercows.models.CommonsSummary(c.id, c.name) "
+            + "FROM user_commons uc JOIN uc.commons c WHERE uc.user.id = :userId ORDER BY c.id")
+    List<CommonsSummary> findCommonsSummariesByUserId(long userId);
+
+    /**
+     * Buys cows for a player at the commons' cow price, if they can afford them.
+     * The check and the change are one statement, so concurrent trades by the
+     * same player cannot both spend the same money.
+     * This is a native query so that the cost is computed as in Java.  It clears
+     * the persistence context, so that the player is read again after it.
+     *
+     * A numCows below 1 is never bought, so that it cannot be used to sell cows at full price.
+     *
+     * @return 1 if the cows were bought, 0 if numCows is below 1 or the player cannot afford them or does not exist
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query(value = "UPDATE user_commons SET "
+            + "total_wealth = total_wealth - (SELECT cow_price FROM commons WHERE id = :commonsId) * :numCows, "
+            + "num_of_cows = num_of_cows + :numCows, cows_bought = cows_bought + :numCows "
+            + "WHERE commons_id = :commonsId AND user_id = :userId "
+            + "AND :numCows > 0 AND total_wealth >= (SELECT cow_price FROM commons WHERE id = :commonsId) * :numCows", nativeQuery = true)
+    int buyCows(long commonsId, long userId, int numCows);
+
+    /**
+     * Sells cows of a player, if they have that many, for the commons' cow
+     * price scaled by the health of the player's cows; see buyCows.
+     *
+     * @return 1 if the cows were sold, 0 if numCows is below 1 or the player does not have that many cows or does not exist
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query(value = "UPDATE user_commons SET "
+            + "total_wealth = total_wealth + (SELECT cow_price FROM commons WHERE id = :commonsId) * cow_health / 100 * :numCows, "
+            + "num_of_cows = num_of_cows - :numCows, cows_sold = cows_sold + :numCows "
+            + "WHERE commons_id = :commonsId AND user_id = :userId AND :numCows > 0 AND num_of_cows >= :numCows", nativeQuery = true)
+    int sellCows(long commonsId, long userId, int numCows);
+
+    /**
+     * Set-based version of UpdateCowHealthJob.calculateNewCowHealthUsingStrategy
+     * followed by UpdateCowHealthJob.calculateCowDeaths, for every player in a commons.
+     * The new health is clamped to 0..100; players whose cows reach 0 health have
+     * their cows moved to cowDeaths and their health reset to 100.
+     * All right hand sides see the old row values, so the whole tick is one statement.
+     *
+     * @return the number of user_commons rows updated
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE user_commons uc SET "
+            + "uc.cowDeaths = CASE WHEN (uc.cowHealth + :delta) <= 0 THEN (uc.cowDeaths + uc.numOfCows) ELSE uc.cowDeaths END, "
+            + "uc.numOfCows = CASE WHEN (uc.cowHealth + :delta) <= 0 THEN 0 ELSE uc.numOfCows END, "
+            + "uc.cowHealth = CASE WHEN (uc.cowHealth + :delta) <= 0 THEN 100.0 "
+            + "WHEN (uc.cowHealth + :delta) > 100 THEN 100.0 "
+            + "ELSE (uc.cowHealth + :delta) END "
+            + "WHERE uc.id.commonsId = :commonsId")
+    int updateCowHealthByDelta(Long commonsId, double delta);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE user_commons uc SET uc.cowHealth = :cowHealth WHERE uc.id.commonsId = :commonsId")
+    int setCowHealthForCommons(Long commonsId, double cowHealth);
+
+    /**
+     * Set-based version of the totalWealth update in MilkTheCowsJob.milkCows:
+     * adds calculateMilkingProfit to every player's wealth in a commons.
+     * This is a native query because HQL drops the parentheses, and the
+     * floating point operations have to happen in the same order as in Java.
+     *
+     * @return the number of user_commons rows updated
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE user_commons SET total_wealth = total_wealth + (num_of_cows * (cow_health / 100.0) * :milkPrice) "
+            + "WHERE commons_id = :commonsId", nativeQuery = true)
+    int addMilkingProfits(Long commonsId, double milkPrice);
 }
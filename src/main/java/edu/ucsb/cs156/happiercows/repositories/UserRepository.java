@@ -1,12 +1,25 @@
 package edu.ucsb.cs156.happiercows.repositories;
 
 import edu.ucsb.cs156.happiercows.entities.User;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends CrudRepository<User, Long> {
   Optional<User> findByEmail(String email);
+
+  /**
+   * Sets only the user's last online time, so that a copy of the user read
+   * earlier does not write its other columns back over newer changes.
+   */
+  @Modifying
+  @Transactional
+  @Query("UPDATE users u SET u.lastOnline = :lastOnline WHERE u.id = :id")
+  int updateLastOnline(long id, Instant lastOnline);
 }
@@ -0,0 +1,19 @@
+package edu.ucsb.cs156.happiercows.repositories.jobs;
+
+import edu.ucsb.cs156.happiercows.entities.jobs.JobCheckpoint;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobCheckpointKey;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+
+@Repository
+public interface JobCheckpointRepository extends CrudRepository<JobCheckpoint, JobCheckpointKey> {
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM job_checkpoints c WHERE c.id.jobId = :jobId")
+    int deleteAllByJobId(long jobId);
+}
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.happiercows.repositories.jobs;
+
+import edu.ucsb.cs156.happiercows.entities.jobs.JobLogLine;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobLogLineKey;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+
+@Repository
+public interface JobLogLineRepository extends CrudRepository<JobLogLine, JobLogLineKey> {
+    @Query("SELECT l FROM job_log_lines l WHERE l.id.jobId IN :jobIds ORDER BY l.id.jobId, l.id.seq")
+    List<JobLogLine> findAllByJobIds(Collection<Long> jobIds);
+
+    @Query("SELECT l FROM job_log_lines l WHERE l.id.jobId = :jobId AND l.id.seq >= :fromSeq AND l.id.seq < :toSeq ORDER BY l.id.seq")
+    List<JobLogLine> findAllByJobIdAndSeqBetween(long jobId, long fromSeq, long toSeq);
+
+    @Query("SELECT COUNT(l) FROM job_log_lines l WHERE l.id.jobId = :jobId")
+    long countByJobId(long jobId);
+}
@@ -2,13 +2,98 @@ package edu.ucsb.cs156.happiercows.repositories.jobs;
 
 import edu.ucsb.cs156.happiercows.entities.jobs.Job;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 
 @Repository
 public interface JobsRepository extends CrudRepository<Job, Long> {
     public Page<Job> findAll(Pageable pageable);
+
+    @Query("SELECT j.id FROM jobs j WHERE j.status = 'queued' ORDER BY j.id")
+    List<Long> findQueuedJobIds(Pageable pageable);
+
+    Optional<Job> findFirstByCoalesceKeyAndStatusInOrderByIdDesc(String coalesceKey, Collection<String> statuses);
+
+    // Only one server's update can find the job still queued, and a job with a coalesceKey
+    // waits until the same job is no longer running (see JobOverlapService)
+    @Modifying
+    @Transactional
+    @Query("UPDATE jobs j SET j.status = 'running', j.worker = :worker, j.claimToken = :claimToken, j.heartbeatAt = :now, "
+            + "j.attempts = j.attempts + 1 WHERE j.id = :id AND j.status = 'queued' AND (j.coalesceKey IS NULL OR NOT EXISTS "
+            + "(SELECT r.id FROM jobs r WHERE r.coalesceKey = j.coalesceKey AND r.status = 'running'))")
+    int claim(long id, String worker, String claimToken, ZonedDateTime now);
+
+    // False once the job has been queued again, failed or claimed by another attempt
+    @Query("SELECT COUNT(j) > 0 FROM jobs j WHERE j.id = :id AND j.claimToken = :claimToken AND j.status = 'running'")
+    boolean holdsClaim(long id, String claimToken);
+
+    // Records how a claimed job ended, unless another attempt has taken it over meanwhile
+    @Modifying
+    @Transactional
+    @Query("UPDATE jobs j SET j.status = :status "
+            + "WHERE j.id = :id AND j.claimToken = :claimToken AND j.status = 'running'")
+    int finishClaimed(long id, String claimToken, String status);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE jobs j SET j.heartbeatAt = :now WHERE j.worker = :worker AND j.status = 'running'")
+    int heartbeat(String worker, ZonedDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE jobs j SET j.status = 'queued', j.worker = NULL WHERE j.status = 'running' "
+            + "AND j.heartbeatAt < :cutoff AND j.attempts < :maxAttempts AND j.jobType IN :resumableTypes")
+    int requeueStale(ZonedDateTime cutoff, int maxAttempts, Collection<String> resumableTypes);
+
+    // Jobs that do not checkpoint are not run again, so that none of their commons is done twice
+    @Modifying
+    @Transactional
+    @Query("UPDATE jobs j SET j.status = 'error' WHERE j.status = 'running' AND j.heartbeatAt < :cutoff "
+            + "AND (j.attempts >= :maxAttempts OR j.jobType NOT IN :resumableTypes)")
+    int failStale(ZonedDateTime cutoff, int maxAttempts, Collection<String> resumableTypes);
+
+    // Starts a job that was waiting for the same job to finish on this server,
+    // unless it was cancelled meanwhile
+    @Modifying
+    @Transactional
+    @Query("UPDATE jobs j SET j.status = 'running' WHERE j.id = :id AND j.status = 'queued'")
+    int startQueued(long id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE jobs j SET j.status = 'cancelled' WHERE j.id = :id AND j.status = 'queued'")
+    int cancelQueued(long id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE jobs j SET j.cancelRequestedAt = :now WHERE j.id = :id AND j.status = 'running'")
+    int requestCancel(long id, ZonedDateTime now);
+
+    @Query("SELECT j.id FROM jobs j WHERE j.worker = :worker AND j.status = 'running' AND j.cancelRequestedAt IS NOT NULL")
+    List<Long> findCancelRequestedJobIds(String worker);
+
+    // Only the progress column, so that the job's other columns are not written from a stale copy
+    @Modifying
+    @Transactional
+    @Query("UPDATE jobs j SET j.progress = :progress WHERE j.id = :id")
+    int updateProgress(long id, int progress);
+
+    // Only jobs that stopped without completing can be resumed, and only once; a job resumed
+    // on this server is not run under a claim
+    @Modifying
+    @Transactional
+    @Query("UPDATE jobs j SET j.status = :status, j.worker = NULL, j.claimToken = NULL, j.attempts = :attempts, "
+            + "j.cancelRequestedAt = NULL WHERE j.id = :id AND j.status IN ('error', 'cancelled')")
+    int resume(long id, String status, int attempts);
 }
@@ -0,0 +1,37 @@
+package edu.ucsb.cs156.happiercows.repositories.jobs;
+
+import edu.ucsb.cs156.happiercows.entities.jobs.SchedulerLease;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+/**
+ * Each of the updates below only changes the lease when its WHERE clause
+ * still holds, so when several servers try at once exactly one of them
+ * gets a row count of 1.
+ */
+@Repository
+public interface SchedulerLeaseRepository extends CrudRepository<SchedulerLease, String> {
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO scheduler_leases (name, holder, fencing_token, expires_at) "
+            + "VALUES (:name, :holder, 1, :expiresAt)", nativeQuery = true)
+    int create(String name, String holder, Instant expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE scheduler_leases l SET l.expiresAt = :expiresAt "
+            + "WHERE l.name = :name AND l.holder = :holder AND l.fencingToken = :fencingToken AND l.expiresAt > :now")
+    int renew(String name, String holder, long fencingToken, Instant now, Instant expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE scheduler_leases l SET l.holder = :holder, l.fencingToken = l.fencingToken + 1, l.expiresAt = :expiresAt "
+            + "WHERE l.name = :name AND l.expiresAt <= :now")
+    int takeOver(String name, String holder, Instant now, Instant expiresAt);
+}
@@ -3,9 +3,9 @@ package edu.ucsb.cs156.happiercows.services;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
+import edu.ucsb.cs156.happiercows.repositories.CommonsAggregatesRepository;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
-import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 
 @Service("AverageCowHealthService")
 public class AverageCowHealthService {
@@ -14,35 +14,20 @@ public class AverageCowHealthService {
     CommonsRepository commonsRepository;
 
     @Autowired
-    UserCommonsRepository userCommonsRepository;
+    CommonsAggregatesRepository commonsAggregatesRepository;
 
     public int getTotalNumCows(Long commonsId) {
-        commonsRepository.findById(commonsId).orElseThrow(() -> new IllegalArgumentException(String.format("Commons with id %d not found", commonsId)));
-
-        Iterable<UserCommons> allUserCommons = userCommonsRepository.findByCommonsId(commonsId);
-
-        int totalNumCows = 0;
-
-        for (UserCommons userCommons : allUserCommons) {
-            totalNumCows += userCommons.getNumOfCows();
-        }
-
-        return totalNumCows;
+        return count(commonsId).getTotalCows();
     }
 
     public double getAverageCowHealth(Long commonsId) {
-        commonsRepository.findById(commonsId).orElseThrow(() -> new IllegalArgumentException(String.format("Commons with id %d not found", commonsId)));
-
-        Iterable<UserCommons> allUserCommons = userCommonsRepository.findByCommonsId(commonsId);
-
-        double totalHealth = 0;
+        CommonsAggregates aggregates = count(commonsId);
+        return aggregates.getTotalCowHealth() / aggregates.getTotalCows();
+    }
 
-        for (UserCommons userCommons : allUserCommons) {
-            totalHealth += userCommons.getCowHealth() * userCommons.getNumOfCows();
-        }
+    private CommonsAggregates count(Long commonsId) {
+        commonsRepository.findById(commonsId).orElseThrow(() -> new IllegalArgumentException(String.format("Commons with id %d not found", commonsId)));
 
-        return totalHealth / getTotalNumCows(commonsId);
+        return commonsAggregatesRepository.compute(commonsId).orElseGet(() -> CommonsAggregates.empty(commonsId));
     }
-
-    
 }
@@ -1,12 +1,32 @@
 package edu.ucsb.cs156.happiercows.services;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
 import edu.ucsb.cs156.happiercows.entities.CommonStats;
+import edu.ucsb.cs156.happiercows.repositories.CommonsAggregatesRepository;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.CommonStatsRepository;
-import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+
+/**
+ * Computes the number of cows and their average health for commons.  The
+ * stats of every commons are computed with one GROUP BY query over
+ * user_commons (see CommonsAggregatesRepository.computeAll) and inserted
+ * with one JDBC batch; the methods for a single commons count its players
+ * with the same query.
+ */
 
 @Service("CommonStatsService")
 public class CommonStatsService {
@@ -18,26 +38,17 @@ public class CommonStatsService {
     CommonsRepository commonsRepository;
 
     @Autowired
-    UserCommonsRepository userCommonsRepository;
+    CommonsAggregatesRepository commonsAggregatesRepository;
 
     @Autowired
-    private AverageCowHealthService averageCowHealthService;
+    JdbcTemplate jdbcTemplate;
 
     public CommonStats createCommonStats(Long commonsId) {
 
         commonsRepository.findById(commonsId)
             .orElseThrow(() -> new IllegalArgumentException(String.format("Commons with id %d not found", commonsId)));
-        
-        double avgHealth = averageCowHealthService.getAverageCowHealth(commonsId);
-        int totalNumCows = averageCowHealthService.getTotalNumCows(commonsId);
-
-        CommonStats stats = CommonStats.builder()
-                .commonsId(commonsId)
-                .numCows(totalNumCows)
-                .avgHealth(avgHealth)
-                .build();
 
-        return stats;
+        return statsFor(commonsId, commonsAggregatesRepository.compute(commonsId));
     }
 
     public CommonStats createAndSaveCommonStats(Long commonsId) {
@@ -48,4 +59,49 @@ public class CommonStatsService {
         return stats;
     }
 
+    /**
+     * The stats of each of allCommons, in the same order, counted with one query.
+     */
+    public List<CommonStats> createAllCommonStats(Iterable<Commons> allCommons) {
+        Map<Long, CommonsAggregates> counted = new HashMap<>();
+        commonsAggregatesRepository.computeAll().forEach(aggregates -> counted.put(aggregates.getCommonsId(), aggregates));
+
+        List<CommonStats> allStats = new ArrayList<>();
+        for (Commons commons : allCommons) {
+            allStats.add(statsFor(commons.getId(), Optional.ofNullable(counted.get(commons.getId()))));
+        }
+        return allStats;
+    }
+
+    /**
+     * Computes the stats of each of allCommons and inserts them with one
+     * batched statement.  The ids of the rows are not read back, so the
+     * stats returned have id 0.
+     */
+    @Transactional
+    public List<CommonStats> createAndSaveAllCommonStats(Iterable<Commons> allCommons) {
+        List<CommonStats> allStats = createAllCommonStats(allCommons);
+        Date now = new Date();
+        List<Object[]> rows = new ArrayList<>();
+        for (CommonStats stats : allStats) {
+            stats.setCreateDate(now);
+            rows.add(new Object[] { stats.getCommonsId(), stats.getNumCows(), stats.getAvgHealth(),
+                    new Timestamp(now.getTime()) });
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into commonstats (commons_id, num_cows, avg_health, create_date)"
+                    + " values (?, ?, ?, ?)", rows);
+        }
+        return allStats;
+    }
+
+    // same calculation as the loops this replaced: a commons without cows has avgHealth NaN
+    private static CommonStats statsFor(long commonsId, Optional<CommonsAggregates> counted) {
+        CommonsAggregates aggregates = counted.orElseGet(() -> CommonsAggregates.empty(commonsId));
+        return CommonStats.builder()
+                .commonsId(commonsId)
+                .numCows(aggregates.getTotalCows())
+                .avgHealth(aggregates.getTotalCowHealth() / aggregates.getTotalCows())
+                .build();
+    }
 }
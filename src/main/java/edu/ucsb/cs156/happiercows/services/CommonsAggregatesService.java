@@ -0,0 +1,146 @@
+package edu.ucsb.cs156.happiercows.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.repositories.CommonsAggregatesRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+
+/**
+ * Keeps each commons' totals (see CommonsAggregates) up to date.  Changes to
+ * one player are saved together with the change they make to the totals, in
+ * one transaction; jobs that change every player of a commons recompute its
+ * totals instead (see JobContext.recomputeAggregates).  A commons' totals are
+ * counted from user_commons and stored the first time they change; until
+ * then reads count them without storing them, so that reads never write.
+ * They are checked against a full recount by ReconcileCommonsAggregatesJob.
+ *
+ * The first count is stored in the caller's transaction, so that it needs no
+ * second connection from the pool while the caller (e.g. a job's commons,
+ * see CommonsRunner) holds one.  The commons' row is locked first, so that
+ * transactions storing the same commons' totals take turns, and the
+ * insert only happens if no earlier one has (see
+ * CommonsAggregatesRepository.insertCounted); concurrent first changes then
+ * neither fail on the primary key nor overwrite each other.
+ * The count includes the caller's own changes, so a change is only added
+ * to totals that were stored already.
+ *
+ * Every change publishes a CommonsChangedEvent, and a player joining or
+ * leaving also publishes a UserChangedEvent, since User.commons changes.
+ */
+
+@Service("CommonsAggregatesService")
+public class CommonsAggregatesService {
+
+    @Autowired
+    CommonsAggregatesRepository commonsAggregatesRepository;
+
+    @Autowired
+    UserCommonsRepository userCommonsRepository;
+
+    @Autowired
+    ApplicationEventPublisher applicationEventPublisher;
+
+    /**
+     * The commons' stored totals, or if they are not stored yet, a count that
+     * is not stored (see count).  CommonsPlusCache calls this while it loads
+     * an entry.
+     */
+    public CommonsAggregates get(long commonsId) {
+        return commonsAggregatesRepository.findById(commonsId).orElseGet(() -> count(commonsId));
+    }
+
+    /**
+     * Counts the commons' totals from user_commons, without storing them or
+     * publishing anything, for reads of commons whose totals are not stored yet.
+     */
+    public CommonsAggregates count(long commonsId) {
+        return commonsAggregatesRepository.compute(commonsId)
+                .orElseGet(() -> CommonsAggregates.empty(commonsId));
+    }
+
+    /**
+     * Counts the commons' totals from user_commons and stores them.
+     */
+    @Transactional
+    public CommonsAggregates recompute(long commonsId) {
+        if (!commonsAggregatesRepository.existsById(commonsId)) {
+            // so that saving the count below updates the row rather than racing to insert it
+            store(commonsId);
+        }
+        CommonsAggregates aggregates = count(commonsId);
+        commonsAggregatesRepository.save(aggregates);
+        changed(commonsId);
+        return aggregates;
+    }
+
+    @Transactional
+    public void addPlayer(UserCommons userCommons) {
+        userCommonsRepository.save(userCommons);
+        add(CommonsAggregates.of(userCommons));
+        applicationEventPublisher.publishEvent(new UserChangedEvent(userCommons.getUser().getEmail()));
+    }
+
+    /**
+     * Saves a player's changes.
+     *
+     * @param before the player's share of the totals before the changes, see CommonsAggregates.of
+     */
+    @Transactional
+    public void savePlayer(CommonsAggregates before, UserCommons userCommons) {
+        userCommonsRepository.save(userCommons);
+        add(CommonsAggregates.of(userCommons).minus(before));
+    }
+
+    @Transactional
+    public void removePlayer(UserCommons userCommons) {
+        userCommonsRepository.delete(userCommons);
+        add(CommonsAggregates.empty(userCommons.getCommons().getId()).minus(CommonsAggregates.of(userCommons)));
+        applicationEventPublisher.publishEvent(new UserChangedEvent(userCommons.getUser().getEmail()));
+    }
+
+    /**
+     * Adds a change to a commons' totals that has already been written to its
+     * players, e.g. by UserCommonsRepository.buyCows.
+     */
+    @Transactional
+    public void addChange(CommonsAggregates delta) {
+        add(delta);
+    }
+
+    public void deleteCommons(long commonsId) {
+        commonsAggregatesRepository.deleteByCommonsId(commonsId);
+        changed(commonsId);
+    }
+
+    /**
+     * Counts and stores the commons' totals in the caller's transaction, if
+     * no one has yet.  Returns whether this call stored them.
+     */
+    private boolean store(long commonsId) {
+        // held until the caller's transaction ends, so a concurrent store waits and then finds the totals
+        commonsAggregatesRepository.lockCommons(commonsId);
+        return commonsAggregatesRepository.insertCounted(commonsId) == 1;
+    }
+
+    private void add(CommonsAggregates delta) {
+        // totals stored now were counted with this transaction's change, so it is only added to earlier ones
+        if (addToStored(delta) == 0 && !store(delta.getCommonsId())) {
+            addToStored(delta);
+        }
+        changed(delta.getCommonsId());
+    }
+
+    private int addToStored(CommonsAggregates delta) {
+        return commonsAggregatesRepository.add(delta.getCommonsId(), delta.getTotalCows(),
+                delta.getTotalUsers(), delta.getTotalCowHealth(), delta.getTotalWealth());
+    }
+
+    private void changed(long commonsId) {
+        applicationEventPublisher.publishEvent(new CommonsChangedEvent(commonsId));
+    }
+}
@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.happiercows.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published when a commons, or the players in it, change, e.g. by a
+ * purchase or a tick of the game (see CommonsAggregatesService), so that
+ * copies of its CommonsPlus can be dropped.
+ */
+
+@Data
+@AllArgsConstructor
+public class CommonsChangedEvent {
+    private long commonsId;
+}
@@ -1,43 +1,78 @@
 package edu.ucsb.cs156.happiercows.services;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
 import edu.ucsb.cs156.happiercows.entities.CommonsPlus;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 
+/**
+ * Builds CommonsPlus from the totals stored for each commons (see
+ * CommonsAggregatesService).  Lists of commons are read together with their
+ * totals in one query.
+ */
+
 @Service("CommonsPlusBuilderService")
 public class CommonsPlusBuilderService {
     
+    @Autowired
+    CommonsAggregatesService commonsAggregatesService;
+
     @Autowired
     CommonsRepository commonsRepository;
 
     public CommonsPlus toCommonsPlus(Commons c) {
-        Optional<Integer> numCows = commonsRepository.getNumCows(c.getId());
-        Optional<Integer> numUsers = commonsRepository.getNumUsers(c.getId());
+        return toCommonsPlus(c, commonsAggregatesService.get(c.getId()));
+    }
 
-        return CommonsPlus.builder()
-                .commons(c)
-                .totalCows(numCows.orElse(0))
-                .totalUsers(numUsers.orElse(0))
-                .build();
+    /**
+     * Every commons, ordered by id.
+     */
+    public List<CommonsPlus> getAllCommonsPlus() {
+        return toCommonsPlus(commonsRepository.findAllWithAggregates());
     }
 
+    /**
+     * The commons with the given ids, ordered by id; ids of commons that do
+     * not exist are left out.
+     */
+    public List<CommonsPlus> getCommonsPlus(Collection<Long> commonsIds) {
+        if (commonsIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return toCommonsPlus(commonsRepository.findAllWithAggregates(commonsIds));
+    }
 
     public Iterable<CommonsPlus> convertToCommonsPlus(Iterable<Commons> iteOfCommons) {
-        List<Commons> commonsList = new ArrayList<Commons>();
-        iteOfCommons.forEach(commonsList::add);
+        List<Long> commonsIds = new ArrayList<Long>();
+        iteOfCommons.forEach(c -> commonsIds.add(c.getId()));
 
-        List<CommonsPlus> commonsPlusList = commonsList.stream().map((c) -> toCommonsPlus(c)).collect(Collectors.toList());
+        return getCommonsPlus(commonsIds);
+    }
 
-        ArrayList<CommonsPlus> commonsPlusArrayList = new ArrayList<CommonsPlus>(commonsPlusList);
+    private List<CommonsPlus> toCommonsPlus(List<Object[]> commonsWithAggregates) {
+        List<CommonsPlus> commonsPlusList = new ArrayList<>();
+        for (Object[] row : commonsWithAggregates) {
+            Commons c = (Commons) row[0];
+            // totals not stored yet are counted, but a read does not store them
+            CommonsAggregates aggregates = row[1] != null ? (CommonsAggregates) row[1]
+                    : commonsAggregatesService.count(c.getId());
+            commonsPlusList.add(toCommonsPlus(c, aggregates));
+        }
+        return commonsPlusList;
+    }
 
-        return commonsPlusArrayList;
+    private static CommonsPlus toCommonsPlus(Commons c, CommonsAggregates aggregates) {
+        return CommonsPlus.builder()
+                .commons(c)
+                .totalCows(aggregates.getTotalCows())
+                .totalUsers(aggregates.getTotalUsers())
+                .build();
     }
 }
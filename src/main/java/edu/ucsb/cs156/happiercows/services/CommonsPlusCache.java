@@ -0,0 +1,100 @@
+package edu.ucsb.cs156.happiercows.services;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import edu.ucsb.cs156.happiercows.entities.CommonsPlus;
+import edu.ucsb.cs156.happiercows.models.CommonsPlusCacheStats;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+
+/**
+ * A cache of the CommonsPlus of each commons, for /api/commons/plus, which
+ * every player's page polls.  It holds at most app.commons.plusCache.maximumSize
+ * commons, each for at most app.commons.plusCache.expireAfterWriteMs.  An
+ * entry is dropped once the transaction that changed its commons commits
+ * (see CommonsChangedEvent); the expiry bounds how stale an entry can get
+ * from changes made by another server.
+ */
+
+@Service
+public class CommonsPlusCache {
+
+    @Autowired
+    CommonsRepository commonsRepository;
+
+    @Autowired
+    CommonsPlusBuilderService commonsPlusBuilderService;
+
+    @Value("${app.commons.plusCache.maximumSize}")
+    private long maximumSize;
+
+    @Value("${app.commons.plusCache.expireAfterWriteMs}")
+    private long expireAfterWriteMs;
+
+    private Cache<Long, CommonsPlus> cache;
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    void buildCache() {
+        buildCache(Ticker.systemTicker());
+    }
+
+    // exposed for testing, with a ticker that the test moves forward
+    void buildCache(Ticker ticker) {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteMs, TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        invalidations.set(0);
+    }
+
+    /**
+     * The commons' CommonsPlus, or empty if there is no such commons
+     * (which is not cached).
+     */
+    public Optional<CommonsPlus> get(long commonsId) {
+        return Optional.ofNullable(cache.get(commonsId, id -> commonsRepository.findById(id)
+                .map(commonsPlusBuilderService::toCommonsPlus)
+                .orElse(null)));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void commonsChanged(CommonsChangedEvent event) {
+        if (cache.asMap().remove(event.getCommonsId()) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CommonsPlusCacheStats getStats() {
+        // evictions are counted when the cache does its maintenance
+        cache.cleanUp();
+        CacheStats stats = cache.stats();
+        return CommonsPlusCacheStats.builder()
+                .size(cache.estimatedSize())
+                .hits(stats.hitCount())
+                .misses(stats.missCount())
+                .evictions(stats.evictionCount())
+                .invalidations(invalidations.get())
+                .build();
+    }
+}
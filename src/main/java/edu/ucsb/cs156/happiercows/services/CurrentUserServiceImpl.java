@@ -30,6 +30,9 @@ public class CurrentUserServiceImpl extends CurrentUserService {
   @Autowired
   private UserRepository userRepository;
 
+  @Autowired
+  private UserCache userCache;
+
   @Autowired
   GrantedAuthoritiesService grantedAuthoritiesService;
 
@@ -61,12 +64,13 @@ public class CurrentUserServiceImpl extends CurrentUserService {
     java.util.Map<java.lang.String,java.lang.Object> attrs = oAuthUser.getAttributes();
     log.info("attrs={}",attrs);
 
-    Optional<User> ou = userRepository.findByEmail(email);
+    Optional<User> ou = userCache.findByEmail(email);
     if (ou.isPresent()) {
       User u = ou.get();
       if (adminEmails.contains(email) && !u.isAdmin()) {
         u.setAdmin(true);
         userRepository.save(u);
+        userCache.invalidate(email);
       }
       return u;
     }
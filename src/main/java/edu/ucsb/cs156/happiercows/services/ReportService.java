@@ -6,12 +6,14 @@ import org.springframework.stereotype.Service;
 import edu.ucsb.cs156.happiercows.entities.Commons;
 import edu.ucsb.cs156.happiercows.entities.Report;
 import edu.ucsb.cs156.happiercows.entities.ReportLine;
-import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.models.UserCommonsSummary;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.ReportLineRepository;
 import edu.ucsb.cs156.happiercows.repositories.ReportRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 
+import java.util.List;
+
 @Service("ReportService")
 public class ReportService {
 
@@ -30,10 +32,10 @@ public class ReportService {
     public Report createReport(Long commonsId) {
         Report report = createAndSaveReportHeader(commonsId);
         
-        Iterable<UserCommons> allUserCommons = userCommonsRepository.findByCommonsId(commonsId);
+        List<UserCommonsSummary> allUserCommons = userCommonsRepository.findSummariesByCommonsId(commonsId);
 
 
-        for (UserCommons userCommons : allUserCommons) {
+        for (UserCommonsSummary userCommons : allUserCommons) {
                createAndSaveReportLine(report, userCommons);
         }
 
@@ -66,10 +68,10 @@ public class ReportService {
         return report;
     }
 
-    public ReportLine createAndSaveReportLine(Report report, UserCommons userCommons) {
+    public ReportLine createAndSaveReportLine(Report report, UserCommonsSummary userCommons) {
         ReportLine reportLine = ReportLine.builder()
                 .reportId(report.getId())
-                .userId(userCommons.getUser().getId())
+                .userId(userCommons.getUserId())
                 .username(userCommons.getUsername())
                 .totalWealth(userCommons.getTotalWealth())
                 .numOfCows(userCommons.getNumOfCows())
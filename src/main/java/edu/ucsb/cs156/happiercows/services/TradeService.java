@@ -0,0 +1,174 @@
+package edu.ucsb.cs156.happiercows.services;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
+import edu.ucsb.cs156.happiercows.entities.TradeOrderBatch;
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.errors.EntityNotFoundException;
+import edu.ucsb.cs156.happiercows.errors.NoCowsException;
+import edu.ucsb.cs156.happiercows.errors.NotEnoughMoneyException;
+import edu.ucsb.cs156.happiercows.models.TradeOrder;
+import edu.ucsb.cs156.happiercows.models.TradeOrderResult;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.TradeOrderBatchRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+
+/**
+ * Buys and sells cows for players.  Each trade is one guarded UPDATE of the
+ * player's row (UserCommonsRepository.buyCows and sellCows) whose row count
+ * decides whether it succeeded, so concurrent trades by the same player, e.g.
+ * from two tabs, see each other's changes without locking the row between
+ * a read and a write.  The player is read once afterwards, for the response
+ * and for the change to the commons' totals.  A trade of fewer than one cow
+ * is refused with an IllegalArgumentException before anything is run.
+ *
+ * A batch of orders (placeOrders) runs in one transaction, so a request to
+ * /api/usercommons/orders replaces one request per trade.
+ */
+
+@Service("TradeService")
+public class TradeService {
+
+    @Autowired
+    UserCommonsRepository userCommonsRepository;
+
+    @Autowired
+    CommonsRepository commonsRepository;
+
+    @Autowired
+    CommonsAggregatesService commonsAggregatesService;
+
+    @Autowired
+    TradeOrderBatchRepository tradeOrderBatchRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Transactional
+    public UserCommons buy(long commonsId, long userId, int numCows) throws NotEnoughMoneyException {
+        checkNumCows(numCows);
+        if (userCommonsRepository.buyCows(commonsId, userId, numCows) == 0) {
+            player(commonsId, userId);
+            throw new NotEnoughMoneyException("You need more money!");
+        }
+        UserCommons userCommons = player(commonsId, userId);
+        double cost = userCommons.getCommons().getCowPrice() * numCows;
+        commonsAggregatesService.addChange(new CommonsAggregates(commonsId, numCows, 0,
+                userCommons.getCowHealth() * numCows, -cost));
+        return userCommons;
+    }
+
+    @Transactional
+    public UserCommons sell(long commonsId, long userId, int numCows) throws NoCowsException {
+        checkNumCows(numCows);
+        if (userCommonsRepository.sellCows(commonsId, userId, numCows) == 0) {
+            player(commonsId, userId);
+            throw new NoCowsException("You do not have enough cows to sell!");
+        }
+        UserCommons userCommons = player(commonsId, userId);
+        double cowValue = userCommons.getCommons().getCowPrice() * userCommons.getCowHealth() / 100;
+        commonsAggregatesService.addChange(new CommonsAggregates(commonsId, -numCows, 0,
+                -userCommons.getCowHealth() * numCows, cowValue * numCows));
+        return userCommons;
+    }
+
+    /**
+     * Places a player's orders and returns their results, as a JSON list in
+     * the order of the orders.  A rejected order changes nothing and the
+     * others are still placed.  A batch with an order that has no commons,
+     * no type or fewer than one cow is refused, with an
+     * IllegalArgumentException, before any order is placed or the batch is
+     * stored.
+     *
+     * With an idempotency key, the batch is stored before any order is
+     * placed, and a batch with the same key is returned as it was instead of
+     * placing the orders again.  A concurrent request with the same key fails
+     * to store its batch, with a DataIntegrityViolationException, and places
+     * nothing; see findPlacedOrders.
+     *
+     * Orders run in order of their commons, keeping the order of those for the
+     * same commons, so that concurrent batches lock players and totals in the
+     * same order and cannot deadlock.
+     */
+    @Transactional
+    public TradeOrderBatch placeOrders(long userId, String idempotencyKey, List<TradeOrder> orders)
+            throws JsonProcessingException {
+        for (int i = 0; i < orders.size(); i++) {
+            checkOrder(i, orders.get(i));
+        }
+        TradeOrderBatch batch = TradeOrderBatch.builder()
+                .userId(userId)
+                .idempotencyKey(idempotencyKey)
+                .placedAt(LocalDateTime.now())
+                .build();
+        if (idempotencyKey != null) {
+            Optional<TradeOrderBatch> placed = findPlacedOrders(userId, idempotencyKey);
+            if (placed.isPresent()) {
+                return placed.get();
+            }
+            tradeOrderBatchRepository.save(batch);
+        }
+
+        TradeOrderResult[] results = new TradeOrderResult[orders.size()];
+        IntStream.range(0, orders.size()).boxed()
+                .sorted(Comparator.comparingLong(i -> orders.get(i).getCommonsId()))
+                .forEach(i -> results[i] = place(userId, orders.get(i)));
+        batch.setResults(objectMapper.writeValueAsString(results));
+        if (idempotencyKey != null) {
+            // buyCows and sellCows clear the persistence context, so the batch is no longer managed
+            tradeOrderBatchRepository.save(batch);
+        }
+        return batch;
+    }
+
+    public Optional<TradeOrderBatch> findPlacedOrders(long userId, String idempotencyKey) {
+        return tradeOrderBatchRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey);
+    }
+
+    private TradeOrderResult place(long userId, TradeOrder order) {
+        try {
+            UserCommons userCommons = order.getType() == TradeOrder.Type.BUY
+                    ? buy(order.getCommonsId(), userId, order.getNumCows())
+                    : sell(order.getCommonsId(), userId, order.getNumCows());
+            return TradeOrderResult.filled(order, userCommons);
+        } catch (NotEnoughMoneyException | NoCowsException | EntityNotFoundException e) {
+            return TradeOrderResult.rejected(order, e);
+        }
+    }
+
+    private static void checkOrder(int index, TradeOrder order) {
+        if (order == null || order.getCommonsId() == null || order.getType() == null || order.getNumCows() < 1) {
+            throw new IllegalArgumentException(
+                    "Every order needs a commonsId, a type of BUY or SELL, and a numCows of at least 1; order %d is %s"
+                            .formatted(index, order));
+        }
+    }
+
+    // buyCows and sellCows also change nothing below 1, but would report it as too little money or too few cows
+    private static void checkNumCows(int numCows) {
+        if (numCows < 1) {
+            throw new IllegalArgumentException("numCows must be at least 1, was " + numCows);
+        }
+    }
+
+    private UserCommons player(long commonsId, long userId) {
+        return userCommonsRepository.findByCommonsIdAndUserId(commonsId, userId).orElseThrow(() -> {
+            // a trade in a commons that does not exist is reported as such, rather than as a missing player
+            commonsRepository.findById(commonsId).orElseThrow(() -> new EntityNotFoundException(Commons.class, commonsId));
+            return new EntityNotFoundException(UserCommons.class, "commonsId", commonsId, "userId", userId);
+        });
+    }
+}
@@ -0,0 +1,96 @@
+package edu.ucsb.cs156.happiercows.services;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import edu.ucsb.cs156.happiercows.entities.User;
+import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+
+/**
+ * Users by email, for RoleUserInterceptor and CurrentUserServiceImpl, which
+ * look up the user behind a request several times per request.  The user
+ * is kept for the rest of the request, and in a cache of at most
+ * app.users.cache.maximumSize users, each for at most
+ * app.users.cache.expireAfterWriteMs.  An entry is dropped once the
+ * transaction that changed its user commits (see UserChangedEvent).
+ *
+ * The cached users are shared by every request thread, so each request is
+ * given a copy of its own, which it may change without changing the cache.
+ */
+
+@Service
+public class UserCache {
+    static final String REQUEST_ATTRIBUTE = UserCache.class.getName();
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Value("${app.users.cache.maximumSize}")
+    private long maximumSize;
+
+    @Value("${app.users.cache.expireAfterWriteMs}")
+    private long expireAfterWriteMs;
+
+    private Cache<String, User> cache;
+
+    @PostConstruct
+    void buildCache() {
+        buildCache(Ticker.systemTicker());
+    }
+
+    // exposed for testing, with a ticker that the test moves forward
+    void buildCache(Ticker ticker) {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteMs, TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * The user with this email, or empty if there is none yet (which is not cached).
+     */
+    public Optional<User> findByEmail(String email) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null && request.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof User user
+                && email.equals(user.getEmail())) {
+            return Optional.of(user);
+        }
+        Optional<User> user = Optional.ofNullable(cache.get(email, key -> userRepository.findByEmail(key).orElse(null)))
+                .map(cached -> cached.toBuilder().build());
+        if (request != null) {
+            user.ifPresent(found -> request.setAttribute(REQUEST_ATTRIBUTE, found, RequestAttributes.SCOPE_REQUEST));
+        }
+        return user;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void userChanged(UserChangedEvent event) {
+        invalidate(event.getEmail());
+    }
+
+    public void invalidate(String email) {
+        cache.invalidate(email);
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            request.removeAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
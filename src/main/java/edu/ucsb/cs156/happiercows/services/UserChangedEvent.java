@@ -0,0 +1,15 @@
+package edu.ucsb.cs156.happiercows.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published when a user changes, e.g. is suspended or joins a commons, so
+ * that cached copies of the user can be dropped (see UserCache).
+ */
+
+@Data
+@AllArgsConstructor
+public class UserChangedEvent {
+    private String email;
+}
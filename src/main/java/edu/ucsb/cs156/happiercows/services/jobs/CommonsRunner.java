@@ -0,0 +1,154 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.Getter;
+
+/**
+ * Runs the per-commons part of a job for every commons.
+ *
+ * Each commons is handled in its own transaction, so that everything a job
+ * writes for it (and the checkpoint that records it) is kept or lost
+ * together.  The lines each commons logs are held back and added to the
+ * job's log once its transaction has ended, so that a commons that is
+ * rolled back still leaves its lines in the log.
+ *
+ * With app.jobs.commonsParallelism set to 1, the commons are handled in turn
+ * on the job's own thread, and a failed commons is rolled back and ends the job.
+ *
+ * With a higher setting, the commons are handled on a shared pool of that
+ * many threads.  A commons that fails is rolled back and logged, and the
+ * others carry on; the job fails once they have all finished.  The lines of
+ * each commons are added in the order the commons were given, so they do
+ * not interleave.
+ *
+ * Every thread holds a database connection while it works, so the setting
+ * should be below the size of the connection pool.
+ *
+ * Either way, commons not yet started when the job is cancelled or times out
+ * are skipped (see JobContext.checkCancelled).
+ */
+
+@Service
+public class CommonsRunner {
+  @Getter
+  private final int parallelism;
+  private final TransactionTemplate transactionTemplate;
+  private final ExecutorService executor;
+
+  @Autowired
+  public CommonsRunner(@Value("${app.jobs.commonsParallelism}") int parallelism,
+      PlatformTransactionManager transactionManager) {
+    this.parallelism = Math.max(1, parallelism);
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor = this.parallelism == 1 ? null
+        : Executors.newFixedThreadPool(this.parallelism, runnable -> {
+          Thread thread = new Thread(runnable, "HappierCows-commons-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  public <T> void forEach(JobContext ctx, Iterable<T> allCommons, CommonsTask<T> task) throws Exception {
+    if (executor == null) {
+      forEachInTurn(ctx, allCommons, task);
+      return;
+    }
+
+    List<JobContext> groups = new ArrayList<>();
+    List<Future<?>> futures = new ArrayList<>();
+    for (T commons : allCommons) {
+      JobContext group = ctx.newGroup();
+      groups.add(group);
+      futures.add(executor.submit(() -> runInTransaction(commons, group, task)));
+    }
+
+    int failures = 0;
+    JobCancelledException cancelled = null;
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        futures.get(i).get();
+      } catch (InterruptedException e) {
+        futures.forEach(future -> future.cancel(true));
+        throw e;
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof JobCancelledException skipped) {
+          cancelled = skipped;
+        } else {
+          failures++;
+          Throwable cause = e.getCause() instanceof CommonsTaskException ? e.getCause().getCause() : e.getCause();
+          groups.get(i).log("Error: " + cause.getMessage());
+        }
+      }
+      ctx.logGroup(groups.get(i));
+      ctx.setProgress(i + 1, futures.size());
+    }
+
+    // the commons that finished before the cancel are kept
+    if (cancelled != null) {
+      throw cancelled;
+    }
+    if (failures > 0) {
+      throw new RuntimeException("%d of %d commons failed".formatted(failures, futures.size()));
+    }
+  }
+
+  private <T> void forEachInTurn(JobContext ctx, Iterable<T> allCommons, CommonsTask<T> task) throws Exception {
+    long total = allCommons instanceof Collection<?> collection ? collection.size() : 0;
+    long done = 0;
+    for (T commons : allCommons) {
+      JobContext group = ctx.newGroup();
+      try {
+        runInTransaction(commons, group, task);
+      } catch (CommonsTaskException e) {
+        throw (Exception) e.getCause();
+      } finally {
+        ctx.logGroup(group);
+      }
+      ctx.setProgress(++done, total);
+    }
+  }
+
+  private <T> void runInTransaction(T commons, JobContext group, CommonsTask<T> task) {
+    transactionTemplate.executeWithoutResult(status -> {
+      // commons that have not started when the job is cancelled are skipped
+      group.checkCancelled();
+      try {
+        task.accept(commons, group);
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new CommonsTaskException(e);
+      }
+    });
+  }
+
+  private static class CommonsTaskException extends RuntimeException {
+    CommonsTaskException(Exception cause) {
+      super(cause);
+    }
+  }
+}
@@ -0,0 +1,10 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+/**
+ * The part of a job that handles one commons.  It should only log to the
+ * JobContext it is given, which may not be the job's own context.
+ */
+@FunctionalInterface
+public interface CommonsTask<T> {
+  void accept(T commons, JobContext ctx) throws Exception;
+}
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A job launched by the server holding the scheduler lease with the given
+ * fencing token.  Run in this server, it checks the token before it starts;
+ * put in the durable queue, the token is checked in the transaction that
+ * queues it (see JobService).
+ */
+@AllArgsConstructor
+@Getter
+public class FencedJob implements JobContextConsumer {
+  private final SchedulerLeaseService schedulerLeaseService;
+  private final long fencingToken;
+  private final JobContextConsumer job;
+
+  @Override
+  public void accept(JobContext ctx) throws Exception {
+    schedulerLeaseService.checkFencingToken(fencingToken);
+    job.accept(ctx);
+  }
+}
@@ -0,0 +1,12 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+/**
+ * Thrown by JobContext.checkCancelled when an admin has cancelled the job or
+ * it has run past the timeout for its type.  JobService then ends the job
+ * with status "cancelled".
+ */
+public class JobCancelledException extends RuntimeException {
+  public JobCancelledException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,13 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+/**
+ * Thrown by JobContext.checkCancelled when the job was claimed from the
+ * durable queue and has since been queued again or failed, because this
+ * server's heartbeat stopped for too long.  JobService then stops the job
+ * without recording how it ended, which is left to the new attempt.
+ */
+public class JobClaimLostException extends JobCancelledException {
+  public JobClaimLostException(String message) {
+    super(message);
+  }
+}
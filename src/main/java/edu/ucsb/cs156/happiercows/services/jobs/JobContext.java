@@ -1,22 +1,262 @@
 package edu.ucsb.cs156.happiercows.services.jobs;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
 import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobCheckpoint;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobCheckpointKey;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobLogLine;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobLogLineKey;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobCheckpointRepository;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobLogLineRepository;
 import edu.ucsb.cs156.happiercows.repositories.jobs.JobsRepository;
-import lombok.AllArgsConstructor;
+import edu.ucsb.cs156.happiercows.services.CommonsAggregatesService;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
-@AllArgsConstructor
+/**
+ * Passed to every job so that it can write to its log.
+ *
+ * Log lines are written to the job_log_lines table in batches, once
+ * flushLines lines are waiting or flushIntervalMillis has passed since the
+ * last write; only the lines not written yet are kept in memory, and the
+ * full log is read back from the table (see JobService.attachLogs).
+ * JobService calls flush() when the job finishes.  Each line is also added
+ * to the job's JobLogBuffer, if it has one, so that clients streaming the
+ * log see it straight away.  A context without the table keeps its lines
+ * on its Job instead.
+ *
+ * Jobs cannot be stopped from outside; instead they call checkCancelled at
+ * points where it is safe to stop (forEachCommons does so before each
+ * commons), which throws once the job has been cancelled or has run past its
+ * timeout.  A job claimed from the durable queue also stops there once its
+ * claim is lost (see JobQueueService).
+ *
+ * Jobs whose work must not be done twice record a checkpoint for each
+ * commons as they go, so that a resumed job carries on where it stopped.
+ * Jobs that change the players of a commons call recomputeAggregates once
+ * they are done with it.
+ */
+
 @Slf4j
 public class JobContext {
+  public static final int DEFAULT_FLUSH_LINES = 100;
+  public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
   private JobsRepository jobsRepository;
+  private JobLogLineRepository jobLogLineRepository;
+  private JobLogBuffer logBuffer;
+  @Getter
   private Job job;
+  private int flushLines;
+  private long flushIntervalMillis;
+  @Setter
+  private CommonsRunner commonsRunner;
+  @Setter
+  private JobCheckpointRepository jobCheckpointRepository;
+  @Setter
+  private CommonsAggregatesService commonsAggregatesService;
+
+  // shared with the job's groups, so that they see a cancel too
+  private AtomicBoolean cancelled = new AtomicBoolean();
+  private Duration timeout;
+  private long deadlineMillis = Long.MAX_VALUE;
+  // whether the job is still running under the claim it was started with
+  private BooleanSupplier holdsClaim = () -> true;
+
+  private final List<JobLogLine> pendingLines = new ArrayList<>();
+  // the lines of a group, until they are added to its job's log
+  private List<String> heldLines;
+  // a job that is run again carries on after the lines of its earlier attempts
+  @Setter
+  private long nextSeq = 0;
+  private long lastFlushMillis = System.currentTimeMillis();
+
+  public JobContext(JobsRepository jobsRepository, Job job) {
+    this(jobsRepository, null, null, job, DEFAULT_FLUSH_LINES, DEFAULT_FLUSH_INTERVAL_MILLIS);
+  }
+
+  public JobContext(JobsRepository jobsRepository, JobLogLineRepository jobLogLineRepository, JobLogBuffer logBuffer,
+      Job job, int flushLines, long flushIntervalMillis) {
+    this.jobsRepository = jobsRepository;
+    this.jobLogLineRepository = jobLogLineRepository;
+    this.logBuffer = logBuffer;
+    this.job = job;
+    this.flushLines = flushLines;
+    this.flushIntervalMillis = flushIntervalMillis;
+    String claimToken = job.getClaimToken();
+    if (jobsRepository != null && claimToken != null) {
+      holdsClaim = () -> jobsRepository.holdsClaim(job.getId(), claimToken);
+    }
+  }
 
   public void log(String message) {
     log.info("Job %s: %s".formatted(job.getId(), message));
-    String previousLog = job.getLog() == null ? "" : (job.getLog() + "\n");
-    job.setLog(previousLog + message);
+    append(message);
+  }
+
+  private void append(String message) {
+    if (heldLines != null) {
+      heldLines.add(message);
+      return;
+    }
+    if (jobLogLineRepository == null) {
+      job.appendLog(message);
+    }
+    long seq = nextSeq++;
+    if (logBuffer != null) {
+      logBuffer.append(seq, message);
+    }
+    if (jobLogLineRepository == null) {
+      return;
+    }
+    pendingLines.add(JobLogLine.builder()
+        .id(new JobLogLineKey(job.getId(), seq))
+        .message(message)
+        .build());
+    if (pendingLines.size() >= flushLines
+        || System.currentTimeMillis() - lastFlushMillis >= flushIntervalMillis) {
+      flush();
+    }
+  }
+
+  /**
+   * Runs task for each commons.  If the job was given a CommonsRunner, each
+   * commons is handled in its own transaction, in parallel if the runner
+   * allows it; otherwise they are handled one after another.
+   */
+  public <T> void forEachCommons(Iterable<T> allCommons, CommonsTask<T> task) throws Exception {
+    if (commonsRunner == null) {
+      forEachCommonsInTurn(allCommons, task);
+      return;
+    }
+    commonsRunner.forEach(this, allCommons, task);
+  }
+
+  private <T> void forEachCommonsInTurn(Iterable<T> allCommons, CommonsTask<T> task) throws Exception {
+    long total = allCommons instanceof Collection<?> collection ? collection.size() : 0;
+    long done = 0;
+    for (T commons : allCommons) {
+      checkCancelled();
+      task.accept(commons, this);
+      setProgress(++done, total);
+    }
+  }
+
+  /**
+   * Records that done of total steps of the job are finished.  The percent
+   * is only written to the jobs table when it changes.
+   */
+  public void setProgress(long done, long total) {
+    if (total <= 0) {
+      return;
+    }
+    int percent = (int) Math.min(100, done * 100 / total);
+    if (job.getProgress() != null && job.getProgress() == percent) {
+      return;
+    }
+    job.setProgress(percent);
     if (jobsRepository != null) {
-      jobsRepository.save(job);
+      jobsRepository.updateProgress(job.getId(), percent);
+    }
+  }
+
+  public void cancel() {
+    cancelled.set(true);
+  }
+
+  /**
+   * Gives the job until timeout from now to finish.
+   */
+  public void setTimeout(Duration timeout) {
+    this.timeout = timeout;
+    this.deadlineMillis = System.currentTimeMillis() + timeout.toMillis();
+  }
+
+  /**
+   * Throws JobCancelledException if the job has been cancelled or has run
+   * past its timeout, and JobClaimLostException if another attempt has
+   * taken it over.
+   */
+  public void checkCancelled() {
+    if (cancelled.get()) {
+      throw new JobCancelledException("Job cancelled");
+    }
+    if (System.currentTimeMillis() >= deadlineMillis) {
+      throw new JobCancelledException("Job timed out after " + timeout);
+    }
+    if (!holdsClaim.getAsBoolean()) {
+      throw new JobClaimLostException("Job %d is no longer running under this server's claim".formatted(job.getId()));
+    }
+  }
+
+  /**
+   * The checkpoint this job recorded for the commons in an earlier attempt,
+   * or a new one if there is none.
+   */
+  public JobCheckpoint checkpoint(long commonsId) {
+    if (jobCheckpointRepository == null) {
+      return JobCheckpoint.start(job.getId(), commonsId);
+    }
+    return jobCheckpointRepository.findById(new JobCheckpointKey(job.getId(), commonsId))
+        .orElseGet(() -> JobCheckpoint.start(job.getId(), commonsId));
+  }
+
+  /**
+   * Writes the checkpoint, in the caller's transaction if there is one, so
+   * that it is only kept if the work it records is.
+   */
+  public void saveCheckpoint(JobCheckpoint checkpoint) {
+    if (jobCheckpointRepository != null) {
+      jobCheckpointRepository.save(checkpoint);
+    }
+  }
+
+  /**
+   * Counts the commons' totals again after the job has changed its players
+   * (see CommonsAggregatesService), in the caller's transaction if there is one.
+   */
+  public void recomputeAggregates(long commonsId) {
+    if (commonsAggregatesService != null) {
+      commonsAggregatesService.recompute(commonsId);
+    }
+  }
+
+  /**
+   * A context that holds its lines back until they are added to this
+   * job's log with logGroup.
+   */
+  public JobContext newGroup() {
+    JobContext group = new JobContext(null, Job.builder().id(job.getId()).status(job.getStatus()).build());
+    group.heldLines = new ArrayList<>();
+    group.cancelled = cancelled;
+    group.timeout = timeout;
+    group.deadlineMillis = deadlineMillis;
+    group.holdsClaim = holdsClaim;
+    group.jobCheckpointRepository = jobCheckpointRepository;
+    group.commonsAggregatesService = commonsAggregatesService;
+    return group;
+  }
+
+  public void logGroup(JobContext group) {
+    group.heldLines.forEach(this::append);
+    group.heldLines.clear();
+  }
+
+  /**
+   * Writes any log lines that are still waiting in the buffer.
+   */
+  public void flush() {
+    if (jobLogLineRepository != null && !pendingLines.isEmpty()) {
+      jobLogLineRepository.saveAll(List.copyOf(pendingLines));
+      pendingLines.clear();
     }
+    lastFlushMillis = System.currentTimeMillis();
   }
 }
@@ -0,0 +1,106 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.security.task.DelegatingSecurityContextAsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.happiercows.models.JobExecutorStats;
+
+/**
+ * Chooses the executor that JobService runs jobs on, and counts the jobs
+ * waiting for it, running on it and done.
+ *
+ * In the "pool" mode (app.jobs.executor.mode) jobs share the fixed size
+ * threadPoolTaskExecutor, so a slow job holds up every job launched after
+ * it.  In the "threadPerJob" mode each job gets a thread of its own, and
+ * the only limit is app.jobs.executor.permitsPerType: how many jobs of the
+ * same type may run at once.  Further jobs of that type wait for a permit,
+ * in the order they were launched.
+ */
+
+@Service
+public class JobExecutorService {
+  public static final String POOL = "pool";
+  public static final String THREAD_PER_JOB = "threadPerJob";
+
+  @Value("${app.jobs.executor.mode}")
+  private String mode;
+
+  @Value("${app.jobs.executor.permitsPerType}")
+  private int permitsPerType;
+
+  private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+  private final AtomicLong queued = new AtomicLong();
+  private final AtomicLong active = new AtomicLong();
+  private final AtomicLong completed = new AtomicLong();
+
+  @PostConstruct
+  void checkMode() {
+    if (!POOL.equals(mode) && !THREAD_PER_JOB.equals(mode)) {
+      throw new IllegalStateException("Unknown app.jobs.executor.mode %s, expected %s or %s"
+          .formatted(mode, POOL, THREAD_PER_JOB));
+    }
+  }
+
+  /**
+   * The executor for @Async methods in the given mode (see
+   * HappierCowsApplication.taskExecutor).  Either way, the job's thread sees
+   * the security context of the request that launched it.
+   */
+  public static DelegatingSecurityContextAsyncTaskExecutor taskExecutor(String mode, AsyncTaskExecutor pool) {
+    if (THREAD_PER_JOB.equals(mode)) {
+      return new DelegatingSecurityContextAsyncTaskExecutor(new SimpleAsyncTaskExecutor("HappierCows-job-"));
+    }
+    return new DelegatingSecurityContextAsyncTaskExecutor(pool);
+  }
+
+  /**
+   * Counts a job that has been handed to the executor but not yet started.
+   */
+  public void jobQueued() {
+    queued.incrementAndGet();
+  }
+
+  /**
+   * Runs a job counted by jobQueued on the calling thread, once a permit
+   * for its type is free.
+   */
+  public void run(String jobType, Runnable job) {
+    Semaphore semaphore = THREAD_PER_JOB.equals(mode)
+        ? permits.computeIfAbsent(jobType, type -> new Semaphore(permitsPerType, true))
+        : null;
+    if (semaphore != null) {
+      semaphore.acquireUninterruptibly();
+    }
+    queued.decrementAndGet();
+    active.incrementAndGet();
+    try {
+      job.run();
+    } finally {
+      active.decrementAndGet();
+      completed.incrementAndGet();
+      if (semaphore != null) {
+        semaphore.release();
+      }
+    }
+  }
+
+  public JobExecutorStats getStats() {
+    return JobExecutorStats.builder()
+        .mode(mode)
+        .permitsPerType(permitsPerType)
+        .queued(queued.get())
+        .active(active.get())
+        .completed(completed.get())
+        .build();
+  }
+}
@@ -0,0 +1,248 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import edu.ucsb.cs156.happiercows.models.JobLogEntry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds the most recent lines of a running job's log and pushes each new line
+ * and status change to the clients streaming that log.
+ *
+ * Only the last capacity lines are kept; older lines have already been
+ * written to job_log_lines and are read from there.
+ *
+ * Events are not sent on the job's thread, nor while the buffer is locked:
+ * each client has a queue of events, which is sent on the executor the
+ * buffer is given, one client event at a time and in order.  A client that
+ * falls more than capacity events behind is dropped.
+ */
+
+@Slf4j
+public class JobLogBuffer {
+  // queued after a client's last event, to end its stream
+  private static final SseEmitter.SseEventBuilder COMPLETE = SseEmitter.event();
+
+  @Getter
+  private final long jobId;
+  private final String[] lines;
+  private long nextSeq = 0;
+  private String status;
+  private boolean finished = false;
+  private final List<Subscriber> subscribers = new ArrayList<>();
+  private final Executor executor;
+
+  private final long startSeq;
+
+  public JobLogBuffer(long jobId, int capacity, String status) {
+    this(jobId, capacity, status, 0);
+  }
+
+  /**
+   * A buffer for a job whose lines before startSeq were written by an
+   * earlier attempt at running it, which sends events on the calling thread.
+   */
+  public JobLogBuffer(long jobId, int capacity, String status, long startSeq) {
+    this(jobId, capacity, status, startSeq, Runnable::run);
+  }
+
+  public JobLogBuffer(long jobId, int capacity, String status, long startSeq, Executor executor) {
+    this.jobId = jobId;
+    this.lines = new String[capacity];
+    this.status = status;
+    this.startSeq = startSeq;
+    this.nextSeq = startSeq;
+    this.executor = executor;
+  }
+
+  public void append(long seq, String message) {
+    List<Subscriber> ready;
+    synchronized (this) {
+      lines[(int) (seq % lines.length)] = message;
+      nextSeq = seq + 1;
+      ready = publish(lineEvent(new JobLogEntry(seq, message)));
+    }
+    sendQueued(ready);
+  }
+
+  public void setStatus(String status) {
+    List<Subscriber> ready;
+    synchronized (this) {
+      this.status = status;
+      ready = publish(statusEvent(status));
+    }
+    sendQueued(ready);
+  }
+
+  /**
+   * Sends the final status to every client and ends their streams.
+   */
+  public void finish(String status) {
+    List<Subscriber> ready;
+    synchronized (this) {
+      this.status = status;
+      finished = true;
+      ready = publish(statusEvent(status));
+      subscribers.forEach(subscriber -> subscriber.events.add(COMPLETE));
+      subscribers.clear();
+    }
+    sendQueued(ready);
+  }
+
+  public synchronized String getStatus() {
+    return status;
+  }
+
+  public synchronized long getNextSeq() {
+    return nextSeq;
+  }
+
+  /**
+   * The sequence number of the oldest line still held in the buffer.
+   */
+  public synchronized long getFirstSeq() {
+    return Math.max(startSeq, nextSeq - lines.length);
+  }
+
+  public synchronized List<JobLogEntry> linesFrom(long offset) {
+    List<JobLogEntry> result = new ArrayList<>();
+    for (long seq = Math.max(offset, getFirstSeq()); seq < nextSeq; seq++) {
+      result.add(new JobLogEntry(seq, lines[(int) (seq % lines.length)]));
+    }
+    return result;
+  }
+
+  /**
+   * Sends earlierLines and every buffered line from offset on, then the
+   * current status, and keeps the stream open for new lines until the job
+   * finishes.  earlierLines are the lines before offset that the caller
+   * read from the database.
+   *
+   * Returns false, and subscribes nothing, if lines from offset on have
+   * already left the buffer; the caller then reads up to getFirstSeq() from
+   * the database and tries again.
+   */
+  public boolean subscribe(SseEmitter emitter, List<JobLogEntry> earlierLines, long offset) {
+    Subscriber subscriber;
+    synchronized (this) {
+      if (offset < getFirstSeq()) {
+        return false;
+      }
+      subscriber = new Subscriber(emitter);
+      earlierLines.forEach(entry -> subscriber.events.add(lineEvent(entry)));
+      linesFrom(offset).forEach(entry -> subscriber.events.add(lineEvent(entry)));
+      subscriber.events.add(statusEvent(status));
+      subscriber.limit = subscriber.events.size() + lines.length;
+      subscriber.sending = true;
+      if (finished) {
+        subscriber.events.add(COMPLETE);
+      } else {
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> removeEmitter(emitter));
+        emitter.onTimeout(() -> removeEmitter(emitter));
+      }
+    }
+    sendQueued(List.of(subscriber));
+    return true;
+  }
+
+  public synchronized int getSubscriberCount() {
+    return subscribers.size();
+  }
+
+  private synchronized void removeEmitter(SseEmitter emitter) {
+    subscribers.removeIf(subscriber -> subscriber.emitter == emitter);
+  }
+
+  public static SseEmitter.SseEventBuilder lineEvent(JobLogEntry entry) {
+    return SseEmitter.event().name("line").id(Long.toString(entry.getSeq())).data(entry);
+  }
+
+  public static SseEmitter.SseEventBuilder statusEvent(String status) {
+    return SseEmitter.event().name("status").data(status);
+  }
+
+  /**
+   * Queues the event for every client, and returns the clients whose
+   * queues are not being sent yet.  Called with the buffer locked.
+   */
+  private List<Subscriber> publish(SseEmitter.SseEventBuilder event) {
+    List<Subscriber> ready = new ArrayList<>();
+    for (Iterator<Subscriber> it = subscribers.iterator(); it.hasNext();) {
+      Subscriber subscriber = it.next();
+      if (subscriber.events.size() >= subscriber.limit) {
+        it.remove();
+        subscriber.events.clear();
+        subscriber.events.add(COMPLETE);
+        log.info("Job %s: dropping log stream client that fell behind".formatted(jobId));
+      } else {
+        subscriber.events.add(event);
+      }
+      if (!subscriber.sending) {
+        subscriber.sending = true;
+        ready.add(subscriber);
+      }
+    }
+    return ready;
+  }
+
+  private void sendQueued(List<Subscriber> ready) {
+    ready.forEach(subscriber -> executor.execute(() -> drain(subscriber)));
+  }
+
+  // sends a client's queued events, on one thread at a time
+  private void drain(Subscriber subscriber) {
+    while (true) {
+      SseEmitter.SseEventBuilder event;
+      synchronized (this) {
+        event = subscriber.events.poll();
+        if (event == null) {
+          subscriber.sending = false;
+          return;
+        }
+      }
+      if (event == COMPLETE) {
+        subscriber.emitter.complete();
+      } else if (!send(subscriber.emitter, event)) {
+        synchronized (this) {
+          subscribers.remove(subscriber);
+          subscriber.events.clear();
+          subscriber.sending = false;
+        }
+        return;
+      }
+    }
+  }
+
+  private boolean send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+    try {
+      emitter.send(event);
+      return true;
+    } catch (IOException | IllegalStateException e) {
+      log.info("Job %s: dropping log stream client: %s".formatted(jobId, e.getMessage()));
+      emitter.completeWithError(e);
+      return false;
+    }
+  }
+
+  // the fields are only used with the buffer locked
+  private static class Subscriber {
+    final SseEmitter emitter;
+    final Queue<SseEmitter.SseEventBuilder> events = new ArrayDeque<>();
+    int limit;
+    boolean sending;
+
+    Subscriber(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+  }
+}
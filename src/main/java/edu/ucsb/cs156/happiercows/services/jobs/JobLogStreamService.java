@@ -0,0 +1,199 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.models.JobLogEntry;
+import edu.ucsb.cs156.happiercows.models.JobLogTail;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobLogLineRepository;
+
+/**
+ * Keeps a JobLogBuffer for each job that is running in this server, and
+ * answers requests for part of a job's log from the buffer when it can and
+ * from the job_log_lines table otherwise.
+ *
+ * A line leaves the buffer only after it has been written to the table,
+ * which needs bufferLines to be at least flushLines; the service refuses
+ * to start otherwise.  Events are sent to the streams on streamThreads
+ * threads of their own, never on the job's thread.
+ */
+
+@Service
+public class JobLogStreamService {
+  @Autowired
+  private JobLogLineRepository jobLogLineRepository;
+
+  @Value("${app.jobs.log.bufferLines}")
+  private int bufferLines;
+
+  @Value("${app.jobs.log.flushLines}")
+  private int flushLines;
+
+  @Value("${app.jobs.log.streamTimeoutMs}")
+  private long streamTimeoutMs;
+
+  @Value("${app.jobs.log.streamThreads}")
+  private int streamThreads;
+
+  private final Map<Long, JobLogBuffer> buffers = new ConcurrentHashMap<>();
+
+  private ExecutorService executor;
+
+  @PostConstruct
+  public void start() {
+    if (bufferLines < flushLines) {
+      throw new IllegalStateException("app.jobs.log.bufferLines (%d) must be at least app.jobs.log.flushLines (%d)"
+          .formatted(bufferLines, flushLines));
+    }
+    AtomicInteger threadCount = new AtomicInteger();
+    executor = Executors.newFixedThreadPool(Math.max(1, streamThreads), runnable -> {
+      Thread thread = new Thread(runnable, "HappierCows-log-stream-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  public JobLogBuffer open(Job job) {
+    return open(job, 0);
+  }
+
+  /**
+   * Opens the buffer for a job whose log already has firstSeq lines.
+   */
+  public JobLogBuffer open(Job job, long firstSeq) {
+    return buffers.computeIfAbsent(job.getId(),
+        id -> new JobLogBuffer(id, bufferLines, job.getStatus(), firstSeq, executor));
+  }
+
+  public Optional<JobLogBuffer> get(long jobId) {
+    return Optional.ofNullable(buffers.get(jobId));
+  }
+
+  /**
+   * Sends the job's final status to its streams, closes them, and drops
+   * its buffer. Call this after the job's last log lines have been flushed.
+   */
+  public void close(Job job) {
+    JobLogBuffer buffer = buffers.remove(job.getId());
+    if (buffer != null) {
+      buffer.finish(job.getStatus());
+    }
+  }
+
+  /**
+   * The lines of the job's log from offset on.  If tail is given, only
+   * the last tail of those lines are returned.
+   */
+  public JobLogTail tail(Job job, long offset, Integer tail) {
+    Optional<JobLogBuffer> buffer = get(job.getId());
+    long nextSeq;
+    String status;
+    List<JobLogEntry> lines;
+    if (buffer.isPresent()) {
+      long firstSeq;
+      List<JobLogEntry> bufferedLines;
+      synchronized (buffer.get()) {
+        nextSeq = buffer.get().getNextSeq();
+        status = buffer.get().getStatus();
+        offset = tailOffset(offset, tail, nextSeq);
+        firstSeq = buffer.get().getFirstSeq();
+        bufferedLines = buffer.get().linesFrom(offset);
+      }
+      // every line before firstSeq is already in the table
+      lines = new ArrayList<>(storedLines(job, offset, firstSeq));
+      lines.addAll(bufferedLines);
+    } else {
+      nextSeq = storedLineCount(job);
+      status = job.getStatus();
+      offset = tailOffset(offset, tail, nextSeq);
+      lines = storedLines(job, offset, nextSeq);
+    }
+    return JobLogTail.builder()
+        .jobId(job.getId())
+        .status(status)
+        .nextOffset(Math.max(offset, nextSeq))
+        .lines(lines)
+        .build();
+  }
+
+  /**
+   * Streams the job's log from offset on as "line" events, followed by
+   * "status" events.  The stream ends when the job finishes, or straight
+   * away if it is not running in this server.
+   */
+  public SseEmitter stream(Job job, long offset) throws IOException {
+    SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+    Optional<JobLogBuffer> buffer = get(job.getId());
+    if (buffer.isPresent()) {
+      // lines may leave the buffer while the earlier ones are read, so
+      // read on up to the buffer's first line until none have
+      List<JobLogEntry> earlierLines = new ArrayList<>();
+      long readTo = offset;
+      do {
+        long firstSeq = buffer.get().getFirstSeq();
+        earlierLines.addAll(storedLines(job, readTo, firstSeq));
+        readTo = Math.max(readTo, firstSeq);
+      } while (!buffer.get().subscribe(emitter, earlierLines, readTo));
+      return emitter;
+    }
+    for (JobLogEntry entry : storedLines(job, offset, storedLineCount(job))) {
+      emitter.send(JobLogBuffer.lineEvent(entry));
+    }
+    emitter.send(JobLogBuffer.statusEvent(job.getStatus()));
+    emitter.complete();
+    return emitter;
+  }
+
+  private static long tailOffset(long offset, Integer tail, long nextSeq) {
+    return tail == null ? offset : Math.max(offset, nextSeq - tail);
+  }
+
+  // Jobs that ran before job_log_lines existed have their whole log in the jobs table
+  private List<String> legacyLines(Job job) {
+    return job.getLogLines() == null && job.getLog() != null ? List.of(job.getLog().split("\n", -1)) : null;
+  }
+
+  private long storedLineCount(Job job) {
+    List<String> legacy = legacyLines(job);
+    return legacy != null ? legacy.size() : jobLogLineRepository.countByJobId(job.getId());
+  }
+
+  private List<JobLogEntry> storedLines(Job job, long fromSeq, long toSeq) {
+    if (fromSeq >= toSeq) {
+      return List.of();
+    }
+    List<String> legacy = legacyLines(job);
+    if (legacy != null) {
+      List<JobLogEntry> result = new ArrayList<>();
+      for (long seq = fromSeq; seq < Math.min(toSeq, legacy.size()); seq++) {
+        result.add(new JobLogEntry(seq, legacy.get((int) seq)));
+      }
+      return result;
+    }
+    return jobLogLineRepository.findAllByJobIdAndSeqBetween(job.getId(), fromSeq, toSeq).stream()
+        .map(line -> new JobLogEntry(line.getId().getSeq(), line.getMessage()))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,161 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps a job from running twice at once, e.g. when a cron trigger fires
+ * again before the previous run is done.  Launches of the same job (same
+ * type, scope and parameters; see Job.coalesceKey) are handled by the
+ * policy configured for its type:
+ *
+ * - skipIfRunning (app.jobs.overlap.skipIfRunning): while the job is queued
+ *   or running, further launches are coalesced into it.
+ * - queueAtMostOne (app.jobs.overlap.queueAtMostOne): while the job is
+ *   running, one more launch is queued to run after it, and further
+ *   launches are coalesced into the queued one.
+ *
+ * A queued job does not hold an executor thread while it waits: runInTurn
+ * keeps it here, and it is handed to the executor again once the job ahead
+ * of it is done.
+ *
+ * Jobs of other types are never coalesced.  This class tracks the jobs run
+ * on this server; with the durable queue, JobService and JobsRepository.claim
+ * apply the same rules to the jobs table.
+ */
+
+@Service
+@Slf4j
+public class JobOverlapService {
+
+  public enum OverlapPolicy {
+    NONE, SKIP_IF_RUNNING, QUEUE_AT_MOST_ONE
+  }
+
+  public static final List<String> SKIP_IF_RUNNING_STATUSES = List.of("queued", "running");
+  public static final List<String> QUEUE_AT_MOST_ONE_STATUSES = List.of("queued");
+
+  @Value("${app.jobs.overlap.skipIfRunning}")
+  private String[] skipIfRunning;
+
+  @Value("${app.jobs.overlap.queueAtMostOne}")
+  private String[] queueAtMostOne;
+
+  private final Map<String, Job> runningJobs = new HashMap<>();
+  private final Map<String, Job> queuedJobs = new HashMap<>();
+  // in the order they were launched
+  private final Map<String, Queue<Waiting>> waitingJobs = new HashMap<>();
+
+  public OverlapPolicy policyFor(String jobType) {
+    if (List.of(skipIfRunning).contains(jobType)) {
+      return OverlapPolicy.SKIP_IF_RUNNING;
+    }
+    return List.of(queueAtMostOne).contains(jobType) ? OverlapPolicy.QUEUE_AT_MOST_ONE : OverlapPolicy.NONE;
+  }
+
+  /**
+   * The statuses of the jobs that a new launch of a job of this type is
+   * coalesced into.
+   */
+  public List<String> coalescedStatuses(String jobType) {
+    return policyFor(jobType) == OverlapPolicy.SKIP_IF_RUNNING
+        ? SKIP_IF_RUNNING_STATUSES
+        : QUEUE_AT_MOST_ONE_STATUSES;
+  }
+
+  /**
+   * Decides what to do with a job about to be launched on this server.
+   * Returns the queued or running job it is coalesced into, or empty if it
+   * should be launched; its status is then "running", or "queued" when it
+   * has to wait for the same job to finish (see runInTurn).
+   */
+  public synchronized Optional<Job> admit(Job job) {
+    String key = job.getCoalesceKey();
+    if (key == null) {
+      return Optional.empty();
+    }
+
+    Job queued = queuedJobs.get(key);
+    Job running = runningJobs.get(key);
+    Job existing = queued != null ? queued
+        : policyFor(job.getJobType()) == OverlapPolicy.SKIP_IF_RUNNING ? running
+        : null;
+    if (existing != null) {
+      log.info("Coalesced launch of {} into job {}", key, existing.getId());
+      return Optional.of(existing);
+    }
+
+    if (running == null) {
+      runningJobs.put(key, job);
+    } else {
+      job.setStatus("queued");
+      queuedJobs.put(key, job);
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Runs an admitted job, unless the same job is running: then the job is
+   * kept here and relaunch is called once that job is done, instead of
+   * holding the caller's thread while it waits.  relaunch should hand the
+   * job to the executor again, to call runInTurn with the same job; it then
+   * has its turn.  runnable is called with the job out of the queued jobs.
+   */
+  public void runInTurn(Job job, Runnable runnable, Runnable relaunch) {
+    String key = job.getCoalesceKey();
+    if (key == null) {
+      runnable.run();
+      return;
+    }
+
+    synchronized (this) {
+      Job running = runningJobs.get(key);
+      if (running != null && running != job) {
+        waitingJobs.computeIfAbsent(key, k -> new ArrayDeque<>()).add(new Waiting(job, relaunch));
+        return;
+      }
+      queuedJobs.remove(key, job);
+      runningJobs.put(key, job);
+    }
+    try {
+      runnable.run();
+    } finally {
+      Waiting next = finish(key, job);
+      if (next != null) {
+        next.relaunch().run();
+      }
+    }
+  }
+
+  /**
+   * Takes a job off the running jobs, and gives the turn to the next job
+   * waiting for it, if any, so that launches in the meantime are coalesced
+   * into that job rather than run beside it.
+   */
+  private synchronized Waiting finish(String key, Job job) {
+    runningJobs.remove(key, job);
+    Queue<Waiting> waiting = waitingJobs.get(key);
+    if (waiting == null) {
+      return null;
+    }
+    Waiting next = waiting.remove();
+    if (waiting.isEmpty()) {
+      waitingJobs.remove(key);
+    }
+    runningJobs.put(key, next.job());
+    return next;
+  }
+
+  private record Waiting(Job job, Runnable relaunch) {
+  }
+}
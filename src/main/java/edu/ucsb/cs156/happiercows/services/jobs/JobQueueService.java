@@ -0,0 +1,208 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobsRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the jobs that JobService puts in the jobs table when
+ * app.jobs.queue.enabled is set.  Each server starts app.jobs.queue.workers
+ * threads that claim queued jobs with a conditional update, so a job is run by
+ * exactly one server, and rebuild them with the QueueableJobFactory for their
+ * job type.
+ *
+ * Running jobs are kept alive with a heartbeat.  A job whose server stopped
+ * sending heartbeats for app.jobs.queue.staleMs is queued again, skipping
+ * the commons in its checkpoints, until it has been started maxAttempts
+ * times; a job whose type does not checkpoint (see
+ * QueueableJobFactory.isResumable) fails instead.  Each claim has its own
+ * token, so a server that was only slow stops the job before its next
+ * commons and leaves it to the new attempt (see JobService.runJob).  The
+ * heartbeat also passes on cancels requested through other servers.
+ */
+
+@Service
+@Slf4j
+public class JobQueueService {
+
+  // how many queued jobs a worker looks at each time it polls
+  private static final int CLAIM_CANDIDATES = 10;
+
+  @Autowired
+  private JobsRepository jobsRepository;
+
+  @Autowired
+  private JobService jobService;
+
+  @Autowired
+  private SchedulerLeaseService schedulerLeaseService;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Value("${app.jobs.queue.enabled}")
+  private boolean enabled;
+
+  @Value("${app.jobs.queue.workers}")
+  private int workers;
+
+  @Value("${app.jobs.queue.pollMs}")
+  private long pollMs;
+
+  @Value("${app.jobs.queue.staleMs}")
+  private long staleMs;
+
+  @Value("${app.jobs.queue.maxAttempts}")
+  private int maxAttempts;
+
+  private final Map<String, QueueableJobFactory> factories;
+
+  private final Set<String> resumableTypes;
+
+  private ScheduledExecutorService executor;
+
+  public JobQueueService(List<QueueableJobFactory> factories) {
+    this.factories = factories.stream()
+        .collect(Collectors.toMap(QueueableJobFactory::getJobType, Function.identity()));
+    this.resumableTypes = factories.stream()
+        .filter(QueueableJobFactory::isResumable)
+        .map(QueueableJobFactory::getJobType)
+        .collect(Collectors.toSet());
+  }
+
+  /**
+   * Whether jobs of the type checkpoint their commons, so that running them
+   * again does not redo the commons they finished (see
+   * QueueableJobFactory.isResumable).
+   */
+  public boolean isResumable(String jobType) {
+    return resumableTypes.contains(jobType);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void startWorkers() {
+    if (!enabled) {
+      return;
+    }
+    AtomicInteger threads = new AtomicInteger();
+    executor = Executors.newScheduledThreadPool(workers, runnable -> {
+      Thread thread = new Thread(runnable, "HappierCows-worker-" + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (int i = 0; i < workers; i++) {
+      executor.scheduleWithFixedDelay(this::poll, 0, pollMs, TimeUnit.MILLISECONDS);
+    }
+    log.info("Server {} started {} job queue workers", schedulerLeaseService.getNodeId(), workers);
+  }
+
+  @PreDestroy
+  public void stopWorkers() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  void poll() {
+    try {
+      runQueuedJobs();
+    } catch (RuntimeException e) {
+      // an exception would cancel this worker's schedule
+      log.error("Job queue worker failed", e);
+    }
+  }
+
+  /**
+   * Claims and runs queued jobs on the calling thread, one at a time, until
+   * none are left.  Returns the number of jobs run.
+   */
+  public int runQueuedJobs() {
+    int ran = 0;
+    Job job;
+    while ((job = claimNext()) != null) {
+      jobService.runJob(job, queuedJob(job));
+      ran++;
+    }
+    return ran;
+  }
+
+  private Job claimNext() {
+    String worker = schedulerLeaseService.getNodeId();
+    for (Long id : jobsRepository.findQueuedJobIds(PageRequest.of(0, CLAIM_CANDIDATES))) {
+      if (jobsRepository.claim(id, worker, UUID.randomUUID().toString(), ZonedDateTime.now()) == 1) {
+        return jobsRepository.findById(id).orElseThrow();
+      }
+    }
+    return null;
+  }
+
+  private JobContextConsumer queuedJob(Job job) {
+    JobContextConsumer rebuilt = rebuild(job);
+    return ctx -> {
+      if (job.getAttempts() > 1) {
+        ctx.log("Retrying, attempt %d of %d".formatted(job.getAttempts(), maxAttempts));
+      }
+      rebuilt.accept(ctx);
+    };
+  }
+
+  /**
+   * The job with the type and parameters recorded in the jobs table.  It is
+   * only rebuilt when it runs, so that unknown types and bad parameters are
+   * reported in its log.
+   */
+  public JobContextConsumer rebuild(Job job) {
+    return ctx -> {
+      QueueableJobFactory factory = factories.get(job.getJobType());
+      if (factory == null) {
+        throw new IllegalArgumentException("Unknown job type: " + job.getJobType());
+      }
+      Map<String, String> parameters = objectMapper.readValue(job.getParameters(),
+          new TypeReference<Map<String, String>>() {});
+      factory.create(parameters).accept(ctx);
+    };
+  }
+
+  @Scheduled(fixedDelayString = "${app.jobs.queue.heartbeatMs}")
+  public void heartbeat() {
+    if (!enabled) {
+      return;
+    }
+    ZonedDateTime now = ZonedDateTime.now();
+    jobsRepository.heartbeat(schedulerLeaseService.getNodeId(), now);
+    // jobs that an admin cancelled through another server
+    jobsRepository.findCancelRequestedJobIds(schedulerLeaseService.getNodeId()).forEach(jobService::cancelRunning);
+
+    ZonedDateTime cutoff = now.minusNanos(staleMs * 1_000_000);
+    int requeued = jobsRepository.requeueStale(cutoff, maxAttempts, resumableTypes);
+    int failed = jobsRepository.failStale(cutoff, maxAttempts, resumableTypes);
+    if (requeued > 0 || failed > 0) {
+      log.warn("Queued {} jobs again and failed {} jobs whose servers stopped", requeued, failed);
+    }
+  }
+}
@@ -1,50 +1,405 @@
 package edu.ucsb.cs156.happiercows.services.jobs;
 
 import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobLogLine;
+import edu.ucsb.cs156.happiercows.errors.EntityNotFoundException;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobCheckpointRepository;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobLogLineRepository;
 import edu.ucsb.cs156.happiercows.repositories.jobs.JobsRepository;
+import edu.ucsb.cs156.happiercows.services.CommonsAggregatesService;
 import edu.ucsb.cs156.happiercows.services.CurrentUserService;
+import edu.ucsb.cs156.happiercows.services.jobs.JobOverlapService.OverlapPolicy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.PostConstruct;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Launches jobs.  By default a job runs on this server's task executor.
+ * With app.jobs.queue.enabled, a QueueableJob is instead written to the
+ * jobs table with status "queued", and JobQueueService runs it on whichever
+ * server claims it first.
+ *
+ * A job can be cancelled, and the job types in app.jobs.timeouts (none by
+ * default) are cancelled once they have run that long; either way the job
+ * stops the next time it calls JobContext.checkCancelled, with status
+ * "cancelled".  The jobs that change commons only check between commons,
+ * each of which runs in its own transaction (see CommonsRunner), so a
+ * commons is never left half done.
+ */
 
 @Service
+@Slf4j
 public class JobService {
   @Autowired
   private JobsRepository jobsRepository;
 
+  @Autowired
+  private JobLogLineRepository jobLogLineRepository;
+
   @Autowired
   private CurrentUserService currentUserService;
 
+  @Autowired
+  private JobLogStreamService jobLogStreamService;
+
+  @Autowired
+  private CommonsRunner commonsRunner;
+
+  @Autowired
+  private SchedulerLeaseService schedulerLeaseService;
+
+  @Autowired
+  private JobExecutorService jobExecutorService;
+
+  @Autowired
+  private JobOverlapService jobOverlapService;
+
+  @Autowired
+  private JobCheckpointRepository jobCheckpointRepository;
+
+  @Autowired
+  private CommonsAggregatesService commonsAggregatesService;
+
+  @Lazy
+  @Autowired
+  private JobQueueService jobQueueService;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
   @Lazy
   @Autowired
   private JobService self;
 
+  @Value("${app.jobs.queue.enabled}")
+  private boolean durableQueue;
+
+  @Value("${app.jobs.log.flushLines}")
+  private int logFlushLines;
+
+  @Value("${app.jobs.log.flushIntervalMs}")
+  private long logFlushIntervalMs;
+
+  @Value("${app.jobs.timeouts}")
+  private String[] timeoutSettings;
+
+  private Map<String, Duration> timeouts;
+
+  // the jobs running on this server, so that they can be cancelled
+  private final Map<Long, JobContext> runningJobs = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  void parseTimeouts() {
+    timeouts = new HashMap<>();
+    for (String setting : timeoutSettings) {
+      String[] typeAndTimeout = setting.split("=", 2);
+      try {
+        timeouts.put(typeAndTimeout[0].trim(), Duration.parse(typeAndTimeout[1].trim()));
+      } catch (ArrayIndexOutOfBoundsException | DateTimeParseException e) {
+        throw new IllegalStateException(
+            "Bad app.jobs.timeouts entry %s, expected e.g. MilkTheCowsJob=PT30M".formatted(setting), e);
+      }
+    }
+  }
+
   public Job runAsJob(JobContextConsumer jobFunction) {
     Job job = Job.builder()
       .createdBy(currentUserService.getUser())
       .status("running")
       .build();
 
+    if (unfenced(jobFunction) instanceof QueueableJob queueable) {
+      describe(job, queueable);
+      if (durableQueue) {
+        return enqueue(jobFunction, job);
+      }
+    }
+
+    Optional<Job> coalesced = jobOverlapService.admit(job);
+    if (coalesced.isPresent()) {
+      return coalesced.get();
+    }
+
     jobsRepository.save(job);
+    jobLogStreamService.open(job);
+    jobExecutorService.jobQueued();
     self.runJobAsync(job, jobFunction);
     return job;
   }
 
+  private static JobContextConsumer unfenced(JobContextConsumer jobFunction) {
+    return jobFunction instanceof FencedJob fenced ? fenced.getJob() : jobFunction;
+  }
+
+  /**
+   * The type that jobs share permits by in the threadPerJob executor mode:
+   * the job type of a QueueableJob, otherwise the job's class.
+   */
+  static String jobType(JobContextConsumer jobFunction) {
+    JobContextConsumer job = unfenced(jobFunction);
+    return job instanceof QueueableJob queueable ? queueable.getJobType() : job.getClass().getSimpleName();
+  }
+
+  // jobs run from the jobs table are rebuilt by a lambda, so their type is taken from the table
+  private static String jobType(Job job, JobContextConsumer jobFunction) {
+    return job.getJobType() != null ? job.getJobType() : jobType(jobFunction);
+  }
+
+  private void describe(Job job, QueueableJob queueable) {
+    job.setJobType(queueable.getJobType());
+    job.setScope(queueable.getScope());
+    job.setParameters(toJson(queueable.getParameters()));
+    if (jobOverlapService.policyFor(job.getJobType()) != OverlapPolicy.NONE) {
+      job.setCoalesceKey(String.join("/", job.getJobType(), job.getScope(), job.getParameters()));
+    }
+  }
+
+  private Job enqueue(JobContextConsumer jobFunction, Job job) {
+    job.setStatus("queued");
+
+    return new TransactionTemplate(transactionManager).execute(status -> {
+      // holds the scheduler lease row until the job is committed, so no other server can take over in between
+      if (jobFunction instanceof FencedJob fenced) {
+        schedulerLeaseService.checkFencingToken(fenced.getFencingToken());
+      }
+      if (job.getCoalesceKey() != null) {
+        Optional<Job> existing = jobsRepository.findFirstByCoalesceKeyAndStatusInOrderByIdDesc(job.getCoalesceKey(),
+            jobOverlapService.coalescedStatuses(job.getJobType()));
+        if (existing.isPresent()) {
+          log.info("Coalesced launch of {} into job {}", job.getCoalesceKey(), existing.get().getId());
+          return existing.get();
+        }
+      }
+      jobsRepository.save(job);
+      return job;
+    });
+  }
+
+  // sorted, so that the same parameters always give the same coalesceKey
+  private String toJson(Map<String, String> parameters) {
+    try {
+      return objectMapper.writeValueAsString(new TreeMap<>(parameters));
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Job parameters cannot be written as JSON: " + parameters, e);
+    }
+  }
+
   @Async
   public void runJobAsync(Job job, JobContextConsumer jobFunction) {
-    JobContext context = new JobContext(jobsRepository, job);
+    // a job that has to wait for the same job to finish is launched again by it
+    jobOverlapService.runInTurn(job, () -> jobExecutorService.run(jobType(job, jobFunction), () -> {
+      if (job.getStatus().equals("queued")) {
+        if (jobsRepository.startQueued(job.getId()) == 0) {
+          // cancelled while it waited
+          job.setStatus("cancelled");
+          jobLogStreamService.close(job);
+          return;
+        }
+        job.setStatus("running");
+        jobLogStreamService.get(job.getId()).ifPresent(buffer -> buffer.setStatus("running"));
+      }
+      runJob(job, jobFunction);
+    }), () -> self.runJobAsync(job, jobFunction));
+  }
 
+  /**
+   * Runs the job on the calling thread and records how it ended.  A job that
+   * was started before (by a server that has since stopped) carries on
+   * appending to the log of its earlier attempts.  A job claimed from the
+   * durable queue stops, and leaves the jobs table to the new attempt, once
+   * it has been queued again (see JobQueueService).
+   */
+  public void runJob(Job job, JobContextConsumer jobFunction) {
+    long firstSeq = job.getAttempts() > 1 ? jobLogLineRepository.countByJobId(job.getId()) : 0;
+    JobContext context = new JobContext(jobsRepository, jobLogLineRepository, jobLogStreamService.open(job, firstSeq),
+        job, logFlushLines, logFlushIntervalMs);
+    context.setNextSeq(firstSeq);
+    context.setCommonsRunner(commonsRunner);
+    context.setJobCheckpointRepository(jobCheckpointRepository);
+    context.setCommonsAggregatesService(commonsAggregatesService);
+    Duration timeout = timeouts.get(jobType(job, jobFunction));
+    if (timeout != null) {
+      context.setTimeout(timeout);
+    }
+
+    runningJobs.put(job.getId(), context);
     try {
       jobFunction.accept(context);
+    } catch (JobClaimLostException e) {
+      log.warn(e.getMessage());
+      jobLogStreamService.close(job);
+      return;
+    } catch (JobCancelledException e) {
+      job.setStatus("cancelled");
+      context.log(e.getMessage());
+      end(job, context);
+      return;
     } catch (Exception e) {
       e.printStackTrace();
       job.setStatus("error");
       context.log(e.getMessage());
+      end(job, context);
       return;
+    } finally {
+      runningJobs.remove(job.getId());
     }
 
     job.setStatus("complete");
-    jobsRepository.save(job);
+    if (end(job, context)) {
+      jobCheckpointRepository.deleteAllByJobId(job.getId());
+    }
+  }
+
+  /**
+   * Writes the rest of the job's log and its status, and closes its log
+   * stream.  A job claimed from the durable queue writes nothing if it has
+   * lost its claim; returns whether the status was written.
+   */
+  private boolean end(Job job, JobContext context) {
+    try {
+      if (job.getClaimToken() == null) {
+        context.flush();
+        jobsRepository.save(job);
+        return true;
+      }
+      if (!jobsRepository.holdsClaim(job.getId(), job.getClaimToken())) {
+        log.warn("Job {} is no longer running under this server's claim, not recording its status {}",
+            job.getId(), job.getStatus());
+        return false;
+      }
+      context.flush();
+      return jobsRepository.finishClaimed(job.getId(), job.getClaimToken(), job.getStatus()) == 1;
+    } finally {
+      jobLogStreamService.close(job);
+    }
+  }
+
+  /**
+   * Runs a queueable job that ended with an error or was cancelled again,
+   * under the same id, if its type is resumable (see
+   * QueueableJobFactory.isResumable).  The job skips the work recorded in its checkpoints
+   * and carries on appending to its log.  With the durable queue the job is
+   * queued, with a fresh set of attempts, for any server to pick up.
+   */
+  public Job resume(long id) {
+    Job job = jobsRepository.findById(id)
+        .orElseThrow(() -> new EntityNotFoundException(Job.class, id));
+    if (job.getJobType() == null) {
+      throw new IllegalArgumentException("Job %d cannot be resumed, it was not launched as a queueable job".formatted(id));
+    }
+    // run again from the start, it would redo the commons it had already finished
+    if (!jobQueueService.isResumable(job.getJobType())) {
+      throw new IllegalArgumentException(
+          "Job %d cannot be resumed, %s does not checkpoint its commons".formatted(id, job.getJobType()));
+    }
+
+    String status = durableQueue ? "queued" : "running";
+    // a job that has been started before continues its log after the earlier lines (see runJob)
+    int attempts = durableQueue ? 1 : Math.max(job.getAttempts(), 1) + 1;
+    if (jobsRepository.resume(id, status, attempts) == 0) {
+      throw new IllegalArgumentException(
+          "Job %d cannot be resumed, only jobs with status error or cancelled can".formatted(id));
+    }
+    job.setStatus(status);
+    job.setWorker(null);
+    job.setClaimToken(null);
+    job.setAttempts(attempts);
+    job.setCancelRequestedAt(null);
+    if (durableQueue) {
+      return job;
+    }
+
+    JobContextConsumer rebuilt = jobQueueService.rebuild(job);
+    jobExecutorService.jobQueued();
+    self.runJobAsync(job, ctx -> {
+      ctx.log("Resuming from the job's checkpoints");
+      rebuilt.accept(ctx);
+    });
+    return job;
+  }
+
+  /**
+   * Cancels a job: a queued job does not start, and a running job stops at
+   * its next checkCancelled.  A job running on another server is only
+   * stopped at that server's next heartbeat (see JobQueueService), so jobs
+   * run outside the durable queue can only be cancelled on their own server.
+   * Returns a message saying what was done.
+   */
+  public String cancel(long id) {
+    if (cancelRunning(id)) {
+      return "Cancelling job %d".formatted(id);
+    }
+    if (jobsRepository.cancelQueued(id) == 1) {
+      return "Cancelled job %d".formatted(id);
+    }
+    if (jobsRepository.requestCancel(id, ZonedDateTime.now()) == 1) {
+      return "Asked the server running job %d to cancel it".formatted(id);
+    }
+    Job job = jobsRepository.findById(id)
+        .orElseThrow(() -> new EntityNotFoundException(Job.class, id));
+    return "Job %d has already finished with status %s".formatted(id, job.getStatus());
+  }
+
+  /**
+   * Cancels the job if it is running on this server.
+   */
+  public boolean cancelRunning(long id) {
+    JobContext context = runningJobs.get(id);
+    if (context == null) {
+      return false;
+    }
+    context.cancel();
+    return true;
+  }
+
+  /**
+   * Fills in the logs of jobs loaded from the database, using one query
+   * for all of their log lines.
+   */
+  public <T extends Iterable<Job>> T attachLogs(T jobs) {
+    Set<Long> jobIds = StreamSupport.stream(jobs.spliterator(), false)
+        .map(Job::getId)
+        .collect(Collectors.toSet());
+    if (jobIds.isEmpty()) {
+      return jobs;
+    }
+
+    Map<Long, List<String>> linesByJob = new HashMap<>();
+    for (JobLogLine line : jobLogLineRepository.findAllByJobIds(jobIds)) {
+      linesByJob.computeIfAbsent(line.getId().getJobId(), id -> new ArrayList<>()).add(line.getMessage());
+    }
+    for (Job job : jobs) {
+      job.setLogLines(linesByJob.getOrDefault(job.getId(), List.of()));
+    }
+    return jobs;
   }
 }
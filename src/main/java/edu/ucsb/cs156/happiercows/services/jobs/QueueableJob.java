@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import java.util.Map;
+
+/**
+ * A job that can wait in the jobs table until any server picks it up.  The
+ * QueueableJobFactory with the same job type rebuilds it from the
+ * parameters returned here.
+ */
+public interface QueueableJob extends JobContextConsumer {
+
+  Map<String, String> getParameters();
+
+  default String getJobType() {
+    return getClass().getSimpleName();
+  }
+
+  /**
+   * What the job works on: "commons:&lt;id&gt;" for a job with a commonsId
+   * parameter, otherwise "global".
+   */
+  default String getScope() {
+    String commonsId = getParameters().get("commonsId");
+    return commonsId == null ? "global" : "commons:" + commonsId;
+  }
+}
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import java.util.Map;
+
+/**
+ * Rebuilds queued jobs of one type from the parameters they were stored
+ * with; see QueueableJob.
+ */
+public interface QueueableJobFactory {
+
+  String getJobType();
+
+  JobContextConsumer create(Map<String, String> parameters);
+
+  /**
+   * Whether jobs of this type skip the commons recorded in their
+   * checkpoints (see JobContext.checkpoint), so that running one again after
+   * it stopped part way does no commons twice.  Only these jobs can be
+   * resumed.
+   */
+  default boolean isResumable() {
+    return false;
+  }
+}
@@ -0,0 +1,123 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import java.time.Instant;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.happiercows.entities.jobs.SchedulerLease;
+import edu.ucsb.cs156.happiercows.repositories.jobs.SchedulerLeaseRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Decides which server runs the scheduled jobs when several servers share
+ * one database.  The server holding the "scheduledJobs" row of
+ * scheduler_leases renews it every renewMs; when it stops doing so for
+ * leaseMs (because it was shut down or lost the database), the next server
+ * to try takes it over with a higher fencing token.
+ *
+ * A trigger that fires while the leader is gone but its lease has not yet
+ * expired is skipped rather than run twice.
+ */
+
+@Service
+@Slf4j
+public class SchedulerLeaseService {
+  public static final String LEASE_NAME = "scheduledJobs";
+
+  @Autowired
+  private SchedulerLeaseRepository schedulerLeaseRepository;
+
+  @Getter
+  @Value("${app.scheduler.nodeId}")
+  private String nodeId;
+
+  @Value("${app.scheduler.leaseMs}")
+  private long leaseMs;
+
+  // 0 while this server does not hold the lease
+  private long fencingToken = 0;
+
+  @PostConstruct
+  void chooseNodeId() {
+    if (nodeId.isBlank()) {
+      nodeId = UUID.randomUUID().toString();
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${app.scheduler.renewMs}")
+  public void renewLease() {
+    acquire();
+  }
+
+  /**
+   * Renews the lease if this server holds it, or takes it if it has expired
+   * or was never taken.  Returns the fencing token if this server now holds
+   * the lease, and empty if another server does.
+   */
+  public synchronized OptionalLong acquire() {
+    Instant now = Instant.now();
+    Instant expiresAt = now.plusMillis(leaseMs);
+    long token = 0;
+    if (fencingToken != 0
+        && schedulerLeaseRepository.renew(LEASE_NAME, nodeId, fencingToken, now, expiresAt) == 1) {
+      token = fencingToken;
+    } else if (schedulerLeaseRepository.takeOver(LEASE_NAME, nodeId, now, expiresAt) == 1 || create(expiresAt)) {
+      token = schedulerLeaseRepository.findById(LEASE_NAME)
+          .filter(lease -> lease.getHolder().equals(nodeId))
+          .map(SchedulerLease::getFencingToken)
+          .orElse(0L);
+    }
+
+    if (token != 0 && token != fencingToken) {
+      log.info("Server {} now holds the scheduler lease, fencing token {}", nodeId, token);
+    } else if (token == 0 && fencingToken != 0) {
+      log.info("Server {} no longer holds the scheduler lease", nodeId);
+    }
+    fencingToken = token;
+    return token == 0 ? OptionalLong.empty() : OptionalLong.of(token);
+  }
+
+  private boolean create(Instant expiresAt) {
+    if (schedulerLeaseRepository.existsById(LEASE_NAME)) {
+      return false;
+    }
+    try {
+      schedulerLeaseRepository.create(LEASE_NAME, nodeId, expiresAt);
+      return true;
+    } catch (DataIntegrityViolationException e) {
+      // another server created it first
+      return false;
+    }
+  }
+
+  /**
+   * Throws unless fencingToken is still the token of this server's lease,
+   * and renews the lease if it is.  The check is a conditional update, so
+   * a server whose lease was taken over is refused by the database even if
+   * it has not noticed yet.
+   */
+  public void checkFencingToken(long fencingToken) {
+    Instant now = Instant.now();
+    if (schedulerLeaseRepository.renew(LEASE_NAME, nodeId, fencingToken, now, now.plusMillis(leaseMs)) != 1) {
+      throw new IllegalStateException(
+          "Scheduler lease with fencing token %d is no longer held by this server".formatted(fencingToken));
+    }
+  }
+
+  /**
+   * Wraps job so that it is only run or queued while fencingToken is still
+   * current; see FencedJob.
+   */
+  public JobContextConsumer fence(long fencingToken, JobContextConsumer job) {
+    return new FencedJob(this, fencingToken, job);
+  }
+}
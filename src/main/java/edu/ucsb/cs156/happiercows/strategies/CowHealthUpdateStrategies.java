@@ -22,6 +22,19 @@ public enum CowHealthUpdateStrategies implements CowHealthUpdateStrategy {
         public double calculateNewCowHealth(CommonsPlus commonsPlus, UserCommons uC, int totalCows) {
             return uC.getCowHealth() - (totalCows - commonsPlus.getEffectiveCapacity()) * commonsPlus.getCommons().getDegradationRate();
         }
+
+        @Override
+        public double calculateCowHealthDelta(CommonsPlus commonsPlus, int totalCows) {
+            return -((totalCows - commonsPlus.getEffectiveCapacity()) * commonsPlus.getCommons().getDegradationRate());
+        }
+
+        @Override
+        public void calculateNewCowHealth(double[] health, int[] cows, int count, int totalCows, int effectiveCapacity, double degradationRate) {
+            double decrease = (totalCows - effectiveCapacity) * degradationRate;
+            for (int i = 0; i < count; i++) {
+                health[i] = health[i] - decrease;
+            }
+        }
     },
     Constant("Constant", "Cow health changes increases/decreases by the degradation rate, depending on if the number of cows exceeds the carrying capacity.") {
         @Override
@@ -32,12 +45,43 @@ public enum CowHealthUpdateStrategies implements CowHealthUpdateStrategy {
                 return uC.getCowHealth() - commonsPlus.getCommons().getDegradationRate();
             }
         }
+
+        @Override
+        public double calculateCowHealthDelta(CommonsPlus commonsPlus, int totalCows) {
+            if (totalCows <= commonsPlus.getEffectiveCapacity()) {
+                return commonsPlus.getCommons().getDegradationRate();
+            } else {
+                return -commonsPlus.getCommons().getDegradationRate();
+            }
+        }
+
+        @Override
+        public void calculateNewCowHealth(double[] health, int[] cows, int count, int totalCows, int effectiveCapacity, double degradationRate) {
+            if (totalCows <= effectiveCapacity) {
+                for (int i = 0; i < count; i++) {
+                    health[i] = health[i] + degradationRate;
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    health[i] = health[i] - degradationRate;
+                }
+            }
+        }
     },
     Noop("Do nothing", "Cow health does not change.") {
         @Override
         public double calculateNewCowHealth(CommonsPlus commonsPlus, UserCommons uC, int totalCows) {
             return uC.getCowHealth();
         }
+
+        @Override
+        public double calculateCowHealthDelta(CommonsPlus commonsPlus, int totalCows) {
+            return 0.0;
+        }
+
+        @Override
+        public void calculateNewCowHealth(double[] health, int[] cows, int count, int totalCows, int effectiveCapacity, double degradationRate) {
+        }
     };
 
     private final String displayName;
@@ -11,6 +11,33 @@ public interface CowHealthUpdateStrategy {
             int totalCows
     );
 
+    /**
+     * The amount by which every cow's health in a commons changes on one tick.
+     * All of the built in strategies apply the same change to every player in
+     * a commons, which is what allows the update to be done as a single
+     * set-based UPDATE statement.
+     */
+    public double calculateCowHealthDelta(
+            CommonsPlus commonsPlus,
+            int totalCows
+    );
+
+    /**
+     * Batch form of calculateNewCowHealth for simulating many players at once.
+     * Replaces health[i] with what calculateNewCowHealth would return for a
+     * player with health[i] health and cows[i] cows, for i from 0 to count - 1.
+     * Like calculateNewCowHealth, the result is not clamped to 0..100.
+     * Nothing is allocated, so the arrays can be reused from one call to the next.
+     */
+    public void calculateNewCowHealth(
+            double[] health,
+            int[] cows,
+            int count,
+            int totalCows,
+            int effectiveCapacity,
+            double degradationRate
+    );
+
     public String getDisplayName();
     public String getDescription();
 }
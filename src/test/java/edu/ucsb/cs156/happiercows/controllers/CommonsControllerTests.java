@@ -5,22 +5,29 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.happiercows.ControllerTestCase;
 import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
 import edu.ucsb.cs156.happiercows.entities.CommonsPlus;
 import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.models.CommonsPlusCacheStats;
 import edu.ucsb.cs156.happiercows.models.CreateCommonsParams;
 import edu.ucsb.cs156.happiercows.models.HealthUpdateStrategyList;
+import edu.ucsb.cs156.happiercows.repositories.CommonsAggregatesRepository;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.services.CommonsAggregatesService;
+import edu.ucsb.cs156.happiercows.services.CommonsPlusCache;
 import edu.ucsb.cs156.happiercows.strategies.CowHealthUpdateStrategies;
 import edu.ucsb.cs156.happiercows.services.CommonsPlusBuilderService;
 import lombok.With;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -33,6 +40,8 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -41,6 +50,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = CommonsController.class)
+@Import({CommonsAggregatesService.class, CommonsPlusCache.class})
 @AutoConfigureDataJpa
 public class CommonsControllerTests extends ControllerTestCase {
 
@@ -53,12 +63,30 @@ public class CommonsControllerTests extends ControllerTestCase {
     @MockBean
     CommonsRepository commonsRepository;
 
+    @MockBean
+    CommonsAggregatesRepository commonsAggregatesRepository;
+
     @MockBean
     CommonsPlusBuilderService commonsPlusBuilderService;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    CommonsPlusCache commonsPlusCache;
+
+    @BeforeEach
+    public void emptyCommonsPlusCache() {
+        // the context, and so the cache, is shared by the tests
+        commonsPlusCache.invalidateAll();
+    }
+
+    @BeforeEach
+    public void storeCommonsAggregates() {
+        // the totals of every commons are stored, so that changes are added to them
+        when(commonsAggregatesRepository.add(anyLong(), anyInt(), anyInt(), anyDouble(), anyDouble())).thenReturn(1);
+    }
+
     @WithMockUser(roles = {"ADMIN"})
     @Test
     public void getDefaultCommonsValuesTest() throws Exception {
@@ -638,11 +666,71 @@ public class CommonsControllerTests extends ControllerTestCase {
 
         MvcResult response = mockMvc.perform(get("/api/commons/plus?id=18"))
                 .andExpect(status().isOk()).andReturn();
+        MvcResult cachedResponse = mockMvc.perform(get("/api/commons/plus?id=18"))
+                .andExpect(status().isOk()).andReturn();
 
         verify(commonsRepository, times(1)).findById(eq(18L));
+        verify(commonsPlusBuilderService, times(1)).toCommonsPlus(eq(commons1));
         String expectedJson = mapper.writeValueAsString(commonsPlus);
         String responseString = response.getResponse().getContentAsString();
         assertEquals(expectedJson, responseString);
+        assertEquals(expectedJson, cachedResponse.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = {"ADMIN", "USER"})
+    @Test
+    public void getCommonsPlusByIdTest_readAgainAfterUpdate() throws Exception {
+        Commons commons1 = Commons.builder()
+                .name("TestCommons2")
+                .id(18L)
+                .build();
+        CommonsPlus commonsPlus = CommonsPlus.builder()
+                .commons(commons1)
+                .totalCows(5)
+                .totalUsers(2)
+                .build();
+        CreateCommonsParams parameters = CreateCommonsParams.builder()
+                .name("Renamed Commons")
+                .cowPrice(10)
+                .milkPrice(1)
+                .startingBalance(100)
+                .carryingCapacity(100)
+                .build();
+
+        when(commonsRepository.findById(eq(18L))).thenReturn(Optional.of(commons1));
+        when(commonsPlusBuilderService.toCommonsPlus(eq(commons1))).thenReturn(commonsPlus);
+        long invalidationsBefore = commonsPlusCache.getStats().getInvalidations();
+
+        mockMvc.perform(get("/api/commons/plus?id=18")).andExpect(status().isOk());
+        mockMvc.perform(put("/api/commons/update?id=18").with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(objectMapper.writeValueAsString(parameters)))
+                .andExpect(status().isNoContent());
+        MvcResult response = mockMvc.perform(get("/api/commons/plus?id=18"))
+                .andExpect(status().isOk()).andReturn();
+
+        verify(commonsPlusBuilderService, times(2)).toCommonsPlus(eq(commons1));
+        assertEquals(mapper.writeValueAsString(commonsPlus), response.getResponse().getContentAsString());
+        assertEquals(1, commonsPlusCache.getStats().getInvalidations() - invalidationsBefore);
+    }
+
+    @WithMockUser(roles = {"ADMIN"})
+    @Test
+    public void getCommonsPlusCacheStatsTest() throws Exception {
+        CommonsPlusCacheStats expected = commonsPlusCache.getStats();
+
+        MvcResult response = mockMvc.perform(get("/api/commons/plus/cache"))
+                .andExpect(status().isOk()).andReturn();
+
+        assertEquals(expected, objectMapper.readValue(response.getResponse().getContentAsString(),
+                CommonsPlusCacheStats.class));
+    }
+
+    @WithMockUser(roles = {"USER"})
+    @Test
+    public void getCommonsPlusCacheStatsTest_forbiddenToUsers() throws Exception {
+        mockMvc.perform(get("/api/commons/plus/cache")).andExpect(status().isForbidden());
     }
 
     // This common SHOULD NOT be in the repository
@@ -724,6 +812,7 @@ public class CommonsControllerTests extends ControllerTestCase {
 
         verify(userCommonsRepository, times(1)).findByCommonsIdAndUserId(2L, 1L);
         verify(userCommonsRepository, times(1)).save(uc);
+        verify(commonsAggregatesRepository, times(1)).add(2L, 0, 1, 0.0, 0.0);
 
         
         String responseString = response.getResponse().getContentAsString();
@@ -842,6 +931,7 @@ public class CommonsControllerTests extends ControllerTestCase {
         verify(userCommonsRepository, times(1)).findByCommonsId(2L);
         verify(userCommonsRepository, times(1)).delete(uc1);
         verify(userCommonsRepository, times(1)).delete(uc2);
+        verify(commonsAggregatesRepository, times(1)).deleteByCommonsId(2L);
 
         String responseString = response.getResponse().getContentAsString();
 
@@ -892,7 +982,7 @@ public class CommonsControllerTests extends ControllerTestCase {
 
         when(userCommonsRepository.findByCommonsIdAndUserId(2L, 1L)).thenReturn(Optional.of(uc));
         when(commonsRepository.findById(2L)).thenReturn(Optional.of(c));
-        when(commonsRepository.getNumUsers(2L)).thenReturn(Optional.of(0));
+        when(commonsAggregatesRepository.findById(2L)).thenReturn(Optional.of(CommonsAggregates.empty(2L)));
 
         MvcResult response = mockMvc
                 .perform(delete("/api/commons/2/users/1").with(csrf()).contentType(MediaType.APPLICATION_JSON)
@@ -901,6 +991,7 @@ public class CommonsControllerTests extends ControllerTestCase {
 
         verify(userCommonsRepository, times(1)).findByCommonsIdAndUserId(2L, 1L);
         verify(userCommonsRepository, times(1)).delete(uc);
+        verify(commonsAggregatesRepository, times(1)).add(1L, -1, -1, 0.0, 0.0);
 
         String responseString = response.getResponse().getContentAsString();
         String expectedString = "{\"message\":\"user with id 1 deleted from commons with id 2, 0 users remain\"}";
@@ -935,14 +1026,12 @@ public class CommonsControllerTests extends ControllerTestCase {
                 .build();
 
         expectedCommonsPlus.add(CommonsPlus1);
-        when(commonsRepository.findAll()).thenReturn(expectedCommons);
-        when(commonsRepository.getNumCows(1L)).thenReturn(Optional.of(50));
-        when(commonsRepository.getNumUsers(1L)).thenReturn(Optional.of(20));
-        when(commonsPlusBuilderService.convertToCommonsPlus(eq(expectedCommons))).thenReturn(expectedCommonsPlus);
+        when(commonsPlusBuilderService.getAllCommonsPlus()).thenReturn(expectedCommonsPlus);
         MvcResult response = mockMvc.perform(get("/api/commons/allplus").contentType("application/json"))
                 .andExpect(status().isOk()).andReturn();
 
-        verify(commonsRepository, times(1)).findAll();
+        verify(commonsPlusBuilderService, times(1)).getAllCommonsPlus();
+        verify(commonsRepository, never()).findAll();
 
         String responseString = response.getResponse().getContentAsString();
         List<CommonsPlus> actualCommonsPlus = objectMapper.readValue(responseString,
@@ -3,12 +3,17 @@ package edu.ucsb.cs156.happiercows.controllers;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 
 import static org.awaitility.Awaitility.await;
@@ -17,6 +22,11 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -26,6 +36,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -41,10 +52,26 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import edu.ucsb.cs156.happiercows.ControllerTestCase;
 import edu.ucsb.cs156.happiercows.entities.User;
 import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobLogLine;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobLogLineKey;
+import edu.ucsb.cs156.happiercows.models.JobExecutorStats;
+import edu.ucsb.cs156.happiercows.models.JobLogEntry;
+import edu.ucsb.cs156.happiercows.models.JobLogTail;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobCheckpointRepository;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobLogLineRepository;
 import edu.ucsb.cs156.happiercows.repositories.jobs.JobsRepository;
+import edu.ucsb.cs156.happiercows.services.jobs.CommonsRunner;
+import edu.ucsb.cs156.happiercows.services.jobs.JobLogStreamService;
+import edu.ucsb.cs156.happiercows.services.jobs.JobExecutorService;
+import edu.ucsb.cs156.happiercows.services.jobs.JobOverlapService;
+import edu.ucsb.cs156.happiercows.services.jobs.JobQueueService;
 import edu.ucsb.cs156.happiercows.services.jobs.JobService;
+import edu.ucsb.cs156.happiercows.services.jobs.SchedulerLeaseService;
 import edu.ucsb.cs156.happiercows.services.CommonsPlusBuilderService;
+import edu.ucsb.cs156.happiercows.jobs.GameTickJob;
+import edu.ucsb.cs156.happiercows.jobs.GameTickJobFactory;
+import edu.ucsb.cs156.happiercows.jobs.GenerateDataJobFactory;
 import edu.ucsb.cs156.happiercows.jobs.InstructorReportJobFactory;
 import edu.ucsb.cs156.happiercows.jobs.InstructorReportJobSingleCommonsFactory;
 import edu.ucsb.cs156.happiercows.jobs.MilkTheCowsJobFactory;
@@ -54,19 +81,28 @@ import edu.ucsb.cs156.happiercows.jobs.UpdateCowHealthJobFactory;
 import edu.ucsb.cs156.happiercows.jobs.UpdateCowHealthJobFactoryInd;
 import edu.ucsb.cs156.happiercows.jobs.RecordCommonStatsJob;
 import edu.ucsb.cs156.happiercows.jobs.RecordCommonStatsJobFactory;
+import edu.ucsb.cs156.happiercows.jobs.ReconcileCommonsAggregatesJobFactory;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+import edu.ucsb.cs156.happiercows.services.CommonsAggregatesService;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @WebMvcTest(controllers = JobsController.class)
-@Import(JobService.class)
+@Import({ JobService.class, JobLogStreamService.class, JobExecutorService.class, JobOverlapService.class,
+        CommonsRunner.class })
 @AutoConfigureDataJpa
 public class JobsControllerTests extends ControllerTestCase {
 
         @MockBean
         JobsRepository jobsRepository;
 
+        @MockBean
+        JobLogLineRepository jobLogLineRepository;
+
+        @Autowired
+        JobLogStreamService jobLogStreamService;
+
         @MockBean
         UserRepository userRepository;
 
@@ -106,9 +142,33 @@ public class JobsControllerTests extends ControllerTestCase {
         @MockBean
         RecordCommonStatsJobFactory recordCommonStatsJobFactory;
 
+        @MockBean
+        GameTickJobFactory gameTickJobFactory;
+
+        @MockBean
+        ReconcileCommonsAggregatesJobFactory reconcileCommonsAggregatesJobFactory;
+
+        @MockBean
+        GenerateDataJobFactory generateDataJobFactory;
+
+        @MockBean
+        SchedulerLeaseService schedulerLeaseService;
+
+        @SpyBean
+        JobExecutorService jobExecutorService;
+
         @MockBean
         CommonsPlusBuilderService commonsPlusBuilderService;
 
+        @MockBean
+        JobCheckpointRepository jobCheckpointRepository;
+
+        @MockBean
+        JobQueueService jobQueueService;
+
+        @MockBean
+        CommonsAggregatesService commonsAggregatesService;
+
         @WithMockUser(roles = { "ADMIN" })
         @Test
         public void admin_can_get_all_jobs() throws Exception {
@@ -166,6 +226,317 @@ public class JobsControllerTests extends ControllerTestCase {
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_get_executor_stats() throws Exception {
+
+                // arrange
+
+                JobExecutorStats stats = JobExecutorStats.builder()
+                                .mode("threadPerJob")
+                                .permitsPerType(2)
+                                .queued(3)
+                                .active(4)
+                                .completed(5)
+                                .build();
+                when(jobExecutorService.getStats()).thenReturn(stats);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/jobs/executor"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                assertEquals(mapper.writeValueAsString(stats), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void users_cannot_get_executor_stats() throws Exception {
+                mockMvc.perform(get("/api/jobs/executor"))
+                                .andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_cancel_a_queued_job() throws Exception {
+
+                // arrange
+
+                when(jobsRepository.cancelQueued(7L)).thenReturn(1);
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/jobs/7/cancel").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Cancelled job 7", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_gets_404_when_cancelling_a_missing_job() throws Exception {
+
+                when(jobsRepository.findById(7L)).thenReturn(Optional.empty());
+
+                MvcResult response = mockMvc.perform(post("/api/jobs/7/cancel").with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Job with id 7 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void users_cannot_cancel_jobs() throws Exception {
+                mockMvc.perform(post("/api/jobs/7/cancel").with(csrf()))
+                                .andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_resume_a_failed_job() throws Exception {
+
+                // arrange
+
+                Job failed = Job.builder().id(7L).status("error").jobType("MilkTheCowsJob").attempts(1).build();
+                when(jobsRepository.findById(7L)).thenReturn(Optional.of(failed));
+                when(jobsRepository.resume(7L, "running", 2)).thenReturn(1);
+                when(jobQueueService.isResumable("MilkTheCowsJob")).thenReturn(true);
+                when(jobQueueService.rebuild(failed)).thenReturn(ctx -> ctx.log("milked"));
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/jobs/7/resume").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                Job job = objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+                assertEquals(7L, job.getId());
+                assertEquals(2, job.getAttempts());
+                verify(jobCheckpointRepository, timeout(5000)).deleteAllByJobId(7L);
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_gets_400_when_resuming_a_complete_job() throws Exception {
+
+                when(jobsRepository.findById(7L)).thenReturn(Optional.of(
+                                Job.builder().id(7L).status("complete").jobType("MilkTheCowsJob").build()));
+                when(jobQueueService.isResumable("MilkTheCowsJob")).thenReturn(true);
+
+                MvcResult response = mockMvc.perform(post("/api/jobs/7/resume").with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                assertEquals("Job 7 cannot be resumed, only jobs with status error or cancelled can",
+                                response.getResolvedException().getMessage());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_gets_400_when_resuming_a_job_that_does_not_checkpoint() throws Exception {
+
+                when(jobsRepository.findById(7L)).thenReturn(Optional.of(
+                                Job.builder().id(7L).status("error").jobType("RecordCommonStatsJob").build()));
+
+                MvcResult response = mockMvc.perform(post("/api/jobs/7/resume").with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                assertEquals("Job 7 cannot be resumed, RecordCommonStatsJob does not checkpoint its commons",
+                                response.getResolvedException().getMessage());
+                verify(jobsRepository, never()).resume(7L, "running", 2);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void users_cannot_resume_jobs() throws Exception {
+                mockMvc.perform(post("/api/jobs/7/resume").with(csrf()))
+                                .andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_get_all_jobs_with_logs_from_log_lines() throws Exception {
+
+                // arrange
+
+                Job legacyJob = Job.builder().id(1L).log("this is job 1").build();
+                Job job2 = Job.builder().id(2L).build();
+                Job job3 = Job.builder().id(3L).build();
+
+                when(jobsRepository.findAll()).thenReturn(List.of(legacyJob, job2, job3));
+                when(jobLogLineRepository.findAllByJobIds(Set.of(1L, 2L, 3L))).thenReturn(List.of(
+                                JobLogLine.builder().id(new JobLogLineKey(1L, 0L)).message("and more").build(),
+                                JobLogLine.builder().id(new JobLogLineKey(2L, 0L)).message("line 0").build(),
+                                JobLogLine.builder().id(new JobLogLineKey(2L, 1L)).message("line 1").build()));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/jobs/all"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(jobLogLineRepository, times(1)).findAllByJobIds(Set.of(1L, 2L, 3L));
+                Job[] jobsReturned = objectMapper.readValue(response.getResponse().getContentAsString(), Job[].class);
+                assertEquals("this is job 1\nand more", jobsReturned[0].getLog());
+                assertEquals("line 0\nline 1", jobsReturned[1].getLog());
+                assertEquals(null, jobsReturned[2].getLog());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_get_empty_job_list_without_querying_log_lines() throws Exception {
+
+                // arrange
+
+                when(jobsRepository.findAll()).thenReturn(List.of());
+
+                // act
+                mockMvc.perform(get("/api/jobs/all"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(jobLogLineRepository, times(0)).findAllByJobIds(any());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_get_lines_of_job_log_from_offset() throws Exception {
+
+                // arrange
+
+                Job job = Job.builder().id(7L).status("complete").build();
+                when(jobsRepository.findById(7L)).thenReturn(Optional.of(job));
+                when(jobLogLineRepository.countByJobId(7L)).thenReturn(3L);
+                when(jobLogLineRepository.findAllByJobIdAndSeqBetween(7L, 2L, 3L)).thenReturn(List.of(
+                                JobLogLine.builder().id(new JobLogLineKey(7L, 2L)).message("third").build()));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/jobs/7/log?offset=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                JobLogTail expected = JobLogTail.builder()
+                                .jobId(7L)
+                                .status("complete")
+                                .nextOffset(3L)
+                                .lines(List.of(new JobLogEntry(2L, "third")))
+                                .build();
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_get_newest_lines_of_job_log() throws Exception {
+
+                // arrange
+
+                Job job = Job.builder().id(7L).status("complete").log("first\nsecond\nthird").build();
+                when(jobsRepository.findById(7L)).thenReturn(Optional.of(job));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/jobs/7/log?tail=1"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                JobLogTail expected = JobLogTail.builder()
+                                .jobId(7L)
+                                .status("complete")
+                                .nextOffset(3L)
+                                .lines(List.of(new JobLogEntry(2L, "third")))
+                                .build();
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_gets_404_for_log_of_missing_job() throws Exception {
+
+                when(jobsRepository.findById(7L)).thenReturn(Optional.empty());
+
+                MvcResult response = mockMvc.perform(get("/api/jobs/7/log"))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Job with id 7 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_gets_400_for_negative_log_offset_or_tail() throws Exception {
+
+                when(jobsRepository.findById(7L)).thenReturn(Optional.of(Job.builder().id(7L).build()));
+
+                mockMvc.perform(get("/api/jobs/7/log?offset=-1"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/jobs/7/log?tail=-1"))
+                                .andExpect(status().isBadRequest());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void non_admin_cannot_get_job_log_or_stream() throws Exception {
+                mockMvc.perform(get("/api/jobs/7/log"))
+                                .andExpect(status().isForbidden());
+                mockMvc.perform(get("/api/jobs/7/stream"))
+                                .andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_stream_log_of_finished_job() throws Exception {
+
+                // arrange
+
+                Job job = Job.builder().id(8L).status("complete").log("first\nsecond").build();
+                when(jobsRepository.findById(8L)).thenReturn(Optional.of(job));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/jobs/8/stream").header("Last-Event-ID", "0"))
+                                .andExpect(request().asyncStarted()).andReturn();
+
+                // assert
+
+                String expected = "event:line\nid:1\ndata:" + mapper.writeValueAsString(new JobLogEntry(1L, "second")) + "\n\n"
+                                + "event:status\ndata:complete\n\n";
+                assertEquals(expected, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_stream_log_from_an_offset() throws Exception {
+
+                // arrange
+
+                Job job = Job.builder().id(8L).status("complete").log("first\nsecond").build();
+                when(jobsRepository.findById(8L)).thenReturn(Optional.of(job));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/jobs/8/stream?offset=1"))
+                                .andExpect(request().asyncStarted()).andReturn();
+
+                // assert
+
+                String expected = "event:line\nid:1\ndata:" + mapper.writeValueAsString(new JobLogEntry(1L, "second")) + "\n\n"
+                                + "event:status\ndata:complete\n\n";
+                assertEquals(expected, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_gets_404_for_stream_of_missing_job() throws Exception {
+
+                when(jobsRepository.findById(8L)).thenReturn(Optional.empty());
+
+                mockMvc.perform(get("/api/jobs/8/stream"))
+                                .andExpect(status().isNotFound());
+        }
+
         @WithMockUser(roles = { "ADMIN" })
         @Test
         public void admin_can_launch_test_job() throws Exception {
@@ -180,7 +551,6 @@ public class JobsControllerTests extends ControllerTestCase {
                                 .createdAt(null)
                                 .updatedAt(null)
                                 .status("running")
-                                .log("Hello World! from test job!\nauthentication is not null")
                                 .build();
 
                 Job jobCompleted = Job.builder()
@@ -189,7 +559,6 @@ public class JobsControllerTests extends ControllerTestCase {
                                 .createdAt(null)
                                 .updatedAt(null)
                                 .status("complete")
-                                .log("Hello World! from test job!\nauthentication is not null\nGoodbye from test job!")
                                 .build();
 
                 when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobCompleted);
@@ -205,10 +574,21 @@ public class JobsControllerTests extends ControllerTestCase {
 
                 assertEquals("running", jobReturned.getStatus());
 
+                // the job row is only saved when the job starts and finishes;
+                // log lines are written to job_log_lines in batches
+
                 await().atMost(1, SECONDS)
-                                .untilAsserted(() -> verify(jobsRepository, times(3)).save(eq(jobStarted)));
+                                .untilAsserted(() -> verify(jobsRepository, times(1)).save(eq(jobStarted)));
                 await().atMost(10, SECONDS)
-                                .untilAsserted(() -> verify(jobsRepository, times(5)).save(eq(jobCompleted)));
+                                .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobCompleted)));
+
+                verify(jobLogLineRepository, times(1)).saveAll(List.of(
+                                JobLogLine.builder().id(new JobLogLineKey(0L, 0L)).message("Hello World! from test job!").build(),
+                                JobLogLine.builder().id(new JobLogLineKey(0L, 1L)).message("authentication is not null").build(),
+                                JobLogLine.builder().id(new JobLogLineKey(0L, 2L)).message("Goodbye from test job!").build()));
+
+                await().atMost(1, SECONDS)
+                                .untilAsserted(() -> assertTrue(jobLogStreamService.get(0L).isEmpty()));
         }
 
         @WithMockUser(roles = { "ADMIN" })
@@ -225,7 +605,6 @@ public class JobsControllerTests extends ControllerTestCase {
                                 .createdAt(null)
                                 .updatedAt(null)
                                 .status("running")
-                                .log("Hello World! from test job!\nauthentication is not null")
                                 .build();
 
                 Job jobFailed = Job.builder()
@@ -234,7 +613,6 @@ public class JobsControllerTests extends ControllerTestCase {
                                 .createdAt(null)
                                 .updatedAt(null)
                                 .status("error")
-                                .log("Hello World! from test job!\nauthentication is not null\nFail!")
                                 .build();
 
                 when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobFailed);
@@ -250,10 +628,15 @@ public class JobsControllerTests extends ControllerTestCase {
                 assertEquals("running", jobReturned.getStatus());
 
                 await().atMost(1, SECONDS)
-                                .untilAsserted(() -> verify(jobsRepository, times(3)).save(eq(jobStarted)));
+                                .untilAsserted(() -> verify(jobsRepository, times(1)).save(eq(jobStarted)));
 
                 await().atMost(10, SECONDS)
-                                .untilAsserted(() -> verify(jobsRepository, times(4)).save(eq(jobFailed)));
+                                .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobFailed)));
+
+                verify(jobLogLineRepository, times(1)).saveAll(List.of(
+                                JobLogLine.builder().id(new JobLogLineKey(0L, 0L)).message("Hello World! from test job!").build(),
+                                JobLogLine.builder().id(new JobLogLineKey(0L, 1L)).message("authentication is not null").build(),
+                                JobLogLine.builder().id(new JobLogLineKey(0L, 2L)).message("Fail!").build()));
         }
 
         @WithMockUser(roles = { "ADMIN" })
@@ -272,6 +655,73 @@ public class JobsControllerTests extends ControllerTestCase {
                 assertNotNull(jobReturned.getStatus());
         }
 
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_launch_game_tick_job() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/jobs/launch/gametick?stages=milkTheCows,recordCommonStats").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                Job jobReturned = objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+                assertNotNull(jobReturned.getStatus());
+                verify(gameTickJobFactory).create(EnumSet.of(GameTickJob.Stage.MILK_THE_COWS, GameTickJob.Stage.RECORD_COMMON_STATS));
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_cannot_launch_game_tick_job_with_unknown_stage() throws Exception {
+
+                mockMvc.perform(post("/api/jobs/launch/gametick?stages=feedTheCows").with(csrf()))
+                                .andExpect(status().isBadRequest());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_launch_generate_data_job() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(post(
+                                "/api/jobs/launch/generatedata?seed=42&commons=2&players=3&profits=4&chatMessages=5&commonStats=6&announcements=7")
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                Job jobReturned = objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+                assertNotNull(jobReturned.getStatus());
+                verify(generateDataJobFactory).create(42L, 2, 3, 4, 5, 6, 7);
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_launch_generate_data_job_with_defaults() throws Exception {
+
+                mockMvc.perform(post("/api/jobs/launch/generatedata").with(csrf()))
+                                .andExpect(status().isOk());
+
+                verify(generateDataJobFactory).create(1L, 10, 100, 10, 5, 10, 2);
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_cannot_launch_generate_data_job_with_negative_counts() throws Exception {
+
+                for (String param : List.of("commons", "players", "profits", "chatMessages", "commonStats", "announcements")) {
+                        mockMvc.perform(post("/api/jobs/launch/generatedata?" + param + "=-1").with(csrf()))
+                                        .andExpect(status().isBadRequest());
+                }
+
+                verify(generateDataJobFactory, never()).create(anyLong(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void non_admin_cannot_launch_generate_data_job() throws Exception {
+                mockMvc.perform(post("/api/jobs/launch/generatedata").with(csrf()))
+                                .andExpect(status().isForbidden());
+        }
+
         @WithMockUser(roles = { "ADMIN" })
         @Test
         public void admin_can_launch_milk_the_cows_individual_job() throws Exception {
@@ -433,4 +883,19 @@ public class JobsControllerTests extends ControllerTestCase {
                 assertNotNull(jobReturned.getStatus());
         }
 
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_launch_reconcile_commons_aggregates_job() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(post("/api/jobs/launch/reconcilecommonsaggregates").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String responseString = response.getResponse().getContentAsString();
+                log.info("responseString={}", responseString);
+                Job jobReturned = objectMapper.readValue(responseString, Job.class);
+
+                assertNotNull(jobReturned.getStatus());
+        }
+
 }
\ No newline at end of file
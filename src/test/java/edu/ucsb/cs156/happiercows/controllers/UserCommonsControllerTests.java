@@ -2,31 +2,54 @@ package edu.ucsb.cs156.happiercows.controllers;
 
 import edu.ucsb.cs156.happiercows.ControllerTestCase;
 import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.TradeOrderBatch;
 import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.errors.EntityNotFoundException;
+import edu.ucsb.cs156.happiercows.errors.NoCowsException;
+import edu.ucsb.cs156.happiercows.errors.NotEnoughMoneyException;
+import edu.ucsb.cs156.happiercows.models.TradeOrder;
+import edu.ucsb.cs156.happiercows.models.TradeOrderResult;
+import edu.ucsb.cs156.happiercows.models.UserCommonsSummary;
+import edu.ucsb.cs156.happiercows.repositories.CommonsAggregatesRepository;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.TradeOrderBatchRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.services.CommonsAggregatesService;
+import edu.ucsb.cs156.happiercows.services.TradeService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = UserCommonsController.class)
+@Import({CommonsAggregatesService.class, TradeService.class})
 @AutoConfigureDataJpa
 public class UserCommonsControllerTests extends ControllerTestCase {
 
@@ -39,6 +62,18 @@ public class UserCommonsControllerTests extends ControllerTestCase {
     @MockBean
     CommonsRepository commonsRepository;
 
+    @MockBean
+    CommonsAggregatesRepository commonsAggregatesRepository;
+
+    @MockBean
+    TradeOrderBatchRepository tradeOrderBatchRepository;
+
+    @BeforeEach
+    public void storeCommonsAggregates() {
+        // the totals of every commons are stored, so that changes are added to them
+        when(commonsAggregatesRepository.add(anyLong(), anyInt(), anyInt(), anyDouble(), anyDouble())).thenReturn(1);
+    }
+
     Commons testCommons = Commons
             .builder()
             .name("test commons")
@@ -48,6 +83,13 @@ public class UserCommonsControllerTests extends ControllerTestCase {
             .startingDate(LocalDateTime.now())
             .build();
 
+    public UserCommonsSummary getTestUserCommonsSummary(UserCommons userCommons) {
+        return new UserCommonsSummary(userCommons.getUsername(), userCommons.getTotalWealth(),
+                userCommons.getNumOfCows(), userCommons.getCowHealth(), userCommons.getCowsBought(),
+                userCommons.getCowsSold(), userCommons.getCowDeaths(), userCommons.getUserId(),
+                userCommons.getCommonsId());
+    }
+
     public UserCommons getTestUserCommons() {
         return UserCommons.builder()
                 .user(currentUserService.getUser())
@@ -136,9 +178,6 @@ public class UserCommonsControllerTests extends ControllerTestCase {
 
         // arrange
 
-        UserCommons origUserCommons = getTestUserCommons();
-        origUserCommons.setCowsBought(1);
-
         UserCommons updateUserCommons = getTestUserCommons();
         updateUserCommons.setNumOfCows(3);
         updateUserCommons.setTotalWealth(300 - (testCommons.getCowPrice() * 2));
@@ -146,8 +185,8 @@ public class UserCommonsControllerTests extends ControllerTestCase {
 
         String expectedReturn = mapper.writeValueAsString(updateUserCommons);
 
-        when(userCommonsRepository.findByCommonsIdAndUserId(eq(1L), eq(1L))).thenReturn(Optional.of(origUserCommons));
-        when(commonsRepository.findById(eq(1L))).thenReturn(Optional.of(testCommons));
+        when(userCommonsRepository.buyCows(1L, 1L, 2)).thenReturn(1);
+        when(userCommonsRepository.findByCommonsIdAndUserId(eq(1L), eq(1L))).thenReturn(Optional.of(updateUserCommons));
 
         // act
         MvcResult response = mockMvc.perform(put("/api/usercommons/buy?commonsId=1&numCows=2")
@@ -155,8 +194,10 @@ public class UserCommonsControllerTests extends ControllerTestCase {
                 .andExpect(status().isOk()).andReturn();
 
         // assert
+        verify(userCommonsRepository, times(1)).buyCows(1L, 1L, 2);
         verify(userCommonsRepository, times(1)).findByCommonsIdAndUserId(eq(1L), eq(1L));
-        verify(userCommonsRepository, times(1)).save(updateUserCommons);
+        verify(userCommonsRepository, never()).save(any());
+        verify(commonsAggregatesRepository, times(1)).add(anyLong(), eq(2), eq(0), eq(200.0), eq(-20.0));
         String responseString = response.getResponse().getContentAsString();
         assertEquals(expectedReturn, responseString);
     }
@@ -168,11 +209,6 @@ public class UserCommonsControllerTests extends ControllerTestCase {
 
         testCommons.setCowPrice(300);
 
-        UserCommons origUserCommons = getTestUserCommons();
-        origUserCommons.setTotalWealth(300);
-        origUserCommons.setNumOfCows(1);
-        origUserCommons.setCowsBought(1);
-
         UserCommons updatedUserCommons = getTestUserCommons();
         updatedUserCommons.setTotalWealth(0);
         updatedUserCommons.setNumOfCows(2);
@@ -180,8 +216,8 @@ public class UserCommonsControllerTests extends ControllerTestCase {
 
         String expectedReturn = mapper.writeValueAsString(updatedUserCommons);
 
-        when(userCommonsRepository.findByCommonsIdAndUserId(eq(1L), eq(1L))).thenReturn(Optional.of(origUserCommons));
-        when(commonsRepository.findById(eq(1L))).thenReturn(Optional.of(testCommons));
+        when(userCommonsRepository.buyCows(1L, 1L, 1)).thenReturn(1);
+        when(userCommonsRepository.findByCommonsIdAndUserId(eq(1L), eq(1L))).thenReturn(Optional.of(updatedUserCommons));
 
         // act
         MvcResult response = mockMvc.perform(put("/api/usercommons/buy?commonsId=1&numCows=1")
@@ -189,8 +225,8 @@ public class UserCommonsControllerTests extends ControllerTestCase {
                 .andExpect(status().isOk()).andReturn();
 
         // assert
-        verify(userCommonsRepository, times(1)).findByCommonsIdAndUserId(eq(1L), eq(1L));
-        verify(userCommonsRepository, times(1)).save(updatedUserCommons);
+        verify(userCommonsRepository, times(1)).buyCows(1L, 1L, 1);
+        verify(commonsAggregatesRepository, times(1)).add(anyLong(), eq(1), eq(0), eq(100.0), eq(-300.0));
         String responseString = response.getResponse().getContentAsString();
         assertEquals(expectedReturn, responseString);
     }
@@ -201,11 +237,6 @@ public class UserCommonsControllerTests extends ControllerTestCase {
 
         // arrange
 
-        UserCommons origUserCommons = getTestUserCommons();
-        origUserCommons.setCowsSold(1);
-        origUserCommons.setCowHealth(50);
-        origUserCommons.setNumOfCows(2);
-
         UserCommons updatedUserCommons = getTestUserCommons();
         updatedUserCommons.setCowHealth(50);
         updatedUserCommons.setTotalWealth(300 + (testCommons.getCowPrice() * 0.5 * 2));
@@ -214,8 +245,8 @@ public class UserCommonsControllerTests extends ControllerTestCase {
 
         String expectedReturn = mapper.writeValueAsString(updatedUserCommons);
 
-        when(userCommonsRepository.findByCommonsIdAndUserId(eq(1L), eq(1L))).thenReturn(Optional.of(origUserCommons));
-        when(commonsRepository.findById(eq(1L))).thenReturn(Optional.of(testCommons));
+        when(userCommonsRepository.sellCows(1L, 1L, 2)).thenReturn(1);
+        when(userCommonsRepository.findByCommonsIdAndUserId(eq(1L), eq(1L))).thenReturn(Optional.of(updatedUserCommons));
 
         // act
         MvcResult response = mockMvc.perform(put("/api/usercommons/sell?commonsId=1&numCows=2")
@@ -223,8 +254,10 @@ public class UserCommonsControllerTests extends ControllerTestCase {
                 .andExpect(status().isOk()).andReturn();
 
         // assert
+        verify(userCommonsRepository, times(1)).sellCows(1L, 1L, 2);
         verify(userCommonsRepository, times(1)).findByCommonsIdAndUserId(eq(1L), eq(1L));
-        verify(userCommonsRepository, times(1)).save(updatedUserCommons);
+        verify(userCommonsRepository, never()).save(any());
+        verify(commonsAggregatesRepository, times(1)).add(anyLong(), eq(-2), eq(0), eq(-100.0), eq(10.0));
         String responseString = response.getResponse().getContentAsString();
         assertEquals(expectedReturn, responseString);
     }
@@ -348,6 +381,34 @@ public class UserCommonsControllerTests extends ControllerTestCase {
 
     }
 
+    @WithMockUser(roles = {"USER"})
+    @Test
+    public void test_BuyCow_no_cows_or_a_negative_number_is_a_bad_request() throws Exception {
+        when(userCommonsRepository.findByCommonsIdAndUserId(eq(1L), eq(1L))).thenReturn(Optional.of(getTestUserCommons()));
+
+        mockMvc.perform(put("/api/usercommons/buy?commonsId=1&numCows=0").with(csrf()))
+                .andExpect(status().is(400));
+        mockMvc.perform(put("/api/usercommons/buy?commonsId=1&numCows=-3").with(csrf()))
+                .andExpect(status().is(400));
+
+        verify(userCommonsRepository, never()).buyCows(anyLong(), anyLong(), anyInt());
+        verify(commonsAggregatesRepository, never()).add(anyLong(), anyInt(), anyInt(), anyDouble(), anyDouble());
+    }
+
+    @WithMockUser(roles = {"USER"})
+    @Test
+    public void test_SellCow_no_cows_or_a_negative_number_is_a_bad_request() throws Exception {
+        when(userCommonsRepository.findByCommonsIdAndUserId(eq(1L), eq(1L))).thenReturn(Optional.of(getTestUserCommons()));
+
+        mockMvc.perform(put("/api/usercommons/sell?commonsId=1&numCows=0").with(csrf()))
+                .andExpect(status().is(400));
+        mockMvc.perform(put("/api/usercommons/sell?commonsId=1&numCows=-3").with(csrf()))
+                .andExpect(status().is(400));
+
+        verify(userCommonsRepository, never()).sellCows(anyLong(), anyLong(), anyInt());
+        verify(commonsAggregatesRepository, never()).add(anyLong(), anyInt(), anyInt(), anyDouble(), anyDouble());
+    }
+
     @WithMockUser(roles = {"USER"})
     @Test
     public void test_BuyCow_not_enough_money() throws Exception {
@@ -378,38 +439,194 @@ public class UserCommonsControllerTests extends ControllerTestCase {
     @WithMockUser(roles = {"USER"})
     @Test
     public void test_getAllUserCommonsById_exists() throws Exception {
-        List<UserCommons> expectedUserCommons = new ArrayList<>();
-        UserCommons testexpectedUserCommons = getTestUserCommons();
-        expectedUserCommons.add(testexpectedUserCommons);
-        when(userCommonsRepository.findByCommonsId(eq(1L))).thenReturn(expectedUserCommons);
+        UserCommons userCommons = getTestUserCommons();
+        List<UserCommonsSummary> expectedUserCommons = List.of(getTestUserCommonsSummary(userCommons));
+        when(userCommonsRepository.findSummariesByCommonsId(eq(1L))).thenReturn(expectedUserCommons);
 
         MvcResult response = mockMvc.perform(get("/api/usercommons/commons/all?commonsId=1"))
                 .andExpect(status().isOk()).andReturn();
 
-        verify(userCommonsRepository, times(1)).findByCommonsId(eq(1L));
+        verify(userCommonsRepository, times(1)).findSummariesByCommonsId(eq(1L));
 
         String expectedJson = mapper.writeValueAsString(expectedUserCommons);
         String responseString = response.getResponse().getContentAsString();
 
         assertEquals(expectedJson, responseString);
+        // the same fields the endpoint sent when it serialized the entities
+        assertEquals(mapper.readValue(mapper.writeValueAsString(List.of(userCommons)), List.class),
+                mapper.readValue(responseString, List.class));
     }
 
     @WithMockUser(roles = {"ADMIN"})
     @Test
     public void test_Admin_getAllUserCommonsById_exists() throws Exception {
-        List<UserCommons> expectedUserCommons = new ArrayList<>();
-        UserCommons testexpectedUserCommons = getTestUserCommons();
-        expectedUserCommons.add(testexpectedUserCommons);
-        when(userCommonsRepository.findByCommonsId(eq(1L))).thenReturn(expectedUserCommons);
+        List<UserCommonsSummary> expectedUserCommons = List.of(getTestUserCommonsSummary(getTestUserCommons()));
+        when(userCommonsRepository.findSummariesByCommonsId(eq(1L))).thenReturn(expectedUserCommons);
 
         MvcResult response = mockMvc.perform(get("/api/usercommons/commons/all?commonsId=1").with(csrf()))
                 .andExpect(status().isOk()).andReturn();
 
-        verify(userCommonsRepository, times(1)).findByCommonsId(eq(1L));
+        verify(userCommonsRepository, times(1)).findSummariesByCommonsId(eq(1L));
 
         String expectedJson = mapper.writeValueAsString(expectedUserCommons);
         String responseString = response.getResponse().getContentAsString();
 
         assertEquals(expectedJson, responseString);
     }
+
+    private TradeOrder order(Long commonsId, TradeOrder.Type type, int numCows) {
+        return TradeOrder.builder().commonsId(commonsId).type(type).numCows(numCows).build();
+    }
+
+    private MvcResult postOrders(String idempotencyKey, List<TradeOrder> orders, int status) throws Exception {
+        var request = post("/api/usercommons/orders")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(orders));
+        if (idempotencyKey != null) {
+            request = request.header("Idempotency-Key", idempotencyKey);
+        }
+        return mockMvc.perform(request).andExpect(status().is(status)).andReturn();
+    }
+
+    @WithMockUser(roles = {"USER"})
+    @Test
+    public void test_orders_without_a_commons_a_type_or_a_positive_number_of_cows_are_not_placed() throws Exception {
+        List<List<TradeOrder>> invalid = List.of(
+                List.of(order(1L, TradeOrder.Type.BUY, 1), order(1L, TradeOrder.Type.BUY, -1000)),
+                List.of(order(1L, TradeOrder.Type.SELL, -1)),
+                List.of(order(1L, TradeOrder.Type.BUY, 0)),
+                List.of(order(1L, null, 1)),
+                List.of(order(null, TradeOrder.Type.BUY, 1)),
+                Arrays.asList(order(1L, TradeOrder.Type.BUY, 1), null));
+
+        List<Integer> invalidOrder = List.of(1, 0, 0, 0, 0, 1);
+
+        for (int i = 0; i < invalid.size(); i++) {
+            MvcResult response = postOrders("key", invalid.get(i), 400);
+            TradeOrder order = invalid.get(i).get(invalidOrder.get(i));
+            assertEquals(Map.of("message", "Every order needs a commonsId, a type of BUY or SELL, and a numCows of at least 1; order "
+                    + invalidOrder.get(i) + " is " + order), responseToJson(response));
+        }
+
+        verify(tradeOrderBatchRepository, never()).save(any());
+        verify(userCommonsRepository, never()).buyCows(anyLong(), anyLong(), anyInt());
+        verify(userCommonsRepository, never()).sellCows(anyLong(), anyLong(), anyInt());
+    }
+
+    @WithMockUser(roles = {"USER"})
+    @Test
+    public void test_orders_are_placed_in_commons_order_and_answered_in_request_order() throws Exception {
+        UserCommons bought = getTestUserCommons();
+        bought.setNumOfCows(2);
+        bought.setTotalWealth(290);
+        bought.setCowsBought(1);
+        List<TradeOrder> orders = List.of(
+                order(234L, TradeOrder.Type.BUY, 1),
+                order(1L, TradeOrder.Type.BUY, 1),
+                order(1L, TradeOrder.Type.SELL, 5));
+        when(userCommonsRepository.buyCows(1L, 1L, 1)).thenReturn(1);
+        when(userCommonsRepository.findByCommonsIdAndUserId(1L, 1L)).thenReturn(Optional.of(bought));
+
+        MvcResult response = postOrders(null, orders, 200);
+
+        InOrder inOrder = inOrder(userCommonsRepository);
+        inOrder.verify(userCommonsRepository).buyCows(1L, 1L, 1);
+        inOrder.verify(userCommonsRepository).sellCows(1L, 1L, 5);
+        inOrder.verify(userCommonsRepository).buyCows(234L, 1L, 1);
+        verify(tradeOrderBatchRepository, never()).save(any());
+        String expectedJson = mapper.writeValueAsString(List.of(
+                TradeOrderResult.rejected(orders.get(0), new EntityNotFoundException(Commons.class, 234L)),
+                TradeOrderResult.filled(orders.get(1), bought),
+                TradeOrderResult.rejected(orders.get(2), new NoCowsException("You do not have enough cows to sell!"))));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = {"USER"})
+    @Test
+    public void test_orders_with_an_idempotency_key_are_stored() throws Exception {
+        List<TradeOrder> orders = List.of(order(1L, TradeOrder.Type.BUY, 1));
+        when(userCommonsRepository.findByCommonsIdAndUserId(1L, 1L)).thenReturn(Optional.of(getTestUserCommons()));
+
+        MvcResult response = postOrders("key-1", orders, 200);
+
+        verify(tradeOrderBatchRepository).findByUserIdAndIdempotencyKey(1L, "key-1");
+        // claimed before the orders are placed, and saved with their results after
+        verify(tradeOrderBatchRepository, times(2)).save(any());
+        String expectedJson = mapper.writeValueAsString(List.of(
+                TradeOrderResult.rejected(orders.get(0), new NotEnoughMoneyException("You need more money!"))));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = {"USER"})
+    @Test
+    public void test_orders_retried_with_the_same_idempotency_key_are_not_placed_again() throws Exception {
+        TradeOrderBatch placed = TradeOrderBatch.builder().userId(1L).idempotencyKey("key-1").results("[\"placed\"]").build();
+        when(tradeOrderBatchRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.of(placed));
+
+        MvcResult response = postOrders("key-1", List.of(order(1L, TradeOrder.Type.BUY, 1)), 200);
+
+        verify(userCommonsRepository, never()).buyCows(anyLong(), anyLong(), anyInt());
+        verify(tradeOrderBatchRepository, never()).save(any());
+        assertEquals("[\"placed\"]", response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = {"USER"})
+    @Test
+    public void test_orders_with_a_key_used_by_a_concurrent_request_get_its_results() throws Exception {
+        TradeOrderBatch placed = TradeOrderBatch.builder().userId(1L).idempotencyKey("key-1").results("[\"placed\"]").build();
+        when(tradeOrderBatchRepository.findByUserIdAndIdempotencyKey(1L, "key-1"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(placed));
+        when(tradeOrderBatchRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        MvcResult response = postOrders("key-1", List.of(order(1L, TradeOrder.Type.BUY, 1)), 200);
+
+        verify(userCommonsRepository, never()).buyCows(anyLong(), anyLong(), anyInt());
+        assertEquals("[\"placed\"]", response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = {"USER"})
+    @Test
+    public void test_orders_that_violate_a_constraint_otherwise_fail() throws Exception {
+        when(tradeOrderBatchRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(userCommonsRepository.buyCows(1L, 1L, 1)).thenThrow(new DataIntegrityViolationException("constraint"));
+        List<TradeOrder> orders = List.of(order(1L, TradeOrder.Type.BUY, 1));
+
+        // the stored batch is not found, so it was not a concurrent request with the same key
+        Exception withKey = assertThrows(Exception.class, () -> postOrders("key-1", orders, 500));
+        assertEquals(DataIntegrityViolationException.class, withKey.getCause().getClass());
+        Exception withoutKey = assertThrows(Exception.class, () -> postOrders(null, orders, 500));
+        assertEquals("constraint", withoutKey.getCause().getMessage());
+        verify(tradeOrderBatchRepository, times(1)).save(any());
+    }
+
+    @WithMockUser(roles = {"USER"})
+    @Test
+    public void test_too_many_orders_are_refused() throws Exception {
+        List<TradeOrder> orders = Collections.nCopies(51, order(1L, TradeOrder.Type.BUY, 1));
+
+        MvcResult response = postOrders(null, orders, 400);
+
+        verify(userCommonsRepository, never()).buyCows(anyLong(), anyLong(), anyInt());
+        assertEquals(Map.of("message", "At most 50 orders can be placed at once"), responseToJson(response));
+    }
+
+    @WithMockUser(roles = {"USER"})
+    @Test
+    public void test_too_long_idempotency_key_is_refused() throws Exception {
+        MvcResult response = postOrders("k".repeat(256), List.of(order(1L, TradeOrder.Type.BUY, 1)), 400);
+
+        verify(userCommonsRepository, never()).buyCows(anyLong(), anyLong(), anyInt());
+        verify(tradeOrderBatchRepository, never()).findByUserIdAndIdempotencyKey(anyLong(), any());
+        assertEquals(Map.of("message", "Idempotency-Key must be at most 255 characters"), responseToJson(response));
+    }
+
+    @WithMockUser(roles = {"USER"})
+    @Test
+    public void test_longest_idempotency_key_is_accepted() throws Exception {
+        postOrders("k".repeat(255), List.of(), 200);
+
+        verify(tradeOrderBatchRepository).findByUserIdAndIdempotencyKey(1L, "k".repeat(255));
+    }
 }
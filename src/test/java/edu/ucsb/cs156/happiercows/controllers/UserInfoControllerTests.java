@@ -8,15 +8,21 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
 import edu.ucsb.cs156.happiercows.ControllerTestCase;
-import edu.ucsb.cs156.happiercows.entities.User;
+import edu.ucsb.cs156.happiercows.models.CommonsSummary;
 import edu.ucsb.cs156.happiercows.models.CurrentUser;
+import edu.ucsb.cs156.happiercows.models.CurrentUserProfile;
+import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
 import edu.ucsb.cs156.happiercows.testconfig.TestConfig;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 
@@ -27,17 +33,22 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 
 @WebMvcTest(controllers = UserInfoController.class)
 @Import(TestConfig.class)
 @AutoConfigureDataJpa
 public class UserInfoControllerTests extends ControllerTestCase {
   @Captor
-  ArgumentCaptor<User> userCaptor;
+  ArgumentCaptor<Instant> instantCaptor;
 
   @MockBean
   UserRepository userRepository;
 
+  @MockBean
+  UserCommonsRepository userCommonsRepository;
+
   @Test
   public void currentUser__logged_out() throws Exception {
     mockMvc.perform(get("/api/currentUser"))
@@ -55,7 +66,9 @@ public class UserInfoControllerTests extends ControllerTestCase {
     // arrange
 
     CurrentUser currentUser = currentUserService.getCurrentUser();
-    String expectedJson = mapper.writeValueAsString(currentUser);
+    List<CommonsSummary> commons = List.of(new CommonsSummary(17L, "Pasture"), new CommonsSummary(18L, "Meadow"));
+    when(userCommonsRepository.findCommonsSummariesByUserId(currentUser.getUser().getId())).thenReturn(commons);
+    String expectedJson = mapper.writeValueAsString(CurrentUserProfile.of(currentUser, commons));
 
     // act
 
@@ -65,6 +78,9 @@ public class UserInfoControllerTests extends ControllerTestCase {
     // assert
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
+    Map<String, Object> user = (Map<String, Object>) responseToJson(response).get("user");
+    assertEquals(currentUser.getUser().getEmail(), user.get("email"));
+    assertEquals(List.of(Map.of("id", 17, "name", "Pasture"), Map.of("id", 18, "name", "Meadow")), user.get("commons"));
   }
 
   @WithMockUser(roles = { "USER" })
@@ -78,8 +94,8 @@ public class UserInfoControllerTests extends ControllerTestCase {
 
     assertFalse(response.getResponse().getContentAsString().isEmpty());
 
-    verify(userRepository).save(userCaptor.capture());
-    User savedUser = userCaptor.getValue();
-    assertTrue(savedUser.getLastOnline().isAfter(beforeUpdate));
+    verify(userRepository).updateLastOnline(eq(currentUser.getUser().getId()), instantCaptor.capture());
+    verify(userRepository, never()).save(any());
+    assertTrue(instantCaptor.getValue().isAfter(beforeUpdate));
   }
 }
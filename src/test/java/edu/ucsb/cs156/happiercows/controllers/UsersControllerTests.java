@@ -1,6 +1,8 @@
 package edu.ucsb.cs156.happiercows.controllers;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
@@ -10,6 +12,7 @@ import org.springframework.test.web.servlet.MvcResult;
 import edu.ucsb.cs156.happiercows.ControllerTestCase;
 import edu.ucsb.cs156.happiercows.entities.User;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.services.UserCache;
 import edu.ucsb.cs156.happiercows.testconfig.TestConfig;
 
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
@@ -37,6 +40,15 @@ public class UsersControllerTests extends ControllerTestCase {
   @MockBean
   UserRepository userRepository;
 
+  @Autowired
+  UserCache userCache;
+
+  @BeforeEach
+  public void emptyUserCache() {
+    // the context, and so the cache, is shared by the tests
+    userCache.invalidateAll();
+  }
+
   @Test
   public void users__logged_out() throws Exception {
     mockMvc.perform(get("/api/admin/users"))
@@ -102,15 +114,20 @@ public class UsersControllerTests extends ControllerTestCase {
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void admin_user_can_suspend_user() throws Exception {
-    User u1 = User.builder().id(1L).build();
+    User u1 = User.builder().id(1L).email("user1@ucsb.edu").build();
     User user = spy(u1);
     when(userRepository.findById(u1.getId())).thenReturn(Optional.of(user));
+    when(userRepository.findByEmail("user1@ucsb.edu")).thenReturn(Optional.of(user));
     when(userRepository.save(any(User.class))).thenReturn(user);
+    userCache.findByEmail("user1@ucsb.edu");
 
     MvcResult response = mockMvc.perform(post("/api/admin/users/suspend").param("userId", "1").with(csrf())).andExpect(status().isOk()).andReturn();
 
     verify(userRepository, times(1)).save(user);
     verify(user, times(1)).setSuspended(true);
+    // the user is no longer cached, so it is read again
+    userCache.findByEmail("user1@ucsb.edu");
+    verify(userRepository, times(2)).findByEmail("user1@ucsb.edu");
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("User with id 1 suspended", json.get("message"));
@@ -119,15 +136,20 @@ public class UsersControllerTests extends ControllerTestCase {
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void admin_user_can_restore_user() throws Exception {
-    User u1 = User.builder().id(1L).build();
+    User u1 = User.builder().id(1L).email("user1@ucsb.edu").build();
     User user = spy(u1);
     when(userRepository.findById(u1.getId())).thenReturn(Optional.of(user));
+    when(userRepository.findByEmail("user1@ucsb.edu")).thenReturn(Optional.of(user));
     when(userRepository.save(any(User.class))).thenReturn(user);
+    userCache.findByEmail("user1@ucsb.edu");
 
     MvcResult response = mockMvc.perform(post("/api/admin/users/restore").param("userId", "1").with(csrf())).andExpect(status().isOk()).andReturn();
 
     verify(userRepository, times(1)).save(user);
     verify(user, times(1)).setSuspended(false);
+    // the user is no longer cached, so it is read again
+    userCache.findByEmail("user1@ucsb.edu");
+    verify(userRepository, times(2)).findByEmail("user1@ucsb.edu");
     Map<String, Object> json = responseToJson(response);
     assertEquals("User with id 1 restored", json.get("message"));
   }
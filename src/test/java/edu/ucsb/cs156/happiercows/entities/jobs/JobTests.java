@@ -0,0 +1,66 @@
+package edu.ucsb.cs156.happiercows.entities.jobs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JobTests {
+
+    @Test
+    void log_is_null_when_there_are_no_lines() {
+        Job job = Job.builder().build();
+        assertNull(job.getLog());
+
+        job.setLogLines(List.of());
+        assertNull(job.getLog());
+    }
+
+    @Test
+    void log_is_assembled_from_appended_lines() {
+        Job job = Job.builder().build();
+
+        job.appendLog("first");
+        job.appendLog("second");
+
+        assertEquals("first\nsecond", job.getLog());
+    }
+
+    @Test
+    void lines_follow_a_log_stored_in_the_jobs_table() {
+        Job job = Job.builder().log("old line").build();
+
+        job.setLogLines(List.of("new line"));
+
+        assertEquals("old line\nnew line", job.getLog());
+    }
+
+    @Test
+    void job_serialized_to_json_includes_assembled_log_but_not_lines() {
+        var objectMapper = new ObjectMapper();
+        objectMapper.findAndRegisterModules();
+        Job job = Job.builder().id(7L).build();
+        job.appendLog("hello");
+
+        Map<String, Object> asMap = objectMapper.convertValue(job, Map.class);
+
+        assertEquals("hello", asMap.get("log"));
+        assertFalse(asMap.containsKey("logLines"));
+    }
+
+    @Test
+    void log_lines_are_new_until_persisted_or_loaded() {
+        JobLogLine line = JobLogLine.builder().id(new JobLogLineKey(1L, 0L)).message("hello").build();
+        assertTrue(line.isNew());
+
+        line.markPersisted();
+
+        assertFalse(line.isNew());
+    }
+}
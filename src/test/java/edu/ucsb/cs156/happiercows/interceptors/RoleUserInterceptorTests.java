@@ -37,6 +37,7 @@ import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandl
 
 import edu.ucsb.cs156.happiercows.entities.User;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.services.UserCache;
 import wiremock.javax.servlet.http.HttpServletResponse;
 
 @SpringBootTest
@@ -48,8 +49,14 @@ public class RoleUserInterceptorTests {
   @Autowired
   private RequestMappingHandlerMapping mapping;
 
+  @Autowired
+  UserCache userCache;
+
   @BeforeEach
   public void setupSecurityContext() {
+    // the context, and so the cache, is shared by the tests
+    userCache.invalidateAll();
+
     Map<String, Object> attributes = new HashMap<>();
     attributes.put("id", 1);
     attributes.put("email", "gauchoMock@ucsb.edu");
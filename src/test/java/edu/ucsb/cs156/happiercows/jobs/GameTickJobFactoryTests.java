@@ -0,0 +1,76 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
+import org.springframework.boot.test.autoconfigure.web.client.RestClientTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import edu.ucsb.cs156.happiercows.JobTestCase;
+import edu.ucsb.cs156.happiercows.repositories.CommonStatsRepository;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.ProfitRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
+
+@RestClientTest(GameTickJobFactory.class)
+@AutoConfigureDataJpa
+public class GameTickJobFactoryTests extends JobTestCase {
+
+    @MockBean
+    CommonsRepository commonsRepository;
+
+    @MockBean
+    UserCommonsRepository userCommonsRepository;
+
+    @MockBean
+    ProfitRepository profitRepository;
+
+    @MockBean
+    CommonStatsRepository commonStatsRepository;
+
+    @Autowired
+    GameTickJobFactory gameTickJobFactory;
+
+    @Test
+    void test_create() throws Exception {
+
+        // Act
+        Set<GameTickJob.Stage> stages = EnumSet.of(GameTickJob.Stage.UPDATE_COW_HEALTH);
+        GameTickJob gameTickJob = (GameTickJob) gameTickJobFactory.create(stages);
+
+        // Assert
+        assertEquals(commonsRepository, gameTickJob.getCommonsRepository());
+        assertEquals(userCommonsRepository, gameTickJob.getUserCommonsRepository());
+        assertEquals(profitRepository, gameTickJob.getProfitRepository());
+        assertEquals(commonStatsRepository, gameTickJob.getCommonStatsRepository());
+        assertNotNull(gameTickJob.getTransactionTemplate());
+        assertEquals(stages, gameTickJob.getStages());
+    }
+
+    @Test
+    void test_create_from_queued_parameters() throws Exception {
+
+        // Arrange
+        QueueableJob queuedJob = (QueueableJob) gameTickJobFactory.create(EnumSet.of(GameTickJob.Stage.UPDATE_COW_HEALTH, GameTickJob.Stage.RECORD_COMMON_STATS));
+
+        // Act
+        GameTickJob job = (GameTickJob) gameTickJobFactory.create(queuedJob.getParameters());
+
+        // Assert
+        assertEquals("GameTickJob", gameTickJobFactory.getJobType());
+        assertTrue(gameTickJobFactory.isResumable());
+        assertEquals("GameTickJob", job.getJobType());
+        assertEquals(Map.of("stages", "updateCowHealth,recordCommonStats"), queuedJob.getParameters());
+        assertEquals(Map.of("stages", "updateCowHealth,recordCommonStats"), job.getParameters());
+    }
+}
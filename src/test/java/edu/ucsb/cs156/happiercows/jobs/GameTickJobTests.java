@@ -0,0 +1,361 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.happiercows.JobTestCase;
+import edu.ucsb.cs156.happiercows.entities.CommonStats;
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsPlus;
+import edu.ucsb.cs156.happiercows.entities.Profit;
+import edu.ucsb.cs156.happiercows.entities.User;
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobCheckpoint;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobCheckpointKey;
+import edu.ucsb.cs156.happiercows.repositories.CommonStatsRepository;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.ProfitRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobCheckpointRepository;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
+import edu.ucsb.cs156.happiercows.strategies.CowHealthUpdateStrategies;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration
+public class GameTickJobTests extends JobTestCase {
+    @Mock
+    CommonsRepository commonsRepository;
+
+    @Mock
+    UserCommonsRepository userCommonsRepository;
+
+    @Mock
+    ProfitRepository profitRepository;
+
+    @Mock
+    CommonStatsRepository commonStatsRepository;
+
+    @Mock
+    JobCheckpointRepository jobCheckpointRepository;
+
+    PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private Commons commons(CowHealthUpdateStrategies strategy) {
+        return Commons.builder()
+                .id(17L)
+                .name("test commons")
+                .cowPrice(10)
+                .milkPrice(2)
+                .startingBalance(300)
+                .startingDate(LocalDateTime.now())
+                .carryingCapacity(10)
+                .capacityPerUser(2)
+                .degradationRate(1.5)
+                .aboveCapacityHealthUpdateStrategy(strategy)
+                .belowCapacityHealthUpdateStrategy(CowHealthUpdateStrategies.Constant)
+                .build();
+    }
+
+    private List<UserCommons> players(Commons commons) {
+        List<UserCommons> players = new ArrayList<>();
+        players.add(UserCommons.builder().user(User.builder().id(1L).fullName("Chris Gaucho").build())
+                .commons(commons).numOfCows(6).cowHealth(40.25).totalWealth(300).build());
+        players.add(UserCommons.builder().user(User.builder().id(2L).fullName("Pat Tritons").build())
+                .commons(commons).numOfCows(7).cowHealth(3.0).cowDeaths(2).totalWealth(100).build());
+        players.add(UserCommons.builder().user(User.builder().id(3L).fullName("Sam Mustang").build())
+                .commons(commons).numOfCows(0).cowHealth(99.5).totalWealth(50).build());
+        return players;
+    }
+
+    private GameTickJob gameTickJob(Set<GameTickJob.Stage> stages) {
+        return new GameTickJob(commonsRepository, userCommonsRepository, profitRepository,
+                commonStatsRepository, new TransactionTemplate(transactionManager), stages);
+    }
+
+    @Test
+    void all_stages_load_each_commons_once_and_write_back_once() throws Exception {
+
+        // Arrange
+
+        Commons commons = commons(CowHealthUpdateStrategies.Linear);
+        List<UserCommons> players = players(commons);
+        when(commonsRepository.findAll()).thenReturn(List.of(commons));
+        when(userCommonsRepository.findByCommonsId(17L)).thenReturn(players);
+
+        Job job = Job.builder().build();
+        JobContext ctx = new JobContext(null, job);
+
+        // Act
+        gameTickJob(EnumSet.allOf(GameTickJob.Stage.class)).accept(ctx);
+
+        // Assert
+
+        // 13 cows, effective capacity 10: Linear takes 4.5 off every player's health
+        assertEquals(35.75, players.get(0).getCowHealth());
+        assertEquals(100.0, players.get(1).getCowHealth());
+        assertEquals(0, players.get(1).getNumOfCows());
+        assertEquals(9, players.get(1).getCowDeaths());
+        assertEquals(95.0, players.get(2).getCowHealth());
+        assertEquals(300 + 6 * (35.75 / 100.0) * 2, players.get(0).getTotalWealth());
+        assertEquals(100.0, players.get(1).getTotalWealth());
+
+        verify(userCommonsRepository, times(1)).findByCommonsId(17L);
+        verify(commonsRepository, never()).getNumCows(anyLong());
+        verify(commonsRepository, never()).getNumUsers(anyLong());
+        verify(userCommonsRepository, times(1)).saveAll(players);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Profit>> profits = ArgumentCaptor.forClass(List.class);
+        verify(profitRepository, times(1)).saveAll(profits.capture());
+        assertEquals(3, profits.getValue().size());
+        assertEquals(6 * (35.75 / 100.0) * 2, profits.getValue().get(0).getAmount());
+        assertEquals(35.75, profits.getValue().get(0).getAvgCowHealth());
+
+        verify(commonStatsRepository, times(1)).save(CommonStats.builder()
+                .commonsId(17L)
+                .numCows(6)
+                .avgHealth(35.75 * 6 / 6)
+                .build());
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(transactionManager, times(1)).commit(any());
+
+        String expected = """
+                Starting game tick, stages: updateCowHealth, milkTheCows, recordCommonStats
+                Commons test commons, players: 3
+                 Updating cow health, strategy: Linear, totalCows: 13, effectiveCapacity: 10
+                 9 cows for this user died.
+                 Milked cows, milk price: $2.00, profits recorded: 3, total profit: $4.29
+                 Recorded stats, numCows: 6, avgHealth: 35.75
+                Game tick done!""";
+        assertEquals(expected, job.getLog());
+    }
+
+    @Test
+    void all_stages_give_the_same_result_as_the_separate_jobs() throws Exception {
+        for (CowHealthUpdateStrategies strategy : CowHealthUpdateStrategies.values()) {
+
+            // Arrange
+
+            Commons commons = commons(strategy);
+            List<UserCommons> fused = players(commons);
+            List<UserCommons> separate = players(commons);
+            JobContext ctx = new JobContext(null, Job.builder().build());
+
+            when(commonsRepository.getNumUsers(17L)).thenReturn(Optional.of(3));
+            when(commonsRepository.getNumCows(17L)).thenReturn(Optional.of(13));
+            when(userCommonsRepository.findByCommonsId(17L)).thenReturn(separate);
+            CommonsPlus commonsPlus = CommonsPlus.builder().commons(commons).totalCows(13).totalUsers(3).build();
+
+            // Act
+
+            UpdateCowHealthJob.runUpdateJobInCommons(commons, commonsPlus, commonsRepository,
+                    userCommonsRepository, ctx);
+            for (UserCommons userCommons : separate) {
+                MilkTheCowsJob.milkCows(ctx, commons, userCommons, profitRepository, userCommonsRepository);
+            }
+
+            GameTickJob.updateCowHealth(commons, fused, ctx);
+            GameTickJob.milkCows(commons, fused, ctx);
+            CommonStats stats = GameTickJob.recordCommonStats(commons, fused, ctx);
+
+            // Assert
+
+            int separateCows = 0;
+            double separateHealth = 0;
+            for (int i = 0; i < fused.size(); i++) {
+                assertEquals(separate.get(i).getCowHealth(), fused.get(i).getCowHealth());
+                assertEquals(separate.get(i).getNumOfCows(), fused.get(i).getNumOfCows());
+                assertEquals(separate.get(i).getCowDeaths(), fused.get(i).getCowDeaths());
+                assertEquals(separate.get(i).getTotalWealth(), fused.get(i).getTotalWealth());
+                separateCows += separate.get(i).getNumOfCows();
+                separateHealth += separate.get(i).getCowHealth() * separate.get(i).getNumOfCows();
+            }
+            assertEquals(separateCows, stats.getNumCows());
+            assertEquals(separateHealth / separateCows, stats.getAvgHealth());
+        }
+    }
+
+    @Test
+    void resumed_tick_skips_commons_already_ticked_and_checkpoints_the_rest() throws Exception {
+
+        // Arrange
+
+        Commons ticked = commons(CowHealthUpdateStrategies.Linear);
+        ticked.setId(16L);
+        ticked.setName("ticked commons");
+        Commons commons = commons(CowHealthUpdateStrategies.Linear);
+        when(commonsRepository.findAll()).thenReturn(List.of(ticked, commons));
+        when(userCommonsRepository.findByCommonsId(17L)).thenReturn(players(commons));
+        JobCheckpoint tickedCheckpoint = JobCheckpoint.start(5L, 16L);
+        tickedCheckpoint.setComplete(true);
+        when(jobCheckpointRepository.findById(new JobCheckpointKey(5L, 16L))).thenReturn(Optional.of(tickedCheckpoint));
+        when(jobCheckpointRepository.findById(new JobCheckpointKey(5L, 17L))).thenReturn(Optional.empty());
+        Job job = Job.builder().id(5L).build();
+        JobContext ctx = new JobContext(null, job);
+        ctx.setJobCheckpointRepository(jobCheckpointRepository);
+
+        // Act
+        gameTickJob(EnumSet.of(GameTickJob.Stage.RECORD_COMMON_STATS)).accept(ctx);
+
+        // Assert
+
+        verify(userCommonsRepository, never()).findByCommonsId(16L);
+        verify(commonStatsRepository, times(1)).save(any());
+        JobCheckpoint done = JobCheckpoint.start(5L, 17L);
+        done.setComplete(true);
+        verify(jobCheckpointRepository, times(1)).save(done);
+        verify(transactionManager, times(2)).commit(any());
+        assertTrue(job.getLog().contains("\nCommons ticked commons already ticked\nCommons test commons, players: 3\n"));
+    }
+
+    @Test
+    void stats_only_does_not_write_players_or_profits() throws Exception {
+
+        // Arrange
+
+        Commons commons = commons(CowHealthUpdateStrategies.Linear);
+        when(commonsRepository.findAll()).thenReturn(List.of(commons));
+        when(userCommonsRepository.findByCommonsId(17L)).thenReturn(players(commons));
+        Job job = Job.builder().build();
+        JobContext ctx = new JobContext(null, job);
+
+        // Act
+        gameTickJob(EnumSet.of(GameTickJob.Stage.RECORD_COMMON_STATS)).accept(ctx);
+
+        // Assert
+
+        verify(userCommonsRepository, never()).saveAll(any());
+        verify(profitRepository, never()).saveAll(any());
+        verify(commonStatsRepository, times(1)).save(CommonStats.builder()
+                .commonsId(17L)
+                .numCows(13)
+                .avgHealth((40.25 * 6 + 3.0 * 7) / 13)
+                .build());
+        assertTrue(job.getLog().startsWith("Starting game tick, stages: recordCommonStats\n"));
+    }
+
+    @Test
+    void commons_without_players_skips_cow_health() throws Exception {
+
+        // Arrange
+
+        Commons commons = commons(CowHealthUpdateStrategies.Linear);
+        when(commonsRepository.findAll()).thenReturn(List.of(commons));
+        when(userCommonsRepository.findByCommonsId(17L)).thenReturn(List.of());
+        Job job = Job.builder().build();
+        JobContext ctx = new JobContext(null, job);
+
+        // Act
+        gameTickJob(EnumSet.of(GameTickJob.Stage.UPDATE_COW_HEALTH, GameTickJob.Stage.MILK_THE_COWS)).accept(ctx);
+
+        // Assert
+
+        verify(userCommonsRepository, times(1)).saveAll(List.of());
+        verify(profitRepository, never()).saveAll(any());
+        verify(commonStatsRepository, never()).save(any());
+
+        String expected = """
+                Starting game tick, stages: updateCowHealth, milkTheCows
+                Commons test commons, players: 0
+                 No users in this commons, skipping cow health
+                 Milked cows, milk price: $2.00, profits recorded: 0, total profit: $0.00
+                Game tick done!""";
+        assertEquals(expected, job.getLog());
+    }
+
+    @Test
+    void below_capacity_uses_the_below_capacity_strategy() throws Exception {
+
+        // Arrange
+
+        Commons commons = commons(CowHealthUpdateStrategies.Linear);
+        List<UserCommons> players = players(commons);
+        players.get(0).setNumOfCows(1);
+        players.get(1).setNumOfCows(2);
+        when(commonsRepository.findAll()).thenReturn(List.of(commons));
+        when(userCommonsRepository.findByCommonsId(17L)).thenReturn(players);
+        Job job = Job.builder().build();
+        JobContext ctx = new JobContext(null, job);
+
+        // Act
+        gameTickJob(EnumSet.of(GameTickJob.Stage.UPDATE_COW_HEALTH)).accept(ctx);
+
+        // Assert
+
+        // 3 cows, effective capacity 10: Constant adds the degradation rate
+        assertEquals(41.75, players.get(0).getCowHealth());
+        assertEquals(4.5, players.get(1).getCowHealth());
+        assertEquals(100.0, players.get(2).getCowHealth());
+        verify(userCommonsRepository, times(1)).saveAll(players);
+        verify(profitRepository, never()).saveAll(any());
+        verify(commonStatsRepository, never()).save(any());
+
+        String expected = """
+                Starting game tick, stages: updateCowHealth
+                Commons test commons, players: 3
+                 Updating cow health, strategy: Constant, totalCows: 3, effectiveCapacity: 10
+                Game tick done!""";
+        assertEquals(expected, job.getLog());
+    }
+
+    @Test
+    void milk_only_writes_players_and_profits_without_changing_health() throws Exception {
+
+        // Arrange
+
+        Commons commons = commons(CowHealthUpdateStrategies.Linear);
+        List<UserCommons> players = players(commons);
+        when(commonsRepository.findAll()).thenReturn(List.of(commons));
+        when(userCommonsRepository.findByCommonsId(17L)).thenReturn(players);
+        Job job = Job.builder().build();
+        JobContext ctx = new JobContext(null, job);
+
+        // Act
+        gameTickJob(EnumSet.of(GameTickJob.Stage.MILK_THE_COWS)).accept(ctx);
+
+        // Assert
+
+        assertEquals(40.25, players.get(0).getCowHealth());
+        assertEquals(300 + 6 * (40.25 / 100.0) * 2, players.get(0).getTotalWealth());
+        verify(userCommonsRepository, times(1)).saveAll(players);
+        verify(profitRepository, times(1)).saveAll(any());
+        verify(commonStatsRepository, never()).save(any());
+        assertTrue(job.getLog().startsWith("Starting game tick, stages: milkTheCows\n"));
+    }
+
+    @Test
+    void stages_are_read_from_their_keys() {
+        assertEquals(EnumSet.of(GameTickJob.Stage.UPDATE_COW_HEALTH, GameTickJob.Stage.RECORD_COMMON_STATS),
+                GameTickJob.Stage.fromKeys(new String[] { "recordCommonStats", " updateCowHealth", "" }));
+        assertEquals(GameTickJob.Stage.MILK_THE_COWS, GameTickJob.Stage.fromKey("milkTheCows"));
+
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> GameTickJob.Stage.fromKey("feedTheCows"));
+        assertEquals("Unknown game tick stage: feedTheCows", thrown.getMessage());
+    }
+}
@@ -0,0 +1,49 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
+import org.springframework.boot.test.autoconfigure.web.client.RestClientTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import edu.ucsb.cs156.happiercows.JobTestCase;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+
+@RestClientTest(GenerateDataJobFactory.class)
+@AutoConfigureDataJpa
+public class GenerateDataJobFactoryTests extends JobTestCase {
+
+    @MockBean
+    JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    CommonsRepository commonsRepository;
+
+    @Autowired
+    GenerateDataJobFactory generateDataJobFactory;
+
+    @Test
+    void test_create() throws Exception {
+
+        // Act
+        GenerateDataJob generateDataJob = (GenerateDataJob) generateDataJobFactory.create(42L, 2, 3, 4, 5, 6, 7);
+
+        // Assert
+        assertEquals(jdbcTemplate, generateDataJob.getJdbcTemplate());
+        assertEquals(commonsRepository, generateDataJob.getCommonsRepository());
+        assertEquals(42L, generateDataJob.getSeed());
+        assertEquals(2, generateDataJob.getCommons());
+        assertEquals(3, generateDataJob.getPlayers());
+        assertEquals(4, generateDataJob.getProfits());
+        assertEquals(5, generateDataJob.getChatMessages());
+        assertEquals(6, generateDataJob.getCommonStats());
+        assertEquals(7, generateDataJob.getAnnouncements());
+        assertNotNull(generateDataJob.getTransactionTemplate());
+        assertNotNull(generateDataJob.getBaseTime());
+    }
+}
@@ -0,0 +1,277 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.happiercows.JobTestCase;
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration
+public class GenerateDataJobTests extends JobTestCase {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    /**
+     * Mocks for one run of the job; the rows of every batch sent to
+     * batchUpdate are copied (the job reuses its lists) and kept by table.
+     * Each insert reports updateCount rows, and commits fail from the
+     * failedCommit'th on (0 for never).
+     */
+    private static class Database {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        CommonsRepository commonsRepository = mock(CommonsRepository.class);
+        Map<String, List<Object[]>> rows = new LinkedHashMap<>();
+        Map<String, List<Integer>> batchSizes = new LinkedHashMap<>();
+        List<Commons> commons = new ArrayList<>();
+        int updateCount = 1;
+        int failedCommit = 0;
+        int commits = 0;
+
+        @SuppressWarnings("unchecked")
+        Database(long lastUserId, int newUsers) {
+            when(commonsRepository.saveAll(any())).thenAnswer(invocation -> {
+                long id = 10;
+                for (Commons c : (Iterable<Commons>) invocation.getArgument(0)) {
+                    c.setId(id++);
+                    commons.add(c);
+                }
+                return invocation.getArgument(0);
+            });
+            when(jdbcTemplate.queryForObject("select coalesce(max(id), 0) from users", Long.class))
+                    .thenReturn(lastUserId);
+            when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(), any()))
+                    .thenReturn(LongStream.rangeClosed(lastUserId + 1, lastUserId + newUsers).boxed()
+                            .collect(Collectors.toList()));
+            when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+                String table = invocation.getArgument(0, String.class).split(" ")[2];
+                List<Object[]> batch = invocation.getArgument(1);
+                rows.computeIfAbsent(table, t -> new ArrayList<>()).addAll(batch);
+                batchSizes.computeIfAbsent(table, t -> new ArrayList<>()).add(batch.size());
+                int[] updated = new int[batch.size()];
+                Arrays.fill(updated, updateCount);
+                return updated;
+            });
+        }
+
+        GenerateDataJob job(long seed, int commons, int players, int profits, int chatMessages, int commonStats,
+                int announcements) {
+            PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+            doAnswer(invocation -> {
+                if (++commits == failedCommit) {
+                    throw new TransactionSystemException("commit failed");
+                }
+                return null;
+            }).when(transactionManager).commit(any());
+            return GenerateDataJob.builder()
+                    .jdbcTemplate(jdbcTemplate)
+                    .commonsRepository(commonsRepository)
+                    .transactionTemplate(new TransactionTemplate(transactionManager))
+                    .seed(seed)
+                    .commons(commons)
+                    .players(players)
+                    .profits(profits)
+                    .chatMessages(chatMessages)
+                    .commonStats(commonStats)
+                    .announcements(announcements)
+                    .baseTime(BASE_TIME)
+                    .build();
+        }
+    }
+
+    @Test
+    void generates_rows_for_every_table() throws Exception {
+
+        // Arrange
+        Database db = new Database(100L, 6);
+        Job job = Job.builder().build();
+        JobContext ctx = new JobContext(null, job);
+
+        // Act
+        db.job(5L, 2, 3, 2, 1, 2, 1).accept(ctx);
+
+        // Assert
+        String[] log = job.getLog().split("\n");
+        String expected = """
+                Generating synthetic data, seed: 5
+                 Inserted 2 commons
+                 Inserted 6 users
+                 Inserted 6 user_commons
+                 Inserted 12 profits
+                 Inserted 6 chat_message
+                 Inserted 4 commonstats
+                 Inserted 2 announcement""";
+        assertEquals(expected, String.join("\n", List.of(log).subList(0, 8)));
+        assertTrue(log[8].matches("Generated 38 rows in \\d+ ms \\(\\d+ rows/s\\)"), log[8]);
+
+        assertEquals(2, db.commons.size());
+        assertEquals("synthetic-5-0", db.commons.get(0).getName());
+        assertEquals(BASE_TIME.minusDays(7), db.commons.get(0).getStartingDate());
+        assertEquals(BASE_TIME.plusDays(30), db.commons.get(0).getLastDate());
+
+        assertEquals(List.of("users", "user_commons", "profits", "chat_message", "commonstats", "announcement"),
+                List.copyOf(db.rows.keySet()));
+
+        Object[] user = db.rows.get("users").get(4);
+        assertEquals("synthetic-5-1-1@example.org", user[0]);
+        assertEquals("synthetic-5", user[4]);
+        assertEquals(Timestamp.valueOf(BASE_TIME), user[8]);
+
+        // the players of each commons are written before their profits
+        assertEquals(List.of(3, 3), db.batchSizes.get("user_commons"));
+        Object[] player = db.rows.get("user_commons").get(4);
+        assertEquals(105L, player[0]);
+        assertEquals(11L, player[1]);
+        assertEquals("synthetic-5-1-1", player[2]);
+
+        Object[] profit = db.rows.get("profits").get(8);
+        int cows = (int) player[4];
+        double health = (double) player[5];
+        assertEquals(105L, profit[0]);
+        assertEquals(11L, profit[1]);
+        assertEquals(cows * (health / 100.0) * db.commons.get(1).getMilkPrice(), profit[2]);
+        assertEquals(Timestamp.valueOf(BASE_TIME.minusHours(24)), profit[3]);
+        assertEquals(cows, profit[4]);
+        assertEquals(health, profit[5]);
+
+        Object[] chat = db.rows.get("chat_message").get(5);
+        assertEquals(106L, chat[0]);
+        assertEquals("Message 0 from player 2", chat[3]);
+
+        assertEquals(11L, db.rows.get("commonstats").get(3)[0]);
+        assertEquals(Timestamp.valueOf(BASE_TIME.minusHours(12)), db.rows.get("commonstats").get(3)[3]);
+        assertEquals("Announcement 0", db.rows.get("announcement").get(1)[3]);
+
+        verify(db.jdbcTemplate).queryForList("select id from users where id > ? and family_name = ? order by id",
+                Long.class, 100L, "synthetic-5");
+    }
+
+    @Test
+    void rows_without_an_update_count_are_counted_once_each() throws Exception {
+
+        Database db = new Database(100L, 6);
+        db.updateCount = Statement.SUCCESS_NO_INFO;
+        Job job = Job.builder().build();
+
+        db.job(5L, 2, 3, 2, 1, 2, 1).accept(new JobContext(null, job));
+
+        assertTrue(job.getLog().contains("\nGenerated 38 rows in "), job.getLog());
+    }
+
+    @Test
+    void only_rows_of_committed_commons_are_counted() throws Exception {
+
+        // Arrange: the users and the first commons commit, the second commons does not
+        Database db = new Database(100L, 6);
+        db.failedCommit = 3;
+        Job job = Job.builder().build();
+
+        // Act
+        assertThrows(TransactionSystemException.class,
+                () -> db.job(5L, 2, 3, 2, 1, 2, 1).accept(new JobContext(null, job)));
+
+        // Assert: both commons were sent, but the log has only the first
+        assertEquals(12, db.rows.get("profits").size());
+        String expected = """
+                Generating synthetic data, seed: 5
+                 Inserted 2 commons
+                 Inserted 6 users
+                 Inserted 3 user_commons
+                 Inserted 6 profits
+                 Inserted 3 chat_message
+                 Inserted 2 commonstats
+                 Inserted 1 announcement""";
+        assertEquals(expected, job.getLog());
+    }
+
+    @Test
+    void the_same_seed_generates_the_same_rows() throws Exception {
+
+        Database first = new Database(0L, 4);
+        Database second = new Database(0L, 4);
+        Database other = new Database(0L, 4);
+
+        first.job(9L, 2, 2, 1, 1, 1, 1).accept(new JobContext(null, Job.builder().build()));
+        second.job(9L, 2, 2, 1, 1, 1, 1).accept(new JobContext(null, Job.builder().build()));
+        other.job(10L, 2, 2, 1, 1, 1, 1).accept(new JobContext(null, Job.builder().build()));
+
+        for (String table : first.rows.keySet()) {
+            assertArrayEquals(first.rows.get(table).toArray(), second.rows.get(table).toArray(), table);
+        }
+        assertEquals(first.commons, second.commons);
+        assertNotEquals(health(first), health(other));
+    }
+
+    private static List<Object> health(Database db) {
+        return db.rows.get("user_commons").stream().map(row -> row[5]).collect(Collectors.toList());
+    }
+
+    @Test
+    void rows_are_sent_in_batches() throws Exception {
+
+        Database db = new Database(0L, 1);
+
+        db.job(1L, 1, 1, 2500, 0, 0, 0).accept(new JobContext(null, Job.builder().build()));
+
+        assertEquals(List.of(1000, 1000, 500), db.batchSizes.get("profits"));
+        assertEquals(List.of(1), db.batchSizes.get("user_commons"));
+    }
+
+    @Test
+    void nothing_is_sent_when_there_are_no_rows() throws Exception {
+
+        Database db = new Database(0L, 0);
+        Job job = Job.builder().build();
+
+        db.job(1L, 0, 0, 0, 0, 0, 0).accept(new JobContext(null, job));
+
+        verify(db.jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        assertTrue(job.getLog().contains("Generated 0 rows in "));
+    }
+
+    @Test
+    void fails_when_the_new_users_cannot_be_found() throws Exception {
+
+        Database db = new Database(0L, 3);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> db.job(1L, 2, 2, 0, 0, 0, 0).accept(new JobContext(null, Job.builder().build())));
+
+        assertEquals("Expected 4 new users but found 3", e.getMessage());
+    }
+}
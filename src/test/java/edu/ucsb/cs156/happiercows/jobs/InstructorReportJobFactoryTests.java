@@ -2,6 +2,8 @@ package edu.ucsb.cs156.happiercows.jobs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +14,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import edu.ucsb.cs156.happiercows.JobTestCase;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.services.ReportService;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 
 @RestClientTest(InstructorReportJobFactory.class)
 @AutoConfigureDataJpa
@@ -37,5 +40,20 @@ public class InstructorReportJobFactoryTests extends JobTestCase {
         assertEquals(commonsRepository,InstructorReportJob.getCommonsRepository());
        
     }
-}
 
+    @Test
+    void test_create_from_queued_parameters() throws Exception {
+
+        // Arrange
+        QueueableJob queuedJob = (QueueableJob) InstructorReportJobFactory.create();
+
+        // Act
+        InstructorReportJob job = (InstructorReportJob) InstructorReportJobFactory.create(queuedJob.getParameters());
+
+        // Assert
+        assertEquals("InstructorReportJob", InstructorReportJobFactory.getJobType());
+        assertEquals("InstructorReportJob", job.getJobType());
+        assertEquals(Map.of(), queuedJob.getParameters());
+        assertEquals(Map.of(), job.getParameters());
+    }
+}
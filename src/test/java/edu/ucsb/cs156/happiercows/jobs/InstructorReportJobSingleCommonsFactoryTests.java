@@ -2,6 +2,8 @@ package edu.ucsb.cs156.happiercows.jobs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +14,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import edu.ucsb.cs156.happiercows.JobTestCase;
 import edu.ucsb.cs156.happiercows.services.ReportService;
 import edu.ucsb.cs156.happiercows.services.wiremock.WiremockService;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 
 @RestClientTest(InstructorReportJobSingleCommonsFactory.class)
 @AutoConfigureDataJpa
@@ -33,5 +36,20 @@ public class InstructorReportJobSingleCommonsFactoryTests extends JobTestCase {
         assertEquals(17L,instructorReportJobSingleCommons.getCommonsId());
         assertEquals(reportService,instructorReportJobSingleCommons.getReportService());
     }
-}
 
+    @Test
+    void test_create_from_queued_parameters() throws Exception {
+
+        // Arrange
+        QueueableJob queuedJob = (QueueableJob) InstructorReportJobSingleCommonsFactory.create(17L);
+
+        // Act
+        InstructorReportJobSingleCommons job = (InstructorReportJobSingleCommons) InstructorReportJobSingleCommonsFactory.create(queuedJob.getParameters());
+
+        // Assert
+        assertEquals("InstructorReportJobSingleCommons", InstructorReportJobSingleCommonsFactory.getJobType());
+        assertEquals("InstructorReportJobSingleCommons", job.getJobType());
+        assertEquals(Map.of("commonsId", "17"), queuedJob.getParameters());
+        assertEquals(Map.of("commonsId", "17"), job.getParameters());
+    }
+}
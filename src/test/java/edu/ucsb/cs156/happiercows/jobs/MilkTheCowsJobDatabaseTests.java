@@ -0,0 +1,206 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import edu.ucsb.cs156.happiercows.HappierCowsApplication;
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.Profit;
+import edu.ucsb.cs156.happiercows.entities.User;
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.ProfitRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobCheckpointRepository;
+import edu.ucsb.cs156.happiercows.services.CommonsAggregatesService;
+import edu.ucsb.cs156.happiercows.services.jobs.CommonsRunner;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
+
+/**
+ * Milks the same players with MilkTheCowsJob's per-row path and its bulk
+ * statements on an H2 database, and checks that they record the same
+ * profits and pay the same wealth, that the bulk statements are rolled
+ * back together when the commons fails, and that a job resumed after a
+ * crash pays every player exactly once.
+ */
+public class MilkTheCowsJobDatabaseTests {
+
+  // not a @Configuration, see CommonsAggregatesDatabaseTests.Database
+  @ImportAutoConfiguration({ DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+      TransactionAutoConfiguration.class })
+  @EntityScan(basePackageClasses = HappierCowsApplication.class)
+  @EnableJpaRepositories(basePackageClasses = CommonsRepository.class)
+  static class Database {
+  }
+
+  private ConfigurableApplicationContext context;
+  private CommonsRepository commonsRepository;
+  private UserCommonsRepository userCommonsRepository;
+  private UserRepository userRepository;
+  private ProfitRepository profitRepository;
+  private JobCheckpointRepository jobCheckpointRepository;
+  private CommonsRunner commonsRunner;
+
+  @BeforeEach
+  void startDatabase() {
+    context = new SpringApplicationBuilder(Database.class)
+        .web(WebApplicationType.NONE)
+        .run("--spring.datasource.url=jdbc:h2:mem:milking-" + System.nanoTime(),
+            "--spring.jpa.hibernate.ddl-auto=create",
+            "--spring.main.banner-mode=off");
+    commonsRepository = context.getBean(CommonsRepository.class);
+    userCommonsRepository = context.getBean(UserCommonsRepository.class);
+    userRepository = context.getBean(UserRepository.class);
+    profitRepository = context.getBean(ProfitRepository.class);
+    jobCheckpointRepository = context.getBean(JobCheckpointRepository.class);
+    commonsRunner = new CommonsRunner(1, context.getBean(PlatformTransactionManager.class));
+  }
+
+  @AfterEach
+  void stopDatabase() {
+    commonsRunner.shutdown();
+    context.close();
+  }
+
+  // the same players, with some awkward numbers, in a new commons
+  private Commons seed(String name) {
+    Commons commons = commonsRepository.save(Commons.builder().name(name).milkPrice(2.7).build());
+    join(commons, "none", 0, 100, 5);
+    join(commons, "some", 7, 33.3, 12.34);
+    join(commons, "healthy", 13, 100, 0);
+    join(commons, "sick", 3, 0.5, 1e6);
+    return commons;
+  }
+
+  private void join(Commons commons, String name, int numOfCows, double cowHealth, double totalWealth) {
+    User user = userRepository.findByEmail(name + "@example.org")
+        .orElseGet(() -> userRepository.save(User.builder().email(name + "@example.org").fullName(name).build()));
+    userCommonsRepository.save(UserCommons.builder()
+        .user(user)
+        .commons(commons)
+        .username(name)
+        .numOfCows(numOfCows)
+        .cowHealth(cowHealth)
+        .totalWealth(totalWealth)
+        .build());
+  }
+
+  private JobContext context() {
+    JobContext ctx = new JobContext(null, Job.builder().id(1L).build());
+    ctx.setCommonsRunner(commonsRunner);
+    return ctx;
+  }
+
+  private void milk(Commons commons, boolean bulkUpdates) throws Exception {
+    new MilkTheCowsJobInd(commonsRepository, userCommonsRepository, userRepository, profitRepository,
+        commons.getId(), bulkUpdates).accept(context());
+  }
+
+  private Map<String, Double> wealth(Commons commons) {
+    return StreamSupport.stream(userCommonsRepository.findByCommonsId(commons.getId()).spliterator(), false)
+        .collect(Collectors.toMap(UserCommons::getUsername, UserCommons::getTotalWealth, (a, b) -> a, TreeMap::new));
+  }
+
+  private Map<String, List<Object>> profits(Commons commons) {
+    return StreamSupport.stream(profitRepository.findAll().spliterator(), false)
+        .filter(profit -> profit.getUserCommons().getCommonsId() == commons.getId())
+        .collect(Collectors.toMap(profit -> profit.getUserCommons().getUsername(),
+            profit -> List.of(profit.getAmount(), profit.getNumCows(), profit.getAvgCowHealth()),
+            (a, b) -> a, TreeMap::new));
+  }
+
+  @Test
+  void bulk_statements_record_the_same_profits_and_wealth_as_one_row_at_a_time() throws Exception {
+    Commons perRow = seed("per row");
+    Commons bulk = seed("bulk");
+
+    milk(perRow, false);
+    milk(bulk, true);
+
+    assertEquals(4, profits(perRow).size());
+    assertEquals(profits(perRow), profits(bulk));
+    assertEquals(wealth(perRow), wealth(bulk));
+    assertTrue(wealth(perRow).get("some") > 12.34);
+  }
+
+  @Test
+  void a_commons_that_fails_after_the_bulk_statements_keeps_neither() throws Exception {
+    Commons commons = seed("fails");
+    Map<String, Double> before = wealth(commons);
+    CommonsAggregatesService failing = mock(CommonsAggregatesService.class);
+    doThrow(new IllegalStateException("crashed")).when(failing).recompute(anyLong());
+    JobContext ctx = context();
+    ctx.setCommonsAggregatesService(failing);
+
+    assertThrows(IllegalStateException.class, () -> new MilkTheCowsJob(commonsRepository, userCommonsRepository,
+        userRepository, profitRepository, true).accept(ctx));
+
+    assertEquals(Map.of(), profits(commons));
+    assertEquals(before, wealth(commons));
+  }
+
+  private long profitCount(Commons commons) {
+    return StreamSupport.stream(profitRepository.findAll().spliterator(), false)
+        .filter(profit -> profit.getUserCommons().getCommonsId() == commons.getId())
+        .count();
+  }
+
+  @Test
+  void a_job_resumed_after_a_crash_between_paying_and_checkpointing_pays_each_player_once() throws Exception {
+    Commons first = seed("first");
+    Commons second = seed("second");
+    Map<String, Double> unpaid = wealth(second);
+    // the job crashes in the second commons after paying its players, before its checkpoint
+    CommonsAggregatesService crashing = mock(CommonsAggregatesService.class);
+    when(crashing.recompute(second.getId())).thenThrow(new IllegalStateException("crashed")).thenReturn(null);
+    JobContext crashed = context();
+    crashed.setJobCheckpointRepository(jobCheckpointRepository);
+    crashed.setCommonsAggregatesService(crashing);
+
+    assertThrows(IllegalStateException.class, () -> new MilkTheCowsJob(commonsRepository, userCommonsRepository,
+        userRepository, profitRepository, false).accept(crashed));
+
+    assertEquals(4, profitCount(first));
+    assertEquals(0, profitCount(second));
+    assertEquals(unpaid, wealth(second));
+    Map<String, Double> paid = wealth(first);
+
+    JobContext resumed = context();
+    resumed.setJobCheckpointRepository(jobCheckpointRepository);
+    resumed.setCommonsAggregatesService(crashing);
+    new MilkTheCowsJob(commonsRepository, userCommonsRepository, userRepository, profitRepository, false)
+        .accept(resumed);
+
+    assertEquals(4, profitCount(first));
+    assertEquals(4, profitCount(second));
+    assertEquals(paid, wealth(first));
+    assertEquals(paid, wealth(second));
+  }
+}
@@ -2,6 +2,8 @@ package edu.ucsb.cs156.happiercows.jobs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +16,7 @@ import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.ProfitRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 
 @RestClientTest(MilkTheCowsJobFactoryInd.class)
 @AutoConfigureDataJpa
@@ -45,7 +48,23 @@ public class MilkTheCowsJobFactoryIndTests extends JobTestCase {
         assertEquals(userCommonsRepository,milkTheCowsJobInd.getUserCommonsRepository());
         assertEquals(userRepository,milkTheCowsJobInd.getUserRepository());
         assertEquals(profitRepository,milkTheCowsJobInd.getProfitRepository());
+        assertEquals(false,milkTheCowsJobInd.isBulkUpdates());
 
     }
-}
 
+    @Test
+    void test_create_from_queued_parameters() throws Exception {
+
+        // Arrange
+        QueueableJob queuedJob = (QueueableJob) MilkTheCowsJobFactoryInd.create(1L);
+
+        // Act
+        MilkTheCowsJobInd job = (MilkTheCowsJobInd) MilkTheCowsJobFactoryInd.create(queuedJob.getParameters());
+
+        // Assert
+        assertEquals("MilkTheCowsJobInd", MilkTheCowsJobFactoryInd.getJobType());
+        assertEquals("MilkTheCowsJobInd", job.getJobType());
+        assertEquals(Map.of("commonsId", "1"), queuedJob.getParameters());
+        assertEquals(Map.of("commonsId", "1"), job.getParameters());
+    }
+}
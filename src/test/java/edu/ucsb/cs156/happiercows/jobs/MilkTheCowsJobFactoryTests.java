@@ -1,6 +1,9 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
@@ -14,6 +17,7 @@ import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.ProfitRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 
 @RestClientTest(MilkTheCowsJobFactory.class)
 @AutoConfigureDataJpa
@@ -45,7 +49,25 @@ public class MilkTheCowsJobFactoryTests extends JobTestCase {
         assertEquals(userCommonsRepository,milkTheCowsJob.getUserCommonsRepository());
         assertEquals(userRepository,milkTheCowsJob.getUserRepository());
         assertEquals(profitRepository,milkTheCowsJob.getProfitRepository());
+        assertEquals(false,milkTheCowsJob.isBulkUpdates());
 
     }
-}
 
+    @Test
+    void test_create_from_queued_parameters() throws Exception {
+
+        // Arrange
+        QueueableJob queuedJob = (QueueableJob) MilkTheCowsJobFactory.create();
+
+        // Act
+        MilkTheCowsJob job = (MilkTheCowsJob) MilkTheCowsJobFactory.create(queuedJob.getParameters());
+
+        // Assert
+        assertEquals("MilkTheCowsJob", MilkTheCowsJobFactory.getJobType());
+        assertTrue(MilkTheCowsJobFactory.isResumable());
+        assertEquals("MilkTheCowsJob", job.getJobType());
+        assertEquals(Map.of(), queuedJob.getParameters());
+        assertEquals(Map.of(), job.getParameters());
+        assertEquals("global", job.getScope());
+    }
+}
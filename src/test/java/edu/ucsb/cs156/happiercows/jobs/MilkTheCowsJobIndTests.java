@@ -21,7 +21,10 @@ import java.util.Arrays;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(SpringExtension.class)
@@ -136,4 +139,33 @@ public class MilkTheCowsJobIndTests extends JobTestCase {
                 assertEquals(expectedCommonsID, actualCommonsID);
         }
 
+        @Test
+        void test_bulk_milking_one_commons() throws Exception {
+
+                // Arrange
+                Job jobStarted = Job.builder().build();
+                JobContext ctx = new JobContext(null, jobStarted);
+                testCommons.setId(1L);
+
+                when(commonsRepository.findById(eq(1L))).thenReturn(Optional.of(testCommons));
+                when(profitRepository.insertMilkingProfits(eq(1L), eq(2.0), any(LocalDateTime.class))).thenReturn(1);
+                when(userCommonsRepository.addMilkingProfits(1L, 2.0)).thenReturn(1);
+
+                // Act
+                MilkTheCowsJobInd milkTheCowsJobInd = new MilkTheCowsJobInd(commonsRepository, userCommonsRepository,
+                                userRepository, profitRepository, 1L, true);
+                milkTheCowsJobInd.accept(ctx);
+
+                // Assert
+
+                String expected = """
+                                Starting to milk the cows
+                                Milking cows for Commons: test commons, Milk Price: $2.00
+                                Profits recorded: 1, users paid: 1
+                                Cows have been milked!""";
+
+                assertEquals(expected, jobStarted.getLog());
+                verify(userCommonsRepository, never()).findByCommonsId(any());
+        }
+
 }
@@ -5,13 +5,17 @@ import edu.ucsb.cs156.happiercows.entities.Commons;
 import edu.ucsb.cs156.happiercows.entities.User;
 import edu.ucsb.cs156.happiercows.entities.UserCommons;
 import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobCheckpoint;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobCheckpointKey;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.ProfitRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobCheckpointRepository;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -21,6 +25,11 @@ import java.util.Arrays;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -39,6 +48,9 @@ public class MilkTheCowsJobTests extends JobTestCase {
     @Mock
     ProfitRepository profitRepository;
 
+    @Mock
+    JobCheckpointRepository jobCheckpointRepository;
+
     private User user = User
             .builder()
             .id(1L)
@@ -167,4 +179,115 @@ public class MilkTheCowsJobTests extends JobTestCase {
         verify(userCommonsRepository).save(updatedUserCommons);
         assertEquals(expected, jobStarted.getLog());
     }
+
+    @Test
+    void test_bulk_milking_uses_set_based_statements() throws Exception {
+
+        // Arrange
+        Job jobStarted = Job.builder().build();
+        JobContext ctx = new JobContext(null, jobStarted);
+        testCommons.setId(117L);
+
+        when(commonsRepository.findAll()).thenReturn(Arrays.asList(testCommons));
+        when(profitRepository.insertMilkingProfits(eq(117L), eq(2.0), any(LocalDateTime.class))).thenReturn(3);
+        when(userCommonsRepository.addMilkingProfits(117L, 2.0)).thenReturn(3);
+
+        // Act
+        MilkTheCowsJob milkTheCowsJob = new MilkTheCowsJob(commonsRepository, userCommonsRepository,
+                userRepository, profitRepository, true);
+        milkTheCowsJob.accept(ctx);
+
+        // Assert
+
+        String expected = """
+                Starting to milk the cows
+                Milking cows for Commons: test commons, Milk Price: $2.00
+                Profits recorded: 3, users paid: 3
+                Cows have been milked!""";
+
+        assertEquals(expected, jobStarted.getLog());
+        verify(profitRepository, times(1)).insertMilkingProfits(eq(117L), eq(2.0), any(LocalDateTime.class));
+        verify(userCommonsRepository, times(1)).addMilkingProfits(117L, 2.0);
+        verify(userCommonsRepository, never()).findByCommonsId(any());
+        verify(profitRepository, never()).save(any());
+    }
+
+    @Test
+    void test_resumed_job_skips_commons_already_milked_and_milks_the_rest_in_full() throws Exception {
+
+        // Arrange
+        Job jobStarted = Job.builder().id(9L).build();
+        JobContext ctx = new JobContext(null, jobStarted);
+        ctx.setJobCheckpointRepository(jobCheckpointRepository);
+
+        Commons milkedCommons = Commons.builder().id(1L).name("milked commons").milkPrice(2).build();
+        testCommons.setId(2L);
+        User firstUser = User.builder().id(3L).fullName("First Gaucho").build();
+        User secondUser = User.builder().id(4L).fullName("Second Gaucho").build();
+        UserCommons first = UserCommons.builder().user(firstUser).commons(testCommons)
+                .totalWealth(300).numOfCows(1).cowHealth(10).build();
+        UserCommons second = UserCommons.builder().user(secondUser).commons(testCommons)
+                .totalWealth(300).numOfCows(1).cowHealth(10).build();
+
+        JobCheckpoint milkedCheckpoint = JobCheckpoint.start(9L, 1L);
+        milkedCheckpoint.setComplete(true);
+        when(commonsRepository.findAll()).thenReturn(Arrays.asList(milkedCommons, testCommons));
+        when(jobCheckpointRepository.findById(new JobCheckpointKey(9L, 1L))).thenReturn(Optional.of(milkedCheckpoint));
+        when(jobCheckpointRepository.findById(new JobCheckpointKey(9L, 2L))).thenReturn(Optional.empty());
+        when(userCommonsRepository.findByCommonsId(2L)).thenReturn(Arrays.asList(first, second));
+
+        // Act
+        MilkTheCowsJob milkTheCowsJob = new MilkTheCowsJob(commonsRepository, userCommonsRepository,
+                userRepository, profitRepository);
+        milkTheCowsJob.accept(ctx);
+
+        // Assert
+
+        String expected = """
+                Starting to milk the cows
+                Cows already milked for Commons: milked commons
+                Milking cows for Commons: test commons, Milk Price: $2.00
+                User: First Gaucho, numCows: 1, cowHealth: 10.0, totalWealth: $300.00
+                Profit for user: First Gaucho is: $0.20, newWealth: $300.20
+                User: Second Gaucho, numCows: 1, cowHealth: 10.0, totalWealth: $300.00
+                Profit for user: Second Gaucho is: $0.20, newWealth: $300.20
+                Cows have been milked!""";
+
+        assertEquals(expected, jobStarted.getLog());
+        verify(userCommonsRepository, times(2)).save(any());
+        verify(jobCheckpointRepository, never()).save(milkedCheckpoint);
+    }
+
+    @Test
+    void test_new_job_records_a_checkpoint_once_the_commons_is_milked() throws Exception {
+
+        // Arrange
+        Job jobStarted = Job.builder().id(9L).build();
+        JobContext ctx = new JobContext(null, jobStarted);
+        ctx.setJobCheckpointRepository(jobCheckpointRepository);
+        testCommons.setId(2L);
+        UserCommons userCommons = UserCommons.builder().user(user).commons(testCommons)
+                .totalWealth(300).numOfCows(1).cowHealth(10).build();
+        User lastUser = User.builder().id(2L).fullName("Last Gaucho").build();
+        UserCommons lastUserCommons = UserCommons.builder().user(lastUser).commons(testCommons)
+                .totalWealth(300).numOfCows(1).cowHealth(10).build();
+
+        when(commonsRepository.findAll()).thenReturn(Arrays.asList(testCommons));
+        when(jobCheckpointRepository.findById(new JobCheckpointKey(9L, 2L))).thenReturn(Optional.empty());
+        when(userCommonsRepository.findByCommonsId(2L)).thenReturn(Arrays.asList(lastUserCommons, userCommons));
+
+        // Act
+        MilkTheCowsJob milkTheCowsJob = new MilkTheCowsJob(commonsRepository, userCommonsRepository,
+                userRepository, profitRepository);
+        milkTheCowsJob.accept(ctx);
+
+        // Assert
+
+        ArgumentCaptor<JobCheckpoint> saved = ArgumentCaptor.forClass(JobCheckpoint.class);
+        verify(jobCheckpointRepository, times(1)).save(saved.capture());
+        JobCheckpoint checkpoint = saved.getValue();
+        assertEquals(new JobCheckpointKey(9L, 2L), checkpoint.getId());
+        assertTrue(checkpoint.isComplete());
+        verify(userCommonsRepository, times(2)).save(any());
+    }
 }
@@ -0,0 +1,63 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
+import org.springframework.boot.test.autoconfigure.web.client.RestClientTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import edu.ucsb.cs156.happiercows.JobTestCase;
+import edu.ucsb.cs156.happiercows.repositories.CommonsAggregatesRepository;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.services.CommonsAggregatesService;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
+
+@RestClientTest(ReconcileCommonsAggregatesJobFactory.class)
+@AutoConfigureDataJpa
+public class ReconcileCommonsAggregatesJobFactoryTests extends JobTestCase {
+
+    @MockBean
+    CommonsRepository commonsRepository;
+
+    @MockBean
+    CommonsAggregatesRepository commonsAggregatesRepository;
+
+    @MockBean
+    CommonsAggregatesService commonsAggregatesService;
+
+    @Autowired
+    ReconcileCommonsAggregatesJobFactory reconcileCommonsAggregatesJobFactory;
+
+    @Test
+    void test_create() throws Exception {
+
+        // Act
+        ReconcileCommonsAggregatesJob job = (ReconcileCommonsAggregatesJob) reconcileCommonsAggregatesJobFactory.create();
+
+        // Assert
+        assertEquals(commonsRepository, job.getCommonsRepository());
+        assertEquals(commonsAggregatesRepository, job.getCommonsAggregatesRepository());
+        assertEquals(commonsAggregatesService, job.getCommonsAggregatesService());
+    }
+
+    @Test
+    void test_create_from_queued_parameters() throws Exception {
+
+        // Arrange
+        QueueableJob queuedJob = (QueueableJob) reconcileCommonsAggregatesJobFactory.create();
+
+        // Act
+        ReconcileCommonsAggregatesJob job = (ReconcileCommonsAggregatesJob) reconcileCommonsAggregatesJobFactory.create(queuedJob.getParameters());
+
+        // Assert
+        assertEquals("ReconcileCommonsAggregatesJob", reconcileCommonsAggregatesJobFactory.getJobType());
+        assertEquals("ReconcileCommonsAggregatesJob", job.getJobType());
+        assertEquals(Map.of(), queuedJob.getParameters());
+        assertEquals(Map.of(), job.getParameters());
+    }
+}
@@ -0,0 +1,96 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.happiercows.JobTestCase;
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.repositories.CommonsAggregatesRepository;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.services.CommonsAggregatesService;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration
+public class ReconcileCommonsAggregatesJobTests extends JobTestCase {
+
+    @MockBean
+    CommonsRepository commonsRepository;
+
+    @MockBean
+    CommonsAggregatesRepository commonsAggregatesRepository;
+
+    @MockBean
+    CommonsAggregatesService commonsAggregatesService;
+
+    @Test
+    void test_totals_that_are_missing_or_differ_are_counted_again() throws Exception {
+
+        // Arrange
+
+        Commons agreeing = Commons.builder().id(17L).name("CS156").build();
+        Commons differing = Commons.builder().id(18L).name("CS148").build();
+        Commons missing = Commons.builder().id(19L).name("CS130").build();
+        Commons empty = Commons.builder().id(20L).name("CS64").build();
+
+        Job jobStarted = Job.builder().build();
+        JobContext ctx = new JobContext(null, jobStarted);
+
+        when(commonsRepository.findAll()).thenReturn(Arrays.asList(agreeing, differing, missing, empty));
+        when(commonsAggregatesRepository.computeAll()).thenReturn(List.of(
+                new CommonsAggregates(17L, 10, 2, 500, 600),
+                new CommonsAggregates(18L, 5, 1, 250, 300),
+                new CommonsAggregates(19L, 1, 1, 100, 100)));
+        when(commonsAggregatesRepository.findById(17L)).thenReturn(Optional.of(new CommonsAggregates(17L, 10, 2, 500, 600)));
+        when(commonsAggregatesRepository.findById(18L)).thenReturn(Optional.of(new CommonsAggregates(18L, 4, 1, 200, 310)));
+        when(commonsAggregatesRepository.findById(19L)).thenReturn(Optional.empty());
+        when(commonsAggregatesRepository.findById(20L)).thenReturn(Optional.of(CommonsAggregates.empty(20L)));
+
+        // Act
+        ReconcileCommonsAggregatesJob job = new ReconcileCommonsAggregatesJob(
+                commonsRepository, commonsAggregatesRepository, commonsAggregatesService);
+        job.accept(ctx);
+
+        // Assert
+
+        verify(commonsAggregatesService, never()).recompute(17L);
+        verify(commonsAggregatesService).recompute(18L);
+        verify(commonsAggregatesService).recompute(19L);
+        verify(commonsAggregatesService, never()).recompute(20L);
+
+        String expected = """
+            Checking the totals of each commons...
+            Commons CS148: stored totals CommonsAggregates(commonsId=18, totalCows=4, totalUsers=1, totalCowHealth=200.0, totalWealth=310.0), counted CommonsAggregates(commonsId=18, totalCows=5, totalUsers=1, totalCowHealth=250.0, totalWealth=300.0)
+            Commons CS130: stored totals none, counted CommonsAggregates(commonsId=19, totalCows=1, totalUsers=1, totalCowHealth=100.0, totalWealth=100.0)
+            Counted the totals of 2 commons again""";
+        assertEquals(expected, jobStarted.getLog());
+    }
+
+    @Test
+    void test_totals_agree_up_to_rounding_errors() {
+        CommonsAggregates counted = new CommonsAggregates(17L, 10, 2, 1000.0, 600.0);
+
+        assertTrue(ReconcileCommonsAggregatesJob.agree(new CommonsAggregates(17L, 10, 2, 1000.0000001, 599.9999999), counted));
+        assertTrue(ReconcileCommonsAggregatesJob.agree(new CommonsAggregates(17L, 0, 0, 1e-9, 0), CommonsAggregates.empty(17L)));
+        assertFalse(ReconcileCommonsAggregatesJob.agree(new CommonsAggregates(17L, 11, 2, 1000, 600), counted));
+        assertFalse(ReconcileCommonsAggregatesJob.agree(new CommonsAggregates(17L, 10, 3, 1000, 600), counted));
+        assertFalse(ReconcileCommonsAggregatesJob.agree(new CommonsAggregates(17L, 10, 2, 1000.01, 600), counted));
+        assertFalse(ReconcileCommonsAggregatesJob.agree(new CommonsAggregates(17L, 10, 2, 1000, 600.01), counted));
+    }
+}
@@ -2,6 +2,8 @@ package edu.ucsb.cs156.happiercows.jobs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +14,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import edu.ucsb.cs156.happiercows.JobTestCase;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.services.CommonStatsService;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 
 @RestClientTest(RecordCommonStatsJobFactory.class)
 @AutoConfigureDataJpa
@@ -37,4 +40,20 @@ public class RecordCommonStatsJobFactoryTests extends JobTestCase {
         assertEquals(commonStatsService,recordCommonStatsJob.getCommonStatsService());
 
     }
+
+    @Test
+    void test_create_from_queued_parameters() throws Exception {
+
+        // Arrange
+        QueueableJob queuedJob = (QueueableJob) RecordCommonStatsJobFactory.create();
+
+        // Act
+        RecordCommonStatsJob job = (RecordCommonStatsJob) RecordCommonStatsJobFactory.create(queuedJob.getParameters());
+
+        // Assert
+        assertEquals("RecordCommonStatsJob", RecordCommonStatsJobFactory.getJobType());
+        assertEquals("RecordCommonStatsJob", job.getJobType());
+        assertEquals(Map.of(), queuedJob.getParameters());
+        assertEquals(Map.of(), job.getParameters());
+    }
 }
@@ -1,11 +1,13 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -40,14 +42,17 @@ public class RecordCommonStatsJobTests extends JobTestCase {
 
         // Arrange
 
-        Commons commons= Commons.builder().id(17L).name("CS156").build();
-        CommonStats commonStats = CommonStats.builder().id(17L).build();
+        Commons commons1 = Commons.builder().id(17L).name("CS156").build();
+        Commons commons2 = Commons.builder().id(18L).name("CS148").build();
+        List<Commons> allCommons = Arrays.asList(commons1, commons2);
         
         Job jobStarted = Job.builder().build();
         JobContext ctx = new JobContext(null, jobStarted);
       
-        when(commonsRepository.findAll()).thenReturn(Arrays.asList(commons));      
-        when(commonStatsService.createAndSaveCommonStats(17L)).thenReturn(commonStats);
+        when(commonsRepository.findAll()).thenReturn(allCommons);
+        when(commonStatsService.createAndSaveAllCommonStats(allCommons)).thenReturn(List.of(
+                CommonStats.builder().commonsId(17L).numCows(20).avgHealth(50.0).build(),
+                CommonStats.builder().commonsId(18L).numCows(0).avgHealth(Double.NaN).build()));
 
         // Act
         RecordCommonStatsJob recordCommonStatsJob = 
@@ -57,12 +62,12 @@ public class RecordCommonStatsJobTests extends JobTestCase {
         // Assert
 
         verify(commonsRepository).findAll();
-        verify(commonStatsService).createAndSaveCommonStats(17L);
+        verify(commonStatsService).createAndSaveAllCommonStats(allCommons);
         
         String expected = """
             Starting record common stats job...
-            Starting Commons id=17 (CS156)...
-            CommonStats 17 for commons id=17 (CS156) finished.
+            CommonStats for commons id=17 (CS156): numCows 20, avgHealth 50.0
+            CommonStats for commons id=18 (CS148): numCows 0, avgHealth NaN
             Record common stats job done!""";
         assertEquals(expected, jobStarted.getLog());
     }
@@ -74,6 +79,7 @@ public class RecordCommonStatsJobTests extends JobTestCase {
         Job jobStarted = Job.builder().build();
         JobContext ctx = new JobContext(null, jobStarted);
         when(commonsRepository.findAll()).thenReturn(new ArrayList<>());
+        when(commonStatsService.createAndSaveAllCommonStats(new ArrayList<>())).thenReturn(List.of());
 
         // Act
         RecordCommonStatsJob recordCommonStatsJob = 
@@ -89,5 +95,28 @@ public class RecordCommonStatsJobTests extends JobTestCase {
             Record common stats job done!""";
         assertEquals(expected, jobStarted.getLog());
     }
-    
+
+    @Test
+    void test_failure_records_no_stats() throws Exception {
+
+        // Arrange
+
+        List<Commons> allCommons = Arrays.asList(Commons.builder().id(17L).name("CS156").build());
+
+        Job jobStarted = Job.builder().build();
+        JobContext ctx = new JobContext(null, jobStarted);
+
+        when(commonsRepository.findAll()).thenReturn(allCommons);
+        when(commonStatsService.createAndSaveAllCommonStats(allCommons)).thenThrow(new RuntimeException("database is down"));
+
+        // Act
+        RecordCommonStatsJob recordCommonStatsJob =
+                new RecordCommonStatsJob(commonStatsService, commonsRepository);
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> recordCommonStatsJob.accept(ctx));
+
+        // Assert
+
+        assertEquals("database is down", thrown.getMessage());
+        assertEquals("Starting record common stats job...", jobStarted.getLog());
+    }
 }
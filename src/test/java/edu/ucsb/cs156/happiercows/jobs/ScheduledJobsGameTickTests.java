@@ -0,0 +1,127 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.EnumSet;
+import java.util.OptionalLong;
+
+import edu.ucsb.cs156.happiercows.JobTestCase;
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.happiercows.services.jobs.JobService;
+import edu.ucsb.cs156.happiercows.services.jobs.SchedulerLeaseService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
+import org.springframework.boot.test.autoconfigure.web.client.RestClientTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+
+@RestClientTest(ScheduledJobs.class)
+@AutoConfigureDataJpa
+@TestPropertySource(properties = {
+        "app.jobs.gameTick=true",
+        "app.updateCowHealth.tickStages=updateCowHealth,milkTheCows,recordCommonStats"
+})
+public class ScheduledJobsGameTickTests extends JobTestCase {
+
+    private class MockJobContextConsumer implements JobContextConsumer {
+        @Override
+        public void accept(JobContext jobContext) {}
+    }
+
+    @MockBean
+    UpdateCowHealthJobFactory updateCowHealthJobFactory;
+
+    @MockBean
+    MilkTheCowsJobFactory milkTheCowsJobFactory;
+
+    @MockBean
+    RecordCommonStatsJobFactory recordCommonStatsJobFactory;
+
+    @MockBean
+    GameTickJobFactory gameTickJobFactory;
+
+    @MockBean
+    ReconcileCommonsAggregatesJobFactory reconcileCommonsAggregatesJobFactory;
+
+    @Autowired
+    private ScheduledJobs scheduledJobs;
+
+    @MockBean
+    private JobService jobService;
+
+    @MockBean
+    SchedulerLeaseService schedulerLeaseService;
+
+    // this server holds the scheduler lease, and fence passes each job through unchanged
+    @BeforeEach
+    void holdSchedulerLease() {
+        when(schedulerLeaseService.acquire()).thenReturn(OptionalLong.of(1L));
+        when(schedulerLeaseService.fence(anyLong(), any())).thenAnswer(invocation -> invocation.getArgument(1));
+    }
+
+    @Test
+    void test_runUpdateCowHealthJobBasedOnCron_runs_configured_stages() throws Exception {
+
+        // Arrange
+
+        MockJobContextConsumer mockJob = new MockJobContextConsumer();
+        EnumSet<GameTickJob.Stage> allStages = EnumSet.allOf(GameTickJob.Stage.class);
+        when(gameTickJobFactory.create(allStages)).thenReturn(mockJob);
+        when(jobService.runAsJob(any())).thenReturn(Job.builder().build());
+
+        // Act
+
+        scheduledJobs.runUpdateCowHealthJobBasedOnCron();
+
+        // Assert
+
+        verify(jobService, times(1)).runAsJob(mockJob);
+        verify(updateCowHealthJobFactory, never()).create();
+    }
+
+    @Test
+    void test_runMilkTheCowsJobBasedOnCron_runs_default_stage() throws Exception {
+
+        // Arrange
+
+        MockJobContextConsumer mockJob = new MockJobContextConsumer();
+        when(gameTickJobFactory.create(EnumSet.of(GameTickJob.Stage.MILK_THE_COWS))).thenReturn(mockJob);
+
+        // Act
+
+        scheduledJobs.runMilkTheCowsJobBasedOnCron();
+
+        // Assert
+
+        verify(jobService, times(1)).runAsJob(mockJob);
+        verify(milkTheCowsJobFactory, never()).create();
+    }
+
+    @Test
+    void test_runRecordCommonStatsJobBasedOnCron_runs_default_stage() throws Exception {
+
+        // Arrange
+
+        MockJobContextConsumer mockJob = new MockJobContextConsumer();
+        when(gameTickJobFactory.create(EnumSet.of(GameTickJob.Stage.RECORD_COMMON_STATS))).thenReturn(mockJob);
+
+        // Act
+
+        scheduledJobs.runRecordCommonStatsJobBasedOnCron();
+
+        // Assert
+
+        verify(jobService, times(1)).runAsJob(mockJob);
+        verify(recordCommonStatsJobFactory, never()).create();
+    }
+}
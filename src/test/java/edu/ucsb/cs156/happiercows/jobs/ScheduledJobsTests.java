@@ -1,16 +1,22 @@
 package edu.ucsb.cs156.happiercows.jobs;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.OptionalLong;
+
 import edu.ucsb.cs156.happiercows.JobTestCase;
 import edu.ucsb.cs156.happiercows.entities.jobs.Job;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
 import edu.ucsb.cs156.happiercows.services.jobs.JobContextConsumer;
 import edu.ucsb.cs156.happiercows.services.jobs.JobService;
+import edu.ucsb.cs156.happiercows.services.jobs.SchedulerLeaseService;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
@@ -35,12 +41,28 @@ public class ScheduledJobsTests extends JobTestCase {
     @MockBean
     RecordCommonStatsJobFactory recordCommonStatsJobFactory;
 
+    @MockBean
+    GameTickJobFactory gameTickJobFactory;
+
+    @MockBean
+    ReconcileCommonsAggregatesJobFactory reconcileCommonsAggregatesJobFactory;
+
     @Autowired
     private ScheduledJobs scheduledJobs;
 
     @MockBean
     private JobService jobService;
 
+    @MockBean
+    SchedulerLeaseService schedulerLeaseService;
+
+    // this server holds the scheduler lease, and fence passes each job through unchanged
+    @BeforeEach
+    void holdSchedulerLease() {
+        when(schedulerLeaseService.acquire()).thenReturn(OptionalLong.of(1L));
+        when(schedulerLeaseService.fence(anyLong(), any())).thenAnswer(invocation -> invocation.getArgument(1));
+    }
+
     @Test
     void test_runUpdateCowHealthJobBasedOnCron() throws Exception {
 
@@ -107,5 +129,68 @@ public class ScheduledJobsTests extends JobTestCase {
 
     }
 
-  
-}
\ No newline at end of file
+    @Test
+    void test_runReconcileCommonsAggregatesJobBasedOnCron() throws Exception {
+
+        // Arrange
+
+        Job job = Job.builder().build();
+        MockJobContextConsumer mockJob = new MockJobContextConsumer();
+
+       when(reconcileCommonsAggregatesJobFactory.create()).thenReturn(mockJob);
+       when(jobService.runAsJob(any())).thenReturn(job);
+
+        // Act
+
+        scheduledJobs.runReconcileCommonsAggregatesJobBasedOnCron();
+
+        // Assert
+
+        verify(jobService, times(1)).runAsJob(mockJob);
+        verify(reconcileCommonsAggregatesJobFactory, times(1)).create();
+
+    }
+
+    @Test
+    void jobs_are_not_launched_without_the_scheduler_lease() throws Exception {
+
+        // Arrange
+
+        when(schedulerLeaseService.acquire()).thenReturn(OptionalLong.empty());
+
+        // Act
+
+        scheduledJobs.runUpdateCowHealthJobBasedOnCron();
+        scheduledJobs.runMilkTheCowsJobBasedOnCron();
+        scheduledJobs.runRecordCommonStatsJobBasedOnCron();
+        scheduledJobs.runReconcileCommonsAggregatesJobBasedOnCron();
+
+        // Assert
+
+        verify(jobService, never()).runAsJob(any());
+        verify(updateCowHealthJobFactory, never()).create();
+        verify(milkTheCowsJobFactory, never()).create();
+        verify(recordCommonStatsJobFactory, never()).create();
+        verify(reconcileCommonsAggregatesJobFactory, never()).create();
+    }
+
+    @Test
+    void jobs_are_launched_with_the_fencing_token_of_the_lease() throws Exception {
+
+        // Arrange
+
+        MockJobContextConsumer mockJob = new MockJobContextConsumer();
+        MockJobContextConsumer fencedJob = new MockJobContextConsumer();
+        when(schedulerLeaseService.acquire()).thenReturn(OptionalLong.of(7L));
+        when(schedulerLeaseService.fence(7L, mockJob)).thenReturn(fencedJob);
+        when(milkTheCowsJobFactory.create()).thenReturn(mockJob);
+
+        // Act
+
+        scheduledJobs.runMilkTheCowsJobBasedOnCron();
+
+        // Assert
+
+        verify(jobService, times(1)).runAsJob(fencedJob);
+    }
+}
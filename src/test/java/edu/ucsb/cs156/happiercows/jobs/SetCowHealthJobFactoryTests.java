@@ -2,6 +2,8 @@ package edu.ucsb.cs156.happiercows.jobs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +15,7 @@ import edu.ucsb.cs156.happiercows.JobTestCase;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 
 @RestClientTest(SetCowHealthJobFactory.class)
 @AutoConfigureDataJpa
@@ -40,7 +43,23 @@ public class SetCowHealthJobFactoryTests extends JobTestCase {
         assertEquals(commonsRepository,setCowHealthJob.getCommonsRepository());
         assertEquals(userCommonsRepository,setCowHealthJob.getUserCommonsRepository());
         assertEquals(userRepository,setCowHealthJob.getUserRepository());
+        assertEquals(false,setCowHealthJob.isBulkUpdates());
 
     }
-}
 
+    @Test
+    void test_create_from_queued_parameters() throws Exception {
+
+        // Arrange
+        QueueableJob queuedJob = (QueueableJob) setCowHealthJobFactory.create(117L, 2.5);
+
+        // Act
+        SetCowHealthJob job = (SetCowHealthJob) setCowHealthJobFactory.create(queuedJob.getParameters());
+
+        // Assert
+        assertEquals("SetCowHealthJob", setCowHealthJobFactory.getJobType());
+        assertEquals("SetCowHealthJob", job.getJobType());
+        assertEquals(Map.of("commonsId", "117", "health", "2.5"), queuedJob.getParameters());
+        assertEquals(Map.of("commonsId", "117", "health", "2.5"), job.getParameters());
+    }
+}
@@ -21,6 +21,9 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(SpringExtension.class)
@@ -139,4 +142,33 @@ public class SetCowHealthJobTests extends JobTestCase {
         assertEquals(expected, jobStarted.getLog());
         userCommonsList.forEach(userCommons -> assertEquals(newUserCommons.getCowHealth(), userCommons.getCowHealth()));
     }
+
+    @Test
+    void test_bulk_set_uses_single_update_statement() throws Exception {
+
+        // Arrange
+        Job jobStarted = Job.builder().build();
+        JobContext ctx = new JobContext(null, jobStarted);
+
+        when(commonsRepository.findById(117L)).thenReturn(Optional.of(testCommons));
+        when(userCommonsRepository.setCowHealthForCommons(117L, 2.0)).thenReturn(3);
+
+        // Act
+        SetCowHealthJob setCowHealthJob = new SetCowHealthJob(117, 2, commonsRepository, userCommonsRepository,
+                userRepository, true);
+        setCowHealthJob.accept(ctx);
+
+        // Assert
+
+        String expected = """
+                Setting cow health...
+                Commons test commons
+                 new cow health: 2.0, users updated: 3
+                Cow health has been set!""";
+
+        assertEquals(expected, jobStarted.getLog());
+        verify(userCommonsRepository, times(1)).setCowHealthForCommons(117L, 2.0);
+        verify(userCommonsRepository, never()).findByCommonsId(any());
+        verify(userCommonsRepository, never()).save(any());
+    }
 }
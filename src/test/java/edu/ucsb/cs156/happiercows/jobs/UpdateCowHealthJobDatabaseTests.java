@@ -0,0 +1,197 @@
+package edu.ucsb.cs156.happiercows.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import edu.ucsb.cs156.happiercows.HappierCowsApplication;
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsPlus;
+import edu.ucsb.cs156.happiercows.entities.User;
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+import edu.ucsb.cs156.happiercows.services.jobs.JobContext;
+import edu.ucsb.cs156.happiercows.strategies.CowHealthUpdateStrategies;
+
+/**
+ * Updates and sets the health of the same players, one row at a time and
+ * with the bulk UPDATE statements of UserCommonsRepository, on an H2
+ * database, and checks that both give the same cows, health and deaths,
+ * for players at the edges: with no health, with full health, and whose
+ * health falls to exactly nothing.
+ */
+public class UpdateCowHealthJobDatabaseTests {
+
+  // not a @Configuration, see CommonsAggregatesDatabaseTests.Database
+  @ImportAutoConfiguration({ DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+      TransactionAutoConfiguration.class })
+  @EntityScan(basePackageClasses = HappierCowsApplication.class)
+  @EnableJpaRepositories(basePackageClasses = CommonsRepository.class)
+  static class Database {
+  }
+
+  private static final double[] HEALTHS = { 0, 0.1, 25, 30, 30.5, 70, 75.25, 99.9, 100 };
+
+  private ConfigurableApplicationContext context;
+  private CommonsRepository commonsRepository;
+  private UserCommonsRepository userCommonsRepository;
+  private UserRepository userRepository;
+  private final JobContext ctx = new JobContext(null, Job.builder().id(1L).build());
+
+  @BeforeEach
+  void startDatabase() {
+    context = new SpringApplicationBuilder(Database.class)
+        .web(WebApplicationType.NONE)
+        .run("--spring.datasource.url=jdbc:h2:mem:health-" + System.nanoTime(),
+            "--spring.jpa.hibernate.ddl-auto=create",
+            "--spring.main.banner-mode=off");
+    commonsRepository = context.getBean(CommonsRepository.class);
+    userCommonsRepository = context.getBean(UserCommonsRepository.class);
+    userRepository = context.getBean(UserRepository.class);
+  }
+
+  @AfterEach
+  void stopDatabase() {
+    context.close();
+  }
+
+  // a player for each of HEALTHS, with a few cows each, in a new commons
+  private Commons seed(String name, CowHealthUpdateStrategies strategy, double degradationRate, int carryingCapacity) {
+    Commons commons = commonsRepository.save(Commons.builder()
+        .name(name)
+        .degradationRate(degradationRate)
+        .carryingCapacity(carryingCapacity)
+        .aboveCapacityHealthUpdateStrategy(strategy)
+        .belowCapacityHealthUpdateStrategy(strategy)
+        .build());
+    for (int i = 0; i < HEALTHS.length; i++) {
+      String email = "player" + i + "@example.org";
+      User user = userRepository.findByEmail(email)
+          .orElseGet(() -> userRepository.save(User.builder().email(email).build()));
+      userCommonsRepository.save(UserCommons.builder()
+          .user(user)
+          .commons(commons)
+          .username("player" + i)
+          .numOfCows(i + 1)
+          .cowHealth(HEALTHS[i])
+          .cowDeaths(i)
+          .build());
+    }
+    return commons;
+  }
+
+  private CommonsPlus plus(Commons commons) {
+    return CommonsPlus.builder()
+        .commons(commons)
+        .totalCows(commonsRepository.getNumCows(commons.getId()).orElseThrow())
+        .totalUsers(commonsRepository.getNumUsers(commons.getId()).orElseThrow())
+        .build();
+  }
+
+  private Map<String, List<Number>> players(Commons commons) {
+    return StreamSupport.stream(userCommonsRepository.findByCommonsId(commons.getId()).spliterator(), false)
+        .collect(Collectors.toMap(UserCommons::getUsername,
+            userCommons -> List.of(userCommons.getNumOfCows(), userCommons.getCowHealth(), userCommons.getCowDeaths()),
+            (a, b) -> a, TreeMap::new));
+  }
+
+  private void assertUpdatesAgree(CowHealthUpdateStrategies strategy, double degradationRate, int carryingCapacity) {
+    Commons perRow = seed("per row", strategy, degradationRate, carryingCapacity);
+    Commons bulk = seed("bulk", strategy, degradationRate, carryingCapacity);
+
+    UpdateCowHealthJob.runUpdateJobInCommons(perRow, plus(perRow), commonsRepository, userCommonsRepository, ctx);
+    UpdateCowHealthJob.runBulkUpdateJobInCommons(bulk, plus(bulk), commonsRepository, userCommonsRepository, ctx);
+
+    assertEquals(HEALTHS.length, players(perRow).size());
+    assertEquals(players(perRow), players(bulk));
+  }
+
+  @Test
+  void a_fall_that_kills_some_cows_exactly_at_zero_is_the_same_in_bulk() {
+    // 45 cows over a capacity of 0: every player loses 30
+    assertUpdatesAgree(CowHealthUpdateStrategies.Constant, 30, 0);
+    Commons check = seed("check", CowHealthUpdateStrategies.Constant, 30, 0);
+    UpdateCowHealthJob.runBulkUpdateJobInCommons(check, plus(check), commonsRepository, userCommonsRepository, ctx);
+    // the player on 30 health dies, the one on 30.5 keeps their cows
+    assertEquals(List.of(0, 100.0, 3 + 4), players(check).get("player3"));
+    assertEquals(5, players(check).get("player4").get(0));
+  }
+
+  @Test
+  void a_rise_past_full_health_is_the_same_in_bulk() {
+    // 45 cows under a capacity of 1000: every player gains 30, and no one dies, not even on 0 health
+    assertUpdatesAgree(CowHealthUpdateStrategies.Constant, 30, 1000);
+  }
+
+  @Test
+  void a_fractional_linear_change_is_the_same_in_bulk() {
+    assertUpdatesAgree(CowHealthUpdateStrategies.Linear, 0.37, 20);
+    assertUpdatesAgree(CowHealthUpdateStrategies.Linear, 0.37, 200);
+  }
+
+  @Test
+  void no_change_still_kills_the_cows_of_players_on_zero_health_in_bulk() {
+    assertUpdatesAgree(CowHealthUpdateStrategies.Noop, 0, 0);
+  }
+
+  @Test
+  void setting_the_health_is_the_same_in_bulk() throws Exception {
+    for (double health : new double[] { 0, 55.5, 100 }) {
+      Commons perRow = seed("per row", CowHealthUpdateStrategies.Noop, 0, 0);
+      Commons bulk = seed("bulk", CowHealthUpdateStrategies.Noop, 0, 0);
+
+      new SetCowHealthJob(perRow.getId(), health, commonsRepository, userCommonsRepository, userRepository, false).accept(ctx);
+      new SetCowHealthJob(bulk.getId(), health, commonsRepository, userCommonsRepository, userRepository, true).accept(ctx);
+
+      assertEquals(players(perRow), players(bulk));
+      assertEquals(health, players(bulk).get("player0").get(1));
+    }
+  }
+
+  @Test
+  void capacity_is_computed_from_the_players_counted_not_from_stale_totals() {
+    for (boolean bulk : new boolean[] { false, true }) {
+      // 9 players with 45 cows, and room for 10 cows per player: below capacity, so no change
+      Commons counted = seed("counted", CowHealthUpdateStrategies.Noop, 30, 0);
+      Commons stale = seed("stale", CowHealthUpdateStrategies.Noop, 30, 0);
+      for (Commons commons : List.of(counted, stale)) {
+        commons.setCapacityPerUser(10);
+        commons.setAboveCapacityHealthUpdateStrategy(CowHealthUpdateStrategies.Constant);
+        commonsRepository.save(commons);
+      }
+      // stored totals that have fallen behind: one player, so a capacity of 10
+      CommonsPlus stalePlus = CommonsPlus.builder().commons(stale).totalCows(45).totalUsers(1).build();
+
+      if (bulk) {
+        UpdateCowHealthJob.runBulkUpdateJobInCommons(counted, plus(counted), commonsRepository, userCommonsRepository, ctx);
+        UpdateCowHealthJob.runBulkUpdateJobInCommons(stale, stalePlus, commonsRepository, userCommonsRepository, ctx);
+      } else {
+        UpdateCowHealthJob.runUpdateJobInCommons(counted, plus(counted), commonsRepository, userCommonsRepository, ctx);
+        UpdateCowHealthJob.runUpdateJobInCommons(stale, stalePlus, commonsRepository, userCommonsRepository, ctx);
+      }
+
+      assertEquals(players(counted), players(stale));
+      assertEquals(25.0, players(stale).get("player2").get(1));
+    }
+  }
+}
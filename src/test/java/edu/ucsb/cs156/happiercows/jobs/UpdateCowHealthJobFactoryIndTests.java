@@ -2,6 +2,8 @@ package edu.ucsb.cs156.happiercows.jobs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +16,7 @@ import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
 import edu.ucsb.cs156.happiercows.services.CommonsPlusBuilderService;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 
 @RestClientTest(UpdateCowHealthJobFactoryInd.class)
 @AutoConfigureDataJpa
@@ -44,8 +47,25 @@ public class UpdateCowHealthJobFactoryIndTests extends JobTestCase {
         assertEquals(commonsRepository,updateCowHealthJobInd.getCommonsRepository());
         assertEquals(userCommonsRepository,updateCowHealthJobInd.getUserCommonsRepository());
         assertEquals(userRepository,updateCowHealthJobInd.getUserRepository());
+        assertEquals(false,updateCowHealthJobInd.isBulkUpdates());
         assertEquals(commonsPlusBuilderService,updateCowHealthJobInd.getCommonsPlusBuilderService());
 
     }
-}
 
+    @Test
+    void test_create_from_queued_parameters() throws Exception {
+
+        // Arrange
+        QueueableJob queuedJob = (QueueableJob) updateCowHealthJobFactoryInd.create(1L);
+
+        // Act
+        UpdateCowHealthJobInd job = (UpdateCowHealthJobInd) updateCowHealthJobFactoryInd.create(queuedJob.getParameters());
+
+        // Assert
+        assertEquals("UpdateCowHealthJobInd", updateCowHealthJobFactoryInd.getJobType());
+        assertEquals("UpdateCowHealthJobInd", job.getJobType());
+        assertEquals(Map.of("commonsId", "1"), queuedJob.getParameters());
+        assertEquals(Map.of("commonsId", "1"), job.getParameters());
+        assertEquals("commons:1", job.getScope());
+    }
+}
@@ -2,6 +2,8 @@ package edu.ucsb.cs156.happiercows.jobs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +16,7 @@ import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
 import edu.ucsb.cs156.happiercows.services.CommonsPlusBuilderService;
+import edu.ucsb.cs156.happiercows.services.jobs.QueueableJob;
 
 @RestClientTest(UpdateCowHealthJobFactory.class)
 @AutoConfigureDataJpa
@@ -44,7 +47,23 @@ public class UpdateCowHealthJobFactoryTests extends JobTestCase {
         assertEquals(commonsRepository,updateCowHealthJob.getCommonsRepository());
         assertEquals(userCommonsRepository,updateCowHealthJob.getUserCommonsRepository());
         assertEquals(userRepository,updateCowHealthJob.getUserRepository());
+        assertEquals(false,updateCowHealthJob.isBulkUpdates());
 
     }
-}
 
+    @Test
+    void test_create_from_queued_parameters() throws Exception {
+
+        // Arrange
+        QueueableJob queuedJob = (QueueableJob) updateCowHealthJobFactory.create();
+
+        // Act
+        UpdateCowHealthJob job = (UpdateCowHealthJob) updateCowHealthJobFactory.create(queuedJob.getParameters());
+
+        // Assert
+        assertEquals("UpdateCowHealthJob", updateCowHealthJobFactory.getJobType());
+        assertEquals("UpdateCowHealthJob", job.getJobType());
+        assertEquals(Map.of(), queuedJob.getParameters());
+        assertEquals(Map.of(), job.getParameters());
+    }
+}
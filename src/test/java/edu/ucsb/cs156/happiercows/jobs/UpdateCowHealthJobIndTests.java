@@ -27,8 +27,11 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(SpringExtension.class)
@@ -158,4 +161,29 @@ public class UpdateCowHealthJobIndTests extends JobTestCase {
                 assertEquals(expectedCommonsID, actualCommonsID);
         }
 
+        @Test
+        void test_bulk_update_one_commons() throws Exception {
+                commons.setId(1L);
+                commons.setBelowCapacityHealthUpdateStrategy(CowHealthUpdateStrategies.Linear);
+
+                when(commonsRepository.getNumCows(commons.getId())).thenReturn(Optional.of(1));
+                when(commonsRepository.getNumUsers(commons.getId())).thenReturn(Optional.of(1));
+                when(commonsPlusBuilderService.toCommonsPlus(eq(commons))).thenReturn(commonsPlus);
+                when(commonsRepository.findById(eq(1L))).thenReturn(Optional.of(commons));
+                when(userCommonsRepository.updateCowHealthByDelta(1L, 99.0)).thenReturn(1);
+
+                var updateCowHealthJobInd = new UpdateCowHealthJobInd(commonsRepository, userCommonsRepository,
+                                userRepository, commonsPlusBuilderService, 1L, true);
+                updateCowHealthJobInd.accept(ctx);
+
+                String expected = """
+                                Updating cow health...
+                                Commons test commons, degradationRate: 1.0, effectiveCapacity: 100
+                                 strategy: Linear, totalCows: 1, cow health delta: 99.0, users updated: 1
+                                Cow health has been updated!""";
+
+                assertEquals(expected, job.getLog());
+                verify(userCommonsRepository, never()).save(any());
+        }
+
 }
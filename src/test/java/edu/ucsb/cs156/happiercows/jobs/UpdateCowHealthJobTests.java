@@ -26,9 +26,13 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(SpringExtension.class)
@@ -107,7 +111,7 @@ public class UpdateCowHealthJobTests extends JobTestCase {
                 when(commonsRepository.getNumCows(commons.getId())).thenReturn(Optional.of(totalCows));
                 when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
                 when(commonsRepository.getNumUsers(commons.getId())).thenReturn(Optional.of(numUsers));
-                when(commonsPlusBuilderService.convertToCommonsPlus(eq(listOfCommons))).thenReturn(listOfCommonsPlus);
+                when(commonsPlusBuilderService.getAllCommonsPlus()).thenReturn(listOfCommonsPlus);
                 when(commonsPlusBuilderService.toCommonsPlus(eq(commons))).thenReturn(commonsPlus);
         }
 
@@ -210,7 +214,7 @@ public class UpdateCowHealthJobTests extends JobTestCase {
                 List<Commons> commonsList = List.of(commons);
 
                 when(commonsRepository.findAll()).thenReturn(commonsList);
-                when(commonsPlusBuilderService.convertToCommonsPlus(eq(commonsList))).thenReturn(commonsPlusList);
+                when(commonsPlusBuilderService.getAllCommonsPlus()).thenReturn(commonsPlusList);
                 when(commonsPlusBuilderService.toCommonsPlus(eq(commons))).thenReturn(commonsPlus);
                 when(userCommonsRepository.findByCommonsId(commons.getId()))
                                 .thenReturn(List.of(userCommons1, userCommons2));
@@ -233,6 +237,9 @@ public class UpdateCowHealthJobTests extends JobTestCase {
 
                 assertEquals(11.0, userCommons1.getCowHealth());
                 assertEquals(21.0, userCommons2.getCowHealth());
+                // the totals are read once for all of the commons, not again for each player
+                verify(commonsPlusBuilderService, times(1)).getAllCommonsPlus();
+                verify(commonsPlusBuilderService, never()).toCommonsPlus(any());
         }
 
         @Test
@@ -297,7 +304,7 @@ public class UpdateCowHealthJobTests extends JobTestCase {
                 List<CommonsPlus> commonsPlusList = List.of(commonsPlus);
                 List<Commons> commonsList = List.of(commons);
 
-                when(commonsPlusBuilderService.convertToCommonsPlus(eq(commonsList))).thenReturn(commonsPlusList);
+                when(commonsPlusBuilderService.getAllCommonsPlus()).thenReturn(commonsPlusList);
                 when(commonsPlusBuilderService.toCommonsPlus(eq(commons))).thenReturn(commonsPlus);
 
                 when(commonsRepository.findAll()).thenReturn(List.of(commons));
@@ -330,7 +337,7 @@ public class UpdateCowHealthJobTests extends JobTestCase {
                 List<CommonsPlus> commonsPlusList = List.of(commonsPlus);
                 List<Commons> commonsList = List.of(commons);
 
-                when(commonsPlusBuilderService.convertToCommonsPlus(eq(commonsList))).thenReturn(commonsPlusList);
+                when(commonsPlusBuilderService.getAllCommonsPlus()).thenReturn(commonsPlusList);
                 when(commonsPlusBuilderService.toCommonsPlus(eq(commons))).thenReturn(commonsPlus);
                 commons.setBelowCapacityHealthUpdateStrategy(CowHealthUpdateStrategies.Linear);
 
@@ -405,4 +412,110 @@ public class UpdateCowHealthJobTests extends JobTestCase {
                 // Assert
                 assertEquals(expectedService, actualService);
         }
+
+        @Test
+        void test_bulk_update_uses_single_update_statement() throws Exception {
+                commons.setId(117);
+                commons.setAboveCapacityHealthUpdateStrategy(CowHealthUpdateStrategies.Linear);
+                setupUpdateCowHealthTestOnCommons(110, 1);
+                when(userCommonsRepository.updateCowHealthByDelta(117L, -10.0)).thenReturn(1);
+
+                var updateCowHealthJob = new UpdateCowHealthJob(commonsRepository, userCommonsRepository,
+                                userRepository, commonsPlusBuilderService, true);
+                updateCowHealthJob.accept(ctx);
+
+                String expected = """
+                                Updating cow health...
+                                Commons test commons, degradationRate: 1.0, effectiveCapacity: 100
+                                 strategy: Linear, totalCows: 110, cow health delta: -10.0, users updated: 1
+                                Cow health has been updated!""";
+                assertEquals(expected, job.getLog());
+
+                verify(userCommonsRepository, times(1)).updateCowHealthByDelta(117L, -10.0);
+                verify(userCommonsRepository, never()).findByCommonsId(any());
+                verify(userCommonsRepository, never()).save(any());
+        }
+
+        @Test
+        void test_bulk_update_uses_below_capacity_update_strategy() throws Exception {
+                commons.setId(117);
+                commons.setBelowCapacityHealthUpdateStrategy(CowHealthUpdateStrategies.Constant);
+                setupUpdateCowHealthTestOnCommons(commons.getCarryingCapacity(), 1);
+
+                UpdateCowHealthJob.runBulkUpdateJobInCommons(commons,
+                                commonsPlusBuilderService.toCommonsPlus(commons), commonsRepository,
+                                userCommonsRepository, ctx);
+
+                verify(userCommonsRepository, times(1)).updateCowHealthByDelta(117L, 1.0);
+        }
+
+        @Test
+        void test_bulk_update_skips_commons_with_zero_users() throws Exception {
+                setupUpdateCowHealthTestOnCommons(5, 0);
+
+                var updateCowHealthJob = new UpdateCowHealthJob(commonsRepository, userCommonsRepository,
+                                userRepository, commonsPlusBuilderService, true);
+                updateCowHealthJob.accept(ctx);
+
+                String expected = """
+                                Updating cow health...
+                                Commons test commons, degradationRate: 1.0, effectiveCapacity: 100
+                                No users in this commons, skipping
+                                Cow health has been updated!""";
+                assertEquals(expected, job.getLog());
+                verify(userCommonsRepository, never()).updateCowHealthByDelta(any(), anyDouble());
+        }
+
+        @Test
+        void test_bulk_update_throws_exception_when_get_num_users_fails() {
+                setupUpdateCowHealthTestOnCommons(100, 1);
+                commons.setId(117);
+                when(commonsRepository.getNumUsers(commons.getId())).thenReturn(Optional.empty());
+
+                var updateCowHealthJob = new UpdateCowHealthJob(commonsRepository, userCommonsRepository,
+                                userRepository, commonsPlusBuilderService, true);
+
+                var thrown = Assertions.assertThrows(RuntimeException.class, () -> {
+                        updateCowHealthJob.accept(ctx);
+                });
+
+                Assertions.assertEquals("Error calling getNumUsers(117)", thrown.getMessage());
+        }
+
+        @Test
+        void test_bulk_update_throws_exception_when_get_num_cows_fails() {
+                setupUpdateCowHealthTestOnCommons(100, 1);
+                commons.setId(117);
+                when(commonsRepository.getNumCows(commons.getId())).thenReturn(Optional.empty());
+                when(commonsRepository.getNumUsers(commons.getId())).thenReturn(Optional.of(1));
+
+                var updateCowHealthJob = new UpdateCowHealthJob(commonsRepository, userCommonsRepository,
+                                userRepository, commonsPlusBuilderService, true);
+
+                var thrown = Assertions.assertThrows(RuntimeException.class, () -> {
+                        updateCowHealthJob.accept(ctx);
+                });
+
+                Assertions.assertEquals("Error calling getNumCows(117)", thrown.getMessage());
+        }
+
+        @Test
+        void test_bulk_delta_matches_per_row_health_for_every_strategy() {
+                CommonsPlus commonsPlus = CommonsPlus.builder().commons(commons).totalCows(0).totalUsers(3).build();
+                commons.setDegradationRate(0.37);
+                double[] healths = { 0.0, 0.5, 13.7, 50.0, 99.9, 100.0 };
+                int[] totalCows = { 0, 37, 99, 100, 101, 250 };
+
+                for (CowHealthUpdateStrategies strategy : CowHealthUpdateStrategies.values()) {
+                        for (int cows : totalCows) {
+                                double delta = strategy.calculateCowHealthDelta(commonsPlus, cows);
+                                for (double health : healths) {
+                                        userCommons.setCowHealth(health);
+                                        double expected = strategy.calculateNewCowHealth(commonsPlus, userCommons, cows);
+                                        assertEquals(expected, health + delta,
+                                                        strategy + " with " + cows + " cows and health " + health);
+                                }
+                        }
+                }
+        }
 }
@@ -18,9 +18,11 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
 import edu.ucsb.cs156.happiercows.entities.User;
 import edu.ucsb.cs156.happiercows.entities.UserCommons;
 import edu.ucsb.cs156.happiercows.entities.UserCommonsKey;
+import edu.ucsb.cs156.happiercows.repositories.CommonsAggregatesRepository;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
@@ -40,6 +42,9 @@ public class AverageCowHealthServiceTests {
     @MockBean
     UserCommonsRepository userCommonsRepository;    
 
+    @MockBean
+    CommonsAggregatesRepository commonsAggregatesRepository;
+
     @Autowired
     AverageCowHealthService averageCowHealthService;
 
@@ -110,8 +115,8 @@ public class AverageCowHealthServiceTests {
         // arrange
 
         when(commonsRepository.findById(17L)).thenReturn(Optional.of(commons));
-        when(userCommonsRepository.findByCommonsId(commons.getId()))
-                .thenReturn(Arrays.asList(userCommons1));
+        when(commonsAggregatesRepository.compute(commons.getId()))
+                .thenReturn(Optional.of(CommonsAggregates.of(userCommons1)));
         when(commonsRepository.getNumUsers(commons.getId())).thenReturn(Optional.of(Integer.valueOf(1)));
         when(commonsRepository.getNumCows(commons.getId())).thenReturn(Optional.of(Integer.valueOf(20)));
         when(userRepository.findById(42L)).thenReturn(Optional.of(user1));
@@ -129,8 +134,8 @@ public class AverageCowHealthServiceTests {
         // arrange
 
         when(commonsRepository.findById(17L)).thenReturn(Optional.of(commons));
-        when(userCommonsRepository.findByCommonsId(commons.getId()))
-                .thenReturn(Arrays.asList(userCommons1,userCommons2));
+        when(commonsAggregatesRepository.compute(commons.getId()))
+                .thenReturn(Optional.of(new CommonsAggregates(17L, 120, 2, 2400, 600)));
         when(commonsRepository.getNumUsers(commons.getId())).thenReturn(Optional.of(Integer.valueOf(1)));
         when(commonsRepository.getNumCows(commons.getId())).thenReturn(Optional.of(Integer.valueOf(120)));
         when(userRepository.findById(42L)).thenReturn(Optional.of(user1));
@@ -144,6 +149,19 @@ public class AverageCowHealthServiceTests {
         assertEquals(20, averageCowHealth);
     }
 
+    @Test
+    void test_getTotalNumCowsWithoutUsers() {
+        // arrange
+
+        when(commonsRepository.findById(17L)).thenReturn(Optional.of(commons));
+        when(commonsAggregatesRepository.compute(17L)).thenReturn(Optional.empty());
+
+        // act and assert
+
+        assertEquals(0, averageCowHealthService.getTotalNumCows(17L));
+        assertEquals(Double.NaN, averageCowHealthService.getAverageCowHealth(17L));
+    }
+
     @Test
     void test_getAverageCowHealthThrowsException() {
         when(userCommonsRepository.findByCommonsId(1L)).thenReturn(Arrays.asList());
@@ -1,24 +1,35 @@
 package edu.ucsb.cs156.happiercows.services;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
 import edu.ucsb.cs156.happiercows.entities.CommonStats;
+import edu.ucsb.cs156.happiercows.repositories.CommonsAggregatesRepository;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
@@ -43,7 +54,10 @@ public class CommonStatsServiceTests {
     CommonStatsRepository commonStatsRepository;    
 
     @MockBean
-    AverageCowHealthService averageCowHealthService;
+    CommonsAggregatesRepository commonsAggregatesRepository;
+
+    @MockBean
+    JdbcTemplate jdbcTemplate;
 
     @Autowired
     CommonStatsService commonStatsService;
@@ -63,6 +77,8 @@ public class CommonStatsServiceTests {
         .aboveCapacityHealthUpdateStrategy(CowHealthUpdateStrategies.Linear)
         .build();
 
+    private Commons emptyCommons = Commons.builder().id(18L).name("empty commons").build();
+
     CommonStats expectedStats1 = CommonStats
         .builder()
         .commonsId(17L)
@@ -83,8 +99,7 @@ public class CommonStatsServiceTests {
         // arrange
 
         when(commonsRepository.findById(17L)).thenReturn(Optional.of(commons));
-        when(averageCowHealthService.getAverageCowHealth(17L)).thenReturn(10.0);
-        when(averageCowHealthService.getTotalNumCows(17L)).thenReturn(20);
+        when(commonsAggregatesRepository.compute(17L)).thenReturn(Optional.of(new CommonsAggregates(17L, 20, 1, 200, 300)));
 
         // act
 
@@ -100,8 +115,7 @@ public class CommonStatsServiceTests {
         // arrange
 
         when(commonsRepository.findById(17L)).thenReturn(Optional.of(commons));
-        when(averageCowHealthService.getAverageCowHealth(17L)).thenReturn(20.0);
-        when(averageCowHealthService.getTotalNumCows(17L)).thenReturn(120);
+        when(commonsAggregatesRepository.compute(17L)).thenReturn(Optional.of(new CommonsAggregates(17L, 120, 2, 2400, 600)));
 
         // act
 
@@ -120,4 +134,58 @@ public class CommonStatsServiceTests {
             commonStatsService.createAndSaveCommonStats(1L);
         });
     }
+
+    @Test
+    void test_createAllCommonStats_counts_every_commons_with_one_query() {
+        // arrange
+
+        when(commonsAggregatesRepository.computeAll()).thenReturn(List.of(new CommonsAggregates(17L, 20, 1, 200, 300)));
+
+        // act
+
+        List<CommonStats> allStats = commonStatsService.createAllCommonStats(List.of(commons, emptyCommons));
+
+        // assert
+        assertEquals(2, allStats.size());
+        assertEquals(expectedStats1, allStats.get(0));
+        assertEquals(18L, allStats.get(1).getCommonsId());
+        assertEquals(0, allStats.get(1).getNumCows());
+        assertEquals(Double.NaN, allStats.get(1).getAvgHealth());
+        verify(commonsAggregatesRepository, never()).compute(anyLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void test_createAndSaveAllCommonStats_inserts_one_batch() {
+        // arrange
+
+        when(commonsAggregatesRepository.computeAll()).thenReturn(List.of(
+            new CommonsAggregates(17L, 20, 1, 200, 300),
+            new CommonsAggregates(18L, 120, 2, 2400, 600)));
+
+        // act
+
+        List<CommonStats> allStats = commonStatsService.createAndSaveAllCommonStats(List.of(commons, emptyCommons));
+
+        // assert
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq("insert into commonstats (commons_id, num_cows, avg_health, create_date)"
+                + " values (?, ?, ?, ?)"), rows.capture());
+        assertEquals(2, rows.getValue().size());
+        assertEquals(List.of(17L, 20, 10.0), List.of(rows.getValue().get(0)).subList(0, 3));
+        assertEquals(List.of(18L, 120, 20.0), List.of(rows.getValue().get(1)).subList(0, 3));
+        assertEquals(allStats.get(0).getCreateDate().getTime(), ((Timestamp) rows.getValue().get(0)[3]).getTime());
+        verify(commonStatsRepository, never()).save(any());
+    }
+
+    @Test
+    void test_createAndSaveAllCommonStats_without_commons_writes_nothing() {
+        // act
+
+        List<CommonStats> allStats = commonStatsService.createAndSaveAllCommonStats(List.of());
+
+        // assert
+        assertEquals(List.of(), allStats);
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
 }
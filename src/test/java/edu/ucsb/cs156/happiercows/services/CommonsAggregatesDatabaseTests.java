@@ -0,0 +1,352 @@
+package edu.ucsb.cs156.happiercows.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.StreamSupport;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import edu.ucsb.cs156.happiercows.HappierCowsApplication;
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
+import edu.ucsb.cs156.happiercows.entities.CommonsPlus;
+import edu.ucsb.cs156.happiercows.entities.CommonStats;
+import edu.ucsb.cs156.happiercows.entities.User;
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.jobs.ReconcileCommonsAggregatesJob;
+import edu.ucsb.cs156.happiercows.models.CommonsSummary;
+import edu.ucsb.cs156.happiercows.models.UserCommonsSummary;
+import edu.ucsb.cs156.happiercows.repositories.CommonsAggregatesRepository;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.CommonStatsRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+
+/**
+ * Runs CommonsAggregatesService against an H2 database and checks that the
+ * totals it keeps up to date one change at a time match a count of the
+ * players, that CommonStatsService records the stats of every commons
+ * from the same count, that CommonsPlusBuilderService reads every
+ * commons with its totals in one query, that a user's commons are only
+ * read by the query that needs them, and that the players of a commons are
+ * read with one query, as entities or as summaries; and that totals read or
+ * changed for the first time by many threads at once are stored once and
+ * lose no change.
+ */
+public class CommonsAggregatesDatabaseTests {
+
+  // not a @Configuration, so that the application's component scan, e.g. in the
+  // benchmarks, which run with the test classes on the classpath, does not pick it up
+  @ImportAutoConfiguration({ DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+      TransactionAutoConfiguration.class, JdbcTemplateAutoConfiguration.class })
+  @EntityScan(basePackageClasses = HappierCowsApplication.class)
+  @EnableJpaRepositories(basePackageClasses = CommonsRepository.class)
+  @Import({ CommonsAggregatesService.class, CommonStatsService.class, CommonsPlusBuilderService.class })
+  static class Database {
+  }
+
+  private static final int THREADS = 8;
+
+  private ConfigurableApplicationContext context;
+  private CommonsAggregatesService commonsAggregatesService;
+  private CommonsAggregatesRepository commonsAggregatesRepository;
+  private UserCommonsRepository userCommonsRepository;
+  private Commons commons;
+  private Commons other;
+
+  @BeforeEach
+  void startDatabase() {
+    context = new SpringApplicationBuilder(Database.class)
+        .web(WebApplicationType.NONE)
+        .run("--spring.datasource.url=jdbc:h2:mem:aggregates-" + System.nanoTime(),
+            "--spring.jpa.hibernate.ddl-auto=create",
+            "--spring.jpa.properties.hibernate.generate_statistics=true",
+            // one connection per thread: storing the first totals must not need a second one
+            "--spring.datasource.hikari.maximum-pool-size=" + THREADS,
+            "--spring.datasource.hikari.connection-timeout=5000",
+            "--spring.main.banner-mode=off");
+    commonsAggregatesService = context.getBean(CommonsAggregatesService.class);
+    commonsAggregatesRepository = context.getBean(CommonsAggregatesRepository.class);
+    userCommonsRepository = context.getBean(UserCommonsRepository.class);
+    CommonsRepository commonsRepository = context.getBean(CommonsRepository.class);
+    commons = commonsRepository.save(Commons.builder().name("commons").cowPrice(10).build());
+    other = commonsRepository.save(Commons.builder().name("other").cowPrice(10).build());
+  }
+
+  @AfterEach
+  void stopDatabase() {
+    context.close();
+  }
+
+  private UserCommons join(Commons commons, String name, double totalWealth) {
+    User user = context.getBean(UserRepository.class).save(User.builder().email(name + "@example.org").build());
+    UserCommons userCommons = UserCommons.builder()
+        .user(user)
+        .commons(commons)
+        .username(name)
+        .totalWealth(totalWealth)
+        .cowHealth(100)
+        .build();
+    commonsAggregatesService.addPlayer(userCommons);
+    return userCommons;
+  }
+
+  private void buy(UserCommons userCommons, int numCows) {
+    CommonsAggregates before = CommonsAggregates.of(userCommons);
+    userCommons.setNumOfCows(userCommons.getNumOfCows() + numCows);
+    userCommons.setTotalWealth(userCommons.getTotalWealth() - 10 * numCows);
+    commonsAggregatesService.savePlayer(before, userCommons);
+  }
+
+  private void assertTotalsMatchTheCount(Commons commons) {
+    CommonsAggregates stored = commonsAggregatesRepository.findById(commons.getId()).orElseThrow();
+    CommonsAggregates counted = commonsAggregatesRepository.compute(commons.getId())
+        .orElse(CommonsAggregates.empty(commons.getId()));
+    assertTrue(ReconcileCommonsAggregatesJob.agree(stored, counted), stored + " != " + counted);
+  }
+
+  @Test
+  void totals_follow_players_joining_buying_and_leaving() {
+    UserCommons first = join(commons, "first", 300);
+    UserCommons second = join(commons, "second", 200);
+    join(other, "third", 300);
+    buy(first, 5);
+    buy(second, 2);
+    buy(second, 1);
+
+    assertEquals(new CommonsAggregates(commons.getId(), 8, 2, 800, 420), commonsAggregatesService.get(commons.getId()));
+    assertTotalsMatchTheCount(commons);
+
+    commonsAggregatesService.removePlayer(userCommonsRepository
+        .findByCommonsIdAndUserId(commons.getId(), first.getUser().getId()).orElseThrow());
+
+    assertEquals(new CommonsAggregates(commons.getId(), 3, 1, 300, 170), commonsAggregatesService.get(commons.getId()));
+    assertTotalsMatchTheCount(commons);
+    assertTotalsMatchTheCount(other);
+  }
+
+  @Test
+  void totals_are_counted_for_every_commons_in_one_query() {
+    join(commons, "first", 300);
+    join(commons, "second", 200);
+    join(other, "third", 100);
+    commonsAggregatesRepository.deleteAll();
+
+    Map<Long, CommonsAggregates> counted = new HashMap<>();
+    commonsAggregatesRepository.computeAll().forEach(aggregates -> counted.put(aggregates.getCommonsId(), aggregates));
+
+    assertEquals(Map.of(
+        commons.getId(), new CommonsAggregates(commons.getId(), 0, 2, 0, 500),
+        other.getId(), new CommonsAggregates(other.getId(), 0, 1, 0, 100)), counted);
+    // nothing to add to until the totals are stored again
+    assertEquals(0, commonsAggregatesRepository.add(commons.getId(), 1, 0, 0, 0));
+
+    commonsAggregatesService.get(other.getId());
+    commonsAggregatesService.deleteCommons(other.getId());
+    assertEquals(Optional.empty(), commonsAggregatesRepository.findById(other.getId()));
+  }
+
+  @Test
+  void stats_of_every_commons_are_recorded_in_one_batch() {
+    UserCommons first = join(commons, "first", 300);
+    join(commons, "second", 200);
+    buy(first, 4);
+
+    List<CommonStats> recorded = context.getBean(CommonStatsService.class)
+        .createAndSaveAllCommonStats(List.of(commons, other));
+
+    Map<Long, CommonStats> saved = new HashMap<>();
+    context.getBean(CommonStatsRepository.class).findAll().forEach(stats -> saved.put(stats.getCommonsId(), stats));
+    assertEquals(2, saved.size());
+    assertEquals(4, saved.get(commons.getId()).getNumCows());
+    assertEquals(100.0, saved.get(commons.getId()).getAvgHealth());
+    assertEquals(0, saved.get(other.getId()).getNumCows());
+    assertTrue(Double.isNaN(saved.get(other.getId()).getAvgHealth()));
+    assertEquals(recorded.get(0).getNumCows(), saved.get(commons.getId()).getNumCows());
+  }
+
+  @Test
+  void commons_plus_of_every_commons_is_read_with_one_query() {
+    UserCommons first = join(commons, "first", 300);
+    join(commons, "second", 200);
+    buy(first, 4);
+    // other has no players, so its totals are not stored yet; a read counts them without storing them
+    context.getBean(CommonsPlusBuilderService.class).getAllCommonsPlus();
+    assertFalse(commonsAggregatesRepository.existsById(other.getId()));
+    commonsAggregatesService.get(other.getId());
+    assertFalse(commonsAggregatesRepository.existsById(other.getId()));
+    commonsAggregatesService.recompute(other.getId());
+    Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+
+    List<CommonsPlus> allCommonsPlus = context.getBean(CommonsPlusBuilderService.class).getAllCommonsPlus();
+
+    assertEquals(1, statistics.getPrepareStatementCount());
+    assertEquals(List.of(commons.getId(), other.getId()),
+        allCommonsPlus.stream().map(commonsPlus -> commonsPlus.getCommons().getId()).toList());
+    assertEquals(4, allCommonsPlus.get(0).getTotalCows());
+    assertEquals(2, allCommonsPlus.get(0).getTotalUsers());
+    assertEquals(0, allCommonsPlus.get(1).getTotalUsers());
+
+    statistics.clear();
+    List<CommonsPlus> someCommonsPlus = context.getBean(CommonsPlusBuilderService.class)
+        .getCommonsPlus(List.of(other.getId(), 999L));
+    assertEquals(1, someCommonsPlus.size());
+    assertEquals(other.getId(), someCommonsPlus.get(0).getCommons().getId());
+    assertEquals(1, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  void user_is_read_without_their_commons_which_are_summarised_by_one_query() {
+    UserCommons first = join(commons, "first", 300);
+    join(other, "second", 300);
+    UserCommons again = UserCommons.builder().user(first.getUser()).commons(other).username("first").build();
+    commonsAggregatesService.addPlayer(again);
+    Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+
+    User user = context.getBean(UserRepository.class).findByEmail("first@example.org").orElseThrow();
+
+    assertEquals(1, statistics.getPrepareStatementCount());
+    assertEquals(first.getUser().getId(), user.getId());
+
+    statistics.clear();
+    List<CommonsSummary> summaries = userCommonsRepository.findCommonsSummariesByUserId(user.getId());
+
+    assertEquals(1, statistics.getPrepareStatementCount());
+    assertEquals(List.of(new CommonsSummary(commons.getId(), "commons"), new CommonsSummary(other.getId(), "other")),
+        summaries);
+  }
+
+  @Test
+  void players_of_a_commons_are_read_with_their_users_and_commons_in_one_query() {
+    UserCommons first = join(commons, "first", 300);
+    join(commons, "second", 200);
+    join(other, "third", 100);
+    buy(first, 2);
+    Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+
+    List<UserCommons> players = StreamSupport
+        .stream(userCommonsRepository.findByCommonsId(commons.getId()).spliterator(), false).toList();
+
+    assertEquals(List.of("first@example.org", "second@example.org"),
+        players.stream().map(player -> player.getUser().getEmail()).sorted().toList());
+    assertEquals(List.of("commons", "commons"), players.stream().map(player -> player.getCommons().getName()).toList());
+    assertEquals(1, statistics.getPrepareStatementCount());
+
+    statistics.clear();
+    UserCommons player = userCommonsRepository
+        .findByCommonsIdAndUserId(commons.getId(), first.getUser().getId()).orElseThrow();
+
+    assertEquals("first@example.org", player.getUser().getEmail());
+    assertEquals("commons", player.getCommons().getName());
+    assertEquals(1, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  void summaries_of_the_players_of_a_commons_are_read_from_user_commons_alone() {
+    UserCommons first = join(commons, "first", 300);
+    UserCommons second = join(commons, "second", 200);
+    join(other, "third", 100);
+    buy(first, 2);
+    Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+
+    List<UserCommonsSummary> summaries = userCommonsRepository.findSummariesByCommonsId(commons.getId());
+
+    assertEquals(1, statistics.getPrepareStatementCount());
+    assertEquals(0, statistics.getEntityLoadCount());
+    assertEquals(List.of(
+        new UserCommonsSummary("first", 280, 2, 100, 0, 0, 0, first.getUser().getId(), commons.getId()),
+        new UserCommonsSummary("second", 200, 0, 100, 0, 0, 0, second.getUser().getId(), commons.getId())),
+        summaries.stream().sorted(Comparator.comparing(UserCommonsSummary::getUsername)).toList());
+  }
+
+  // runs task on THREADS threads at once, and fails if any of them does
+  private <T> List<T> atOnce(IntFunction<T> task) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<T>> futures = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      int thread = i;
+      futures.add(executor.submit(() -> {
+        start.await();
+        return task.apply(thread);
+      }));
+    }
+    start.countDown();
+    List<T> results = new ArrayList<>();
+    for (Future<T> future : futures) {
+      results.add(future.get(30, TimeUnit.SECONDS));
+    }
+    executor.shutdown();
+    return results;
+  }
+
+  @Test
+  void concurrent_first_reads_count_the_totals_without_storing_them() throws Exception {
+    UserCommons first = join(commons, "first", 300);
+    join(commons, "second", 200);
+    buy(first, 3);
+    commonsAggregatesRepository.deleteAll();
+
+    List<CommonsAggregates> read = atOnce(thread -> commonsAggregatesService.get(commons.getId()));
+    CommonsPlus commonsPlus = context.getBean(CommonsPlusBuilderService.class).toCommonsPlus(commons);
+
+    assertEquals(Set.of(new CommonsAggregates(commons.getId(), 3, 2, 300, 470)), Set.copyOf(read));
+    assertEquals(3, commonsPlus.getTotalCows());
+    assertEquals(2, commonsPlus.getTotalUsers());
+    // a read never writes
+    assertEquals(0, commonsAggregatesRepository.count());
+  }
+
+  @Test
+  void concurrent_first_changes_are_all_added_to_the_totals() throws Exception {
+    List<UserCommons> players = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      players.add(join(commons, "player" + i, 300));
+    }
+    commonsAggregatesRepository.deleteAll();
+
+    atOnce(thread -> {
+      buy(players.get(thread), thread + 1);
+      return null;
+    });
+
+    assertTotalsMatchTheCount(commons);
+    assertEquals(THREADS * (THREADS + 1) / 2, commonsAggregatesService.get(commons.getId()).getTotalCows());
+  }
+}
@@ -0,0 +1,208 @@
+package edu.ucsb.cs156.happiercows.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
+import edu.ucsb.cs156.happiercows.entities.User;
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.repositories.CommonsAggregatesRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(CommonsAggregatesService.class)
+@ContextConfiguration
+@RecordApplicationEvents
+public class CommonsAggregatesServiceTests {
+    @MockBean
+    CommonsAggregatesRepository commonsAggregatesRepository;
+
+    @MockBean
+    UserCommonsRepository userCommonsRepository;
+
+    @Autowired
+    CommonsAggregatesService commonsAggregatesService;
+
+    @Autowired
+    ApplicationEvents applicationEvents;
+
+    private final Commons commons = Commons.builder().id(17L).name("test commons").build();
+
+    private UserCommons player(int numOfCows, double cowHealth, double totalWealth) {
+        return UserCommons.builder()
+                .user(User.builder().id(1L).email("user1@ucsb.edu").build())
+                .commons(commons)
+                .numOfCows(numOfCows)
+                .cowHealth(cowHealth)
+                .totalWealth(totalWealth)
+                .build();
+    }
+
+    private List<CommonsChangedEvent> published() {
+        return applicationEvents.stream(CommonsChangedEvent.class).toList();
+    }
+
+    private static CommonsAggregates aggregates(int totalCows, int totalUsers, double totalCowHealth, double totalWealth) {
+        return new CommonsAggregates(17L, totalCows, totalUsers, totalCowHealth, totalWealth);
+    }
+
+    @Test
+    void stored_totals_are_read_without_counting_the_players() {
+        CommonsAggregates stored = aggregates(10, 2, 500, 600);
+        when(commonsAggregatesRepository.findById(17L)).thenReturn(Optional.of(stored));
+
+        assertEquals(stored, commonsAggregatesService.get(17L));
+
+        verify(commonsAggregatesRepository, never()).compute(anyLong());
+        assertEquals(List.of(), published());
+    }
+
+    @Test
+    void totals_not_stored_yet_are_counted_but_not_stored_when_read() {
+        CommonsAggregates counted = aggregates(10, 2, 500, 600);
+        when(commonsAggregatesRepository.findById(17L)).thenReturn(Optional.empty());
+        when(commonsAggregatesRepository.compute(17L)).thenReturn(Optional.of(counted));
+
+        assertEquals(counted, commonsAggregatesService.get(17L));
+
+        verify(commonsAggregatesRepository, never()).lockCommons(anyLong());
+        verify(commonsAggregatesRepository, never()).insertCounted(anyLong());
+        verify(commonsAggregatesRepository, never()).save(any());
+        assertEquals(List.of(), published());
+    }
+
+    @Test
+    void commons_without_players_has_empty_totals() {
+        when(commonsAggregatesRepository.compute(17L)).thenReturn(Optional.empty());
+
+        assertEquals(aggregates(0, 0, 0, 0), commonsAggregatesService.recompute(17L));
+
+        // stored first, so that the count is saved over them
+        verify(commonsAggregatesRepository).insertCounted(17L);
+        verify(commonsAggregatesRepository).save(aggregates(0, 0, 0, 0));
+        assertEquals(List.of(new CommonsChangedEvent(17L)), published());
+    }
+
+    @Test
+    void totals_are_counted_without_storing_them() {
+        when(commonsAggregatesRepository.compute(17L)).thenReturn(Optional.of(aggregates(1, 1, 100, 5)));
+        when(commonsAggregatesRepository.compute(18L)).thenReturn(Optional.empty());
+
+        assertEquals(aggregates(1, 1, 100, 5), commonsAggregatesService.count(17L));
+        assertEquals(CommonsAggregates.empty(18L), commonsAggregatesService.count(18L));
+
+        verify(commonsAggregatesRepository, never()).insertCounted(anyLong());
+        verify(commonsAggregatesRepository, never()).save(any());
+        assertEquals(List.of(), published());
+    }
+
+    @Test
+    void stored_totals_are_recomputed_in_place() {
+        when(commonsAggregatesRepository.existsById(17L)).thenReturn(true);
+        when(commonsAggregatesRepository.compute(17L)).thenReturn(Optional.of(aggregates(1, 1, 100, 5)));
+
+        assertEquals(aggregates(1, 1, 100, 5), commonsAggregatesService.recompute(17L));
+
+        verify(commonsAggregatesRepository, never()).insertCounted(anyLong());
+        verify(commonsAggregatesRepository).save(aggregates(1, 1, 100, 5));
+    }
+
+    @Test
+    void player_who_joins_is_added_to_the_totals() {
+        UserCommons player = player(0, 100, 300);
+        when(commonsAggregatesRepository.add(17L, 0, 1, 0.0, 300.0)).thenReturn(1);
+
+        commonsAggregatesService.addPlayer(player);
+
+        verify(userCommonsRepository).save(player);
+        verify(commonsAggregatesRepository, never()).compute(anyLong());
+        assertEquals(List.of(new CommonsChangedEvent(17L)), published());
+        assertEquals(List.of(new UserChangedEvent("user1@ucsb.edu")), applicationEvents.stream(UserChangedEvent.class).toList());
+    }
+
+    @Test
+    void purchase_adds_the_change_in_the_players_share() {
+        UserCommons player = player(2, 50, 300);
+        CommonsAggregates before = CommonsAggregates.of(player);
+        player.setNumOfCows(5);
+        player.setTotalWealth(270);
+        when(commonsAggregatesRepository.add(17L, 3, 0, 150.0, -30.0)).thenReturn(1);
+
+        commonsAggregatesService.savePlayer(before, player);
+
+        verify(userCommonsRepository).save(player);
+        verify(commonsAggregatesRepository).add(17L, 3, 0, 150.0, -30.0);
+        verify(commonsAggregatesRepository, never()).compute(anyLong());
+        assertEquals(List.of(new CommonsChangedEvent(17L)), published());
+    }
+
+    @Test
+    void change_already_written_to_the_players_is_added_without_saving_them() {
+        when(commonsAggregatesRepository.add(17L, -2, 0, -100.0, 10.0)).thenReturn(1);
+
+        commonsAggregatesService.addChange(aggregates(-2, 0, -100, 10));
+
+        verify(commonsAggregatesRepository).add(17L, -2, 0, -100.0, 10.0);
+        verify(userCommonsRepository, never()).save(any());
+        assertEquals(List.of(new CommonsChangedEvent(17L)), published());
+    }
+
+    @Test
+    void player_who_leaves_is_taken_off_the_totals_after_they_are_counted_if_not_stored() {
+        UserCommons player = player(2, 50, 300);
+        when(commonsAggregatesRepository.add(anyLong(), anyInt(), anyInt(), anyDouble(), anyDouble())).thenReturn(0, 1);
+
+        commonsAggregatesService.removePlayer(player);
+
+        verify(userCommonsRepository).delete(player);
+        InOrder inOrder = inOrder(commonsAggregatesRepository);
+        inOrder.verify(commonsAggregatesRepository).add(17L, -2, -1, -100.0, -300.0);
+        inOrder.verify(commonsAggregatesRepository).insertCounted(17L);
+        inOrder.verify(commonsAggregatesRepository).add(17L, -2, -1, -100.0, -300.0);
+        verify(commonsAggregatesRepository, never()).save(any());
+        assertEquals(List.of(new CommonsChangedEvent(17L)), published());
+        assertEquals(List.of(new UserChangedEvent("user1@ucsb.edu")), applicationEvents.stream(UserChangedEvent.class).toList());
+    }
+
+    @Test
+    void first_change_is_not_added_to_the_totals_it_was_counted_in() {
+        when(commonsAggregatesRepository.add(17L, 3, 0, 150.0, -30.0)).thenReturn(0);
+        when(commonsAggregatesRepository.insertCounted(17L)).thenReturn(1);
+
+        commonsAggregatesService.addChange(aggregates(3, 0, 150, -30));
+
+        verify(commonsAggregatesRepository).lockCommons(17L);
+        verify(commonsAggregatesRepository).add(17L, 3, 0, 150.0, -30.0);
+        assertEquals(List.of(new CommonsChangedEvent(17L)), published());
+    }
+
+    @Test
+    void totals_of_a_deleted_commons_are_deleted() {
+        commonsAggregatesService.deleteCommons(17L);
+
+        verify(commonsAggregatesRepository).deleteByCommonsId(17L);
+        assertEquals(List.of(new CommonsChangedEvent(17L)), published());
+    }
+}
@@ -1,11 +1,15 @@
 package edu.ucsb.cs156.happiercows.services;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
-import java.util.Optional;
+import java.util.List;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,6 +22,7 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
 import edu.ucsb.cs156.happiercows.entities.CommonsPlus;
 import edu.ucsb.cs156.happiercows.entities.User;
 import edu.ucsb.cs156.happiercows.entities.UserCommons;
@@ -41,6 +46,9 @@ public class CommonsPlusBuilderServiceTests {
     @MockBean
     UserCommonsRepository userCommonsRepository;
 
+    @MockBean
+    CommonsAggregatesService commonsAggregatesService;
+
     @Autowired
     CommonsPlusBuilderService commonsPlusBuilderService;
 
@@ -66,21 +74,51 @@ public class CommonsPlusBuilderServiceTests {
         .totalUsers(5)
         .build();
 
+    private CommonsAggregates aggregates = CommonsAggregates
+        .builder()
+        .commonsId(17L)
+        .totalCows(10)
+        .totalUsers(5)
+        .totalCowHealth(900)
+        .totalWealth(3000)
+        .build();
+
     @Test
     void test_toCommonsPlus() {
-        when(commonsRepository.getNumCows(17L)).thenReturn(Optional.of(10));
-        when(commonsRepository.getNumUsers(17L)).thenReturn(Optional.of(5));
+        when(commonsAggregatesService.get(17L)).thenReturn(aggregates);
         CommonsPlus commonsPlus = commonsPlusBuilderService.toCommonsPlus(commons);
         assertEquals(commonsPlus, this.commonsPlus);
     }
 
     @Test
     void test_convertToCommonsPlus() {
-        when(commonsRepository.getNumCows(17L)).thenReturn(Optional.of(10));
-        when(commonsRepository.getNumUsers(17L)).thenReturn(Optional.of(5));
+        when(commonsRepository.findAllWithAggregates(List.of(17L))).thenReturn(List.<Object[]>of(new Object[] { commons, aggregates }));
         Iterable<CommonsPlus> commonsPlusIterable = commonsPlusBuilderService.convertToCommonsPlus(Arrays.asList(commons));
         CommonsPlus commonsPlus = commonsPlusIterable.iterator().next();
         assertEquals(commonsPlus, this.commonsPlus);
+        verify(commonsAggregatesService, never()).get(anyLong());
+    }
+
+    @Test
+    void test_getAllCommonsPlus_counts_totals_not_stored_yet() {
+        Commons other = Commons.builder().id(18L).name("other commons").build();
+        when(commonsRepository.findAllWithAggregates()).thenReturn(List.of(
+            new Object[] { commons, aggregates },
+            new Object[] { other, null }));
+        when(commonsAggregatesService.count(18L)).thenReturn(CommonsAggregates.empty(18L));
+
+        List<CommonsPlus> commonsPlusList = commonsPlusBuilderService.getAllCommonsPlus();
+
+        assertEquals(List.of(this.commonsPlus, CommonsPlus.builder().commons(other).totalCows(0).totalUsers(0).build()),
+            commonsPlusList);
+        verify(commonsAggregatesService, never()).count(17L);
+        verify(commonsAggregatesService, never()).recompute(anyLong());
+    }
+
+    @Test
+    void test_getCommonsPlus_without_ids_does_not_query() {
+        assertEquals(List.of(), commonsPlusBuilderService.getCommonsPlus(List.of()));
+        verify(commonsRepository, never()).findAllWithAggregates(any());
     }
 
 }
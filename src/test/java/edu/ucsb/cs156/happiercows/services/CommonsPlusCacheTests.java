@@ -0,0 +1,131 @@
+package edu.ucsb.cs156.happiercows.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsPlus;
+import edu.ucsb.cs156.happiercows.models.CommonsPlusCacheStats;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(CommonsPlusCache.class)
+@ContextConfiguration
+@TestPropertySource(properties = {
+        "app.commons.plusCache.maximumSize=2",
+        "app.commons.plusCache.expireAfterWriteMs=1000"
+})
+public class CommonsPlusCacheTests {
+    @MockBean
+    CommonsRepository commonsRepository;
+
+    @MockBean
+    CommonsPlusBuilderService commonsPlusBuilderService;
+
+    @Autowired
+    CommonsPlusCache commonsPlusCache;
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    @BeforeEach
+    void useFakeTicker() {
+        commonsPlusCache.buildCache(nanos::get);
+    }
+
+    private CommonsPlus commonsPlus(long id) {
+        Commons commons = Commons.builder().id(id).name("commons " + id).build();
+        CommonsPlus commonsPlus = CommonsPlus.builder().commons(commons).totalCows(5).totalUsers(2).build();
+        when(commonsRepository.findById(id)).thenReturn(Optional.of(commons));
+        when(commonsPlusBuilderService.toCommonsPlus(commons)).thenReturn(commonsPlus);
+        return commonsPlus;
+    }
+
+    @Test
+    void commons_plus_is_built_once_and_then_read_from_the_cache() {
+        CommonsPlus commonsPlus = commonsPlus(17L);
+
+        assertEquals(Optional.of(commonsPlus), commonsPlusCache.get(17L));
+        assertEquals(Optional.of(commonsPlus), commonsPlusCache.get(17L));
+
+        verify(commonsRepository, times(1)).findById(17L);
+        assertEquals(new CommonsPlusCacheStats(1, 1, 1, 0, 0), commonsPlusCache.getStats());
+    }
+
+    @Test
+    void missing_commons_is_not_cached() {
+        when(commonsRepository.findById(17L)).thenReturn(Optional.empty());
+
+        assertEquals(Optional.empty(), commonsPlusCache.get(17L));
+        assertEquals(Optional.empty(), commonsPlusCache.get(17L));
+
+        verify(commonsRepository, times(2)).findById(17L);
+        assertEquals(0, commonsPlusCache.getStats().getSize());
+    }
+
+    @Test
+    void change_to_a_commons_drops_its_entry() {
+        CommonsPlus commonsPlus = commonsPlus(17L);
+        commonsPlusCache.get(17L);
+
+        commonsPlusCache.commonsChanged(new CommonsChangedEvent(17L));
+        // not cached, so nothing to drop
+        commonsPlusCache.commonsChanged(new CommonsChangedEvent(18L));
+
+        assertEquals(Optional.of(commonsPlus), commonsPlusCache.get(17L));
+        verify(commonsPlusBuilderService, times(2)).toCommonsPlus(commonsPlus.getCommons());
+        assertEquals(1, commonsPlusCache.getStats().getInvalidations());
+    }
+
+    @Test
+    void entries_expire() {
+        CommonsPlus commonsPlus = commonsPlus(17L);
+        commonsPlusCache.get(17L);
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1001));
+
+        assertEquals(Optional.of(commonsPlus), commonsPlusCache.get(17L));
+        verify(commonsPlusBuilderService, times(2)).toCommonsPlus(commonsPlus.getCommons());
+        assertEquals(1, commonsPlusCache.getStats().getEvictions());
+    }
+
+    @Test
+    void cache_holds_at_most_maximum_size_entries() {
+        commonsPlus(17L);
+        commonsPlus(18L);
+        commonsPlus(19L);
+
+        commonsPlusCache.get(17L);
+        commonsPlusCache.get(18L);
+        commonsPlusCache.get(19L);
+
+        CommonsPlusCacheStats stats = commonsPlusCache.getStats();
+        assertEquals(2, stats.getSize());
+        assertEquals(1, stats.getEvictions());
+    }
+
+    @Test
+    void invalidate_all_empties_the_cache() {
+        commonsPlus(17L);
+        commonsPlusCache.get(17L);
+
+        commonsPlusCache.invalidateAll();
+
+        assertEquals(0, commonsPlusCache.getStats().getSize());
+    }
+}
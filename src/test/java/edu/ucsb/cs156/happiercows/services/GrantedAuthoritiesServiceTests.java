@@ -13,6 +13,7 @@ import org.springframework.context.annotation.Import;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
@@ -22,6 +23,10 @@ import edu.ucsb.cs156.happiercows.testconfig.TestConfig;
 @EnableConfigurationProperties(value = SystemInfoServiceImpl.class)
 @Import(TestConfig.class)
 @ContextConfiguration
+@TestPropertySource(properties = {
+    "app.users.cache.maximumSize=10",
+    "app.users.cache.expireAfterWriteMs=1000"
+})
 class GrantedAuthoritiesServiceTests {
 
   @MockBean
@@ -10,7 +10,6 @@ import java.util.Arrays;
 import java.util.Optional;
 
 import org.junit.jupiter.api.Assertions;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,11 +22,10 @@ import edu.ucsb.cs156.happiercows.entities.Commons;
 import edu.ucsb.cs156.happiercows.entities.Report;
 import edu.ucsb.cs156.happiercows.entities.ReportLine;
 import edu.ucsb.cs156.happiercows.entities.User;
-import edu.ucsb.cs156.happiercows.entities.UserCommons;
-import edu.ucsb.cs156.happiercows.entities.UserCommonsKey;
 import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.ReportLineRepository;
 import edu.ucsb.cs156.happiercows.repositories.ReportRepository;
+import edu.ucsb.cs156.happiercows.models.UserCommonsSummary;
 import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
 import edu.ucsb.cs156.happiercows.repositories.UserRepository;
 import edu.ucsb.cs156.happiercows.strategies.CowHealthUpdateStrategies;
@@ -77,11 +75,11 @@ class ReportServiceTests {
       .aboveCapacityHealthUpdateStrategy(CowHealthUpdateStrategies.Linear)
       .build();
 
-  UserCommons userCommons = UserCommons
+  UserCommonsSummary userCommons = UserCommonsSummary
       .builder()
-      .user(user)
+      .userId(42L)
       .username("Chris Gaucho")
-      .commons(commons)
+      .commonsId(17L)
       .totalWealth(300)
       .numOfCows(123)
       .cowHealth(10)
@@ -119,17 +117,12 @@ class ReportServiceTests {
       .cowDeaths(6)
       .build();
 
-  @BeforeEach
-  void setup() {
-    userCommons.setId(new UserCommonsKey(user.getId(), commons.getId()));
-  }
-
   @Test
   void test_createAndSaveReportHeader() {
         // arrange
 
         when(commonsRepository.findById(17L)).thenReturn(Optional.of(commons));
-        when(userCommonsRepository.findByCommonsId(commons.getId()))
+        when(userCommonsRepository.findSummariesByCommonsId(commons.getId()))
                 .thenReturn(Arrays.asList(userCommons));
         when(commonsRepository.getNumUsers(commons.getId())).thenReturn(Optional.of(Integer.valueOf(1)));
         when(commonsRepository.getNumCows(commons.getId())).thenReturn(Optional.of(Integer.valueOf(123)));
@@ -167,7 +160,7 @@ class ReportServiceTests {
         // arrange
 
         when(commonsRepository.findById(17L)).thenReturn(Optional.of(commons));
-        when(userCommonsRepository.findByCommonsId(commons.getId()))
+        when(userCommonsRepository.findSummariesByCommonsId(commons.getId()))
                 .thenReturn(Arrays.asList(userCommons));
         when(commonsRepository.getNumUsers(commons.getId())).thenReturn(Optional.of(Integer.valueOf(1)));
         when(commonsRepository.getNumCows(commons.getId())).thenReturn(Optional.of(Integer.valueOf(123)));
@@ -189,7 +182,7 @@ class ReportServiceTests {
         // arrange
 
         when(commonsRepository.findById(17L)).thenReturn(Optional.of(commons));
-        when(userCommonsRepository.findByCommonsId(commons.getId()))
+        when(userCommonsRepository.findSummariesByCommonsId(commons.getId()))
                 .thenReturn(Arrays.asList(userCommons));
         when(commonsRepository.getNumUsers(commons.getId())).thenReturn(Optional.of(Integer.valueOf(1)));
         when(commonsRepository.getNumCows(commons.getId())).thenReturn(Optional.of(Integer.valueOf(123)));
@@ -0,0 +1,308 @@
+package edu.ucsb.cs156.happiercows.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import edu.ucsb.cs156.happiercows.HappierCowsApplication;
+import edu.ucsb.cs156.happiercows.entities.Commons;
+import edu.ucsb.cs156.happiercows.entities.CommonsAggregates;
+import edu.ucsb.cs156.happiercows.entities.User;
+import edu.ucsb.cs156.happiercows.entities.UserCommons;
+import edu.ucsb.cs156.happiercows.errors.EntityNotFoundException;
+import edu.ucsb.cs156.happiercows.errors.NoCowsException;
+import edu.ucsb.cs156.happiercows.errors.NotEnoughMoneyException;
+import edu.ucsb.cs156.happiercows.jobs.ReconcileCommonsAggregatesJob;
+import edu.ucsb.cs156.happiercows.models.TradeOrder;
+import edu.ucsb.cs156.happiercows.repositories.CommonsAggregatesRepository;
+import edu.ucsb.cs156.happiercows.repositories.CommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserCommonsRepository;
+import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+
+/**
+ * Runs TradeService against an H2 database: checks the guards of the buy and
+ * sell statements, and that hundreds of trades by the same players on many
+ * threads lose no update, never overspend or oversell, and leave the
+ * commons' totals matching a count of the players; and that a batch of
+ * orders with an idempotency key is placed once, however often it is sent.
+ */
+public class TradeServiceDatabaseTests {
+
+  private static final int THREADS = 16;
+  private static final int TRADES = 400;
+
+  // not a @Configuration, see CommonsAggregatesDatabaseTests.Database
+  @ImportAutoConfiguration({ DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+      TransactionAutoConfiguration.class, JacksonAutoConfiguration.class })
+  @EntityScan(basePackageClasses = HappierCowsApplication.class)
+  @EnableJpaRepositories(basePackageClasses = CommonsRepository.class)
+  @Import({ TradeService.class, CommonsAggregatesService.class })
+  static class Database {
+  }
+
+  private ConfigurableApplicationContext context;
+  private TradeService tradeService;
+  private UserCommonsRepository userCommonsRepository;
+  private CommonsAggregatesRepository commonsAggregatesRepository;
+  private Commons commons;
+
+  @BeforeEach
+  void startDatabase() {
+    context = new SpringApplicationBuilder(Database.class)
+        .web(WebApplicationType.NONE)
+        // trades on the same row wait for each other; give them longer than H2's default second
+        .run("--spring.datasource.url=jdbc:h2:mem:trades-" + System.nanoTime() + ";LOCK_TIMEOUT=10000",
+            "--spring.jpa.hibernate.ddl-auto=create",
+            "--spring.datasource.hikari.maximum-pool-size=" + THREADS,
+            "--spring.main.banner-mode=off");
+    tradeService = context.getBean(TradeService.class);
+    userCommonsRepository = context.getBean(UserCommonsRepository.class);
+    commonsAggregatesRepository = context.getBean(CommonsAggregatesRepository.class);
+    commons = context.getBean(CommonsRepository.class).save(Commons.builder().name("commons").cowPrice(10).build());
+  }
+
+  @AfterEach
+  void stopDatabase() {
+    context.close();
+  }
+
+  private UserCommons join(String name, double totalWealth, double cowHealth) {
+    User user = context.getBean(UserRepository.class).save(User.builder().email(name + "@example.org").build());
+    UserCommons userCommons = UserCommons.builder()
+        .user(user)
+        .commons(commons)
+        .username(name)
+        .totalWealth(totalWealth)
+        .cowHealth(cowHealth)
+        .build();
+    context.getBean(CommonsAggregatesService.class).addPlayer(userCommons);
+    return userCommons;
+  }
+
+  private UserCommons reload(UserCommons userCommons) {
+    return userCommonsRepository.findByCommonsIdAndUserId(commons.getId(), userCommons.getUserId()).orElseThrow();
+  }
+
+  private void assertTotalsMatchTheCount() {
+    CommonsAggregates stored = commonsAggregatesRepository.findById(commons.getId()).orElseThrow();
+    CommonsAggregates counted = commonsAggregatesRepository.compute(commons.getId()).orElseThrow();
+    assertTrue(ReconcileCommonsAggregatesJob.agree(stored, counted), stored + " != " + counted);
+  }
+
+  @Test
+  void trades_succeed_only_while_the_player_can_afford_them_or_has_the_cows() throws Exception {
+    UserCommons player = join("player", 30, 50);
+    long userId = player.getUserId();
+
+    UserCommons afterBuying = tradeService.buy(commons.getId(), userId, 3);
+    assertEquals(0, afterBuying.getTotalWealth());
+    assertEquals(3, afterBuying.getNumOfCows());
+    assertEquals(3, afterBuying.getCowsBought());
+    assertThrows(NotEnoughMoneyException.class, () -> tradeService.buy(commons.getId(), userId, 1));
+
+    UserCommons afterSelling = tradeService.sell(commons.getId(), userId, 2);
+    // cows at half health sell for half the price
+    assertEquals(10, afterSelling.getTotalWealth());
+    assertEquals(1, afterSelling.getNumOfCows());
+    assertEquals(2, afterSelling.getCowsSold());
+    assertThrows(NoCowsException.class, () -> tradeService.sell(commons.getId(), userId, 2));
+
+    assertEquals(10, reload(player).getTotalWealth());
+    assertEquals(1, reload(player).getNumOfCows());
+    assertTotalsMatchTheCount();
+
+    EntityNotFoundException notAPlayer = assertThrows(EntityNotFoundException.class,
+        () -> tradeService.buy(commons.getId(), userId + 1, 1));
+    assertEquals("UserCommons with commonsId " + commons.getId() + " and userId " + (userId + 1) + " not found",
+        notAPlayer.getMessage());
+    EntityNotFoundException noCommons = assertThrows(EntityNotFoundException.class,
+        () -> tradeService.sell(commons.getId() + 1, userId, 1));
+    assertEquals("Commons with id " + (commons.getId() + 1) + " not found", noCommons.getMessage());
+  }
+
+  @Test
+  void trades_of_no_cows_or_a_negative_number_are_refused() throws Exception {
+    UserCommons player = join("player", 30, 50);
+    long userId = player.getUserId();
+    tradeService.buy(commons.getId(), userId, 1);
+
+    for (int numCows : new int[] { 0, -1, -1000 }) {
+      // a negative buy would pay the player, and a negative sale would buy cows at the sale price
+      assertEquals(0, userCommonsRepository.buyCows(commons.getId(), userId, numCows));
+      assertEquals(0, userCommonsRepository.sellCows(commons.getId(), userId, numCows));
+      IllegalArgumentException buy = assertThrows(IllegalArgumentException.class,
+          () -> tradeService.buy(commons.getId(), userId, numCows));
+      IllegalArgumentException sell = assertThrows(IllegalArgumentException.class,
+          () -> tradeService.sell(commons.getId(), userId, numCows));
+      assertEquals("numCows must be at least 1, was " + numCows, buy.getMessage());
+      assertEquals("numCows must be at least 1, was " + numCows, sell.getMessage());
+    }
+
+    assertEquals(20, reload(player).getTotalWealth());
+    assertEquals(1, reload(player).getNumOfCows());
+    assertEquals(1, reload(player).getCowsBought());
+    assertEquals(0, reload(player).getCowsSold());
+    assertTotalsMatchTheCount();
+  }
+
+  @Test
+  void concurrent_trades_lose_no_update_and_never_overspend_or_oversell() throws Exception {
+    List<UserCommons> players = List.of(join("first", 100, 100), join("second", 100, 100));
+    int[][] bought = new int[players.size()][TRADES];
+    int[][] sold = new int[players.size()][TRADES];
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < TRADES; i++) {
+      int trade = i;
+      int player = i % players.size();
+      long userId = players.get(player).getUserId();
+      // each player keeps trying to buy 3 cows and sell 2, more than 100 in wealth allows for long
+      futures.add(executor.submit((Callable<Void>) () -> {
+        start.await();
+        try {
+          if (trade % 4 < 2) {
+            tradeService.buy(commons.getId(), userId, 3);
+            bought[player][trade] = 3;
+          } else {
+            tradeService.sell(commons.getId(), userId, 2);
+            sold[player][trade] = 2;
+          }
+        } catch (NotEnoughMoneyException | NoCowsException e) {
+          // the guard refused the trade
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    int refused = 0;
+    for (int player = 0; player < players.size(); player++) {
+      int cowsBought = 0;
+      int cowsSold = 0;
+      for (int trade = 0; trade < TRADES; trade++) {
+        cowsBought += bought[player][trade];
+        cowsSold += sold[player][trade];
+        refused += trade % players.size() == player && bought[player][trade] + sold[player][trade] == 0 ? 1 : 0;
+      }
+      UserCommons after = reload(players.get(player));
+      assertEquals(cowsBought, after.getCowsBought());
+      assertEquals(cowsSold, after.getCowsSold());
+      assertEquals(cowsBought - cowsSold, after.getNumOfCows());
+      assertEquals(100 - 10.0 * cowsBought + 10.0 * cowsSold, after.getTotalWealth());
+      assertTrue(after.getTotalWealth() >= 0, "overspent: " + after.getTotalWealth());
+      assertTrue(after.getNumOfCows() >= 0, "oversold: " + after.getNumOfCows());
+    }
+    assertTrue(refused > 0, "every trade succeeded, so no guard was tested");
+    assertTotalsMatchTheCount();
+  }
+
+  private TradeOrder buyOne() {
+    return TradeOrder.builder().commonsId(commons.getId()).type(TradeOrder.Type.BUY).numCows(1).build();
+  }
+
+  @Test
+  void orders_in_a_batch_see_each_other_and_a_retry_is_not_placed_again() throws Exception {
+    UserCommons player = join("player", 40, 100);
+    List<TradeOrder> orders = List.of(buyOne(), buyOne(),
+        TradeOrder.builder().commonsId(commons.getId()).type(TradeOrder.Type.SELL).numCows(1).build());
+
+    String results = tradeService.placeOrders(player.getUserId(), "key-1", orders).getResults();
+    String retried = tradeService.placeOrders(player.getUserId(), "key-1", orders).getResults();
+
+    JsonNode json = context.getBean(ObjectMapper.class).readTree(results);
+    assertEquals(1, json.get(0).get("userCommons").get("numOfCows").asInt());
+    assertEquals(2, json.get(1).get("userCommons").get("numOfCows").asInt());
+    assertEquals(1, json.get(2).get("userCommons").get("numOfCows").asInt());
+    assertEquals(results, retried);
+    assertEquals(2, reload(player).getCowsBought());
+    // without a key, or with another one, the orders are placed again
+    tradeService.placeOrders(player.getUserId(), null, List.of(buyOne()));
+    tradeService.placeOrders(player.getUserId(), "key-2", List.of(buyOne()));
+    assertEquals(4, reload(player).getCowsBought());
+    assertTotalsMatchTheCount();
+  }
+
+  @Test
+  void batch_with_an_incomplete_order_is_refused_before_any_order_is_placed() throws Exception {
+    UserCommons player = join("player", 40, 100);
+    List<TradeOrder> orders = List.of(buyOne(),
+        TradeOrder.builder().commonsId(commons.getId()).type(TradeOrder.Type.SELL).numCows(-1).build());
+
+    IllegalArgumentException refused = assertThrows(IllegalArgumentException.class,
+        () -> tradeService.placeOrders(player.getUserId(), "key-1", orders));
+
+    assertTrue(refused.getMessage().endsWith("order 1 is " + orders.get(1)), refused.getMessage());
+    assertEquals(0, reload(player).getCowsBought());
+    assertTrue(tradeService.findPlacedOrders(player.getUserId(), "key-1").isEmpty());
+    assertTotalsMatchTheCount();
+  }
+
+  @Test
+  void concurrent_requests_with_the_same_key_place_the_orders_once() throws Exception {
+    UserCommons player = join("player", 1000, 100);
+    AtomicInteger placed = new AtomicInteger();
+    AtomicInteger refused = new AtomicInteger();
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      futures.add(executor.submit((Callable<Void>) () -> {
+        start.await();
+        try {
+          tradeService.placeOrders(player.getUserId(), "key-1", List.of(buyOne()));
+          placed.incrementAndGet();
+        } catch (DataIntegrityViolationException e) {
+          refused.incrementAndGet();
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    // requests after the first committed get its results back; those during it are refused
+    assertEquals(THREADS, placed.get() + refused.get());
+    assertEquals(1, reload(player).getCowsBought());
+    assertTotalsMatchTheCount();
+  }
+}
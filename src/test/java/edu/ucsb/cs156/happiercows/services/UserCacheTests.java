@@ -0,0 +1,145 @@
+package edu.ucsb.cs156.happiercows.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import edu.ucsb.cs156.happiercows.entities.User;
+import edu.ucsb.cs156.happiercows.repositories.UserRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(UserCache.class)
+@ContextConfiguration
+@TestPropertySource(properties = {
+        "app.users.cache.maximumSize=10",
+        "app.users.cache.expireAfterWriteMs=1000"
+})
+public class UserCacheTests {
+    @MockBean
+    UserRepository userRepository;
+
+    @Autowired
+    UserCache userCache;
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    @BeforeEach
+    void useFakeTicker() {
+        userCache.buildCache(nanos::get);
+    }
+
+    @AfterEach
+    void endRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    private User user(String email) {
+        User user = User.builder().id(1L).email(email).build();
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+        return user;
+    }
+
+    private void startRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @Test
+    void user_is_read_once_and_then_from_the_cache() {
+        User user = user("user@ucsb.edu");
+
+        assertEquals(Optional.of(user), userCache.findByEmail("user@ucsb.edu"));
+        assertEquals(Optional.of(user), userCache.findByEmail("user@ucsb.edu"));
+
+        verify(userRepository, times(1)).findByEmail("user@ucsb.edu");
+    }
+
+    @Test
+    void every_request_gets_its_own_copy_of_a_cached_user() {
+        User user = user("user@ucsb.edu");
+        startRequest();
+        User first = userCache.findByEmail("user@ucsb.edu").orElseThrow();
+        assertSame(first, userCache.findByEmail("user@ucsb.edu").orElseThrow());
+        RequestContextHolder.resetRequestAttributes();
+
+        first.setAdmin(true);
+        startRequest();
+        User second = userCache.findByEmail("user@ucsb.edu").orElseThrow();
+
+        assertNotSame(first, second);
+        assertNotSame(user, second);
+        assertFalse(second.isAdmin());
+        verify(userRepository, times(1)).findByEmail("user@ucsb.edu");
+    }
+
+    @Test
+    void missing_user_is_not_cached() {
+        when(userRepository.findByEmail("new@ucsb.edu")).thenReturn(Optional.empty());
+        startRequest();
+
+        assertEquals(Optional.empty(), userCache.findByEmail("new@ucsb.edu"));
+        assertEquals(Optional.empty(), userCache.findByEmail("new@ucsb.edu"));
+
+        verify(userRepository, times(2)).findByEmail("new@ucsb.edu");
+    }
+
+    @Test
+    void user_is_kept_for_the_rest_of_the_request() {
+        User user = user("user@ucsb.edu");
+        User other = user("other@ucsb.edu");
+        startRequest();
+
+        userCache.findByEmail("user@ucsb.edu");
+        userCache.invalidateAll();
+
+        assertEquals(Optional.of(user), userCache.findByEmail("user@ucsb.edu"));
+        verify(userRepository, times(1)).findByEmail("user@ucsb.edu");
+        assertEquals(Optional.of(other), userCache.findByEmail("other@ucsb.edu"));
+    }
+
+    @Test
+    void change_to_a_user_drops_it_from_the_cache_and_the_request() {
+        User user = user("user@ucsb.edu");
+        userCache.findByEmail("user@ucsb.edu");
+        userCache.userChanged(new UserChangedEvent("user@ucsb.edu"));
+        startRequest();
+        userCache.findByEmail("user@ucsb.edu");
+
+        userCache.userChanged(new UserChangedEvent("user@ucsb.edu"));
+
+        assertEquals(Optional.of(user), userCache.findByEmail("user@ucsb.edu"));
+        verify(userRepository, times(3)).findByEmail("user@ucsb.edu");
+    }
+
+    @Test
+    void entries_expire() {
+        user("user@ucsb.edu");
+        userCache.findByEmail("user@ucsb.edu");
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1001));
+        userCache.findByEmail("user@ucsb.edu");
+
+        verify(userRepository, times(2)).findByEmail("user@ucsb.edu");
+    }
+}
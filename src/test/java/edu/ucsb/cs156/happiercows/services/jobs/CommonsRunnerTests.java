@@ -0,0 +1,176 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+
+public class CommonsRunnerTests {
+
+  @Test
+  void parallelism_of_one_runs_on_the_job_thread_in_a_transaction_per_commons() throws Exception {
+    PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    CommonsRunner runner = new CommonsRunner(0, transactionManager);
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(null, job);
+    ctx.setCommonsRunner(runner);
+    Thread jobThread = Thread.currentThread();
+
+    ctx.forEachCommons(List.of("a", "b"), (commons, commonsCtx) -> {
+      assertEquals(jobThread, Thread.currentThread());
+      commonsCtx.log(commons);
+    });
+
+    assertEquals(1, runner.getParallelism());
+    assertEquals("a\nb", job.getLog());
+    assertEquals(100, job.getProgress());
+    verify(transactionManager, times(2)).getTransaction(any());
+    verify(transactionManager, times(2)).commit(any());
+    runner.shutdown();
+  }
+
+  @Test
+  void parallelism_of_one_rolls_back_and_stops_at_the_first_failure() {
+    PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    CommonsRunner runner = new CommonsRunner(1, transactionManager);
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(null, job);
+
+    Exception thrown = assertThrows(Exception.class, () -> runner.forEach(ctx, List.of("a", "b"), (commons, commonsCtx) -> {
+      commonsCtx.log("working on " + commons);
+      throw new Exception("failed on " + commons);
+    }));
+
+    assertEquals("failed on a", thrown.getMessage());
+    assertEquals("working on a", job.getLog());
+    verify(transactionManager, times(1)).rollback(any());
+    verify(transactionManager, never()).commit(any());
+  }
+
+  @Test
+  void parallelism_of_one_passes_on_unchecked_failures() {
+    CommonsRunner runner = new CommonsRunner(1, mock(PlatformTransactionManager.class));
+    JobContext ctx = new JobContext(null, Job.builder().build());
+    ctx.cancel();
+
+    JobCancelledException thrown = assertThrows(JobCancelledException.class,
+        () -> runner.forEach(ctx, (Iterable<String>) List.of("a")::iterator, (commons, commonsCtx) -> commonsCtx.log(commons)));
+
+    assertEquals("Job cancelled", thrown.getMessage());
+  }
+
+  @Test
+  void commons_run_at_the_same_time_and_log_in_groups() throws Exception {
+    PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    CommonsRunner runner = new CommonsRunner(2, transactionManager);
+    Job job = Job.builder().id(5L).build();
+    JobContext ctx = new JobContext(null, job);
+    ctx.setCommonsRunner(runner);
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    ctx.forEachCommons(List.of("a", "b"), (commons, commonsCtx) -> {
+      threads.add(Thread.currentThread().getName());
+      commonsCtx.log(commons + " started");
+      bothStarted.countDown();
+      assertTrue(bothStarted.await(10, TimeUnit.SECONDS));
+      commonsCtx.log(commons + " finished");
+    });
+    runner.shutdown();
+
+    assertEquals(2, threads.size());
+    assertEquals("a started\na finished\nb started\nb finished", job.getLog());
+    assertEquals(100, job.getProgress());
+    verify(transactionManager, times(2)).getTransaction(any());
+    verify(transactionManager, times(2)).commit(any());
+  }
+
+  @Test
+  void failed_commons_is_rolled_back_and_the_rest_still_run() throws Exception {
+    PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    CommonsRunner runner = new CommonsRunner(2, transactionManager);
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(null, job);
+
+    RuntimeException thrown = assertThrows(RuntimeException.class,
+        () -> runner.forEach(ctx, List.of("a", "b", "c"), (commons, commonsCtx) -> {
+          commonsCtx.log("working on " + commons);
+          if (!commons.equals("b")) {
+            throw new Exception("checked failure in " + commons);
+          }
+        }));
+    runner.shutdown();
+
+    assertEquals("2 of 3 commons failed", thrown.getMessage());
+    assertEquals("""
+        working on a
+        Error: checked failure in a
+        working on b
+        working on c
+        Error: checked failure in c""", job.getLog());
+    verify(transactionManager, times(2)).rollback(any());
+    verify(transactionManager, times(1)).commit(any());
+  }
+
+  @Test
+  void unchecked_failure_is_logged_as_it_is() {
+    CommonsRunner runner = new CommonsRunner(2, mock(PlatformTransactionManager.class));
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(null, job);
+
+    RuntimeException thrown = assertThrows(RuntimeException.class,
+        () -> runner.forEach(ctx, List.of("a"), (commons, commonsCtx) -> {
+          throw new IllegalStateException("unchecked failure in " + commons);
+        }));
+    runner.shutdown();
+
+    assertEquals("1 of 1 commons failed", thrown.getMessage());
+    assertEquals("Error: unchecked failure in a", job.getLog());
+  }
+
+  @Test
+  void interrupted_job_cancels_remaining_commons() throws Exception {
+    CommonsRunner runner = new CommonsRunner(2, mock(PlatformTransactionManager.class));
+    JobContext ctx = new JobContext(null, Job.builder().build());
+    CountDownLatch never = new CountDownLatch(1);
+
+    Thread.currentThread().interrupt();
+    assertThrows(InterruptedException.class,
+        () -> runner.forEach(ctx, List.of("a", "b", "c"), (commons, commonsCtx) -> never.await()));
+    runner.shutdown();
+  }
+
+  @Test
+  void commons_not_started_when_the_job_is_cancelled_are_skipped() {
+    PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    CommonsRunner runner = new CommonsRunner(2, transactionManager);
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(null, job);
+    ctx.cancel();
+
+    JobCancelledException thrown = assertThrows(JobCancelledException.class,
+        () -> runner.forEach(ctx, List.of("a", "b", "c"), (commons, commonsCtx) -> commonsCtx.log(commons)));
+    runner.shutdown();
+
+    assertEquals("Job cancelled", thrown.getMessage());
+    assertNull(job.getLog());
+    assertEquals(100, job.getProgress());
+    verify(transactionManager, times(3)).rollback(any());
+  }
+}
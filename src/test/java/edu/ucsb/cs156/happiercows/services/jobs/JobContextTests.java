@@ -0,0 +1,235 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobCheckpoint;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobCheckpointKey;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobLogLine;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobLogLineKey;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobCheckpointRepository;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobLogLineRepository;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobsRepository;
+import edu.ucsb.cs156.happiercows.services.CommonsAggregatesService;
+
+public class JobContextTests {
+
+  private JobLogLine line(long seq, String message) {
+    return JobLogLine.builder().id(new JobLogLineKey(42L, seq)).message(message).build();
+  }
+
+  @Test
+  void lines_are_written_in_batches_when_the_buffer_is_full() {
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    JobLogLineRepository jobLogLineRepository = mock(JobLogLineRepository.class);
+    Job job = Job.builder().id(42L).build();
+    JobContext ctx = new JobContext(jobsRepository, jobLogLineRepository, null, job, 2, 60000);
+
+    ctx.log("a");
+    verify(jobLogLineRepository, never()).saveAll(any());
+
+    ctx.log("b");
+    ctx.log("c");
+    ctx.flush();
+    ctx.flush();
+
+    verify(jobLogLineRepository, times(1)).saveAll(List.of(line(0, "a"), line(1, "b")));
+    verify(jobLogLineRepository, times(1)).saveAll(List.of(line(2, "c")));
+    verify(jobLogLineRepository, times(2)).saveAll(any());
+    verify(jobsRepository, never()).save(any());
+    // lines written to the table are not kept on the job as well
+    assertNull(job.getLog());
+  }
+
+  @Test
+  void lines_are_written_when_the_flush_interval_has_passed() {
+    JobLogLineRepository jobLogLineRepository = mock(JobLogLineRepository.class);
+    Job job = Job.builder().id(42L).build();
+    JobContext ctx = new JobContext(null, jobLogLineRepository, null, job, 100, 0);
+
+    ctx.log("a");
+
+    verify(jobLogLineRepository, times(1)).saveAll(List.of(line(0, "a")));
+  }
+
+  @Test
+  void lines_are_kept_in_memory_only_without_a_repository() {
+    Job job = Job.builder().id(42L).build();
+    JobContext ctx = new JobContext(null, job);
+
+    ctx.log("a");
+    ctx.flush();
+
+    assertEquals("a", job.getLog());
+    assertEquals(job, ctx.getJob());
+  }
+
+  @Test
+  void lines_are_added_to_the_log_buffer_with_their_sequence_numbers() {
+    Job job = Job.builder().id(42L).build();
+    JobLogBuffer buffer = new JobLogBuffer(42L, 10, "running");
+    JobContext ctx = new JobContext(null, null, buffer, job, 100, 60000);
+
+    ctx.log("a");
+    ctx.log("b");
+
+    assertEquals(2L, buffer.getNextSeq());
+    assertEquals("b", buffer.linesFrom(1).get(0).getMessage());
+  }
+
+  @Test
+  void group_lines_are_added_to_the_log_when_the_group_is_logged() {
+    Job job = Job.builder().id(42L).build();
+    JobContext ctx = new JobContext(null, job);
+    JobContext group = ctx.newGroup();
+    JobContext emptyGroup = ctx.newGroup();
+
+    ctx.log("a");
+    group.log("b");
+    group.log("c");
+    assertEquals("a", job.getLog());
+
+    ctx.logGroup(emptyGroup);
+    ctx.logGroup(group);
+
+    assertEquals("a\nb\nc", job.getLog());
+    assertEquals(42L, group.getJob().getId());
+  }
+
+  @Test
+  void progress_is_written_when_the_percent_changes() throws Exception {
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    Job job = Job.builder().id(42L).build();
+    JobContext ctx = new JobContext(jobsRepository, job);
+
+    ctx.forEachCommons(List.of("a", "b", "c"), (commons, commonsCtx) -> commonsCtx.log(commons));
+    ctx.setProgress(3, 3);
+    ctx.setProgress(1, 0);
+
+    assertEquals(100, job.getProgress());
+    verify(jobsRepository).updateProgress(42L, 33);
+    verify(jobsRepository).updateProgress(42L, 66);
+    verify(jobsRepository).updateProgress(42L, 100);
+    verify(jobsRepository, times(3)).updateProgress(anyLong(), anyInt());
+  }
+
+  @Test
+  void progress_is_unknown_when_the_commons_cannot_be_counted() throws Exception {
+    Job job = Job.builder().id(42L).build();
+    JobContext ctx = new JobContext(null, job);
+    Iterable<String> allCommons = List.of("a", "b")::iterator;
+
+    ctx.forEachCommons(allCommons, (commons, commonsCtx) -> commonsCtx.log(commons));
+
+    assertEquals("a\nb", job.getLog());
+    assertNull(job.getProgress());
+  }
+
+  @Test
+  void cancelled_job_stops_before_the_next_commons() {
+    Job job = Job.builder().id(42L).build();
+    JobContext ctx = new JobContext(null, job);
+    JobContext group = ctx.newGroup();
+
+    JobCancelledException e = assertThrows(JobCancelledException.class,
+        () -> ctx.forEachCommons(List.of("a", "b"), (commons, commonsCtx) -> {
+          commonsCtx.log(commons);
+          ctx.cancel();
+        }));
+
+    assertEquals("Job cancelled", e.getMessage());
+    assertEquals("a", job.getLog());
+    assertEquals(50, job.getProgress());
+    assertThrows(JobCancelledException.class, group::checkCancelled);
+  }
+
+  @Test
+  void claimed_job_stops_before_the_next_commons_once_it_has_lost_its_claim() throws Exception {
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    when(jobsRepository.holdsClaim(42L, "claim-1")).thenReturn(true, false);
+    Job job = Job.builder().id(42L).claimToken("claim-1").build();
+    JobContext ctx = new JobContext(jobsRepository, job);
+
+    JobClaimLostException e = assertThrows(JobClaimLostException.class,
+        () -> ctx.forEachCommons(List.of("a", "b"), (commons, commonsCtx) -> commonsCtx.log(commons)));
+
+    assertEquals("Job 42 is no longer running under this server's claim", e.getMessage());
+    assertEquals("a", job.getLog());
+    assertThrows(JobClaimLostException.class, () -> ctx.newGroup().checkCancelled());
+    // only a job with a repository to check its claim against is fenced
+    new JobContext(null, job).checkCancelled();
+  }
+
+  @Test
+  void job_stops_once_it_has_run_past_its_timeout() {
+    JobContext ctx = new JobContext(null, Job.builder().id(42L).build());
+    ctx.checkCancelled();
+
+    ctx.setTimeout(Duration.ZERO);
+
+    JobCancelledException e = assertThrows(JobCancelledException.class, ctx::checkCancelled);
+    assertEquals("Job timed out after PT0S", e.getMessage());
+    e = assertThrows(JobCancelledException.class, () -> ctx.newGroup().checkCancelled());
+    assertEquals("Job timed out after PT0S", e.getMessage());
+  }
+
+  @Test
+  void checkpoints_start_empty_without_a_repository() {
+    JobContext ctx = new JobContext(null, Job.builder().id(42L).build());
+
+    JobCheckpoint checkpoint = ctx.checkpoint(7L);
+    ctx.saveCheckpoint(checkpoint);
+
+    assertEquals(new JobCheckpointKey(42L, 7L), checkpoint.getId());
+    assertFalse(checkpoint.isComplete());
+  }
+
+  @Test
+  void checkpoints_are_read_and_written_by_the_job_and_its_groups() {
+    JobCheckpointRepository jobCheckpointRepository = mock(JobCheckpointRepository.class);
+    JobCheckpoint saved = JobCheckpoint.start(42L, 7L);
+    saved.setComplete(true);
+    when(jobCheckpointRepository.findById(new JobCheckpointKey(42L, 7L))).thenReturn(Optional.of(saved));
+    when(jobCheckpointRepository.findById(new JobCheckpointKey(42L, 8L))).thenReturn(Optional.empty());
+    JobContext ctx = new JobContext(null, Job.builder().id(42L).build());
+    ctx.setJobCheckpointRepository(jobCheckpointRepository);
+    JobContext group = ctx.newGroup();
+
+    assertEquals(saved, group.checkpoint(7L));
+    assertEquals(JobCheckpoint.start(42L, 8L), ctx.checkpoint(8L));
+    group.saveCheckpoint(saved);
+
+    verify(jobCheckpointRepository, times(1)).save(saved);
+  }
+
+  @Test
+  void aggregates_are_recomputed_by_the_job_and_its_groups() {
+    CommonsAggregatesService commonsAggregatesService = mock(CommonsAggregatesService.class);
+    JobContext ctx = new JobContext(null, Job.builder().id(42L).build());
+    new JobContext(null, Job.builder().id(43L).build()).recomputeAggregates(6L);
+    ctx.setCommonsAggregatesService(commonsAggregatesService);
+
+    ctx.recomputeAggregates(7L);
+    ctx.newGroup().recomputeAggregates(8L);
+
+    verify(commonsAggregatesService, times(1)).recompute(7L);
+    verify(commonsAggregatesService, times(1)).recompute(8L);
+  }
+}
@@ -0,0 +1,157 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.task.DelegatingSecurityContextAsyncTaskExecutor;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import edu.ucsb.cs156.happiercows.models.JobExecutorStats;
+
+@ExtendWith(SpringExtension.class)
+@Import(JobExecutorService.class)
+@ContextConfiguration
+@TestPropertySource(properties = { "app.jobs.executor.mode=threadPerJob", "app.jobs.executor.permitsPerType=1" })
+// each test starts with no jobs counted
+@DirtiesContext(classMode = ClassMode.AFTER_EACH_TEST_METHOD)
+public class JobExecutorServiceTests {
+
+  @Autowired
+  JobExecutorService jobExecutorService;
+
+  private final CountDownLatch finish = new CountDownLatch(1);
+
+  @AfterEach
+  void clearSecurityContext() {
+    finish.countDown();
+    SecurityContextHolder.clearContext();
+  }
+
+  /**
+   * Launches a job of the given type on a thread of its own; the job runs
+   * until finish is counted down.
+   */
+  private Thread launch(String jobType) {
+    jobExecutorService.jobQueued();
+    Thread thread = new Thread(() -> jobExecutorService.run(jobType, () -> {
+      try {
+        finish.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }));
+    thread.start();
+    return thread;
+  }
+
+  private JobExecutorStats stats(long queued, long active, long completed) {
+    return JobExecutorStats.builder()
+        .mode(JobExecutorService.THREAD_PER_JOB)
+        .permitsPerType(1)
+        .queued(queued)
+        .active(active)
+        .completed(completed)
+        .build();
+  }
+
+  @Test
+  void jobs_of_one_type_wait_for_a_permit() throws Exception {
+    Thread first = launch("MilkTheCowsJob");
+    await().atMost(Duration.ofSeconds(5)).until(() -> jobExecutorService.getStats().getActive() == 1);
+
+    Thread second = launch("MilkTheCowsJob");
+    Thread report = launch("InstructorReportJob");
+    await().atMost(Duration.ofSeconds(5)).until(() -> jobExecutorService.getStats().equals(stats(1, 2, 0)));
+
+    finish.countDown();
+    for (Thread thread : new Thread[] { first, second, report }) {
+      thread.join(5000);
+    }
+    assertEquals(stats(0, 0, 3), jobExecutorService.getStats());
+  }
+
+  @Test
+  void pool_mode_does_not_limit_jobs_of_one_type() throws Exception {
+    ReflectionTestUtils.setField(jobExecutorService, "mode", JobExecutorService.POOL);
+
+    Thread first = launch("MilkTheCowsJob");
+    Thread second = launch("MilkTheCowsJob");
+    await().atMost(Duration.ofSeconds(5)).until(() -> jobExecutorService.getStats().getActive() == 2);
+
+    finish.countDown();
+    first.join(5000);
+    second.join(5000);
+    assertEquals(2, jobExecutorService.getStats().getCompleted());
+  }
+
+  @Test
+  void failed_job_gives_back_its_permit() {
+    jobExecutorService.jobQueued();
+    assertThrows(IllegalStateException.class, () -> jobExecutorService.run("TestJob", () -> {
+      throw new IllegalStateException("Fail!");
+    }));
+
+    jobExecutorService.jobQueued();
+    boolean[] ran = { false };
+    jobExecutorService.run("TestJob", () -> ran[0] = true);
+
+    assertTrue(ran[0]);
+    assertEquals(stats(0, 0, 2), jobExecutorService.getStats());
+  }
+
+  @Test
+  void unknown_mode_is_refused() {
+    ReflectionTestUtils.setField(jobExecutorService, "mode", "virtual");
+
+    IllegalStateException e = assertThrows(IllegalStateException.class, () -> jobExecutorService.checkMode());
+
+    assertEquals("Unknown app.jobs.executor.mode virtual, expected pool or threadPerJob", e.getMessage());
+  }
+
+  /**
+   * Runs a task on the executor and returns the name of its thread and the
+   * authentication it saw.
+   */
+  private Object[] runOn(DelegatingSecurityContextAsyncTaskExecutor executor) throws Exception {
+    Future<Object[]> result = executor.submit(() -> new Object[] {
+        Thread.currentThread().getName(),
+        SecurityContextHolder.getContext().getAuthentication() });
+    return result.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void both_executors_run_jobs_as_the_user_who_launched_them() throws Exception {
+    Authentication admin = new TestingAuthenticationToken("admin", null, "ROLE_ADMIN");
+    SecurityContextHolder.getContext().setAuthentication(admin);
+    SimpleAsyncTaskExecutor pool = new SimpleAsyncTaskExecutor("pool-");
+
+    Object[] threadPerJob = runOn(JobExecutorService.taskExecutor(JobExecutorService.THREAD_PER_JOB, pool));
+    Object[] pooled = runOn(JobExecutorService.taskExecutor(JobExecutorService.POOL, pool));
+
+    assertTrue(((String) threadPerJob[0]).startsWith("HappierCows-job-"), (String) threadPerJob[0]);
+    assertEquals(admin, threadPerJob[1]);
+    assertTrue(((String) pooled[0]).startsWith("pool-"), (String) pooled[0]);
+    assertEquals(admin, pooled[1]);
+  }
+}
@@ -0,0 +1,241 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import edu.ucsb.cs156.happiercows.models.JobLogEntry;
+
+public class JobLogBufferTests {
+
+  /**
+   * Keeps the text of each event it is sent instead of writing to a response.
+   */
+  static class RecordingEmitter extends SseEmitter {
+    List<String> events = new ArrayList<>();
+    boolean completed = false;
+    boolean failing = false;
+    Runnable onCompletion;
+    Runnable onTimeout;
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+      if (failing) {
+        throw new IOException("client went away");
+      }
+      events.add(builder.build().stream()
+          .map(part -> part.getData().toString())
+          .collect(Collectors.joining()));
+    }
+
+    @Override
+    public void complete() {
+      completed = true;
+    }
+
+    @Override
+    public void onCompletion(Runnable callback) {
+      onCompletion = callback;
+    }
+
+    @Override
+    public void onTimeout(Runnable callback) {
+      onTimeout = callback;
+    }
+  }
+
+  private static String line(long seq, String message) {
+    return "event:line\nid:%d\ndata:%s\n\n".formatted(seq, new JobLogEntry(seq, message));
+  }
+
+  private static String status(String status) {
+    return "event:status\ndata:%s\n\n".formatted(status);
+  }
+
+  @Test
+  void buffer_keeps_only_the_newest_lines() {
+    JobLogBuffer buffer = new JobLogBuffer(1L, 3, "running");
+
+    for (int i = 0; i < 5; i++) {
+      buffer.append(i, "line " + i);
+    }
+
+    assertEquals(1L, buffer.getJobId());
+    assertEquals(2L, buffer.getFirstSeq());
+    assertEquals(5L, buffer.getNextSeq());
+    assertEquals(List.of(new JobLogEntry(2, "line 2"), new JobLogEntry(3, "line 3"), new JobLogEntry(4, "line 4")),
+        buffer.linesFrom(0));
+    assertEquals(List.of(new JobLogEntry(4, "line 4")), buffer.linesFrom(4));
+    assertEquals(List.of(), buffer.linesFrom(5));
+  }
+
+  @Test
+  void buffer_of_a_retried_job_starts_after_the_earlier_lines() {
+    JobLogBuffer buffer = new JobLogBuffer(1L, 3, "running", 7);
+
+    assertEquals(7L, buffer.getFirstSeq());
+    assertEquals(7L, buffer.getNextSeq());
+    assertEquals(List.of(), buffer.linesFrom(0));
+
+    buffer.append(7, "line 7");
+
+    assertEquals(7L, buffer.getFirstSeq());
+    assertEquals(List.of(new JobLogEntry(7, "line 7")), buffer.linesFrom(0));
+  }
+
+  @Test
+  void subscriber_gets_backlog_then_new_lines_then_final_status() {
+    JobLogBuffer buffer = new JobLogBuffer(1L, 2, "running");
+    buffer.append(0, "a");
+    buffer.append(1, "b");
+    buffer.append(2, "c");
+    RecordingEmitter emitter = new RecordingEmitter();
+
+    assertTrue(buffer.subscribe(emitter, List.of(new JobLogEntry(0, "a")), 1));
+    buffer.append(3, "d");
+    buffer.setStatus("cancelling");
+    buffer.finish("complete");
+
+    assertEquals(List.of(
+        line(0, "a"), line(1, "b"), line(2, "c"), status("running"),
+        line(3, "d"), status("cancelling"), status("complete")), emitter.events);
+    assertTrue(emitter.completed);
+    assertEquals(0, buffer.getSubscriberCount());
+    assertEquals("complete", buffer.getStatus());
+  }
+
+  @Test
+  void subscriber_is_refused_when_lines_it_needs_have_left_the_buffer() {
+    JobLogBuffer buffer = new JobLogBuffer(1L, 2, "running");
+    buffer.append(0, "a");
+    buffer.append(1, "b");
+    buffer.append(2, "c");
+    RecordingEmitter emitter = new RecordingEmitter();
+
+    assertFalse(buffer.subscribe(emitter, List.of(), 0));
+
+    assertEquals(List.of(), emitter.events);
+    assertEquals(0, buffer.getSubscriberCount());
+  }
+
+  @Test
+  void events_are_sent_in_order_on_the_executor_not_by_the_job() {
+    List<Runnable> queued = new ArrayList<>();
+    JobLogBuffer buffer = new JobLogBuffer(1L, 10, "running", 0, queued::add);
+    RecordingEmitter emitter = new RecordingEmitter();
+
+    buffer.subscribe(emitter, List.of(), 0);
+    buffer.append(0, "a");
+    buffer.append(1, "b");
+
+    assertEquals(List.of(), emitter.events);
+    assertEquals(1, queued.size());
+
+    queued.remove(0).run();
+    assertEquals(List.of(status("running"), line(0, "a"), line(1, "b")), emitter.events);
+
+    buffer.finish("complete");
+    assertFalse(emitter.completed);
+    queued.remove(0).run();
+    assertEquals(status("complete"), emitter.events.get(3));
+    assertTrue(emitter.completed);
+    assertEquals(List.of(), queued);
+  }
+
+  @Test
+  void client_that_falls_too_far_behind_is_dropped() {
+    List<Runnable> queued = new ArrayList<>();
+    JobLogBuffer buffer = new JobLogBuffer(1L, 2, "running", 0, queued::add);
+    RecordingEmitter slow = new RecordingEmitter();
+    buffer.subscribe(slow, List.of(), 0);
+
+    buffer.append(0, "a");
+    buffer.append(1, "b");
+    assertEquals(1, buffer.getSubscriberCount());
+    buffer.append(2, "c");
+    assertEquals(0, buffer.getSubscriberCount());
+
+    queued.remove(0).run();
+    assertEquals(List.of(), slow.events);
+    assertTrue(slow.completed);
+  }
+
+  @Test
+  void subscriber_after_finish_gets_backlog_and_stream_ends() {
+    JobLogBuffer buffer = new JobLogBuffer(1L, 10, "running");
+    buffer.append(0, "a");
+    buffer.append(1, "b");
+    buffer.finish("error");
+    RecordingEmitter emitter = new RecordingEmitter();
+
+    buffer.subscribe(emitter, List.of(), 1);
+
+    assertEquals(List.of(line(1, "b"), status("error")), emitter.events);
+    assertTrue(emitter.completed);
+    assertEquals(0, buffer.getSubscriberCount());
+  }
+
+  @Test
+  void clients_that_fail_are_dropped() {
+    JobLogBuffer buffer = new JobLogBuffer(1L, 10, "running");
+    RecordingEmitter healthy = new RecordingEmitter();
+    RecordingEmitter broken = new RecordingEmitter();
+    buffer.subscribe(healthy, List.of(), 0);
+    buffer.subscribe(broken, List.of(), 0);
+    assertEquals(2, buffer.getSubscriberCount());
+
+    broken.failing = true;
+    buffer.append(0, "a");
+
+    assertEquals(1, buffer.getSubscriberCount());
+    assertEquals(List.of(status("running"), line(0, "a")), healthy.events);
+  }
+
+  @Test
+  void client_that_fails_during_backlog_is_not_subscribed() {
+    JobLogBuffer buffer = new JobLogBuffer(1L, 10, "running");
+    buffer.append(0, "a");
+    RecordingEmitter broken = new RecordingEmitter();
+    broken.failing = true;
+
+    buffer.subscribe(broken, List.of(), 0);
+    buffer.subscribe(broken, List.of(), 1);
+
+    assertEquals(0, buffer.getSubscriberCount());
+    assertFalse(broken.completed);
+  }
+
+  @Test
+  void clients_that_fail_on_a_status_change_are_dropped() {
+    JobLogBuffer buffer = new JobLogBuffer(1L, 10, "running");
+    RecordingEmitter broken = new RecordingEmitter();
+    buffer.subscribe(broken, List.of(), 0);
+
+    broken.failing = true;
+    buffer.setStatus("cancelling");
+
+    assertEquals(0, buffer.getSubscriberCount());
+  }
+
+  @Test
+  void clients_are_dropped_when_their_stream_completes_or_times_out() {
+    JobLogBuffer buffer = new JobLogBuffer(1L, 10, "running");
+    RecordingEmitter completed = new RecordingEmitter();
+    RecordingEmitter timedOut = new RecordingEmitter();
+    buffer.subscribe(completed, List.of(), 0);
+    buffer.subscribe(timedOut, List.of(), 0);
+
+    completed.onCompletion.run();
+    assertEquals(1, buffer.getSubscriberCount());
+    timedOut.onTimeout.run();
+    assertEquals(0, buffer.getSubscriberCount());
+  }
+}
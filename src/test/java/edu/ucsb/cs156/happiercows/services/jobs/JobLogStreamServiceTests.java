@@ -0,0 +1,174 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobLogLine;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobLogLineKey;
+import edu.ucsb.cs156.happiercows.models.JobLogEntry;
+import edu.ucsb.cs156.happiercows.models.JobLogTail;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobLogLineRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(JobLogStreamService.class)
+@ContextConfiguration
+@TestPropertySource(properties = { "app.jobs.log.bufferLines=2", "app.jobs.log.flushLines=2",
+    "app.jobs.log.streamTimeoutMs=1000", "app.jobs.log.streamThreads=1" })
+public class JobLogStreamServiceTests {
+
+  @MockBean
+  JobLogLineRepository jobLogLineRepository;
+
+  @Autowired
+  JobLogStreamService jobLogStreamService;
+
+  private JobLogLine storedLine(long jobId, long seq, String message) {
+    return JobLogLine.builder().id(new JobLogLineKey(jobId, seq)).message(message).build();
+  }
+
+  @Test
+  void tail_of_running_job_reads_old_lines_from_database_and_new_lines_from_buffer() {
+    Job job = Job.builder().id(11L).status("running").build();
+    JobLogBuffer buffer = jobLogStreamService.open(job);
+    assertSame(buffer, jobLogStreamService.open(job));
+    for (int i = 0; i < 4; i++) {
+      buffer.append(i, "line " + i);
+    }
+    when(jobLogLineRepository.findAllByJobIdAndSeqBetween(11L, 1L, 2L))
+        .thenReturn(List.of(storedLine(11L, 1L, "line 1")));
+
+    JobLogTail tail = jobLogStreamService.tail(job, 1, null);
+
+    assertEquals(JobLogTail.builder()
+        .jobId(11L)
+        .status("running")
+        .nextOffset(4L)
+        .lines(List.of(new JobLogEntry(1, "line 1"), new JobLogEntry(2, "line 2"), new JobLogEntry(3, "line 3")))
+        .build(), tail);
+
+    JobLogTail newest = jobLogStreamService.tail(job, 0, 1);
+    assertEquals(List.of(new JobLogEntry(3, "line 3")), newest.getLines());
+
+    JobLogTail caughtUp = jobLogStreamService.tail(job, 4, null);
+    assertEquals(List.of(), caughtUp.getLines());
+    assertEquals(4L, caughtUp.getNextOffset());
+  }
+
+  @Test
+  void tail_of_finished_job_reads_from_database() {
+    Job job = Job.builder().id(12L).status("running").build();
+    jobLogStreamService.open(job);
+    job.setStatus("complete");
+    jobLogStreamService.close(job);
+    jobLogStreamService.close(job);
+    assertFalse(jobLogStreamService.get(12L).isPresent());
+
+    Job loaded = Job.builder().id(12L).status("complete").build();
+    when(jobLogLineRepository.countByJobId(12L)).thenReturn(3L);
+    when(jobLogLineRepository.findAllByJobIdAndSeqBetween(12L, 1L, 3L))
+        .thenReturn(List.of(storedLine(12L, 1L, "b"), storedLine(12L, 2L, "c")));
+
+    JobLogTail tail = jobLogStreamService.tail(loaded, 0, 2);
+
+    assertEquals("complete", tail.getStatus());
+    assertEquals(3L, tail.getNextOffset());
+    assertEquals(List.of(new JobLogEntry(1, "b"), new JobLogEntry(2, "c")), tail.getLines());
+
+    JobLogTail past = jobLogStreamService.tail(loaded, 7, null);
+    assertEquals(List.of(), past.getLines());
+    assertEquals(7L, past.getNextOffset());
+  }
+
+  @Test
+  void tail_of_job_logged_before_log_lines_splits_stored_log() {
+    Job job = Job.builder().id(13L).status("complete").log("a\nb\nc").build();
+
+    JobLogTail tail = jobLogStreamService.tail(job, 1, null);
+
+    assertEquals(3L, tail.getNextOffset());
+    assertEquals(List.of(new JobLogEntry(1, "b"), new JobLogEntry(2, "c")), tail.getLines());
+    verify(jobLogLineRepository, never()).countByJobId(anyLong());
+  }
+
+  @Test
+  void tail_of_job_with_lines_in_memory_reads_from_database() {
+    Job job = Job.builder().id(15L).status("complete").log("a").build();
+    job.appendLog("b");
+    when(jobLogLineRepository.countByJobId(15L)).thenReturn(2L);
+    when(jobLogLineRepository.findAllByJobIdAndSeqBetween(15L, 1L, 2L))
+        .thenReturn(List.of(storedLine(15L, 1L, "b")));
+
+    JobLogTail tail = jobLogStreamService.tail(job, 1, null);
+
+    assertEquals(2L, tail.getNextOffset());
+    assertEquals(List.of(new JobLogEntry(1, "b")), tail.getLines());
+  }
+
+  @Test
+  void stream_of_running_job_subscribes_to_its_buffer() throws Exception {
+    Job job = Job.builder().id(14L).status("running").build();
+    JobLogBuffer buffer = jobLogStreamService.open(job);
+
+    jobLogStreamService.stream(job, 0);
+
+    assertEquals(1, buffer.getSubscriberCount());
+    job.setStatus("complete");
+    jobLogStreamService.close(job);
+    assertEquals(0, buffer.getSubscriberCount());
+    assertTrue(jobLogStreamService.get(14L).isEmpty());
+  }
+
+  @Test
+  void stream_reads_again_the_lines_that_leave_the_buffer_while_it_reads() throws Exception {
+    Job job = Job.builder().id(16L).status("running").build();
+    JobLogBuffer buffer = jobLogStreamService.open(job);
+    for (int i = 0; i < 3; i++) {
+      buffer.append(i, "line " + i);
+    }
+    when(jobLogLineRepository.findAllByJobIdAndSeqBetween(16L, 0L, 1L)).thenAnswer(invocation -> {
+      // the job logs two more lines meanwhile
+      buffer.append(3, "line 3");
+      buffer.append(4, "line 4");
+      return List.of(storedLine(16L, 0L, "line 0"));
+    });
+    when(jobLogLineRepository.findAllByJobIdAndSeqBetween(16L, 1L, 3L))
+        .thenReturn(List.of(storedLine(16L, 1L, "line 1"), storedLine(16L, 2L, "line 2")));
+
+    jobLogStreamService.stream(job, 0);
+
+    verify(jobLogLineRepository).findAllByJobIdAndSeqBetween(16L, 1L, 3L);
+    assertEquals(1, buffer.getSubscriberCount());
+    jobLogStreamService.close(job);
+  }
+
+  @Test
+  void buffer_smaller_than_a_flush_is_refused_at_startup() {
+    JobLogStreamService service = new JobLogStreamService();
+    ReflectionTestUtils.setField(service, "bufferLines", 99);
+    ReflectionTestUtils.setField(service, "flushLines", 100);
+
+    IllegalStateException e = assertThrows(IllegalStateException.class, service::start);
+
+    assertEquals("app.jobs.log.bufferLines (99) must be at least app.jobs.log.flushLines (100)", e.getMessage());
+  }
+}
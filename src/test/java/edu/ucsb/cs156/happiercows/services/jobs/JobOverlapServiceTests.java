@@ -0,0 +1,211 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.services.jobs.JobOverlapService.OverlapPolicy;
+
+@ExtendWith(SpringExtension.class)
+@Import(JobOverlapService.class)
+@ContextConfiguration
+@TestPropertySource(properties = { "app.jobs.overlap.skipIfRunning=MilkTheCowsJobInd",
+    "app.jobs.overlap.queueAtMostOne=MilkTheCowsJob,GameTickJob" })
+// each test starts with no jobs running
+@DirtiesContext(classMode = ClassMode.AFTER_EACH_TEST_METHOD)
+public class JobOverlapServiceTests {
+
+  @Autowired
+  JobOverlapService jobOverlapService;
+
+  private final CountDownLatch finish = new CountDownLatch(1);
+
+  @AfterEach
+  void finishJobs() {
+    finish.countDown();
+  }
+
+  private static Job job(long id, String jobType, String scope) {
+    return Job.builder()
+        .id(id)
+        .status("running")
+        .jobType(jobType)
+        .scope(scope)
+        .coalesceKey(jobType + "/" + scope + "/{}")
+        .build();
+  }
+
+  /**
+   * Runs an admitted job on a thread of its own, until finish is counted
+   * down; the job's status is added to statuses when it starts.  A job that
+   * has to wait is launched again on a new thread.
+   */
+  private Thread launch(Job job, List<String> statuses) {
+    Thread thread = new Thread(() -> jobOverlapService.runInTurn(job, () -> {
+      statuses.add(job.getId() + ":" + job.getStatus());
+      try {
+        finish.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, () -> launch(job, statuses)));
+    thread.start();
+    return thread;
+  }
+
+  @Test
+  void policies_are_configured_by_job_type() {
+    assertEquals(OverlapPolicy.SKIP_IF_RUNNING, jobOverlapService.policyFor("MilkTheCowsJobInd"));
+    assertEquals(OverlapPolicy.QUEUE_AT_MOST_ONE, jobOverlapService.policyFor("GameTickJob"));
+    assertEquals(OverlapPolicy.NONE, jobOverlapService.policyFor("TestJob"));
+    assertEquals(List.of("queued", "running"), jobOverlapService.coalescedStatuses("MilkTheCowsJobInd"));
+    assertEquals(List.of("queued"), jobOverlapService.coalescedStatuses("GameTickJob"));
+  }
+
+  @Test
+  void jobs_without_a_coalesce_key_always_run() {
+    Job first = Job.builder().id(1L).status("running").build();
+    Job second = Job.builder().id(2L).status("running").build();
+
+    assertEquals(Optional.empty(), jobOverlapService.admit(first));
+    assertEquals(Optional.empty(), jobOverlapService.admit(second));
+
+    boolean[] ran = { false };
+    jobOverlapService.runInTurn(second, () -> ran[0] = true, () -> fail("not relaunched"));
+    assertTrue(ran[0]);
+  }
+
+  @Test
+  void job_that_was_not_admitted_runs_at_once_when_the_same_job_is_not_running() {
+    // e.g. a resumed job
+    Job resumed = job(1L, "GameTickJob", "global");
+
+    boolean[] ran = { false };
+    jobOverlapService.runInTurn(resumed, () -> ran[0] = true, () -> fail("not relaunched"));
+    assertTrue(ran[0]);
+  }
+
+  @Test
+  void skip_if_running_coalesces_launches_into_the_running_job() throws Exception {
+    Job running = job(1L, "MilkTheCowsJobInd", "commons:1");
+    List<String> statuses = new CopyOnWriteArrayList<>();
+    assertEquals(Optional.empty(), jobOverlapService.admit(running));
+    Thread thread = launch(running, statuses);
+
+    assertEquals(Optional.of(running), jobOverlapService.admit(job(2L, "MilkTheCowsJobInd", "commons:1")));
+    assertEquals(Optional.empty(), jobOverlapService.admit(job(3L, "MilkTheCowsJobInd", "commons:2")));
+
+    finish.countDown();
+    thread.join(5000);
+    assertEquals(List.of("1:running"), statuses);
+    assertEquals(Optional.empty(), jobOverlapService.admit(job(4L, "MilkTheCowsJobInd", "commons:1")));
+  }
+
+  @Test
+  void queue_at_most_one_queues_one_launch_behind_the_running_job() throws Exception {
+    Job running = job(1L, "MilkTheCowsJob", "global");
+    Job queued = job(2L, "MilkTheCowsJob", "global");
+    List<String> statuses = new CopyOnWriteArrayList<>();
+    assertEquals(Optional.empty(), jobOverlapService.admit(running));
+    Thread first = launch(running, statuses);
+    await().atMost(Duration.ofSeconds(5)).until(() -> statuses.size() == 1);
+
+    assertEquals(Optional.empty(), jobOverlapService.admit(queued));
+    assertEquals("queued", queued.getStatus());
+    Thread second = launch(queued, statuses);
+    assertEquals(Optional.of(queued), jobOverlapService.admit(job(3L, "MilkTheCowsJob", "global")));
+    // the queued job waits without holding its thread
+    second.join(5000);
+    assertFalse(second.isAlive());
+    assertEquals(List.of("1:running"), statuses);
+    assertEquals(Optional.of(queued), jobOverlapService.admit(job(4L, "MilkTheCowsJob", "global")));
+
+    finish.countDown();
+    first.join(5000);
+    await().atMost(Duration.ofSeconds(5)).until(() -> statuses.size() == 2);
+    assertEquals(List.of("1:running", "2:queued"), statuses);
+  }
+
+  @Test
+  void jobs_waiting_for_the_same_job_are_run_one_after_another_in_launch_order() throws Exception {
+    Job running = job(1L, "MilkTheCowsJob", "global");
+    Job queued = job(2L, "MilkTheCowsJob", "global");
+    // e.g. a resumed job, which is not admitted
+    Job resumed = job(3L, "MilkTheCowsJob", "global");
+    List<String> statuses = new CopyOnWriteArrayList<>();
+    jobOverlapService.admit(running);
+    CountDownLatch finishFirst = new CountDownLatch(1);
+    Thread first = new Thread(() -> {
+      try {
+        jobOverlapService.runInTurn(running, () -> {
+          statuses.add("1");
+          try {
+            finishFirst.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          throw new IllegalStateException("1 failed");
+        }, () -> fail("not relaunched"));
+      } catch (IllegalStateException e) {
+        statuses.add(e.getMessage());
+      }
+    });
+    first.start();
+    await().atMost(Duration.ofSeconds(5)).until(() -> statuses.size() == 1);
+    jobOverlapService.admit(queued);
+    launch(queued, statuses).join(5000);
+    launch(resumed, statuses).join(5000);
+
+    // the job ahead failing still hands on the turn
+    finishFirst.countDown();
+    await().atMost(Duration.ofSeconds(5)).until(() -> statuses.size() == 3);
+    assertTrue(statuses.containsAll(List.of("1", "1 failed", "2:queued")));
+    // the job that has the turn is running, so the next launch is queued behind it
+    Job next = job(4L, "MilkTheCowsJob", "global");
+    assertEquals(Optional.empty(), jobOverlapService.admit(next));
+    assertEquals("queued", next.getStatus());
+
+    finish.countDown();
+    await().atMost(Duration.ofSeconds(5)).until(() -> statuses.size() == 4);
+    assertEquals("3:running", statuses.get(3));
+  }
+
+  @Test
+  void job_is_queued_again_behind_the_next_run() throws Exception {
+    Job running = job(1L, "GameTickJob", "global");
+    Job queued = job(2L, "GameTickJob", "global");
+    List<String> statuses = new CopyOnWriteArrayList<>();
+    jobOverlapService.admit(running);
+    jobOverlapService.runInTurn(running, () -> statuses.add("1"), () -> fail("not relaunched"));
+    jobOverlapService.admit(queued);
+    Thread thread = launch(queued, statuses);
+    await().atMost(Duration.ofSeconds(5)).until(() -> statuses.size() == 2);
+
+    Job next = job(3L, "GameTickJob", "global");
+    assertEquals(Optional.empty(), jobOverlapService.admit(next));
+    assertEquals("queued", next.getStatus());
+
+    finish.countDown();
+    thread.join(5000);
+  }
+}
@@ -0,0 +1,270 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import edu.ucsb.cs156.happiercows.HappierCowsApplication;
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobCheckpoint;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobCheckpointKey;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobCheckpointRepository;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobsRepository;
+
+/**
+ * Starts several application contexts, each standing in for one server, on
+ * the same H2 file database and checks the queries JobQueueService uses to
+ * share out queued jobs: each job is claimed by exactly one server, the
+ * jobs of a server that stops are queued again (or fail, if they do not
+ * checkpoint) and that server cannot record how they ended, a job does not start while
+ * the same job is still running, cancels reach the server running a job, and
+ * failed jobs are resumed from their checkpoints.
+ */
+public class JobQueueClusterTests {
+
+  // not a @Configuration, see CommonsAggregatesDatabaseTests.Database
+  @ImportAutoConfiguration({ DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+      TransactionAutoConfiguration.class })
+  @EntityScan(basePackageClasses = HappierCowsApplication.class)
+  @EnableJpaRepositories(basePackageClasses = JobsRepository.class)
+  static class Server {
+  }
+
+  private static final Set<String> RESUMABLE = Set.of("MilkTheCowsJob", "GameTickJob");
+
+  private final String databaseFile = "./target/job-queue-" + System.nanoTime();
+  private final List<ConfigurableApplicationContext> servers = new ArrayList<>();
+
+  private ConfigurableApplicationContext startContext() {
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(Server.class)
+        .web(WebApplicationType.NONE)
+        .run("--spring.datasource.url=jdbc:h2:file:" + databaseFile,
+            "--spring.jpa.hibernate.ddl-auto=update",
+            "--spring.main.banner-mode=off");
+    servers.add(context);
+    return context;
+  }
+
+  private JobsRepository startServer() {
+    return startContext().getBean(JobsRepository.class);
+  }
+
+  @AfterEach
+  void stopServers() throws Exception {
+    servers.forEach(ConfigurableApplicationContext::close);
+    Files.deleteIfExists(Path.of(databaseFile + ".mv.db"));
+  }
+
+  private static Job queued(String jobType) {
+    return Job.builder().status("queued").jobType(jobType).parameters("{}").build();
+  }
+
+  /**
+   * Claims queued jobs the way JobQueueService does until none are left, and
+   * returns their ids.
+   */
+  private static List<Long> claimAll(JobsRepository jobsRepository, String worker) {
+    List<Long> claimed = new ArrayList<>();
+    List<Long> candidates;
+    while (!(candidates = jobsRepository.findQueuedJobIds(PageRequest.of(0, 10))).isEmpty()) {
+      for (Long id : candidates) {
+        if (jobsRepository.claim(id, worker, worker + "/" + id, ZonedDateTime.now()) == 1) {
+          claimed.add(id);
+        }
+      }
+    }
+    return claimed;
+  }
+
+  @Test
+  void each_queued_job_is_claimed_by_one_server() throws Exception {
+    List<JobsRepository> nodes = List.of(startServer(), startServer(), startServer());
+    Set<Long> queued = new HashSet<>();
+    for (int i = 0; i < 50; i++) {
+      queued.add(nodes.get(0).save(queued("TestJob")).getId());
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(nodes.size());
+    List<Long> claimed = new ArrayList<>();
+    try {
+      List<Callable<List<Long>>> workers = new ArrayList<>();
+      for (int i = 0; i < nodes.size(); i++) {
+        JobsRepository node = nodes.get(i);
+        String worker = "node-" + i;
+        workers.add(() -> claimAll(node, worker));
+      }
+      for (Future<List<Long>> result : executor.invokeAll(workers)) {
+        claimed.addAll(result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(queued.size(), claimed.size());
+    assertEquals(queued, new HashSet<>(claimed));
+    for (Job job : nodes.get(0).findAllById(claimed)) {
+      assertEquals("running", job.getStatus());
+      assertEquals(1, job.getAttempts());
+    }
+  }
+
+  @Test
+  void jobs_of_a_stopped_server_are_queued_again_until_out_of_attempts() throws Exception {
+    JobsRepository first = startServer();
+    JobsRepository second = startServer();
+    long stranded = first.save(queued("MilkTheCowsJob")).getId();
+    long healthTick = first.save(queued("UpdateCowHealthJob")).getId();
+    assertEquals(List.of(stranded, healthTick), claimAll(first, "node-1"));
+    long alive = second.save(queued("GameTickJob")).getId();
+    assertEquals(List.of(alive), claimAll(second, "node-2"));
+
+    // node-1 stops; two minutes later only node-2 is still sending heartbeats.  The health
+    // tick does not checkpoint, so it fails rather than lower cow health again
+    servers.get(0).close();
+    ZonedDateTime later = ZonedDateTime.now().plusMinutes(2);
+    assertEquals(1, second.heartbeat("node-2", later));
+    assertEquals(1, second.requeueStale(later.minusMinutes(1), 2, RESUMABLE));
+    assertEquals(1, second.failStale(later.minusMinutes(1), 2, RESUMABLE));
+    Job requeued = second.findById(stranded).orElseThrow();
+    assertEquals("queued", requeued.getStatus());
+    assertNull(requeued.getWorker());
+    assertEquals("error", second.findById(healthTick).orElseThrow().getStatus());
+
+    assertEquals(List.of(stranded), claimAll(second, "node-2"));
+    assertEquals(2, second.findById(stranded).orElseThrow().getAttempts());
+    assertEquals(2, second.heartbeat("node-2", later));
+
+    // node-2 stops too: its first job gets another attempt, the second has none left
+    ZonedDateTime cutoff = later.plusMinutes(1);
+    assertEquals(1, second.requeueStale(cutoff, 2, RESUMABLE));
+    assertEquals(1, second.failStale(cutoff, 2, RESUMABLE));
+    assertEquals("queued", second.findById(alive).orElseThrow().getStatus());
+    assertEquals("error", second.findById(stranded).orElseThrow().getStatus());
+  }
+
+  @Test
+  void server_whose_job_was_queued_again_cannot_record_how_it_ended() throws Exception {
+    JobsRepository slow = startServer();
+    JobsRepository other = startServer();
+    long id = slow.save(queued("MilkTheCowsJob")).getId();
+    assertEquals(List.of(id), claimAll(slow, "node-1"));
+    assertTrue(slow.holdsClaim(id, "node-1/" + id));
+
+    // node-1 misses its heartbeats but keeps running the job, which node-2 claims
+    assertEquals(1, other.requeueStale(ZonedDateTime.now().plusMinutes(1), 3, RESUMABLE));
+    assertFalse(slow.holdsClaim(id, "node-1/" + id));
+    assertEquals(List.of(id), claimAll(other, "node-2"));
+    assertTrue(other.holdsClaim(id, "node-2/" + id));
+
+    assertEquals(0, slow.finishClaimed(id, "node-1/" + id, "error"));
+    assertEquals(1, other.finishClaimed(id, "node-2/" + id, "complete"));
+    assertEquals(0, other.finishClaimed(id, "node-2/" + id, "error"));
+    assertEquals("complete", other.findById(id).orElseThrow().getStatus());
+    assertFalse(other.holdsClaim(id, "node-2/" + id));
+  }
+
+  @Test
+  void queued_job_waits_while_the_same_job_is_running() throws Exception {
+    JobsRepository first = startServer();
+    JobsRepository second = startServer();
+    Job running = queued("MilkTheCowsJob");
+    running.setCoalesceKey("MilkTheCowsJob/global/{}");
+    long runningId = first.save(running).getId();
+    assertEquals(List.of(runningId), claimAll(first, "node-1"));
+
+    Job waiting = queued("MilkTheCowsJob");
+    waiting.setCoalesceKey("MilkTheCowsJob/global/{}");
+    long waitingId = second.save(waiting).getId();
+    long otherId = second.save(queued("MilkTheCowsJob")).getId();
+    assertEquals(0, second.claim(waitingId, "node-2", "node-2/" + waitingId, ZonedDateTime.now()));
+    assertEquals(1, second.claim(otherId, "node-2", "node-2/" + otherId, ZonedDateTime.now()));
+    assertEquals(Optional.of(waitingId), second
+        .findFirstByCoalesceKeyAndStatusInOrderByIdDesc("MilkTheCowsJob/global/{}", List.of("queued"))
+        .map(Job::getId));
+
+    Job done = first.findById(runningId).orElseThrow();
+    done.setStatus("complete");
+    first.save(done);
+    assertEquals(1, second.claim(waitingId, "node-2", "node-2/" + waitingId, ZonedDateTime.now()));
+  }
+
+  @Test
+  void cancel_reaches_queued_jobs_and_the_server_running_a_job() throws Exception {
+    JobsRepository first = startServer();
+    JobsRepository second = startServer();
+    long running = first.save(queued("MilkTheCowsJob")).getId();
+    assertEquals(List.of(running), claimAll(first, "node-1"));
+    long waiting = second.save(queued("InstructorReportJob")).getId();
+
+    assertEquals(1, second.cancelQueued(waiting));
+    assertEquals(0, second.cancelQueued(running));
+    assertEquals(0, first.startQueued(waiting));
+    assertEquals(List.of(), claimAll(first, "node-1"));
+
+    assertEquals(List.of(), first.findCancelRequestedJobIds("node-1"));
+    assertEquals(0, second.requestCancel(waiting, ZonedDateTime.now()));
+    assertEquals(1, second.requestCancel(running, ZonedDateTime.now()));
+    assertEquals(List.of(running), first.findCancelRequestedJobIds("node-1"));
+    assertEquals(List.of(), first.findCancelRequestedJobIds("node-2"));
+
+    assertEquals(1, first.updateProgress(running, 40));
+    assertEquals(40, second.findById(running).orElseThrow().getProgress());
+  }
+
+  @Test
+  void failed_job_is_resumed_from_its_checkpoints() throws Exception {
+    ConfigurableApplicationContext context = startContext();
+    JobsRepository jobsRepository = context.getBean(JobsRepository.class);
+    JobCheckpointRepository checkpoints = context.getBean(JobCheckpointRepository.class);
+    long failed = jobsRepository.save(queued("MilkTheCowsJob")).getId();
+    long other = jobsRepository.save(queued("MilkTheCowsJob")).getId();
+    assertEquals(List.of(failed, other), claimAll(jobsRepository, "node-1"));
+    JobCheckpoint checkpoint = JobCheckpoint.start(failed, 1L);
+    checkpoints.save(checkpoint);
+    checkpoint.setComplete(true);
+    checkpoints.save(checkpoint);
+    checkpoints.save(JobCheckpoint.start(failed, 2L));
+    checkpoints.save(JobCheckpoint.start(other, 1L));
+    Job job = jobsRepository.findById(failed).orElseThrow();
+    job.setStatus("error");
+    jobsRepository.save(job);
+
+    assertEquals(0, jobsRepository.resume(other, "queued", 1));
+    assertEquals(1, jobsRepository.resume(failed, "queued", 1));
+    assertEquals(0, jobsRepository.resume(failed, "queued", 1));
+    assertNull(jobsRepository.findById(failed).orElseThrow().getClaimToken());
+    assertEquals(List.of(failed), claimAll(jobsRepository, "node-1"));
+    assertTrue(checkpoints.findById(new JobCheckpointKey(failed, 1L)).orElseThrow().isComplete());
+
+    assertEquals(2, checkpoints.deleteAllByJobId(failed));
+    assertEquals(Optional.empty(), checkpoints.findById(new JobCheckpointKey(failed, 1L)));
+    assertEquals(1, checkpoints.count());
+  }
+}
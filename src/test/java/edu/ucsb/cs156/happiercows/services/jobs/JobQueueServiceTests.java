@@ -0,0 +1,229 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobsRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import({ JobQueueService.class, JobQueueServiceTests.EchoJobFactory.class,
+    JobQueueServiceTests.CheckpointedJobFactory.class, ObjectMapper.class })
+@ContextConfiguration
+@TestPropertySource(properties = { "app.jobs.queue.enabled=true", "app.jobs.queue.workers=2",
+    "app.jobs.queue.pollMs=10", "app.jobs.queue.heartbeatMs=10000", "app.jobs.queue.staleMs=60000",
+    "app.jobs.queue.maxAttempts=3" })
+// each test starts with the workers stopped
+@DirtiesContext(classMode = ClassMode.AFTER_EACH_TEST_METHOD)
+public class JobQueueServiceTests {
+
+  @MockBean
+  JobsRepository jobsRepository;
+
+  @MockBean
+  JobService jobService;
+
+  @MockBean
+  SchedulerLeaseService schedulerLeaseService;
+
+  @Autowired
+  JobQueueService jobQueueService;
+
+  /**
+   * Builds jobs that log the parameters they were queued with.
+   */
+  static class EchoJobFactory implements QueueableJobFactory {
+    @Override
+    public String getJobType() {
+      return "EchoJob";
+    }
+
+    @Override
+    public JobContextConsumer create(Map<String, String> parameters) {
+      return ctx -> ctx.log("echo " + parameters.get("message"));
+    }
+  }
+
+  /**
+   * Builds jobs that checkpoint their commons.
+   */
+  static class CheckpointedJobFactory implements QueueableJobFactory {
+    @Override
+    public String getJobType() {
+      return "CheckpointedJob";
+    }
+
+    @Override
+    public JobContextConsumer create(Map<String, String> parameters) {
+      return ctx -> ctx.log("checkpointed");
+    }
+
+    @Override
+    public boolean isResumable() {
+      return true;
+    }
+  }
+
+  @BeforeEach
+  void setUp() {
+    when(schedulerLeaseService.getNodeId()).thenReturn("node-a");
+  }
+
+  private Job queuedJob(long id, String jobType, int attempts) {
+    return Job.builder()
+        .id(id)
+        .status("running")
+        .jobType(jobType)
+        .parameters("{\"message\":\"hi\"}")
+        .worker("node-a")
+        .attempts(attempts)
+        .build();
+  }
+
+  /**
+   * Runs the job the way JobService.runJob would, and returns its log.
+   */
+  private String runClaimedJob(Job job) throws Exception {
+    ArgumentCaptor<JobContextConsumer> consumer = ArgumentCaptor.forClass(JobContextConsumer.class);
+    verify(jobService).runJob(eq(job), consumer.capture());
+    consumer.getValue().accept(new JobContext(null, job));
+    return job.getLog();
+  }
+
+  @Test
+  void jobs_claimed_by_another_server_are_skipped() throws Exception {
+    Job job = queuedJob(2L, "EchoJob", 1);
+    when(jobsRepository.findQueuedJobIds(PageRequest.of(0, 10))).thenReturn(List.of(1L, 2L), List.of());
+    when(jobsRepository.claim(eq(1L), eq("node-a"), any(), any())).thenReturn(0);
+    when(jobsRepository.claim(eq(2L), eq("node-a"), any(), any())).thenReturn(1);
+    when(jobsRepository.findById(2L)).thenReturn(Optional.of(job));
+
+    assertEquals(1, jobQueueService.runQueuedJobs());
+
+    verify(jobsRepository, never()).findById(1L);
+    // each claim has its own token
+    ArgumentCaptor<String> claimToken = ArgumentCaptor.forClass(String.class);
+    verify(jobsRepository, times(2)).claim(anyLong(), eq("node-a"), claimToken.capture(), any());
+    assertNotEquals(claimToken.getAllValues().get(0), claimToken.getAllValues().get(1));
+    assertEquals("echo hi", runClaimedJob(job));
+  }
+
+  @Test
+  void retried_job_logs_the_attempt() throws Exception {
+    Job job = queuedJob(3L, "EchoJob", 2);
+    when(jobsRepository.findQueuedJobIds(any())).thenReturn(List.of(3L), List.of());
+    when(jobsRepository.claim(eq(3L), eq("node-a"), any(), any())).thenReturn(1);
+    when(jobsRepository.findById(3L)).thenReturn(Optional.of(job));
+
+    jobQueueService.runQueuedJobs();
+
+    assertEquals("Retrying, attempt 2 of 3\necho hi", runClaimedJob(job));
+  }
+
+  @Test
+  void job_of_unknown_type_fails() throws Exception {
+    Job job = queuedJob(4L, "RetiredJob", 1);
+    when(jobsRepository.findQueuedJobIds(any())).thenReturn(List.of(4L), List.of());
+    when(jobsRepository.claim(eq(4L), eq("node-a"), any(), any())).thenReturn(1);
+    when(jobsRepository.findById(4L)).thenReturn(Optional.of(job));
+
+    jobQueueService.runQueuedJobs();
+
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> runClaimedJob(job));
+    assertEquals("Unknown job type: RetiredJob", e.getMessage());
+  }
+
+  @Test
+  void only_job_types_that_checkpoint_are_resumable() {
+    assertTrue(jobQueueService.isResumable("CheckpointedJob"));
+    assertFalse(jobQueueService.isResumable("EchoJob"));
+    assertFalse(jobQueueService.isResumable("RetiredJob"));
+  }
+
+  @Test
+  void worker_keeps_polling_after_an_error() {
+    when(jobsRepository.findQueuedJobIds(any())).thenThrow(new IllegalStateException("database is down"));
+
+    jobQueueService.poll();
+
+    verify(jobService, never()).runJob(any(), any());
+  }
+
+  @Test
+  void workers_poll_until_stopped() {
+    when(jobsRepository.findQueuedJobIds(any())).thenReturn(List.of());
+
+    jobQueueService.startWorkers();
+    try {
+      verify(jobsRepository, timeout(5000).atLeast(4)).findQueuedJobIds(any());
+    } finally {
+      jobQueueService.stopWorkers();
+    }
+  }
+
+  @Test
+  void heartbeat_requeues_and_fails_jobs_of_stopped_servers_and_passes_on_cancels() {
+    when(jobsRepository.requeueStale(any(), eq(3), eq(Set.of("CheckpointedJob")))).thenReturn(0, 1, 0);
+    when(jobsRepository.failStale(any(), eq(3), eq(Set.of("CheckpointedJob")))).thenReturn(0, 0, 1);
+    when(jobsRepository.findCancelRequestedJobIds("node-a")).thenReturn(List.of(), List.of(5L), List.of());
+
+    ZonedDateTime before = ZonedDateTime.now();
+    jobQueueService.heartbeat();
+    jobQueueService.heartbeat();
+    jobQueueService.heartbeat();
+
+    ArgumentCaptor<ZonedDateTime> now = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository, times(3)).heartbeat(eq("node-a"), now.capture());
+    ArgumentCaptor<ZonedDateTime> cutoff = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository, times(3)).requeueStale(cutoff.capture(), eq(3), eq(Set.of("CheckpointedJob")));
+    assertEquals(now.getValue().minusSeconds(60), cutoff.getValue());
+    assertFalse(now.getValue().isBefore(before));
+    verify(jobService, times(1)).cancelRunning(5L);
+  }
+
+  @Test
+  void nothing_runs_when_the_queue_is_disabled() {
+    ReflectionTestUtils.setField(jobQueueService, "enabled", false);
+
+    jobQueueService.startWorkers();
+    jobQueueService.heartbeat();
+    jobQueueService.stopWorkers();
+
+    verifyNoInteractions(jobsRepository, jobService);
+  }
+}
@@ -0,0 +1,554 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.happiercows.entities.User;
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobLogLine;
+import edu.ucsb.cs156.happiercows.entities.jobs.JobLogLineKey;
+import edu.ucsb.cs156.happiercows.errors.EntityNotFoundException;
+import edu.ucsb.cs156.happiercows.jobs.TestJob;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobCheckpointRepository;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobLogLineRepository;
+import edu.ucsb.cs156.happiercows.repositories.jobs.JobsRepository;
+import edu.ucsb.cs156.happiercows.services.CommonsAggregatesService;
+import edu.ucsb.cs156.happiercows.services.CurrentUserService;
+
+@ExtendWith(SpringExtension.class)
+@Import({ JobService.class, JobExecutorService.class, JobOverlapService.class, ObjectMapper.class })
+@ContextConfiguration
+@TestPropertySource(properties = { "app.jobs.queue.enabled=true", "app.jobs.log.flushLines=100",
+    "app.jobs.log.flushIntervalMs=60000", "app.jobs.executor.mode=threadPerJob", "app.jobs.executor.permitsPerType=1",
+    "app.jobs.overlap.skipIfRunning=", "app.jobs.overlap.queueAtMostOne=CommonsJob",
+    "app.jobs.timeouts=SlowJob=PT0S" })
+public class JobServiceTests {
+
+  @MockBean
+  JobsRepository jobsRepository;
+
+  @MockBean
+  JobLogLineRepository jobLogLineRepository;
+
+  @MockBean
+  CurrentUserService currentUserService;
+
+  @MockBean
+  JobLogStreamService jobLogStreamService;
+
+  @MockBean
+  CommonsRunner commonsRunner;
+
+  @MockBean
+  SchedulerLeaseService schedulerLeaseService;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
+  @MockBean
+  JobCheckpointRepository jobCheckpointRepository;
+
+  @MockBean
+  JobQueueService jobQueueService;
+
+  @MockBean
+  CommonsAggregatesService commonsAggregatesService;
+
+  @SpyBean
+  ObjectMapper objectMapper;
+
+  @Autowired
+  JobService jobService;
+
+  @Autowired
+  JobExecutorService jobExecutorService;
+
+  static class CommonsJob implements QueueableJob {
+    @Override
+    public Map<String, String> getParameters() {
+      return Map.of("commonsId", "5");
+    }
+
+    @Override
+    public void accept(JobContext ctx) {
+      ctx.log("ran");
+    }
+  }
+
+  static class BlockingCommonsJob extends CommonsJob {
+    private final CountDownLatch finish;
+
+    BlockingCommonsJob(CountDownLatch finish) {
+      this.finish = finish;
+    }
+
+    @Override
+    public String getJobType() {
+      return "CommonsJob";
+    }
+
+    @Override
+    public void accept(JobContext ctx) {
+      try {
+        finish.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  static class SlowJob implements JobContextConsumer {
+    @Override
+    public void accept(JobContext ctx) {
+      ctx.log("started");
+      ctx.checkCancelled();
+      ctx.log("finished");
+    }
+  }
+
+  private final User user = User.builder().id(1L).build();
+
+  // the messages of the job's lines written to job_log_lines, in order
+  @SuppressWarnings("unchecked")
+  private String savedLog(long jobId) {
+    return mockingDetails(jobLogLineRepository).getInvocations().stream()
+        .filter(invocation -> invocation.getMethod().getName().equals("saveAll"))
+        .flatMap(invocation -> StreamSupport.stream(((Iterable<JobLogLine>) invocation.getArgument(0)).spliterator(), false))
+        .filter(line -> line.getId().getJobId() == jobId)
+        .map(JobLogLine::getMessage)
+        .collect(Collectors.joining("\n"));
+  }
+
+  @Test
+  void queueable_job_is_saved_as_queued_instead_of_run() {
+    when(currentUserService.getUser()).thenReturn(user);
+
+    Job job = jobService.runAsJob(new CommonsJob());
+
+    assertEquals(Job.builder()
+        .createdBy(user)
+        .status("queued")
+        .jobType("CommonsJob")
+        .scope("commons:5")
+        .parameters("{\"commonsId\":\"5\"}")
+        .coalesceKey("CommonsJob/commons:5/{\"commonsId\":\"5\"}")
+        .build(), job);
+    verify(jobsRepository).save(job);
+    verify(jobLogStreamService, never()).open(any(), anyLong());
+  }
+
+  @Test
+  void launch_of_a_job_already_queued_returns_the_queued_job() {
+    Job queued = Job.builder().id(4L).status("queued").build();
+    when(jobsRepository.findFirstByCoalesceKeyAndStatusInOrderByIdDesc(
+        "CommonsJob/commons:5/{\"commonsId\":\"5\"}", List.of("queued")))
+        .thenReturn(Optional.of(queued));
+
+    Job job = jobService.runAsJob(new CommonsJob());
+
+    assertSame(queued, job);
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @Test
+  void job_of_a_type_without_an_overlap_policy_is_always_queued() {
+    QueueableJob job = new CommonsJob() {
+      @Override
+      public String getJobType() {
+        return "SetCowHealthJob";
+      }
+    };
+
+    Job queued = jobService.runAsJob(job);
+
+    assertEquals("queued", queued.getStatus());
+    assertNull(queued.getCoalesceKey());
+    verify(jobsRepository).save(queued);
+    verify(jobsRepository, never()).findFirstByCoalesceKeyAndStatusInOrderByIdDesc(any(), any());
+  }
+
+  @Test
+  void launch_while_the_same_job_runs_on_this_server_waits_for_it() throws Exception {
+    ReflectionTestUtils.setField(jobService, "durableQueue", false);
+    AtomicLong ids = new AtomicLong();
+    when(jobsRepository.save(any())).thenAnswer(invocation -> {
+      Job job = invocation.getArgument(0);
+      if (job.getId() == 0) {
+        job.setId(ids.incrementAndGet());
+      }
+      return job;
+    });
+    when(jobsRepository.startQueued(2L)).thenReturn(1);
+    JobLogBuffer buffer = mock(JobLogBuffer.class);
+    when(jobLogStreamService.get(2L)).thenReturn(Optional.of(buffer));
+    CountDownLatch finish = new CountDownLatch(1);
+    // without @EnableAsync, runAsJob runs the job before it returns
+    Thread first = new Thread(() -> jobService.runAsJob(new BlockingCommonsJob(finish)));
+    Thread second = new Thread(() -> jobService.runAsJob(new CommonsJob()));
+    try {
+      first.start();
+      verify(jobLogStreamService, timeout(5000)).open(any(), eq(0L));
+      second.start();
+      ArgumentCaptor<Job> opened = ArgumentCaptor.forClass(Job.class);
+      verify(jobLogStreamService, timeout(5000).times(2)).open(opened.capture());
+      Job queued = opened.getAllValues().get(1);
+      assertEquals("queued", queued.getStatus());
+
+      assertSame(queued, jobService.runAsJob(new CommonsJob()));
+
+      finish.countDown();
+      first.join(5000);
+      second.join(5000);
+      assertEquals("complete", opened.getAllValues().get(0).getStatus());
+      assertEquals("complete", queued.getStatus());
+      verify(buffer).setStatus("running");
+    } finally {
+      finish.countDown();
+      ReflectionTestUtils.setField(jobService, "durableQueue", true);
+    }
+  }
+
+  @Test
+  void fencing_token_is_checked_before_the_job_is_queued() {
+    Job job = jobService.runAsJob(new FencedJob(schedulerLeaseService, 3L, new CommonsJob()));
+
+    assertEquals("queued", job.getStatus());
+    InOrder inOrder = inOrder(schedulerLeaseService, jobsRepository);
+    inOrder.verify(schedulerLeaseService).checkFencingToken(3L);
+    inOrder.verify(jobsRepository).save(job);
+  }
+
+  @Test
+  void job_is_not_queued_once_the_lease_is_lost() {
+    doThrow(new IllegalStateException("lost")).when(schedulerLeaseService).checkFencingToken(3L);
+
+    assertThrows(IllegalStateException.class,
+        () -> jobService.runAsJob(new FencedJob(schedulerLeaseService, 3L, new CommonsJob())));
+
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @Test
+  void job_that_cannot_be_queued_runs_on_this_server() {
+    Job job = jobService.runAsJob(ctx -> ctx.log("hello"));
+
+    assertEquals("complete", job.getStatus());
+    assertEquals("hello", savedLog(job.getId()));
+    assertNull(job.getLog());
+    verify(jobLogStreamService).open(job, 0);
+  }
+
+  @Test
+  void job_run_on_this_server_is_counted_by_the_executor() {
+    long completed = jobExecutorService.getStats().getCompleted();
+
+    jobService.runAsJob(ctx -> ctx.log("hello"));
+
+    assertEquals(completed + 1, jobExecutorService.getStats().getCompleted());
+    assertEquals(0, jobExecutorService.getStats().getQueued());
+    assertEquals(0, jobExecutorService.getStats().getActive());
+  }
+
+  @Test
+  void jobs_share_permits_by_job_type() {
+    CommonsJob commonsJob = new CommonsJob();
+
+    assertEquals("CommonsJob", JobService.jobType(commonsJob));
+    assertEquals("CommonsJob", JobService.jobType(new FencedJob(schedulerLeaseService, 1L, commonsJob)));
+    assertEquals("TestJob", JobService.jobType(TestJob.builder().build()));
+  }
+
+  @Test
+  void parameters_that_cannot_be_written_are_reported() throws Exception {
+    doThrow(JsonMappingException.fromUnexpectedIOE(new IOException("broken")))
+        .when(objectMapper).writeValueAsString(any());
+
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> jobService.runAsJob(new CommonsJob()));
+
+    assertEquals("Job parameters cannot be written as JSON: {commonsId=5}", e.getMessage());
+    assertInstanceOf(JsonProcessingException.class, e.getCause());
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @Test
+  void retried_job_continues_after_the_lines_of_earlier_attempts() {
+    Job job = Job.builder().id(9L).status("running").attempts(2).build();
+    when(jobLogLineRepository.countByJobId(9L)).thenReturn(4L);
+
+    jobService.runJob(job, new CommonsJob());
+
+    assertEquals("complete", job.getStatus());
+    verify(jobCheckpointRepository).deleteAllByJobId(9L);
+    verify(jobLogStreamService).open(job, 4L);
+    verify(jobLogLineRepository).saveAll(List.of(
+        JobLogLine.builder().id(new JobLogLineKey(9L, 4L)).message("ran").build()));
+  }
+
+  @Test
+  void claimed_job_records_how_it_ended_only_under_its_claim() {
+    Job job = Job.builder().id(20L).status("running").claimToken("claim-20").attempts(1).build();
+    when(jobsRepository.holdsClaim(20L, "claim-20")).thenReturn(true);
+    when(jobsRepository.finishClaimed(20L, "claim-20", "complete")).thenReturn(1);
+
+    jobService.runJob(job, new CommonsJob());
+
+    assertEquals("complete", job.getStatus());
+    assertEquals("ran", savedLog(20L));
+    verify(jobsRepository, never()).save(any());
+    verify(jobCheckpointRepository).deleteAllByJobId(20L);
+    verify(jobLogStreamService).close(job);
+  }
+
+  @Test
+  void claimed_job_stops_without_recording_anything_once_queued_again() {
+    Job job = Job.builder().id(21L).status("running").claimToken("claim-21").attempts(1).build();
+    when(jobsRepository.holdsClaim(21L, "claim-21")).thenReturn(false);
+
+    jobService.runJob(job, ctx -> {
+      ctx.log("started");
+      ctx.checkCancelled();
+      ctx.log("finished");
+    });
+
+    assertEquals("running", job.getStatus());
+    verify(jobLogLineRepository, never()).saveAll(any());
+    verify(jobsRepository, never()).save(any());
+    verify(jobsRepository, never()).finishClaimed(anyLong(), any(), any());
+    verify(jobCheckpointRepository, never()).deleteAllByJobId(21L);
+    verify(jobLogStreamService).close(job);
+  }
+
+  @Test
+  void claimed_job_that_lost_its_claim_as_it_ended_leaves_its_status_to_the_new_attempt() {
+    Job failing = Job.builder().id(22L).status("running").claimToken("claim-22").attempts(1).build();
+    when(jobsRepository.holdsClaim(22L, "claim-22")).thenReturn(false);
+    Job finishing = Job.builder().id(23L).status("running").claimToken("claim-23").attempts(1).build();
+    when(jobsRepository.holdsClaim(23L, "claim-23")).thenReturn(true);
+    when(jobsRepository.finishClaimed(23L, "claim-23", "complete")).thenReturn(0);
+
+    jobService.runJob(failing, ctx -> {
+      throw new IllegalStateException("database is down");
+    });
+    jobService.runJob(finishing, new CommonsJob());
+
+    verify(jobsRepository, never()).finishClaimed(eq(22L), any(), any());
+    assertEquals("", savedLog(22L));
+    verify(jobsRepository, never()).save(any());
+    verify(jobCheckpointRepository, never()).deleteAllByJobId(anyLong());
+  }
+
+  @Test
+  void running_job_is_cancelled_at_its_next_check() {
+    Job job = Job.builder().id(7L).status("running").build();
+    String[] message = new String[1];
+
+    jobService.runJob(job, ctx -> {
+      message[0] = jobService.cancel(7L);
+      new SlowJob().accept(ctx);
+    });
+
+    assertEquals("Cancelling job 7", message[0]);
+    assertEquals("cancelled", job.getStatus());
+    assertEquals("started\nJob cancelled", savedLog(7L));
+    verify(jobsRepository).save(job);
+    verify(jobLogStreamService).close(job);
+    assertFalse(jobService.cancelRunning(7L));
+  }
+
+  @Test
+  void job_is_cancelled_once_it_has_run_past_the_timeout_for_its_type() {
+    Job job = Job.builder().id(8L).status("running").build();
+
+    jobService.runJob(job, new SlowJob());
+
+    assertEquals("cancelled", job.getStatus());
+    assertEquals("started\nJob timed out after PT0S", savedLog(job.getId()));
+  }
+
+  @Test
+  void queued_job_is_cancelled_before_it_starts() {
+    when(jobsRepository.cancelQueued(8L)).thenReturn(1);
+
+    assertEquals("Cancelled job 8", jobService.cancel(8L));
+
+    verify(jobsRepository, never()).requestCancel(anyLong(), any());
+  }
+
+  @Test
+  void job_cancelled_while_waiting_for_its_turn_does_not_run() {
+    Job job = Job.builder().id(11L).status("queued").build();
+    jobExecutorService.jobQueued();
+
+    jobService.runJobAsync(job, ctx -> ctx.log("ran"));
+
+    assertEquals("cancelled", job.getStatus());
+    assertNull(job.getLog());
+    verify(jobLogStreamService).close(job);
+    verify(jobLogStreamService, never()).open(any(), anyLong());
+  }
+
+  @Test
+  void job_running_on_another_server_is_asked_to_cancel() {
+    when(jobsRepository.requestCancel(eq(9L), any())).thenReturn(1);
+
+    assertEquals("Asked the server running job 9 to cancel it", jobService.cancel(9L));
+  }
+
+  @Test
+  void finished_or_missing_jobs_cannot_be_cancelled() {
+    when(jobsRepository.findById(10L)).thenReturn(Optional.of(Job.builder().id(10L).status("complete").build()));
+
+    assertEquals("Job 10 has already finished with status complete", jobService.cancel(10L));
+    EntityNotFoundException e = assertThrows(EntityNotFoundException.class, () -> jobService.cancel(12L));
+    assertEquals("Job with id 12 not found", e.getMessage());
+  }
+
+  @Test
+  void no_timeouts_by_default() {
+    try {
+      // what an empty app.jobs.timeouts is read as
+      ReflectionTestUtils.setField(jobService, "timeoutSettings", new String[0]);
+
+      jobService.parseTimeouts();
+
+      assertEquals(Map.of(), ReflectionTestUtils.getField(jobService, "timeouts"));
+    } finally {
+      ReflectionTestUtils.setField(jobService, "timeoutSettings", new String[] { "SlowJob=PT0S" });
+      jobService.parseTimeouts();
+    }
+  }
+
+  @Test
+  void timeouts_that_cannot_be_read_are_refused() {
+    try {
+      for (String setting : List.of("MilkTheCowsJob", "MilkTheCowsJob=30m")) {
+        ReflectionTestUtils.setField(jobService, "timeoutSettings", new String[] { setting });
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> jobService.parseTimeouts());
+
+        assertEquals("Bad app.jobs.timeouts entry %s, expected e.g. MilkTheCowsJob=PT30M".formatted(setting),
+            e.getMessage());
+      }
+    } finally {
+      ReflectionTestUtils.setField(jobService, "timeoutSettings", new String[] { "SlowJob=PT0S" });
+      jobService.parseTimeouts();
+    }
+  }
+
+  @Test
+  void job_rebuilt_from_the_jobs_table_gets_the_timeout_for_its_type() {
+    Job job = Job.builder().id(13L).status("running").jobType("SlowJob").build();
+
+    jobService.runJob(job, ctx -> new SlowJob().accept(ctx));
+
+    assertEquals("cancelled", job.getStatus());
+    assertEquals("started\nJob timed out after PT0S", savedLog(job.getId()));
+  }
+
+  @Test
+  void failed_job_is_queued_again_to_resume_from_its_checkpoints() {
+    Job job = Job.builder().id(14L).status("error").jobType("CommonsJob").attempts(3).build();
+    when(jobsRepository.findById(14L)).thenReturn(Optional.of(job));
+    when(jobsRepository.resume(14L, "queued", 1)).thenReturn(1);
+    when(jobQueueService.isResumable("CommonsJob")).thenReturn(true);
+
+    assertSame(job, jobService.resume(14L));
+
+    assertEquals("queued", job.getStatus());
+    assertEquals(1, job.getAttempts());
+    verify(jobQueueService, never()).rebuild(any());
+  }
+
+  @Test
+  void without_the_durable_queue_a_resumed_job_runs_on_this_server() {
+    ReflectionTestUtils.setField(jobService, "durableQueue", false);
+    try {
+      Job job = Job.builder().id(15L).status("cancelled").jobType("CommonsJob").attempts(0).build();
+      when(jobsRepository.findById(15L)).thenReturn(Optional.of(job));
+      when(jobsRepository.resume(15L, "running", 2)).thenReturn(1);
+      when(jobQueueService.isResumable("CommonsJob")).thenReturn(true);
+      when(jobQueueService.rebuild(job)).thenReturn(new CommonsJob());
+      when(jobLogLineRepository.countByJobId(15L)).thenReturn(3L);
+
+      jobService.resume(15L);
+
+      assertEquals("complete", job.getStatus());
+      assertEquals(2, job.getAttempts());
+      assertEquals("Resuming from the job's checkpoints\nran", savedLog(15L));
+      verify(jobLogStreamService).open(job, 3L);
+      verify(jobCheckpointRepository).deleteAllByJobId(15L);
+    } finally {
+      ReflectionTestUtils.setField(jobService, "durableQueue", true);
+    }
+  }
+
+  @Test
+  void only_failed_or_cancelled_queueable_jobs_can_be_resumed() {
+    when(jobsRepository.findById(16L)).thenReturn(Optional.of(Job.builder().id(16L).status("error").build()));
+    when(jobsRepository.findById(17L))
+        .thenReturn(Optional.of(Job.builder().id(17L).status("complete").jobType("CommonsJob").build()));
+    when(jobQueueService.isResumable("CommonsJob")).thenReturn(true);
+
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> jobService.resume(16L));
+    assertEquals("Job 16 cannot be resumed, it was not launched as a queueable job", e.getMessage());
+    e = assertThrows(IllegalArgumentException.class, () -> jobService.resume(17L));
+    assertEquals("Job 17 cannot be resumed, only jobs with status error or cancelled can", e.getMessage());
+    EntityNotFoundException notFound = assertThrows(EntityNotFoundException.class, () -> jobService.resume(18L));
+    assertEquals("Job with id 18 not found", notFound.getMessage());
+  }
+
+  @Test
+  void jobs_that_do_not_checkpoint_cannot_be_resumed() {
+    when(jobsRepository.findById(19L))
+        .thenReturn(Optional.of(Job.builder().id(19L).status("error").jobType("UpdateCowHealthJob").build()));
+
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> jobService.resume(19L));
+
+    assertEquals("Job 19 cannot be resumed, UpdateCowHealthJob does not checkpoint its commons", e.getMessage());
+    verify(jobsRepository, never()).resume(anyLong(), any(), anyInt());
+  }
+}
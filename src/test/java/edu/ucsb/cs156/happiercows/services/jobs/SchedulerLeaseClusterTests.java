@@ -0,0 +1,145 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import edu.ucsb.cs156.happiercows.HappierCowsApplication;
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.repositories.jobs.SchedulerLeaseRepository;
+
+/**
+ * Starts several application contexts, each standing in for one server, on
+ * the same H2 file database and checks that only one of them holds the
+ * scheduler lease at a time.
+ */
+public class SchedulerLeaseClusterTests {
+
+  private static final long LEASE_MS = 1000;
+
+  // not a @Configuration, see CommonsAggregatesDatabaseTests.Database
+  @ImportAutoConfiguration({ DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+      TransactionAutoConfiguration.class })
+  @EntityScan(basePackageClasses = HappierCowsApplication.class)
+  @EnableJpaRepositories(basePackageClasses = SchedulerLeaseRepository.class)
+  @Import(SchedulerLeaseService.class)
+  static class Server {
+  }
+
+  private final String databaseFile = "./target/scheduler-lease-" + System.nanoTime();
+  private final List<ConfigurableApplicationContext> servers = new ArrayList<>();
+
+  private SchedulerLeaseService startServer(String nodeId) {
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(Server.class)
+        .web(WebApplicationType.NONE)
+        .run("--spring.datasource.url=jdbc:h2:file:" + databaseFile,
+            "--spring.jpa.hibernate.ddl-auto=update",
+            "--spring.main.banner-mode=off",
+            "--app.scheduler.nodeId=" + nodeId,
+            "--app.scheduler.leaseMs=" + LEASE_MS);
+    servers.add(context);
+    return context.getBean(SchedulerLeaseService.class);
+  }
+
+  @AfterEach
+  void stopServers() throws Exception {
+    servers.forEach(ConfigurableApplicationContext::close);
+    Files.deleteIfExists(Path.of(databaseFile + ".mv.db"));
+  }
+
+  /**
+   * Has every server try to acquire the lease at the same moment, and
+   * returns what each of them got.
+   */
+  private List<OptionalLong> acquireTogether(List<SchedulerLeaseService> nodes) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(nodes.size());
+    try {
+      List<Callable<OptionalLong>> attempts = new ArrayList<>();
+      nodes.forEach(node -> attempts.add(node::acquire));
+      List<OptionalLong> results = new ArrayList<>();
+      for (Future<OptionalLong> result : executor.invokeAll(attempts)) {
+        results.add(result.get());
+      }
+      return results;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static int holders(List<OptionalLong> results) {
+    return (int) results.stream().filter(OptionalLong::isPresent).count();
+  }
+
+  @Test
+  void only_one_server_holds_the_lease() throws Exception {
+    List<SchedulerLeaseService> nodes = List.of(startServer("node-1"), startServer("node-2"), startServer("node-3"));
+
+    List<OptionalLong> first = acquireTogether(nodes);
+    assertEquals(1, holders(first));
+    int leader = first.indexOf(OptionalLong.of(1L));
+    assertTrue(leader >= 0, first.toString());
+
+    for (int round = 0; round < 5; round++) {
+      List<OptionalLong> results = acquireTogether(nodes);
+      assertEquals(1, holders(results));
+      assertEquals(OptionalLong.of(1L), results.get(leader));
+    }
+  }
+
+  @Test
+  void another_server_takes_over_when_the_holder_stops() throws Exception {
+    SchedulerLeaseService first = startServer("node-1");
+    SchedulerLeaseService second = startServer("node-2");
+    SchedulerLeaseService third = startServer("node-3");
+
+    assertEquals(OptionalLong.of(1L), first.acquire());
+    assertEquals(OptionalLong.empty(), second.acquire());
+
+    // node-1 stops renewing, e.g. a long GC pause, until its lease expires
+    await().atMost(Duration.ofSeconds(10)).until(() -> second.acquire().isPresent());
+    assertEquals(OptionalLong.of(2L), second.acquire());
+    assertEquals(OptionalLong.empty(), third.acquire());
+
+    // the paused server's jobs are refused when it wakes up
+    boolean[] ran = { false };
+    JobContextConsumer staleJob = first.fence(1L, ctx -> ran[0] = true);
+    assertThrows(IllegalStateException.class, () -> staleJob.accept(new JobContext(null, Job.builder().build())));
+    assertFalse(ran[0]);
+    assertEquals(OptionalLong.empty(), first.acquire());
+    second.checkFencingToken(2L);
+
+    // node-2 shuts down
+    servers.get(1).close();
+    await().atMost(Duration.ofSeconds(10)).until(() -> acquireTogether(List.of(first, third)).stream()
+        .anyMatch(OptionalLong::isPresent));
+    List<OptionalLong> results = acquireTogether(List.of(first, third));
+    assertEquals(1, holders(results));
+    assertTrue(results.contains(OptionalLong.of(3L)), results.toString());
+  }
+}
@@ -0,0 +1,188 @@
+package edu.ucsb.cs156.happiercows.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import edu.ucsb.cs156.happiercows.entities.jobs.Job;
+import edu.ucsb.cs156.happiercows.entities.jobs.SchedulerLease;
+import edu.ucsb.cs156.happiercows.repositories.jobs.SchedulerLeaseRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(SchedulerLeaseService.class)
+@ContextConfiguration
+@TestPropertySource(properties = { "app.scheduler.nodeId=node-a", "app.scheduler.leaseMs=30000",
+    "app.scheduler.renewMs=10000" })
+// each test starts with a server that does not hold the lease yet
+@DirtiesContext(classMode = ClassMode.AFTER_EACH_TEST_METHOD)
+public class SchedulerLeaseServiceTests {
+
+  @MockBean
+  SchedulerLeaseRepository schedulerLeaseRepository;
+
+  @Autowired
+  SchedulerLeaseService schedulerLeaseService;
+
+  private static final String LEASE = SchedulerLeaseService.LEASE_NAME;
+
+  private Optional<SchedulerLease> lease(String holder, long fencingToken) {
+    return Optional.of(SchedulerLease.builder()
+        .name(LEASE)
+        .holder(holder)
+        .fencingToken(fencingToken)
+        .expiresAt(Instant.now().plusSeconds(30))
+        .build());
+  }
+
+  @Test
+  void first_server_creates_the_lease_then_renews_it() {
+    when(schedulerLeaseRepository.create(eq(LEASE), eq("node-a"), any())).thenReturn(1);
+    when(schedulerLeaseRepository.findById(LEASE)).thenReturn(lease("node-a", 1L));
+    when(schedulerLeaseRepository.renew(eq(LEASE), eq("node-a"), eq(1L), any(), any())).thenReturn(1);
+
+    assertEquals(OptionalLong.of(1L), schedulerLeaseService.acquire());
+    assertEquals(OptionalLong.of(1L), schedulerLeaseService.acquire());
+
+    verify(schedulerLeaseRepository, times(1)).takeOver(eq(LEASE), eq("node-a"), any(), any());
+    verify(schedulerLeaseRepository, times(1)).create(eq(LEASE), eq("node-a"), any());
+    verify(schedulerLeaseRepository, times(1)).renew(eq(LEASE), eq("node-a"), eq(1L), any(), any());
+  }
+
+  @Test
+  void lease_renews_for_lease_ms() {
+    when(schedulerLeaseRepository.takeOver(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+      Instant now = invocation.getArgument(2);
+      Instant expiresAt = invocation.getArgument(3);
+      assertEquals(30000L, expiresAt.toEpochMilli() - now.toEpochMilli());
+      return 1;
+    });
+    when(schedulerLeaseRepository.findById(LEASE)).thenReturn(lease("node-a", 4L));
+
+    assertEquals(OptionalLong.of(4L), schedulerLeaseService.acquire());
+  }
+
+  @Test
+  void server_does_not_get_a_lease_held_by_another_server() {
+    when(schedulerLeaseRepository.existsById(LEASE)).thenReturn(true);
+
+    assertEquals(OptionalLong.empty(), schedulerLeaseService.acquire());
+
+    verify(schedulerLeaseRepository, never()).create(anyString(), anyString(), any());
+    verify(schedulerLeaseRepository, never()).renew(anyString(), anyString(), anyLong(), any(), any());
+  }
+
+  @Test
+  void server_that_loses_the_race_to_create_the_lease_does_not_hold_it() {
+    when(schedulerLeaseRepository.create(eq(LEASE), eq("node-a"), any()))
+        .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+    assertEquals(OptionalLong.empty(), schedulerLeaseService.acquire());
+  }
+
+  @Test
+  void server_takes_over_an_expired_lease_with_the_next_fencing_token() {
+    when(schedulerLeaseRepository.takeOver(eq(LEASE), eq("node-a"), any(), any())).thenReturn(1);
+    when(schedulerLeaseRepository.findById(LEASE)).thenReturn(lease("node-a", 8L));
+
+    assertEquals(OptionalLong.of(8L), schedulerLeaseService.acquire());
+  }
+
+  @Test
+  void server_does_not_hold_a_lease_taken_over_again_before_it_is_read() {
+    when(schedulerLeaseRepository.takeOver(eq(LEASE), eq("node-a"), any(), any())).thenReturn(1);
+    when(schedulerLeaseRepository.findById(LEASE)).thenReturn(lease("node-b", 9L));
+
+    assertEquals(OptionalLong.empty(), schedulerLeaseService.acquire());
+  }
+
+  @Test
+  void server_that_cannot_renew_its_lease_no_longer_holds_it() {
+    when(schedulerLeaseRepository.takeOver(eq(LEASE), eq("node-a"), any(), any())).thenReturn(1, 0);
+    when(schedulerLeaseRepository.findById(LEASE)).thenReturn(lease("node-a", 2L));
+    when(schedulerLeaseRepository.existsById(LEASE)).thenReturn(true);
+    assertEquals(OptionalLong.of(2L), schedulerLeaseService.acquire());
+
+    when(schedulerLeaseRepository.renew(eq(LEASE), eq("node-a"), eq(2L), any(), any())).thenReturn(0);
+
+    assertEquals(OptionalLong.empty(), schedulerLeaseService.acquire());
+    assertEquals(OptionalLong.empty(), schedulerLeaseService.acquire());
+    verify(schedulerLeaseRepository, times(1)).renew(eq(LEASE), eq("node-a"), eq(2L), any(), any());
+  }
+
+  @Test
+  void renew_lease_tries_to_acquire_the_lease() {
+    when(schedulerLeaseRepository.existsById(LEASE)).thenReturn(true);
+
+    schedulerLeaseService.renewLease();
+
+    verify(schedulerLeaseRepository, times(1)).takeOver(eq(LEASE), eq("node-a"), any(), any());
+  }
+
+  @Test
+  void current_fencing_token_passes_the_check() {
+    when(schedulerLeaseRepository.renew(eq(LEASE), eq("node-a"), eq(3L), any(), any())).thenReturn(1);
+
+    schedulerLeaseService.checkFencingToken(3L);
+
+    verify(schedulerLeaseRepository, times(1)).renew(eq(LEASE), eq("node-a"), eq(3L), any(), any());
+  }
+
+  @Test
+  void stale_fencing_token_fails_the_check() {
+    IllegalStateException thrown = assertThrows(IllegalStateException.class,
+        () -> schedulerLeaseService.checkFencingToken(3L));
+
+    assertEquals("Scheduler lease with fencing token 3 is no longer held by this server", thrown.getMessage());
+  }
+
+  @Test
+  void fenced_job_only_runs_while_its_token_is_current() throws Exception {
+    boolean[] ran = { false };
+    JobContextConsumer fenced = schedulerLeaseService.fence(5L, ctx -> ran[0] = true);
+    JobContext ctx = new JobContext(null, Job.builder().build());
+
+    assertThrows(IllegalStateException.class, () -> fenced.accept(ctx));
+    assertFalse(ran[0]);
+
+    when(schedulerLeaseRepository.renew(eq(LEASE), eq("node-a"), eq(5L), any(), any())).thenReturn(1);
+    fenced.accept(ctx);
+    assertTrue(ran[0]);
+  }
+
+  @Test
+  void node_id_defaults_to_a_random_id() {
+    assertEquals("node-a", schedulerLeaseService.getNodeId());
+
+    SchedulerLeaseService unnamed = new SchedulerLeaseService();
+    ReflectionTestUtils.setField(unnamed, "nodeId", "");
+    unnamed.chooseNodeId();
+
+    assertEquals(36, unnamed.getNodeId().length());
+  }
+}
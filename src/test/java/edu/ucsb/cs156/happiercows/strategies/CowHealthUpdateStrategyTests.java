@@ -13,6 +13,8 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.Random;
+
 @ExtendWith(SpringExtension.class)
 @ContextConfiguration
 class CowHealthUpdateStrategyTests {
@@ -62,4 +64,79 @@ class CowHealthUpdateStrategyTests {
         assertEquals(50.0, formula.calculateNewCowHealth(commonsPlus, user, 100));
         assertEquals(50.0, formula.calculateNewCowHealth(commonsPlus, user, 90));
     }
+
+    @Test
+    void linear_delta_is_proportional_to_num_cows_over_capacity() {
+        var formula = CowHealthUpdateStrategies.Linear;
+
+        assertEquals(-0.1, formula.calculateCowHealthDelta(commonsPlus, 110));
+        assertEquals(-0.0, formula.calculateCowHealthDelta(commonsPlus, 100));
+        assertEquals(0.1, formula.calculateCowHealthDelta(commonsPlus, 90));
+    }
+
+    @Test
+    void constant_delta_is_the_degradation_rate() {
+        var formula = CowHealthUpdateStrategies.Constant;
+
+        assertEquals(-0.01, formula.calculateCowHealthDelta(commonsPlus, 110));
+        assertEquals(0.01, formula.calculateCowHealthDelta(commonsPlus, 100));
+        assertEquals(0.01, formula.calculateCowHealthDelta(commonsPlus, 90));
+    }
+
+    @Test
+    void noop_delta_is_zero() {
+        var formula = CowHealthUpdateStrategies.Noop;
+
+        assertEquals(0.0, formula.calculateCowHealthDelta(commonsPlus, 110));
+        assertEquals(0.0, formula.calculateCowHealthDelta(commonsPlus, 90));
+    }
+
+    @Test
+    void batch_form_matches_scalar_form_for_every_strategy() {
+        Random random = new Random(156);
+        int numPlayers = 50;
+
+        for (CowHealthUpdateStrategies strategy : CowHealthUpdateStrategies.values()) {
+            for (int totalCows : new int[] { 0, 60, 100, 140, 1000 }) {
+                Commons batchCommons = Commons.builder()
+                        .degradationRate(random.nextDouble() * 3)
+                        .capacityPerUser(2)
+                        .carryingCapacity(100)
+                        .build();
+                CommonsPlus batchCommonsPlus = CommonsPlus.builder().commons(batchCommons).totalCows(totalCows).totalUsers(numPlayers).build();
+
+                double[] health = new double[numPlayers];
+                int[] cows = new int[numPlayers];
+                UserCommons[] players = new UserCommons[numPlayers];
+                for (int i = 0; i < numPlayers; i++) {
+                    health[i] = random.nextDouble() * 100;
+                    cows[i] = random.nextInt(20);
+                    players[i] = UserCommons.builder().cowHealth(health[i]).numOfCows(cows[i]).build();
+                }
+
+                strategy.calculateNewCowHealth(health, cows, numPlayers, totalCows,
+                        batchCommonsPlus.getEffectiveCapacity(), batchCommons.getDegradationRate());
+
+                for (int i = 0; i < numPlayers; i++) {
+                    assertEquals(strategy.calculateNewCowHealth(batchCommonsPlus, players[i], totalCows), health[i],
+                            strategy + " player " + i + " totalCows " + totalCows);
+                    assertEquals(players[i].getNumOfCows(), cows[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void batch_form_only_updates_the_first_count_players() {
+        for (CowHealthUpdateStrategies strategy : CowHealthUpdateStrategies.values()) {
+            double[] health = { 50, 50, 50 };
+            int[] cows = { 1, 1, 1 };
+
+            strategy.calculateNewCowHealth(health, cows, 2, 110, 100, 0.01);
+
+            assertEquals(strategy.calculateNewCowHealth(commonsPlus, user, 110), health[0]);
+            assertEquals(strategy.calculateNewCowHealth(commonsPlus, user, 110), health[1]);
+            assertEquals(50.0, health[2]);
+        }
+    }
 }
@@ -2,11 +2,14 @@ package edu.ucsb.cs156.happiercows.testconfig;
 
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 
 import edu.ucsb.cs156.happiercows.services.CurrentUserService;
 import edu.ucsb.cs156.happiercows.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.happiercows.services.UserCache;
 
 @TestConfiguration
+@Import(UserCache.class)
 public class TestConfig {
 
     @Bean